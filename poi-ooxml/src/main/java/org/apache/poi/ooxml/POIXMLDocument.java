@@ -29,11 +29,13 @@ import java.util.Set;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.CompressionOptions;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.openxml4j.opc.PackageRelationship;
 import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.util.Beta;
 import org.apache.xmlbeans.impl.common.SystemCache;
 
 /**
@@ -226,4 +228,29 @@ public abstract class POIXMLDocument extends POIXMLDocumentPart implements Close
 
         p.save(stream);
     }
+
+    /**
+     * Write out this document to an Outputstream with the given compression of the parts.
+     *
+     * @param stream the java OutputStream you wish to write the file to
+     * @param compressionOptions the compression per content type, or {@code null} for the default compression
+     * @throws IOException if anything can't be written.
+     * @see #write(OutputStream)
+     * @see OPCPackage#setCompressionOptions(CompressionOptions)
+     * @since POI 5.2.6
+     */
+    @Beta
+    public final void write(OutputStream stream, CompressionOptions compressionOptions) throws IOException {
+        OPCPackage p = getPackage();
+        if(p == null) {
+            throw new IOException("Cannot write data, document seems to have been closed already");
+        }
+        CompressionOptions previous = p.getCompressionOptions();
+        p.setCompressionOptions(compressionOptions);
+        try {
+            write(stream);
+        } finally {
+            p.setCompressionOptions(previous);
+        }
+    }
 }
@@ -0,0 +1,121 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.opc;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.apache.poi.util.Beta;
+
+/**
+ * The compression of the package parts when a package is saved.
+ * <p>
+ * The compression level can be chosen per content type, e.g. a fast level for worksheets
+ * and {@link #STORED} for images, which are already compressed:
+ * <pre>{@code
+ * CompressionOptions options = new CompressionOptions();
+ * options.setLevel(XSSFRelation.WORKSHEET.getContentType(), Deflater.BEST_SPEED);
+ * options.setLevel("image/*", CompressionOptions.STORED);
+ * workbook.write(out, options);
+ * }</pre>
+ * The relationship parts and the content types part always use the default level.
+ *
+ * @see OPCPackage#setCompressionOptions(CompressionOptions)
+ * @since POI 5.2.6
+ */
+@Beta
+public final class CompressionOptions {
+    /**
+     * Stores the parts of a content type without compression instead of deflating them.
+     * <p>
+     * Zip64 streams written by {@code SXSSFWorkbook} don't support stored entries,
+     * they use {@link Deflater#NO_COMPRESSION} instead.
+     */
+    public static final int STORED = -2;
+
+    private int defaultLevel = Deflater.DEFAULT_COMPRESSION;
+    private final Map<String, Integer> levels = new HashMap<>();
+
+    /**
+     * @return the compression level of the parts without a specific level
+     */
+    public int getDefaultLevel() {
+        return defaultLevel;
+    }
+
+    /**
+     * @param level the deflate level (0-9 or {@link Deflater#DEFAULT_COMPRESSION}) of the parts
+     *      without a specific level
+     * @throws IllegalArgumentException if the level is invalid or {@link #STORED}
+     */
+    public void setDefaultLevel(int level) {
+        if (!isDeflateLevel(level)) {
+            throw new IllegalArgumentException("Invalid default compression level: " + level);
+        }
+        defaultLevel = level;
+    }
+
+    /**
+     * Sets the compression of the parts of a content type.
+     *
+     * @param contentType the content type, e.g. {@code image/png}, or a type with a wildcard subtype
+     *      like {@code image/*}
+     * @param level the deflate level (0-9 or {@link Deflater#DEFAULT_COMPRESSION}) or {@link #STORED}
+     * @throws IllegalArgumentException if the level is invalid
+     */
+    public void setLevel(String contentType, int level) {
+        if (level != STORED && !isDeflateLevel(level)) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        levels.put(normalize(contentType), level);
+    }
+
+    /**
+     * Returns the compression of the parts of a content type. A level for the exact content type
+     * has precedence over a wildcard subtype.
+     *
+     * @param contentType the content type of the part, parameters are ignored
+     * @return the deflate level or {@link #STORED}
+     */
+    public int getLevel(String contentType) {
+        if (contentType == null || levels.isEmpty()) {
+            return defaultLevel;
+        }
+        String type = normalize(contentType);
+        Integer level = levels.get(type);
+        if (level == null) {
+            int slash = type.indexOf('/');
+            if (slash > 0) {
+                level = levels.get(type.substring(0, slash) + "/*");
+            }
+        }
+        return level == null ? defaultLevel : level;
+    }
+
+    private static String normalize(String contentType) {
+        int semicolon = contentType.indexOf(';');
+        String type = semicolon < 0 ? contentType : contentType.substring(0, semicolon);
+        return type.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isDeflateLevel(int level) {
+        return level == Deflater.DEFAULT_COMPRESSION || (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION);
+    }
+}
@@ -39,6 +39,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,7 +59,9 @@ import org.apache.poi.openxml4j.opc.internal.marshallers.DefaultMarshaller;
 import org.apache.poi.openxml4j.opc.internal.marshallers.ZipPackagePropertiesMarshaller;
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.PackagePropertiesUnmarshaller;
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.UnmarshallContext;
+import org.apache.poi.openxml4j.util.ParallelDeflateOutputStream;
 import org.apache.poi.openxml4j.util.ZipEntrySource;
+import org.apache.poi.util.Beta;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.NotImplemented;
 import org.apache.poi.util.StringUtil;
@@ -133,6 +136,16 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
      */
     protected OutputStream output;
 
+    /**
+     * Executor for compressing large parts on several threads, {@code null} for single threaded compression.
+     */
+    private ExecutorService parallelDeflateExecutor;
+
+    /**
+     * Compression of the parts when saving, {@code null} for the default compression.
+     */
+    private CompressionOptions compressionOptions;
+
     /**
      * Constructor.
      *
@@ -1689,6 +1702,57 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
         return !coreDocRelationships.isEmpty();
     }
 
+    /**
+     * @return the executor which compresses large parts when the package is saved,
+     *      or {@code null} if all parts are compressed on the saving thread
+     * @see #setParallelDeflateExecutor(ExecutorService)
+     * @since POI 5.2.6
+     */
+    @Beta
+    public ExecutorService getParallelDeflateExecutor() {
+        return parallelDeflateExecutor;
+    }
+
+    /**
+     * Sets an executor, which compresses large parts on several threads when the package is saved.
+     * <p>
+     * The parts are split into blocks, which are compressed concurrently and joined into one
+     * deflate stream by {@link ParallelDeflateOutputStream}. Small parts are still compressed
+     * on the saving thread. This also applies to {@code XSSFWorkbook.write()} and to the sheets
+     * written by {@code SXSSFWorkbook.write()}, if they are set on the package of the workbook.
+     * <p>
+     * The executor is not shut down by the package.
+     *
+     * @param executor the executor, or {@code null} (the default) to compress on the saving thread
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setParallelDeflateExecutor(ExecutorService executor) {
+        this.parallelDeflateExecutor = executor;
+    }
+
+    /**
+     * @return the compression of the parts when the package is saved, or {@code null} for the default compression
+     * @since POI 5.2.6
+     */
+    @Beta
+    public CompressionOptions getCompressionOptions() {
+        return compressionOptions;
+    }
+
+    /**
+     * Sets the compression of the parts when the package is saved. This also applies to
+     * {@code XSSFWorkbook.write()} and {@code SXSSFWorkbook.write()}, if they are set on
+     * the package of the workbook.
+     *
+     * @param compressionOptions the compression per content type, or {@code null} for the default compression
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setCompressionOptions(CompressionOptions compressionOptions) {
+        this.compressionOptions = compressionOptions;
+    }
+
     /**
      * Has close been called already?
      */
@@ -552,6 +552,11 @@ public final class ZipPackage extends OPCPackage {
             ? (ZipArchiveOutputStream) outputStream : new ZipArchiveOutputStream(outputStream);
 
         try {
+            CompressionOptions compressionOptions = getCompressionOptions();
+            if (compressionOptions != null) {
+                zos.setLevel(compressionOptions.getDefaultLevel());
+            }
+
             // If the core properties part does not exist in the part list,
             // we save it as well
             if (this.getPartsByRelationshipType(PackageRelationshipTypes.CORE_PROPERTIES).isEmpty() &&
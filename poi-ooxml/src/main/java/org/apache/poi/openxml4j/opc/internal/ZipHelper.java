@@ -25,9 +25,12 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.util.zip.CRC32;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.function.IOSupplier;
 import org.apache.poi.openxml4j.exceptions.NotOfficeXmlFileException;
 import org.apache.poi.openxml4j.exceptions.OLE2NotOfficeXmlFileException;
 import org.apache.poi.openxml4j.opc.PackageRelationship;
@@ -36,6 +39,7 @@ import org.apache.poi.openxml4j.opc.ZipPackage;
 import org.apache.poi.openxml4j.util.ZipArchiveThresholdInputStream;
 import org.apache.poi.openxml4j.util.ZipSecureFile;
 import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.Internal;
 
 @Internal
@@ -162,6 +166,40 @@ public final class ZipHelper {
         }
     }
 
+    /**
+     * Adds an entry without compression. The data is read twice, as the zip stream needs
+     * the CRC and the size of a stored entry before its data.
+     *
+     * @param zos the zip stream
+     * @param entry the entry, its method, sizes and CRC are set by this method
+     * @param data supplies the data of the entry, it's called twice
+     * @throws IOException if the data can't be read or written
+     * @since POI 5.2.6
+     */
+    public static void putStoredEntry(ZipArchiveOutputStream zos, ZipArchiveEntry entry, IOSupplier<InputStream> data)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] buf = new byte[8192];
+        try (InputStream is = data.get()) {
+            int len;
+            while ((len = is.read(buf)) != -1) {
+                crc.update(buf, 0, len);
+                size += len;
+            }
+        }
+        entry.setMethod(ZipArchiveEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+        zos.putArchiveEntry(entry);
+        try (InputStream is = data.get()) {
+            IOUtils.copy(is, zos);
+        } finally {
+            zos.closeArchiveEntry();
+        }
+    }
+
     /**
      * Opens the specified stream as a secure zip. Closes the Input Stream.
      *
@@ -21,12 +21,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.CompressionOptions;
+import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackageNamespaces;
 import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.openxml4j.opc.PackagePartName;
@@ -37,6 +42,7 @@ import org.apache.poi.openxml4j.opc.StreamHelper;
 import org.apache.poi.openxml4j.opc.TargetMode;
 import org.apache.poi.openxml4j.opc.internal.PartMarshaller;
 import org.apache.poi.openxml4j.opc.internal.ZipHelper;
+import org.apache.poi.openxml4j.util.ParallelDeflateOutputStream;
 import org.apache.poi.ooxml.util.DocumentHelper;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.xssf.usermodel.XSSFRelation;
@@ -49,6 +55,9 @@ import org.w3c.dom.Element;
 public final class ZipPartMarshaller implements PartMarshaller {
     private static final Logger LOG = LogManager.getLogger(ZipPartMarshaller.class);
 
+    /** parts below this size are compressed on the saving thread, even if the package has a parallel deflate executor */
+    private static final long PARALLEL_DEFLATE_MIN_SIZE = 4L * ParallelDeflateOutputStream.DEFAULT_BLOCK_SIZE;
+
     /**
      * Save the specified part to the given stream.
      *
@@ -81,14 +90,31 @@ public final class ZipPartMarshaller implements PartMarshaller {
                 .getZipItemNameFromOPCName(part.getPartName().getURI()
                         .getPath()));
         try {
-            // Create next zip entry
-            zos.putArchiveEntry(partEntry);
-
-            // Saving data in the ZIP file
-            try (final InputStream ins = part.getInputStream()) {
-                IOUtils.copy(ins, zos);
-            } finally {
-                zos.closeArchiveEntry();
+            OPCPackage pkg = part.getPackage();
+            ExecutorService executor = pkg == null ? null : pkg.getParallelDeflateExecutor();
+            CompressionOptions options = pkg == null ? null : pkg.getCompressionOptions();
+            int level = options == null ? Deflater.DEFAULT_COMPRESSION : options.getLevel(part.getContentType());
+            if (level == CompressionOptions.STORED) {
+                ZipHelper.putStoredEntry(zos, partEntry, part::getInputStream);
+            } else if (executor != null && part.getSize() >= PARALLEL_DEFLATE_MIN_SIZE) {
+                marshallParallel(part, partEntry, zos, executor, level);
+            } else {
+                if (options != null) {
+                    zos.setLevel(level);
+                }
+                // Create next zip entry
+                zos.putArchiveEntry(partEntry);
+
+                // Saving data in the ZIP file
+                try (final InputStream ins = part.getInputStream()) {
+                    IOUtils.copy(ins, zos);
+                } finally {
+                    zos.closeArchiveEntry();
+                    if (options != null) {
+                        // the relationship parts use the default level
+                        zos.setLevel(options.getDefaultLevel());
+                    }
+                }
             }
         } catch (IOException ioe) {
             LOG.atError().withThrowable(ioe).log("Cannot write: {}: in ZIP", part.getPartName());
@@ -107,6 +133,29 @@ public final class ZipPartMarshaller implements PartMarshaller {
         return true;
     }
 
+    /**
+     * Compresses the part on the executor of the package and adds the deflated data as raw entry,
+     * as the zip stream needs the CRC and the sizes before the data.
+     */
+    private static void marshallParallel(PackagePart part, ZipArchiveEntry partEntry, ZipArchiveOutputStream zos,
+                                         ExecutorService executor, int level) throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        ParallelDeflateOutputStream pdos = new ParallelDeflateOutputStream(bos, executor, level,
+            ParallelDeflateOutputStream.DEFAULT_BLOCK_SIZE);
+        try (final InputStream ins = part.getInputStream()) {
+            IOUtils.copy(ins, pdos);
+        }
+        pdos.finish();
+
+        partEntry.setMethod(ZipArchiveEntry.DEFLATED);
+        partEntry.setCrc(pdos.getCrc());
+        partEntry.setSize(pdos.getBytesRead());
+        partEntry.setCompressedSize(pdos.getBytesWritten());
+        try (InputStream is = bos.toInputStream()) {
+            zos.addRawArchiveEntry(partEntry, is);
+        }
+    }
+
     /**
      * Save relationships into the part.
      *
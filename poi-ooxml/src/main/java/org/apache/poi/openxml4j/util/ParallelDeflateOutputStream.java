@@ -0,0 +1,283 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.poi.util.Beta;
+
+/**
+ * An output stream, which compresses the data into a raw deflate stream (without zlib or gzip header)
+ * on several threads.
+ * <p>
+ * Like pigz, the data is split into blocks, which are compressed concurrently by separate {@link Deflater}s.
+ * Each block is primed with the last 32 KiB of the previous block as dictionary and ends with a sync flush,
+ * so the concatenated blocks form one valid deflate stream. The compression ratio is only slightly worse
+ * than with a single deflater.
+ * <p>
+ * The compressed blocks are written to the underlying stream in order by the thread which writes to this
+ * stream. The number of blocks in flight is limited, so the memory usage doesn't depend on the size of the data.
+ * <p>
+ * The CRC-32 and the sizes needed for a zip entry are available after {@link #finish()}.
+ *
+ * @since POI 5.2.6
+ */
+@Beta
+public final class ParallelDeflateOutputStream extends OutputStream {
+    /** the default size of the uncompressed blocks */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    /** the size of the deflate window, which is used as dictionary for the following block */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int level;
+    private final int maxPendingBlocks;
+    private final ArrayDeque<Future<CompressedBlock>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] buffer;
+    private int count;
+    private byte[] previous;
+    private long bytesRead;
+    private long bytesWritten;
+    private boolean finished;
+
+    /**
+     * Creates a stream with the default compression level and block size
+     *
+     * @param out the target of the compressed data
+     * @param executor the executor which compresses the blocks, it's not shut down by this stream
+     */
+    public ParallelDeflateOutputStream(OutputStream out, ExecutorService executor) {
+        this(out, executor, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param out the target of the compressed data
+     * @param executor the executor which compresses the blocks, it's not shut down by this stream
+     * @param level the compression level (0-9 or {@link Deflater#DEFAULT_COMPRESSION})
+     * @param blockSize the size of the uncompressed blocks, at least 32 KiB
+     * @throws IllegalArgumentException if the level or block size is invalid
+     */
+    public ParallelDeflateOutputStream(OutputStream out, ExecutorService executor, int level, int blockSize) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        if (blockSize < DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("The block size must be at least " + DICTIONARY_SIZE + " bytes, but was " + blockSize);
+        }
+        this.out = out;
+        this.executor = executor;
+        this.level = level;
+        this.maxPendingBlocks = 2 * Runtime.getRuntime().availableProcessors();
+        this.buffer = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (finished) {
+            throw new IOException("The stream is already finished");
+        }
+        crc.update(b);
+        bytesRead++;
+        if (count == buffer.length) {
+            submitBlock(false);
+        }
+        buffer[count++] = (byte)b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (finished) {
+            throw new IOException("The stream is already finished");
+        }
+        crc.update(b, off, len);
+        bytesRead += len;
+        while (len > 0) {
+            // a full block is only submitted when more data follows, so the last block can always be finished
+            if (count == buffer.length) {
+                submitBlock(false);
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the blocks which are already compressed to the underlying stream and flushes it.
+     * The data which is not yet part of a block remains buffered.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeCompletedBlocks(false);
+        out.flush();
+    }
+
+    /**
+     * Compresses the remaining data and writes all blocks to the underlying stream without closing it.
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            submitBlock(true);
+            while (!pending.isEmpty()) {
+                writeBlock(pending.peekFirst());
+                pending.removeFirst();
+            }
+        } finally {
+            buffer = null;
+            previous = null;
+            for (Future<CompressedBlock> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the CRC-32 of the uncompressed data written so far
+     */
+    public long getCrc() {
+        return crc.getValue();
+    }
+
+    /**
+     * @return the number of uncompressed bytes written to this stream
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the number of compressed bytes written to the underlying stream
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void submitBlock(boolean last) throws IOException {
+        final byte[] input = buffer;
+        final int length = count;
+        final byte[] dictionary = previous;
+        pending.addLast(executor.submit(() -> deflate(input, length, dictionary, last)));
+        previous = input;
+        buffer = last ? null : new byte[input.length];
+        count = 0;
+        writeCompletedBlocks(pending.size() >= maxPendingBlocks);
+    }
+
+    /**
+     * Writes the completed blocks from the head of the queue
+     *
+     * @param wait if true, waits until the number of pending blocks falls below the limit
+     */
+    private void writeCompletedBlocks(boolean wait) throws IOException {
+        while (!pending.isEmpty() && (pending.peekFirst().isDone() || (wait && pending.size() >= maxPendingBlocks))) {
+            writeBlock(pending.peekFirst());
+            pending.removeFirst();
+        }
+    }
+
+    private void writeBlock(Future<CompressedBlock> future) throws IOException {
+        CompressedBlock block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing a block");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        out.write(block.data, 0, block.length);
+        bytesWritten += block.length;
+    }
+
+    private CompressedBlock deflate(byte[] input, int length, byte[] dictionary, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(input, 0, length);
+            if (last) {
+                deflater.finish();
+            }
+            // incompressible data grows by a few bytes per stored block
+            byte[] data = new byte[length + (length >> 4) + 64];
+            int pos = 0;
+            int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            while (true) {
+                pos += deflater.deflate(data, pos, data.length - pos, flush);
+                boolean full = (pos == data.length);
+                if (last ? deflater.finished() : !full) {
+                    break;
+                }
+                if (full) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+            }
+            return new CompressedBlock(data, pos);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static final class CompressedBlock {
+        private final byte[] data;
+        private final int length;
+
+        private CompressedBlock(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+}
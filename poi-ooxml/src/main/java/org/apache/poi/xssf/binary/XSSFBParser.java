@@ -19,6 +19,7 @@ package org.apache.poi.xssf.binary;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 import com.zaxxer.sparsebits.SparseBitSet;
 import org.apache.poi.util.IOUtils;
@@ -41,6 +42,8 @@ public abstract class XSSFBParser {
 
     private final LittleEndianInputStream is;
     private final SparseBitSet records;
+    private final boolean reuseRecordBuffer;
+    private byte[] recordBuffer;
 
     /**
      * @param length the max record length allowed for XSSFBParser
@@ -57,8 +60,7 @@ public abstract class XSSFBParser {
     }
 
     public XSSFBParser(InputStream is) {
-        this.is = new LittleEndianInputStream(is);
-        records = null;
+        this(is, null, false);
     }
 
     /**
@@ -67,8 +69,22 @@ public abstract class XSSFBParser {
      * @param bitSet call {@link #handleRecord(int, byte[])} only on those records in this bitSet
      */
     protected XSSFBParser(InputStream is, SparseBitSet bitSet) {
+        this(is, bitSet, false);
+    }
+
+    /**
+     * @param is inputStream
+     * @param bitSet call {@link #handleRecord(int, byte[], int)} only on those records in this bitSet,
+     *               or {@code null} for all records
+     * @param reuseRecordBuffer if true, all records are read into the same growing buffer and
+     *               passed to {@link #handleRecord(int, byte[], int)}, instead of allocating
+     *               a new array per record
+     * @since POI 5.2.6
+     */
+    protected XSSFBParser(InputStream is, SparseBitSet bitSet, boolean reuseRecordBuffer) {
         this.is = new LittleEndianInputStream(is);
-        records = bitSet;
+        this.records = bitSet;
+        this.reuseRecordBuffer = reuseRecordBuffer;
     }
 
     public void parse() throws IOException {
@@ -107,9 +123,19 @@ public abstract class XSSFBParser {
 
         }
         if (records == null || records.get(recordId)) {
-            byte[] buff = IOUtils.safelyAllocate(recordLength, MAX_RECORD_LENGTH);
-            is.readFully(buff);
-            handleRecord(recordId, buff);
+            if (reuseRecordBuffer) {
+                IOUtils.safelyAllocateCheck(recordLength, MAX_RECORD_LENGTH);
+                int length = (int)recordLength;
+                if (recordBuffer == null || recordBuffer.length < length) {
+                    recordBuffer = new byte[Math.max(length, recordBuffer == null ? 256 : recordBuffer.length * 2)];
+                }
+                is.readFully(recordBuffer, 0, length);
+                handleRecord(recordId, recordBuffer, length);
+            } else {
+                byte[] buff = IOUtils.safelyAllocate(recordLength, MAX_RECORD_LENGTH);
+                is.readFully(buff);
+                handleRecord(recordId, buff);
+            }
         } else {
             long length = IOUtils.skipFully(is, recordLength);
             if (length != recordLength) {
@@ -127,4 +153,21 @@ public abstract class XSSFBParser {
     //the correct amount.
     abstract public void handleRecord(int recordType, byte[] data) throws XSSFBParseException;
 
+    /**
+     * Called instead of {@link #handleRecord(int, byte[])} if the parser reuses its record buffer.
+     * The buffer is reused for the next record, so it's only valid during the call and must not be kept
+     * by the implementation. It may also be longer than the record.
+     * The default implementation passes a copy of the record to {@link #handleRecord(int, byte[])},
+     * which may keep its array.
+     *
+     * @param recordType the record id
+     * @param data the record buffer, the record starts at offset 0
+     * @param length the length of the record
+     * @throws XSSFBParseException if the record is invalid
+     * @since POI 5.2.6
+     */
+    public void handleRecord(int recordType, byte[] data, int length) throws XSSFBParseException {
+        handleRecord(recordType, Arrays.copyOf(data, length));
+    }
+
 }
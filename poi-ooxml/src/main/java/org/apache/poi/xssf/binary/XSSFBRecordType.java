@@ -42,13 +42,19 @@ public enum XSSFBRecordType {
     BrtRowHdr(0),
     BrtCellRString(62),
     BrtBeginSheet(129),
+    BrtEndSheet(130),
     BrtWsProp(147),
     BrtWsDim(148),
     BrtColInfo(60),
+    BrtBeginColInfos(390),
+    BrtEndColInfos(391),
     BrtBeginSheetData(145),
     BrtEndSheetData(146),
     BrtHLink(494),
     BrtBeginHeaderFooter(479),
+    BrtBeginMergeCells(177),
+    BrtEndMergeCells(178),
+    BrtMergeCell(176),
 
     //comments
     BrtBeginCommentAuthors(630),
@@ -58,6 +64,20 @@ public enum XSSFBRecordType {
     BrtCommentText(637),
     BrtEndComment(636),
     //styles table
+    BrtBeginStyleSheet(278),
+    BrtEndStyleSheet(279),
+    BrtFont(43),
+    BrtBeginFonts(611),
+    BrtEndFonts(612),
+    BrtFill(45),
+    BrtBeginFills(603),
+    BrtEndFills(604),
+    BrtBorder(46),
+    BrtBeginBorders(613),
+    BrtEndBorders(614),
+    BrtStyle(48),
+    BrtBeginStyles(619),
+    BrtEndStyles(620),
     BrtXf(47),
     BrtFmt(44),
     BrtBeginFmts(615),
@@ -72,13 +92,21 @@ public enum XSSFBRecordType {
     BrtBeginSst(159), //stored strings begin sst
     BrtEndSst(160),   //stored strings end sst
 
+    BrtBeginBook(131),
+    BrtEndBook(132),
+    BrtBeginBookViews(135),
+    BrtEndBookViews(136),
+    BrtBookView(158),
+    BrtBeginBundleShs(143),
+    BrtEndBundleShs(144),
     BrtBundleSh(156), //defines worksheet in wb part
+    BrtCalcProp(157),
 
     BrtAbsPath15(2071), //Excel 2013 path where the file was stored in wbpart
 
+    BrtFileVersion(128), //file version
+    BrtWbProp(153), //Workbook prop contains 1904/1900-date based bit
     //TODO -- implement these as needed
-    //BrtFileVersion(128), //file version
-    //BrtWbProp(153), //Workbook prop contains 1904/1900-date based bit
     Unimplemented(-1);
 
     private static final Map<Integer, XSSFBRecordType> TYPE_MAP =
@@ -0,0 +1,382 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.binary;
+
+import java.io.InputStream;
+
+import com.zaxxer.sparsebits.SparseBitSet;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.xssf.model.SharedStrings;
+
+/**
+ * Reads the rows of a binary (xlsb) sheet part and reports typed cell values.
+ * <p>
+ * In contrast to {@link XSSFBSheetHandler}, which formats every value for text extraction,
+ * this reader passes the raw values to a {@link CellHandler}. To keep the allocation rate low,
+ * all records are read into one reused buffer, records other than rows and cells are skipped
+ * without being copied, and the reported {@link CellValue} is reused for every cell.
+ * Shared strings are only looked up when {@link CellValue#getStringValue()} is called.
+ * <p>
+ * Like the other parsers, this class is not thread safe.
+ *
+ * @since POI 5.2.6
+ */
+@Beta
+public class XSSFBSheetRowReader extends XSSFBParser {
+
+    /**
+     * Receives the rows and cells of the sheet.
+     */
+    public interface CellHandler {
+        /**
+         * A row starts.
+         *
+         * @param rowNum the 0-based row number
+         */
+        default void startRow(int rowNum) {
+        }
+
+        /**
+         * A cell of the current row. The value object is reused for the next cell,
+         * i.e. it must not be stored.
+         *
+         * @param cell the value of the cell
+         */
+        void cell(CellValue cell);
+
+        /**
+         * The current row ends.
+         *
+         * @param rowNum the 0-based row number
+         */
+        default void endRow(int rowNum) {
+        }
+
+        /**
+         * The sheet data ends.
+         */
+        default void endSheet() {
+        }
+    }
+
+    private static final SparseBitSet RECORDS = new SparseBitSet();
+    static {
+        for (XSSFBRecordType type : new XSSFBRecordType[]{
+            XSSFBRecordType.BrtRowHdr, XSSFBRecordType.BrtCellBlank, XSSFBRecordType.BrtCellRk,
+            XSSFBRecordType.BrtCellError, XSSFBRecordType.BrtCellBool, XSSFBRecordType.BrtCellReal,
+            XSSFBRecordType.BrtCellSt, XSSFBRecordType.BrtCellIsst, XSSFBRecordType.BrtFmlaString,
+            XSSFBRecordType.BrtFmlaNum, XSSFBRecordType.BrtFmlaBool, XSSFBRecordType.BrtFmlaError,
+            XSSFBRecordType.BrtEndSheetData
+        }) {
+            RECORDS.set(type.getId());
+        }
+    }
+
+    private final XSSFBStylesTable styles;
+    private final SharedStrings strings;
+    private final CellHandler handler;
+    private final CellValue cell = new CellValue();
+    private int currentRow = -1;
+    private boolean rowOpen;
+
+    /**
+     * @param is the sheet part
+     * @param styles the styles of the workbook, may be {@code null}
+     * @param strings the shared strings of the workbook, may be {@code null}
+     * @param handler the receiver of the cells
+     */
+    public XSSFBSheetRowReader(InputStream is, XSSFBStylesTable styles, SharedStrings strings, CellHandler handler) {
+        super(is, RECORDS, true);
+        this.styles = styles;
+        this.strings = strings;
+        this.handler = handler;
+    }
+
+    @Override
+    public void handleRecord(int recordType, byte[] data) throws XSSFBParseException {
+        handleRecord(recordType, data, data.length);
+    }
+
+    @Override
+    public void handleRecord(int recordType, byte[] data, int length) throws XSSFBParseException {
+        switch (XSSFBRecordType.lookup(recordType)) {
+            case BrtRowHdr:
+                int rw = XSSFBUtils.castToInt(LittleEndian.getUInt(data, 0));
+                if (rw > 0x00100000) {
+                    throw new XSSFBParseException("Row number beyond allowable range: " + rw);
+                }
+                endRow();
+                currentRow = rw;
+                rowOpen = true;
+                handler.startRow(rw);
+                break;
+            case BrtCellBlank:
+                startCell(data, length, CellType.BLANK, false, 0);
+                handler.cell(cell);
+                break;
+            case BrtCellRk:
+                startCell(data, length, CellType.NUMERIC, false, 4);
+                cell.numericValue = rkNumber(LittleEndian.getInt(data, XSSFBCellHeader.length));
+                handler.cell(cell);
+                break;
+            case BrtCellReal:
+            case BrtFmlaNum:
+                startCell(data, length, CellType.NUMERIC, recordType == XSSFBRecordType.BrtFmlaNum.getId(), 8);
+                cell.numericValue = LittleEndian.getDouble(data, XSSFBCellHeader.length);
+                handler.cell(cell);
+                break;
+            case BrtCellBool:
+            case BrtFmlaBool:
+                startCell(data, length, CellType.BOOLEAN, recordType == XSSFBRecordType.BrtFmlaBool.getId(), 1);
+                cell.booleanValue = data[XSSFBCellHeader.length] == 1;
+                handler.cell(cell);
+                break;
+            case BrtCellError:
+            case BrtFmlaError:
+                startCell(data, length, CellType.ERROR, recordType == XSSFBRecordType.BrtFmlaError.getId(), 1);
+                cell.errorValue = data[XSSFBCellHeader.length];
+                handler.cell(cell);
+                break;
+            case BrtCellIsst:
+                startCell(data, length, CellType.STRING, false, 4);
+                cell.sharedStringIndex = XSSFBUtils.castToInt(LittleEndian.getUInt(data, XSSFBCellHeader.length));
+                handler.cell(cell);
+                break;
+            case BrtCellSt:
+            case BrtFmlaString:
+                startCell(data, length, CellType.STRING, recordType == XSSFBRecordType.BrtFmlaString.getId(), 4);
+                readWideString(data, XSSFBCellHeader.length, length, cell.chars);
+                handler.cell(cell);
+                break;
+            case BrtEndSheetData:
+                endRow();
+                handler.endSheet();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startCell(byte[] data, int length, CellType type, boolean formula, int valueLength) {
+        if (length < XSSFBCellHeader.length + valueLength) {
+            throw new XSSFBParseException("Cell record is too short: " + length);
+        }
+        cell.rowNum = currentRow;
+        cell.colNum = XSSFBUtils.castToInt(LittleEndian.getUInt(data, 0));
+        cell.styleIdx = XSSFBUtils.get24BitInt(data, 4);
+        cell.type = type;
+        cell.formula = formula;
+        cell.sharedStringIndex = -1;
+        cell.chars.setLength(0);
+        cell.resolvedString = null;
+    }
+
+    private void endRow() {
+        if (rowOpen) {
+            rowOpen = false;
+            handler.endRow(currentRow);
+        }
+    }
+
+    /** reads an XLWideString (2.5.168) without an intermediate byte array or string */
+    private static void readWideString(byte[] data, int offset, int length, StringBuilder sb) {
+        long numChars = LittleEndian.getUInt(data, offset);
+        offset += 4;
+        if (numChars * 2 > length - offset) {
+            throw new XSSFBParseException("trying to read beyond data length");
+        }
+        int end = offset + 2 * (int)numChars;
+        for (int i = offset; i < end; i += 2) {
+            sb.append((char)((data[i] & 0xFF) | ((data[i + 1] & 0xFF) << 8)));
+        }
+    }
+
+    /** decodes an RkNumber (2.5.122) */
+    static double rkNumber(int rk) {
+        double d;
+        if ((rk & 2) == 0) {
+            // the upper 30 bits of a double
+            d = Double.longBitsToDouble(((long)(rk & ~3)) << 32);
+        } else {
+            // a signed 30 bit integer
+            d = rk >> 2;
+        }
+        return (rk & 1) == 1 ? d / 100 : d;
+    }
+
+    /**
+     * The value of a cell, which is reused for the next cell.
+     */
+    public final class CellValue {
+        private int rowNum;
+        private int colNum;
+        private int styleIdx;
+        private CellType type;
+        private boolean formula;
+        private double numericValue;
+        private boolean booleanValue;
+        private byte errorValue;
+        private int sharedStringIndex;
+        private final StringBuilder chars = new StringBuilder();
+        private String resolvedString;
+
+        private CellValue() {
+        }
+
+        /**
+         * @return the 0-based row number
+         */
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        /**
+         * @return the 0-based column number
+         */
+        public int getColNum() {
+            return colNum;
+        }
+
+        /**
+         * @return the index of the cell format
+         */
+        public int getStyleIdx() {
+            return styleIdx;
+        }
+
+        /**
+         * @return the type of the value, for formula cells the type of the cached result
+         */
+        public CellType getCellType() {
+            return type;
+        }
+
+        /**
+         * @return true, if the value is the cached result of a formula
+         */
+        public boolean isFormula() {
+            return formula;
+        }
+
+        /**
+         * @return the numeric value, only valid for {@link CellType#NUMERIC}
+         */
+        public double getNumericValue() {
+            return numericValue;
+        }
+
+        /**
+         * @return the boolean value, only valid for {@link CellType#BOOLEAN}
+         */
+        public boolean getBooleanValue() {
+            return booleanValue;
+        }
+
+        /**
+         * @return the error code, only valid for {@link CellType#ERROR}
+         * @see FormulaError#forInt(byte)
+         */
+        public byte getErrorValue() {
+            return errorValue;
+        }
+
+        /**
+         * @return the index into the shared strings table, or -1 if the value is not a shared string
+         */
+        public int getSharedStringIndex() {
+            return sharedStringIndex;
+        }
+
+        /**
+         * Returns the text of an inline string or a string formula result without creating a string.
+         * The content is only valid until the next cell.
+         *
+         * @return the text of the inline string, empty for shared strings and other types
+         */
+        public CharSequence getCharacters() {
+            return chars;
+        }
+
+        /**
+         * Returns the text of a string cell, shared strings are looked up on the first call.
+         *
+         * @return the string value, or {@code null} if the cell has no string value
+         */
+        public String getStringValue() {
+            if (type != CellType.STRING) {
+                return null;
+            }
+            if (resolvedString == null) {
+                if (sharedStringIndex >= 0) {
+                    resolvedString = strings == null ? null : strings.getItemAt(sharedStringIndex).getString();
+                } else {
+                    resolvedString = chars.toString();
+                }
+            }
+            return resolvedString;
+        }
+
+        /**
+         * @return the number format string of the cell, or {@code null} if the reader has no styles table
+         */
+        public String getNumberFormatString() {
+            return styles == null ? null : styles.getNumberFormatString(styleIdx);
+        }
+
+        /**
+         * Formats the value like {@link XSSFBSheetHandler}.
+         *
+         * @param formatter the formatter for numeric values
+         * @return the formatted value, or {@code null} for blank cells
+         */
+        public String getFormattedValue(DataFormatter formatter) {
+            switch (type) {
+                case NUMERIC:
+                    String formatString = getNumberFormatString();
+                    short formatIndex = formatString == null ? 0 : styles.getNumberFormatIndex(styleIdx);
+                    if (formatString == null) {
+                        formatString = BuiltinFormats.getBuiltinFormat(0);
+                    }
+                    return formatter.formatRawCellContents(numericValue, formatIndex, formatString);
+                case BOOLEAN:
+                    return booleanValue ? "TRUE" : "FALSE";
+                case ERROR:
+                    return "ERROR";
+                case STRING:
+                    return getStringValue();
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * @return the error code as text like {@code #DIV/0!}, or {@code null} for other types or unknown codes
+         */
+        public String getErrorString() {
+            if (type != CellType.ERROR || !FormulaError.isValidCode(errorValue)) {
+                return null;
+            }
+            return FormulaError.forInt(errorValue).getString();
+        }
+    }
+}
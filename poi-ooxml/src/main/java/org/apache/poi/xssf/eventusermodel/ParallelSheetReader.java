@@ -0,0 +1,372 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagePartName;
+import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader.SheetIterator;
+import org.apache.poi.xssf.eventusermodel.XSSFReader.XSSFSheetRef;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.Comments;
+import org.apache.poi.xssf.model.CommentsTable;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.Styles;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Parses the sheets of a workbook concurrently with {@link XSSFSheetXMLHandler}.
+ * <p>
+ * The sheet parts of a package are independent of each other, so they can be parsed
+ * on several threads. All sheets share one read-only {@link SharedStrings} and {@link Styles}
+ * table, which are only read while parsing. Each sheet gets its own {@link SheetContentsHandler}
+ * from the {@link SheetCallback} - the callbacks of different sheets are invoked concurrently,
+ * the callbacks of a single sheet are invoked sequentially on one thread.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+ *      ParallelSheetReader sheetReader = new ParallelSheetReader(new XSSFReader(pkg))) {
+ *     sheetReader.setExecutor(executor);
+ *     sheetReader.processSheets((sheetIndex, sheetName) -> new MyHandler(sheetName));
+ * }
+ * }</pre>
+ * Any executor can be used, e.g. a virtual thread per task executor on newer JVMs.
+ * If no executor is set, a fixed thread pool sized by the available processors is used
+ * for each call of {@link #processSheets(SheetCallback)}.
+ *
+ * @since POI 5.2.6
+ */
+@Beta
+public class ParallelSheetReader implements Closeable {
+
+    /**
+     * Creates the handlers for the parsed sheets and gets notified when a sheet is done.
+     */
+    public interface SheetCallback {
+        /**
+         * Called on a worker thread before the sheet is parsed.
+         *
+         * @param sheetIndex the index of the sheet in the workbook
+         * @param sheetName the name of the sheet
+         * @return the handler receiving the contents of the sheet
+         */
+        SheetContentsHandler startSheet(int sheetIndex, String sheetName);
+
+        /**
+         * Called on the same worker thread after the sheet was parsed successfully.
+         *
+         * @param sheetIndex the index of the sheet in the workbook
+         * @param sheetName the name of the sheet
+         * @param handler the handler returned by {@link #startSheet(int, String)}
+         */
+        default void endSheet(int sheetIndex, String sheetName, SheetContentsHandler handler) {
+        }
+    }
+
+    private final XSSFReader reader;
+    private final SharedStrings strings;
+    private final Styles styles;
+    private final boolean ownsStrings;
+
+    private ExecutorService executor;
+    private Supplier<DataFormatter> dataFormatterSupplier = DataFormatter::new;
+    private boolean formulasNotResults;
+    private boolean includeComments = true;
+
+    /**
+     * Creates a reader using the shared strings and styles of the package.
+     * <p>
+     * The shared strings are loaded into a {@link ReadOnlySharedStringsTable}, or a
+     * {@link TempFileReadOnlySharedStringsTable} if enabled by
+     * {@link XSSFReader#setUseTempFileSharedStringsTable(boolean)}.
+     *
+     * @param reader the reader of the package
+     * @throws IOException if reading the shared strings or styles fails
+     * @throws InvalidFormatException if the shared strings or styles data format is invalid
+     * @throws SAXException if parsing the shared strings fails
+     */
+    public ParallelSheetReader(XSSFReader reader) throws IOException, InvalidFormatException, SAXException {
+        this(reader, reader.getStylesTable());
+    }
+
+    /**
+     * Creates a reader with the given shared strings and styles, which must be safe to be
+     * read by several threads, e.g. a {@link ReadOnlySharedStringsTable}. The tables are not
+     * closed by this reader.
+     *
+     * @param reader the reader of the package
+     * @param strings the shared strings, may be {@code null}
+     * @param styles the styles, may be {@code null}
+     */
+    public ParallelSheetReader(XSSFReader reader, SharedStrings strings, Styles styles) {
+        this(reader, strings, styles, false);
+    }
+
+    private ParallelSheetReader(XSSFReader reader, Styles styles) throws IOException, InvalidFormatException, SAXException {
+        // the styles are loaded first, so that a failure can't leak a temp file shared strings table
+        this(reader, loadSharedStrings(reader), styles, true);
+    }
+
+    private ParallelSheetReader(XSSFReader reader, SharedStrings strings, Styles styles, boolean ownsStrings) {
+        this.reader = reader;
+        this.strings = strings;
+        this.styles = styles;
+        this.ownsStrings = ownsStrings;
+    }
+
+    private static SharedStrings loadSharedStrings(XSSFReader reader) throws IOException, InvalidFormatException, SAXException {
+        if (reader.useTempFileSharedStringsTable()) {
+            return reader.getSharedStringsTable();
+        }
+        List<PackagePart> parts = reader.pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+        return parts.isEmpty() ? null : new ReadOnlySharedStringsTable(parts.get(0));
+    }
+
+    /**
+     * @return the shared strings used by all sheets
+     */
+    public SharedStrings getSharedStrings() {
+        return strings;
+    }
+
+    /**
+     * @return the styles used by all sheets
+     */
+    public Styles getStyles() {
+        return styles;
+    }
+
+    /**
+     * Sets the executor which parses the sheets. The executor is not shut down by this reader.
+     *
+     * @param executor the executor, or {@code null} to use a temporary thread pool
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the supplier of the formatters of the cell values. As {@link DataFormatter} isn't thread-safe,
+     * the supplier is called once per sheet and needs to return a new instance on each call.
+     *
+     * @param dataFormatterSupplier the supplier of the formatters
+     */
+    public void setDataFormatterSupplier(Supplier<DataFormatter> dataFormatterSupplier) {
+        this.dataFormatterSupplier = dataFormatterSupplier;
+    }
+
+    /**
+     * @param formulasNotResults if true, the formulas of the cells are output instead of the cached values
+     */
+    public void setFormulasNotResults(boolean formulasNotResults) {
+        this.formulasNotResults = formulasNotResults;
+    }
+
+    /**
+     * @param includeComments if true, the cell comments of each sheet are loaded and passed to the handler
+     */
+    public void setIncludeComments(boolean includeComments) {
+        this.includeComments = includeComments;
+    }
+
+    /**
+     * Parses all sheets of the workbook.
+     *
+     * @param callback creates the handlers of the sheets
+     * @throws IOException if reading a sheet fails
+     * @throws SAXException if parsing a sheet fails
+     * @see #processSheets(Predicate, SheetCallback)
+     */
+    public void processSheets(SheetCallback callback) throws IOException, SAXException {
+        processSheets(name -> true, callback);
+    }
+
+    /**
+     * Parses the selected sheets of the workbook concurrently and waits until all of them are done.
+     * If a sheet fails, the sheets which haven't been started yet are skipped and the first
+     * failure is rethrown.
+     *
+     * @param sheetFilter selects the sheets by name
+     * @param callback creates the handlers of the sheets
+     * @throws IOException if reading a sheet fails
+     * @throws SAXException if parsing a sheet fails
+     */
+    public void processSheets(Predicate<String> sheetFilter, SheetCallback callback) throws IOException, SAXException {
+        List<SheetTask> tasks = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        try {
+            SheetIterator iter = (SheetIterator)reader.getSheetsData();
+            int sheetIndex = 0;
+            while (iter.sheetIterator.hasNext()) {
+                XSSFSheetRef ref = iter.sheetIterator.next();
+                PackagePart part = iter.sheetMap.get(ref.getId());
+                if (part == null) {
+                    throw new POIXMLException("Failed to find sheet package for sheetId=" + ref.getId());
+                }
+                if (sheetFilter.test(ref.getName())) {
+                    tasks.add(new SheetTask(sheetIndex, ref.getName(), part, callback, failed));
+                }
+                sheetIndex++;
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        ExecutorService exec = executor;
+        if (exec == null) {
+            exec = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        }
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+            for (SheetTask task : tasks) {
+                futures.add(CompletableFuture.runAsync(task, exec));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SheetException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new POIXMLException(cause);
+        } finally {
+            if (exec != executor) {
+                exec.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Closes the shared strings, if they have been loaded by this reader.
+     */
+    @Override
+    public void close() throws IOException {
+        if (ownsStrings && strings instanceof Closeable) {
+            ((Closeable)strings).close();
+        }
+    }
+
+    private Comments loadComments(PackagePart sheetPart) throws IOException {
+        try {
+            PackageRelationshipCollection commentsList =
+                    sheetPart.getRelationshipsByType(XSSFRelation.SHEET_COMMENTS.getRelation());
+            if (commentsList.isEmpty()) {
+                return null;
+            }
+            PackagePartName commentsName = PackagingURIHelper.createPartName(commentsList.getRelationship(0).getTargetURI());
+            PackagePart commentsPart = sheetPart.getPackage().getPart(commentsName);
+            return commentsPart == null ? null : new CommentsTable(commentsPart);
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private final class SheetTask implements Runnable {
+        private final int sheetIndex;
+        private final String sheetName;
+        private final PackagePart part;
+        private final SheetCallback callback;
+        private final AtomicBoolean failed;
+
+        SheetTask(int sheetIndex, String sheetName, PackagePart part, SheetCallback callback, AtomicBoolean failed) {
+            this.sheetIndex = sheetIndex;
+            this.sheetName = sheetName;
+            this.part = part;
+            this.callback = callback;
+            this.failed = failed;
+        }
+
+        @Override
+        public void run() {
+            if (failed.get()) {
+                return;
+            }
+            try {
+                parse();
+            } catch (IOException | SAXException e) {
+                failed.set(true);
+                throw new SheetException(e);
+            } catch (RuntimeException | Error e) {
+                failed.set(true);
+                throw e;
+            }
+        }
+
+        private void parse() throws IOException, SAXException {
+            try {
+                Comments comments = includeComments ? loadComments(part) : null;
+                SheetContentsHandler handler = callback.startSheet(sheetIndex, sheetName);
+                XSSFSheetXMLHandler sheetHandler = new XSSFSheetXMLHandler(
+                        styles, comments, strings, handler, dataFormatterSupplier.get(), formulasNotResults);
+                XMLReader sheetParser = XMLHelper.newXMLReader();
+                sheetParser.setContentHandler(sheetHandler);
+                try (InputStream stream = part.getInputStream()) {
+                    sheetParser.parse(new InputSource(stream));
+                }
+                callback.endSheet(sheetIndex, sheetName, handler);
+            } catch (ParserConfigurationException e) {
+                throw new SAXException("SAX parser appears to be broken - " + e.getMessage());
+            }
+        }
+    }
+
+    /** transports the checked exceptions of the sheet tasks */
+    private static final class SheetException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SheetException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -177,6 +177,17 @@ public class ReadOnlySharedStringsTable extends DefaultHandler implements Shared
         readFrom(stream);
     }
 
+    /**
+     * Creates an empty table which is populated by a later call to {@link #readFrom(InputStream)}.
+     * Used by subclasses that need to initialize their own state before parsing starts.
+     *
+     * @param includePhoneticRuns whether or not to concatenate phoneticRuns onto the shared string
+     * @since POI 5.2.6
+     */
+    protected ReadOnlySharedStringsTable(boolean includePhoneticRuns) {
+        this.includePhoneticRuns = includePhoneticRuns;
+    }
+
     /**
      * Read this shared strings table from an XML file.
      *
@@ -230,6 +241,19 @@ public class ReadOnlySharedStringsTable extends DefaultHandler implements Shared
         return new XSSFRichTextString(strings.get(idx));
     }
 
+    /**
+     * Stores the text of a parsed {@code si} element, the n-th call receives the item at index n.
+     *
+     * @param string the plain text of the shared string item
+     * @since POI 5.2.6
+     */
+    protected void addString(String string) {
+        if (strings == null) {
+            strings = new ArrayList<>(uniqueCount);
+        }
+        strings.add(string);
+    }
+
     //// ContentHandler methods ////
 
     private StringBuilder characters;
@@ -248,7 +272,6 @@ public class ReadOnlySharedStringsTable extends DefaultHandler implements Shared
             String uniqueCount = attributes.getValue("uniqueCount");
             if(uniqueCount != null) this.uniqueCount = (int) Long.parseLong(uniqueCount);
 
-            this.strings = new ArrayList<>(this.uniqueCount);
             characters = new StringBuilder(64);
         } else if ("si".equals(localName)) {
             if (characters != null) {
@@ -271,8 +294,8 @@ public class ReadOnlySharedStringsTable extends DefaultHandler implements Shared
         }
 
         if ("si".equals(localName)) {
-            if (strings != null && characters != null) {
-                strings.add(characters.toString());
+            if (characters != null) {
+                addString(characters.toString());
             }
         } else if ("t".equals(localName)) {
             tIsOpen = false;
@@ -0,0 +1,274 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.xml.sax.SAXException;
+
+/**
+ * A {@link ReadOnlySharedStringsTable} which keeps the parsed strings in a temp file
+ * instead of the heap.
+ * <p>
+ * While parsing, the text of each item is appended as UTF-8 to the temp file and only the
+ * file offset of each item is kept in memory (8 bytes per unique string).
+ * {@link #getItemAt(int)} reads the item from the file and keeps it in a small
+ * least-recently-used cache, as cell references to shared strings tend to be clustered.
+ * <p>
+ * Lookups are thread-safe, so a single table can be shared by several sheet handlers.
+ * The temp file is deleted when the table is {@link #close() closed}.
+ *
+ * @see XSSFReader#setUseTempFileSharedStringsTable(boolean)
+ * @since POI 5.2.6
+ */
+@Beta
+public class TempFileReadOnlySharedStringsTable extends ReadOnlySharedStringsTable implements Closeable {
+    private static final Logger LOG = LogManager.getLogger(TempFileReadOnlySharedStringsTable.class);
+
+    /** default number of strings kept in the lookup cache */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final File tempFile;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+    /** number of bytes in the temp file, including the pending bytes in the write buffer */
+    private long size;
+
+    /** the file offset of each item, the end of an item is the offset of its successor or {@link #size} */
+    private long[] offsets = new long[1024];
+    private int items;
+
+    private final Map<Integer, String> cache;
+
+    private boolean closed;
+
+    /**
+     * Parses the given shared strings part, including phonetic runs.
+     *
+     * @param part the shared strings part
+     * @throws IOException If reading the data or writing the temp file fails.
+     * @throws SAXException if parsing the XML data fails.
+     */
+    public TempFileReadOnlySharedStringsTable(PackagePart part) throws IOException, SAXException {
+        this(part, true, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Parses the given shared strings part.
+     *
+     * @param part the shared strings part
+     * @param includePhoneticRuns whether or not to concatenate phoneticRuns onto the shared string
+     * @param cacheSize the maximum number of strings kept in the lookup cache
+     * @throws IOException If reading the data or writing the temp file fails.
+     * @throws SAXException if parsing the XML data fails.
+     */
+    public TempFileReadOnlySharedStringsTable(PackagePart part, boolean includePhoneticRuns, int cacheSize)
+            throws IOException, SAXException {
+        this(includePhoneticRuns, cacheSize);
+        try (InputStream stream = part.getInputStream()) {
+            readFromOrClose(stream);
+        }
+    }
+
+    /**
+     * Parses the given shared strings stream, including phonetic runs.
+     *
+     * @param stream the shared strings xml
+     * @throws IOException If reading the data or writing the temp file fails.
+     * @throws SAXException if parsing the XML data fails.
+     */
+    public TempFileReadOnlySharedStringsTable(InputStream stream) throws IOException, SAXException {
+        this(stream, true, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Parses the given shared strings stream.
+     *
+     * @param stream the shared strings xml
+     * @param includePhoneticRuns whether or not to concatenate phoneticRuns onto the shared string
+     * @param cacheSize the maximum number of strings kept in the lookup cache
+     * @throws IOException If reading the data or writing the temp file fails.
+     * @throws SAXException if parsing the XML data fails.
+     */
+    public TempFileReadOnlySharedStringsTable(InputStream stream, boolean includePhoneticRuns, int cacheSize)
+            throws IOException, SAXException {
+        this(includePhoneticRuns, cacheSize);
+        readFromOrClose(stream);
+    }
+
+    private TempFileReadOnlySharedStringsTable(boolean includePhoneticRuns, int cacheSize) throws IOException {
+        super(includePhoneticRuns);
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative, but was " + cacheSize);
+        }
+        cache = new LinkedHashMap<Integer, String>(Math.min(cacheSize, 1 << 16) * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        tempFile = TempFile.createTempFile("poi-shared-strings", ".tmp");
+        raf = new RandomAccessFile(tempFile, "rw");
+        channel = raf.getChannel();
+    }
+
+    private void readFromOrClose(InputStream stream) throws IOException, SAXException {
+        try {
+            readFrom(stream);
+        } catch (IOException | SAXException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected synchronized void addString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (items == offsets.length) {
+            offsets = Arrays.copyOf(offsets, items * 2);
+        }
+        offsets[items++] = size;
+        try {
+            if (bytes.length > writeBuffer.remaining()) {
+                flush();
+            }
+            if (bytes.length > writeBuffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes), size);
+            } else {
+                writeBuffer.put(bytes);
+            }
+        } catch (IOException e) {
+            throw new POIXMLException("Failed to write shared string to " + tempFile, e);
+        }
+        size += bytes.length;
+    }
+
+    /**
+     * @return the number of parsed items, which may differ from the {@code uniqueCount} attribute
+     */
+    public int getItemCount() {
+        return items;
+    }
+
+    @Override
+    public RichTextString getItemAt(int idx) {
+        if (idx >= items) {
+            throw new IllegalStateException("Cannot get item at " + idx + " with " + items + " strings");
+        }
+        String string;
+        synchronized (cache) {
+            string = cache.get(idx);
+        }
+        if (string == null) {
+            string = readString(idx);
+            synchronized (cache) {
+                cache.put(idx, string);
+            }
+        }
+        return new XSSFRichTextString(string);
+    }
+
+    /**
+     * Closes and deletes the temp file. The table can't be used afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (cache) {
+            cache.clear();
+        }
+        try {
+            raf.close();
+        } finally {
+            if (!tempFile.delete()) {
+                LOG.atWarn().log("Could not delete temporary file {}", tempFile);
+            }
+        }
+    }
+
+    private String readString(int idx) {
+        long start = offsets[idx];
+        long end;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The shared strings table is already closed");
+            }
+            end = idx + 1 < items ? offsets[idx + 1] : size;
+            if (writeBuffer.position() > 0 && end > size - writeBuffer.position()) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new POIXMLException("Failed to write shared strings to " + tempFile, e);
+                }
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int)(end - start));
+        try {
+            long pos = start;
+            while (buf.hasRemaining()) {
+                int read = channel.read(buf, pos);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of " + tempFile);
+                }
+                pos += read;
+            }
+        } catch (IOException e) {
+            throw new POIXMLException("Failed to read shared string " + idx + " from " + tempFile, e);
+        }
+        return new String(buf.array(), 0, buf.capacity(), StandardCharsets.UTF_8);
+    }
+
+    /** writes the pending bytes of the write buffer to the end of the temp file */
+    private void flush() throws IOException {
+        writeBuffer.flip();
+        writeFully(writeBuffer, size - writeBuffer.remaining());
+        writeBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+    }
+}
@@ -0,0 +1,437 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.Styles;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * A pull-based reader of the rows of a sheet#.xml part, as an alternative to the
+ * push-based {@link XSSFSheetXMLHandler}.
+ * <p>
+ * The rows are read on demand with StAX, so the caller controls the pace of the parsing
+ * and can stop at any time. To keep the memory footprint low, the {@link SheetRow} returned by
+ * {@link #nextRow()} and its {@link SheetCell}s are reused for the next row - copy the values
+ * which need to outlive the current row. Shared strings and cell styles are only resolved
+ * when the corresponding value is requested.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * try (InputStream stream = xssfReader.getSheet(relId);
+ *      XSSFSheetStaxReader sheetReader = new XSSFSheetStaxReader(stream, strings, styles)) {
+ *     SheetRow row;
+ *     while ((row = sheetReader.nextRow()) != null) {
+ *         for (int i = 0; i < row.getCellCount(); i++) {
+ *             SheetCell cell = row.getCell(i);
+ *             ...
+ *         }
+ *     }
+ * }
+ * }</pre>
+ *
+ * @since POI 5.2.6
+ */
+@Beta
+public class XSSFSheetStaxReader implements Closeable {
+    private final XMLStreamReader reader;
+    private final SharedStrings strings;
+    private final Styles styles;
+    private final SheetRow row = new SheetRow();
+    private boolean done;
+
+    /**
+     * Creates a reader of the given sheet part. The stream is not closed by this reader.
+     *
+     * @param sheetData the content of a sheet#.xml part, see {@link XSSFReader#getSheet(String)}
+     * @param strings the shared strings of the workbook, may be {@code null}
+     * @param styles the styles of the workbook, may be {@code null}
+     * @throws XMLStreamException if the StAX parser can't be created
+     */
+    public XSSFSheetStaxReader(InputStream sheetData, SharedStrings strings, Styles styles) throws XMLStreamException {
+        this.reader = XMLHelper.newXMLInputFactory().createXMLStreamReader(sheetData);
+        this.strings = strings;
+        this.styles = styles;
+    }
+
+    /**
+     * Reads the next row of the sheet. Rows without any {@code row} element in the
+     * sheet are skipped, i.e. the row numbers might have gaps.
+     *
+     * @return the next row, which is reused by the next call, or {@code null} if there are no more rows
+     * @throws XMLStreamException if parsing the sheet fails
+     */
+    public SheetRow nextRow() throws XMLStreamException {
+        while (!done && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && isElement("row")) {
+                readRow();
+                return row;
+            } else if (event == XMLStreamConstants.END_ELEMENT && isElement("sheetData")) {
+                done = true;
+            }
+        }
+        done = true;
+        return null;
+    }
+
+    /**
+     * Closes the StAX parser, but not the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        done = true;
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private boolean isElement(String localName) {
+        return localName.equals(reader.getLocalName()) && NS_SPREADSHEETML.equals(reader.getNamespaceURI());
+    }
+
+    private void readRow() throws XMLStreamException {
+        String r = reader.getAttributeValue(null, "r");
+        row.rowNum = r != null ? Integer.parseInt(r) - 1 : row.rowNum + 1;
+        row.cellCount = 0;
+        int column = -1;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isElement("c")) {
+                    SheetCell cell = row.nextCell();
+                    readCell(cell, column + 1);
+                    column = cell.columnIndex;
+                } else {
+                    skipElement();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
+
+    private void readCell(SheetCell cell, int defaultColumn) throws XMLStreamException {
+        cell.reset();
+        String ref = reader.getAttributeValue(null, "r");
+        cell.columnIndex = ref != null ? parseColumn(ref) : defaultColumn;
+        cell.type = reader.getAttributeValue(null, "t");
+        String s = reader.getAttributeValue(null, "s");
+        cell.styleIndex = s != null ? Integer.parseInt(s) : 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isElement("v")) {
+                    cell.value = reader.getElementText();
+                } else if (isElement("f")) {
+                    cell.formula = reader.getElementText();
+                } else if (isElement("is")) {
+                    cell.value = readInlineString();
+                } else {
+                    skipElement();
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
+
+    /** concatenates the text of the runs of an inline string, without phonetic runs */
+    private String readInlineString() throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isElement("t")) {
+                    text.append(reader.getElementText());
+                } else if (isElement("rPh")) {
+                    skipElement();
+                } else {
+                    depth++;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        return text.toString();
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static int parseColumn(String ref) {
+        int column = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char ch = ref.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                column = column * 26 + (ch - 'A' + 1);
+            } else if (ch >= 'a' && ch <= 'z') {
+                column = column * 26 + (ch - 'a' + 1);
+            } else {
+                break;
+            }
+        }
+        return column - 1;
+    }
+
+    /**
+     * A row of the sheet. The instance is reused by the reader for the next row.
+     */
+    public final class SheetRow {
+        private final List<SheetCell> cells = new ArrayList<>();
+        private int rowNum = -1;
+        private int cellCount;
+
+        private SheetRow() {
+        }
+
+        /**
+         * @return the 0-based row number
+         */
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        /**
+         * @return the number of cells which are defined in this row
+         */
+        public int getCellCount() {
+            return cellCount;
+        }
+
+        /**
+         * Returns the n-th defined cell of this row, which is not necessarily the cell of column n.
+         *
+         * @param index the index of the cell within the row, between 0 and {@link #getCellCount()} - 1
+         * @return the cell, which is reused by the reader for the next row
+         */
+        public SheetCell getCell(int index) {
+            if (index < 0 || index >= cellCount) {
+                throw new IndexOutOfBoundsException("Cell index " + index + " is out of range [0, " + cellCount + ")");
+            }
+            return cells.get(index);
+        }
+
+        private SheetCell nextCell() {
+            if (cellCount == cells.size()) {
+                cells.add(new SheetCell());
+            }
+            return cells.get(cellCount++);
+        }
+    }
+
+    /**
+     * A cell of the current row. The instance is reused by the reader for the next row.
+     */
+    public final class SheetCell {
+        private int columnIndex;
+        private int styleIndex;
+        private String type;
+        private String value;
+        private String formula;
+        private String resolvedString;
+
+        private SheetCell() {
+        }
+
+        private void reset() {
+            type = null;
+            value = null;
+            formula = null;
+            resolvedString = null;
+        }
+
+        /**
+         * @return the 0-based column index
+         */
+        public int getColumnIndex() {
+            return columnIndex;
+        }
+
+        /**
+         * @return the 0-based row number
+         */
+        public int getRowIndex() {
+            return row.rowNum;
+        }
+
+        /**
+         * @return {@link CellType#FORMULA} for formula cells, otherwise the type of the value
+         */
+        public CellType getCellType() {
+            return formula != null ? CellType.FORMULA : getValueType();
+        }
+
+        /**
+         * @return the type of the cached formula result
+         * @throws IllegalStateException if the cell is not a formula cell
+         */
+        public CellType getCachedFormulaResultType() {
+            if (formula == null) {
+                throw new IllegalStateException("Only formula cells have cached results");
+            }
+            return getValueType();
+        }
+
+        private CellType getValueType() {
+            if (value == null) {
+                return CellType.BLANK;
+            } else if (type == null || "n".equals(type)) {
+                return CellType.NUMERIC;
+            }
+            switch (type) {
+                case "b":
+                    return CellType.BOOLEAN;
+                case "e":
+                    return CellType.ERROR;
+                default:
+                    return CellType.STRING;
+            }
+        }
+
+        /**
+         * @return the formula of the cell or {@code null}, might be empty for cells referring to a shared formula
+         */
+        public String getFormula() {
+            return formula;
+        }
+
+        /**
+         * @return the unprocessed value of the cell, i.e. the shared string index for shared strings, or {@code null}
+         */
+        public String getRawValue() {
+            return value;
+        }
+
+        /**
+         * @return the numeric value, or 0 for blank cells
+         * @throws NumberFormatException if the value isn't numeric
+         */
+        public double getNumericCellValue() {
+            return value == null || value.isEmpty() ? 0 : Double.parseDouble(value);
+        }
+
+        /**
+         * @return the boolean value, or {@code false} for blank cells
+         */
+        public boolean getBooleanCellValue() {
+            return value != null && !value.isEmpty() && value.charAt(0) != '0';
+        }
+
+        /**
+         * @return the error text like {@code #DIV/0!}, or {@code null} for blank cells
+         */
+        public String getErrorCellString() {
+            return value;
+        }
+
+        /**
+         * Returns the text of string cells. Shared strings are looked up on the first call.
+         *
+         * @return the string value, the unprocessed value for other cell types, or an empty string for blank cells
+         */
+        public String getStringCellValue() {
+            if (value == null) {
+                return "";
+            }
+            if (resolvedString == null) {
+                if ("s".equals(type) && strings != null && !value.isEmpty()) {
+                    resolvedString = strings.getItemAt(Integer.parseInt(value)).getString();
+                } else {
+                    resolvedString = value;
+                }
+            }
+            return resolvedString;
+        }
+
+        /**
+         * @return the index of the cell style, 0 if the cell uses the default style
+         */
+        public int getStyleIndex() {
+            return styleIndex;
+        }
+
+        /**
+         * @return the cell style, or {@code null} if the reader has no styles table
+         */
+        public XSSFCellStyle getCellStyle() {
+            return styles == null ? null : styles.getStyleAt(styleIndex);
+        }
+
+        /**
+         * Formats the value of the cell like {@link XSSFSheetXMLHandler}, i.e. numeric values
+         * are formatted by the number format of the cell style.
+         *
+         * @param formatter the formatter for numeric values
+         * @return the formatted value, or an empty string for blank cells
+         */
+        public String getFormattedValue(DataFormatter formatter) {
+            switch (getValueType()) {
+                case BLANK:
+                    return "";
+                case BOOLEAN:
+                    return getBooleanCellValue() ? "TRUE" : "FALSE";
+                case ERROR:
+                    return "ERROR:" + value;
+                case NUMERIC:
+                    XSSFCellStyle style = getCellStyle();
+                    if (style == null || value.isEmpty()) {
+                        return value;
+                    }
+                    short formatIndex = style.getDataFormat();
+                    String formatString = style.getDataFormatString();
+                    if (formatString == null) {
+                        formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+                    }
+                    return formatString == null ? value
+                        : formatter.formatRawCellContents(Double.parseDouble(value), formatIndex, formatString);
+                default:
+                    return getStringCellValue();
+            }
+        }
+    }
+}
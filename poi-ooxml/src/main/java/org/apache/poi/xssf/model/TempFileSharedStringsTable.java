@@ -0,0 +1,360 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.model;
+
+import static org.apache.poi.ooxml.POIXMLTypeLoader.DEFAULT_XML_OPTIONS;
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.poifs.nio.CleanerUtil;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.Internal;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSst;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.SstDocument;
+
+/**
+ * A {@link SharedStringsTable} which keeps the string items in a memory-mapped temp file
+ * instead of the heap.
+ * <p>
+ * Only a compact open-addressing index (string hash to item index) and the file offset of
+ * each item are kept in memory, together with a small cache of recently added strings.
+ * The serialized items are appended to the temp file and streamed out when the
+ * {@code sst.xml} part is written, so the heap usage stays almost flat regardless of the
+ * number of unique strings.
+ * <p>
+ * This is mainly intended for write-only workloads like
+ * {@link org.apache.poi.xssf.streaming.SXSSFWorkbook} - reading items via {@link #getItemAt(int)}
+ * is supported, but requires parsing the serialized item on each call.
+ * <p>
+ * The temp file is deleted when the table is {@link #close() closed}.
+ *
+ * @since POI 5.2.6
+ */
+@Beta
+public class TempFileSharedStringsTable extends SharedStringsTable {
+    private static final Logger LOG = LogManager.getLogger(TempFileSharedStringsTable.class);
+
+    private static final int SEGMENT_SHIFT = 23;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final int RECENT_CACHE_SIZE = 1024;
+
+    private static final byte[] SST_START = ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+        + "<sst xmlns=\"" + NS_SPREADSHEETML + "\" count=\"").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SST_UNIQUE_COUNT = "\" uniqueCount=\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SST_END = "</sst>".getBytes(StandardCharsets.US_ASCII);
+
+    /** save options which serialize a CTRst as {@code <si>} element without namespace declarations */
+    private static final XmlOptions SAVE_OPTIONS = new XmlOptions();
+    static {
+        SAVE_OPTIONS.setSaveSyntheticDocumentElement(new QName(NS_SPREADSHEETML, "si"));
+        SAVE_OPTIONS.setUseDefaultNamespace(true);
+        SAVE_OPTIONS.setSaveImplicitNamespaces(Collections.singletonMap("", NS_SPREADSHEETML));
+        SAVE_OPTIONS.setSaveAggressiveNamespaces();
+    }
+
+    /** parse options which strip the {@code <si>} wrapper, so the item content becomes the content of the CTRst */
+    private static final XmlOptions ITEM_OPTIONS = new XmlOptions(DEFAULT_XML_OPTIONS);
+    static {
+        ITEM_OPTIONS.setLoadReplaceDocumentElement(null);
+    }
+
+    private final File tempFile;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /** number of bytes used in the temp file */
+    private long size;
+
+    /** the file offset of each item, the end of an item is the offset of its successor or {@link #size} */
+    private long[] offsets = new long[1024];
+
+    /** open-addressing hash table, each slot is {@code (hash << 32) | (index + 1)}, 0 marks an empty slot */
+    private long[] slots = new long[2048];
+
+    private final Map<String, Integer> recent = new LinkedHashMap<String, Integer>(RECENT_CACHE_SIZE * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > RECENT_CACHE_SIZE;
+        }
+    };
+
+    private boolean closed;
+
+    public TempFileSharedStringsTable() throws IOException {
+        super();
+        tempFile = TempFile.createTempFile("poi-shared-strings", ".tmp");
+        raf = new RandomAccessFile(tempFile, "rw");
+        channel = raf.getChannel();
+    }
+
+    /**
+     * Read the shared strings from an XML file and append them to this table.
+     *
+     * @param is The input stream containing the XML document.
+     * @throws IOException if an error occurs while reading.
+     */
+    @Override
+    public void readFrom(InputStream is) throws IOException {
+        try {
+            CTSst sst = SstDocument.Factory.parse(is, DEFAULT_XML_OPTIONS).getSst();
+            int cnt = count;
+            //noinspection deprecation
+            for (CTRst st : sst.getSiArray()) {
+                addEntry(st);
+            }
+            count = cnt + (int)sst.getCount();
+        } catch (XmlException e) {
+            throw new IOException("unable to parse shared strings table", e);
+        }
+    }
+
+    @Override
+    public RichTextString getItemAt(int idx) {
+        if (idx < 0 || idx >= uniqueCount) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + uniqueCount);
+        }
+        long start = offsets[idx];
+        byte[] bytes = new byte[(int)(end(idx) - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = byteAt(start + i);
+        }
+        // the stored item starts with "<si", add the namespace declaration for parsing
+        String xml = "<si xmlns=\"" + NS_SPREADSHEETML + "\"" + new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        try {
+            return new XSSFRichTextString(CTRst.Factory.parse(xml, ITEM_OPTIONS));
+        } catch (XmlException e) {
+            throw new POIXMLException("unable to parse shared string item " + idx, e);
+        }
+    }
+
+    @Override
+    public List<RichTextString> getSharedStringItems() {
+        ArrayList<RichTextString> items = new ArrayList<>(uniqueCount);
+        for (int i = 0; i < uniqueCount; i++) {
+            items.add(getItemAt(i));
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    @Override
+    @Internal
+    int addEntry(CTRst st) {
+        if (closed) {
+            throw new IllegalStateException("The shared strings table has already been closed");
+        }
+        String s = st.xmlText(SAVE_OPTIONS);
+        count++;
+        Integer cached = recent.get(s);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int hash = s.hashCode();
+        int mask = slots.length - 1;
+        int pos = mix(hash) & mask;
+        long slot;
+        while ((slot = slots[pos]) != 0) {
+            if ((int)(slot >>> 32) == hash) {
+                int idx = (int)slot - 1;
+                if (matches(idx, bytes)) {
+                    recent.put(s, idx);
+                    return idx;
+                }
+            }
+            pos = (pos + 1) & mask;
+        }
+
+        int idx = uniqueCount++;
+        if (idx == offsets.length) {
+            offsets = Arrays.copyOf(offsets, idx * 2);
+        }
+        offsets[idx] = size;
+        try {
+            append(bytes);
+        } catch (IOException e) {
+            throw new POIXMLException("unable to write shared string to temp file", e);
+        }
+        slots[pos] = ((long)hash << 32) | (idx + 1L);
+        if (uniqueCount * 2L > slots.length) {
+            rehash();
+        }
+        recent.put(s, idx);
+        return idx;
+    }
+
+    /**
+     * Streams this table out as XML.
+     *
+     * @param out The stream to write to.
+     * @throws IOException if an error occurs while writing.
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(SST_START);
+        out.write(Integer.toString(count).getBytes(StandardCharsets.US_ASCII));
+        out.write(SST_UNIQUE_COUNT);
+        out.write(Integer.toString(uniqueCount).getBytes(StandardCharsets.US_ASCII));
+        out.write('"');
+        if (uniqueCount == 0) {
+            out.write('/');
+            out.write('>');
+            return;
+        }
+        out.write('>');
+        byte[] chunk = new byte[8192];
+        for (int i = 0; i < uniqueCount; i++) {
+            long pos = offsets[i];
+            final long end = end(i);
+            while (pos < end) {
+                ByteBuffer segment = segments.get((int)(pos >>> SEGMENT_SHIFT)).duplicate();
+                int inSegment = (int)(pos & SEGMENT_MASK);
+                int len = (int)Math.min(Math.min(end - pos, SEGMENT_SIZE - inSegment), chunk.length);
+                segment.position(inSegment);
+                segment.get(chunk, 0, len);
+                out.write(chunk, 0, len);
+                pos += len;
+            }
+        }
+        out.write(SST_END);
+    }
+
+    /**
+     * Unmaps and deletes the temp file.
+     *
+     * @throws IOException if an error occurs while closing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        recent.clear();
+        for (MappedByteBuffer segment : segments) {
+            unmap(segment);
+        }
+        segments.clear();
+        try {
+            raf.close();
+        } finally {
+            if (!tempFile.delete()) {
+                LOG.atWarn().log("Could not delete temporary file {}", tempFile);
+            }
+        }
+    }
+
+    private long end(int idx) {
+        return idx + 1 < uniqueCount ? offsets[idx + 1] : size;
+    }
+
+    private byte byteAt(long pos) {
+        return segments.get((int)(pos >>> SEGMENT_SHIFT)).get((int)(pos & SEGMENT_MASK));
+    }
+
+    private boolean matches(int idx, byte[] bytes) {
+        long start = offsets[idx];
+        if (end(idx) - start != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (byteAt(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        int off = 0;
+        while (off < bytes.length) {
+            int segIdx = (int)(size >>> SEGMENT_SHIFT);
+            if (segIdx == segments.size()) {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long)segIdx << SEGMENT_SHIFT, SEGMENT_SIZE));
+            }
+            ByteBuffer segment = segments.get(segIdx).duplicate();
+            int inSegment = (int)(size & SEGMENT_MASK);
+            int len = Math.min(bytes.length - off, SEGMENT_SIZE - inSegment);
+            segment.position(inSegment);
+            segment.put(bytes, off, len);
+            off += len;
+            size += len;
+        }
+    }
+
+    private void rehash() {
+        long[] newSlots = new long[slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (long slot : slots) {
+            if (slot != 0) {
+                int pos = mix((int)(slot >>> 32)) & mask;
+                while (newSlots[pos] != 0) {
+                    pos = (pos + 1) & mask;
+                }
+                newSlots[pos] = slot;
+            }
+        }
+        slots = newSlots;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static void unmap(ByteBuffer buffer) {
+        if (CleanerUtil.UNMAP_SUPPORTED) {
+            try {
+                CleanerUtil.getCleaner().freeBuffer(buffer);
+            } catch (IOException e) {
+                LOG.atWarn().withThrowable(e).log("Failed to unmap the buffer");
+            }
+        } else {
+            LOG.atDebug().log(CleanerUtil.UNMAP_NOT_SUPPORTED_REASON);
+        }
+    }
+}
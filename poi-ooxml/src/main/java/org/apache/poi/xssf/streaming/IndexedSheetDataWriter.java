@@ -0,0 +1,385 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStringsTable;
+
+/**
+ * Sheet writer, which keeps an index of the rows in the uncompressed temp file, so flushed rows can be read back
+ * and changed until the sheet is written.<p>
+ *
+ * The index keeps the offset of every {@value #INDEX_INTERVAL}th flushed row. A row is found by scanning the
+ * rows of its block, as the row start tags can't be part of the escaped cell values. The rows, which were read,
+ * are kept in memory and replace the flushed bytes, when the sheet data is streamed from the temp file.
+ *
+ * @see SXSSFWorkbook#setFlushedRowAccess(boolean)
+ * @see SXSSFSheet#getFlushedRow(int)
+ */
+final class IndexedSheetDataWriter extends Utf8SheetDataWriter {
+    /** the number of flushed rows per index entry */
+    static final int INDEX_INTERVAL = 32;
+
+    private static final byte[] ROW_START = "<row r=\"".getBytes(StandardCharsets.US_ASCII);
+
+    private final SharedStringsTable _sharedStrings;
+    private final Utf8Writer _utf8;
+    // the first row and the offset of the blocks of flushed rows
+    private int[] _blockRows = new int[64];
+    private long[] _blockOffsets = new long[64];
+    private int _blocks;
+    /** the rows, which were read back, by their row number */
+    private final TreeMap<Integer, ReadRow> _readRows = new TreeMap<>();
+
+    /**
+     * @param sharedStringsTable the shared strings table, or null if inline text is used
+     */
+    IndexedSheetDataWriter(SharedStringsTable sharedStringsTable) throws IOException {
+        super(sharedStringsTable, false);
+        _sharedStrings = sharedStringsTable;
+        _utf8 = (Utf8Writer) _out;
+    }
+
+    @Override
+    public void writeRow(int rownum, SXSSFRow row) throws IOException {
+        if (getNumberOfFlushedRows() % INDEX_INTERVAL == 0) {
+            if (_blocks == _blockRows.length) {
+                _blockRows = Arrays.copyOf(_blockRows, _blocks * 2);
+                _blockOffsets = Arrays.copyOf(_blockOffsets, _blocks * 2);
+            }
+            _blockRows[_blocks] = rownum;
+            _blockOffsets[_blocks] = _utf8.getPosition();
+            _blocks++;
+        }
+        super.writeRow(rownum, row);
+    }
+
+    /**
+     * Reads a flushed row back from the temp file. The row is kept and written instead of the flushed row.
+     *
+     * @param sheet the sheet of the row
+     * @param rownum the 0-based row number
+     * @return the row or {@code null}, if no row with this number was flushed
+     */
+    SXSSFRow readRow(SXSSFSheet sheet, int rownum) throws IOException {
+        ReadRow readRow = _readRows.get(rownum);
+        if (readRow != null) {
+            return readRow._row;
+        }
+        if (_blocks == 0 || rownum < _blockRows[0] || rownum > getLastFlushedRow()) {
+            return null;
+        }
+        int block = Arrays.binarySearch(_blockRows, 0, _blocks, rownum);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        _utf8.flush();
+        long blockStart = _blockOffsets[block];
+        long blockEnd = block + 1 < _blocks ? _blockOffsets[block + 1] : _utf8.getPosition();
+        byte[] bytes = new byte[Math.toIntExact(blockEnd - blockStart)];
+        try (RandomAccessFile file = new RandomAccessFile(getTempFile(), "r")) {
+            file.seek(blockStart);
+            file.readFully(bytes);
+        }
+
+        int start = -1;
+        int end = bytes.length;
+        for (int pos = indexOfRow(bytes, 0); pos >= 0; pos = indexOfRow(bytes, pos + 1)) {
+            if (start >= 0) {
+                end = pos;
+                break;
+            }
+            if (parseRowNumber(bytes, pos + ROW_START.length) == rownum + 1) {
+                start = pos;
+            }
+        }
+        if (start < 0) {
+            return null;
+        }
+        SXSSFRow row;
+        try {
+            row = parseRow(sheet, rownum, new ByteArrayInputStream(bytes, start, end - start));
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to read row " + rownum + " from the temp file", e);
+        }
+        _readRows.put(rownum, new ReadRow(row, blockStart + start, blockStart + end));
+        return row;
+    }
+
+    /**
+     * Serializes the rows, which were read, before the shared strings table is written
+     */
+    void serializeReadRows() throws IOException {
+        for (Map.Entry<Integer, ReadRow> entry : _readRows.entrySet()) {
+            UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+            Utf8SheetDataWriter writer = new Utf8SheetDataWriter(bos, _sharedStrings);
+            writer.writeRow(entry.getKey(), entry.getValue()._row);
+            writer.flush();
+            entry.getValue()._bytes = bos.toByteArray();
+        }
+    }
+
+    @Override
+    public InputStream getWorksheetXMLInputStream() throws IOException {
+        if (_readRows.isEmpty()) {
+            return super.getWorksheetXMLInputStream();
+        }
+        for (ReadRow readRow : _readRows.values()) {
+            if (readRow._bytes == null) {
+                serializeReadRows();
+                break;
+            }
+        }
+        return new RewritingInputStream(new RandomAccessFile(getTempFile(), "r"), _utf8.getPosition(),
+            _readRows.values().iterator());
+    }
+
+    private static int indexOfRow(byte[] bytes, int from) {
+        outer:
+        for (int i = from; i <= bytes.length - ROW_START.length; i++) {
+            for (int j = 0; j < ROW_START.length; j++) {
+                if (bytes[i + j] != ROW_START[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int parseRowNumber(byte[] bytes, int pos) {
+        int value = 0;
+        while (pos < bytes.length && bytes[pos] >= '0' && bytes[pos] <= '9') {
+            value = value * 10 + bytes[pos++] - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Parses a row, as it was written by {@link Utf8SheetDataWriter}
+     */
+    private SXSSFRow parseRow(SXSSFSheet sheet, int rownum, InputStream is) throws XMLStreamException {
+        SXSSFWorkbook wb = sheet.getWorkbook();
+        XMLStreamReader reader = XMLHelper.newXMLInputFactory().createXMLStreamReader(is);
+        try {
+            reader.nextTag();
+            SXSSFRow row = new SXSSFRow(sheet);
+            row.setRowNumWithoutUpdatingSheet(rownum);
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String value = reader.getAttributeValue(i);
+                switch (reader.getAttributeLocalName(i)) {
+                    case "ht":
+                        row.setHeightInPoints(Float.parseFloat(value));
+                        break;
+                    case "hidden":
+                        // the zero height is written as hidden row
+                        if ("1".equals(value)) {
+                            row.setZeroHeight(true);
+                        } else {
+                            row.setHidden(false);
+                        }
+                        break;
+                    case "s":
+                        row.setRowStyle(wb.getCellStyleAt(Integer.parseInt(value)));
+                        break;
+                    case "outlineLevel":
+                        row.setOutlineLevel(Integer.parseInt(value));
+                        break;
+                    case "collapsed":
+                        row.setCollapsed("1".equals(value));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                parseCell(row, reader);
+            }
+            return row;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void parseCell(SXSSFRow row, XMLStreamReader reader) throws XMLStreamException {
+        SXSSFCell cell = row.createCell(new CellReference(reader.getAttributeValue(null, "r")).getCol());
+        String style = reader.getAttributeValue(null, "s");
+        if (style != null) {
+            cell.setCellStyle(row.getSheet().getWorkbook().getCellStyleAt(Integer.parseInt(style)));
+        }
+        String type = reader.getAttributeValue(null, "t");
+        String formula = null;
+        String value = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (reader.getLocalName()) {
+                case "f":
+                    formula = reader.getElementText();
+                    break;
+                case "v":
+                    value = reader.getElementText();
+                    break;
+                case "is":
+                    reader.nextTag();
+                    value = reader.getElementText();
+                    reader.nextTag();
+                    break;
+                default:
+                    skipElement(reader);
+                    break;
+            }
+        }
+
+        // the cached value of a formula is set first, so the formula keeps its type
+        if (value != null) {
+            switch (type == null ? "n" : type) {
+                case "s":
+                    cell.setCellValue(_sharedStrings.getItemAt(Integer.parseInt(value)));
+                    break;
+                case "inlineStr":
+                case "str":
+                    cell.setCellValue(value);
+                    break;
+                case "b":
+                    cell.setCellValue("1".equals(value));
+                    break;
+                case "e":
+                    cell.setCellErrorValue(FormulaError.forString(value).getCode());
+                    break;
+                default:
+                    cell.setCellValue(Double.parseDouble(value));
+                    break;
+            }
+        }
+        if (formula != null) {
+            cell.setCellFormula(formula);
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        for (int depth = 1; depth > 0; ) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * A row, which was read back from the temp file
+     */
+    private static final class ReadRow {
+        private final SXSSFRow _row;
+        // the bytes of the flushed row in the temp file
+        private final long _start;
+        private final long _end;
+        /** the serialized row or {@code null}, if it wasn't serialized yet */
+        private byte[] _bytes;
+
+        private ReadRow(SXSSFRow row, long start, long end) {
+            _row = row;
+            _start = start;
+            _end = end;
+        }
+    }
+
+    /**
+     * Streams the temp file and replaces the flushed bytes of the read rows
+     */
+    private static final class RewritingInputStream extends InputStream {
+        private final RandomAccessFile _file;
+        private final long _length;
+        private final Iterator<ReadRow> _rows;
+        private ReadRow _next;
+        private long _pos;
+        private byte[] _replacement;
+        private int _replacementPos;
+
+        private RewritingInputStream(RandomAccessFile file, long length, Iterator<ReadRow> rows) {
+            _file = file;
+            _length = length;
+            _rows = rows;
+            _next = rows.hasNext() ? rows.next() : null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (_replacement != null) {
+                    int n = Math.min(len, _replacement.length - _replacementPos);
+                    System.arraycopy(_replacement, _replacementPos, b, off, n);
+                    _replacementPos += n;
+                    if (_replacementPos == _replacement.length) {
+                        _replacement = null;
+                    }
+                    if (n > 0) {
+                        return n;
+                    }
+                }
+                long limit = _next == null ? _length : _next._start;
+                if (_pos < limit) {
+                    _file.seek(_pos);
+                    int n = _file.read(b, off, (int) Math.min(len, limit - _pos));
+                    if (n > 0) {
+                        _pos += n;
+                    }
+                    return n;
+                }
+                if (_next == null) {
+                    return -1;
+                }
+                _replacement = _next._bytes;
+                _replacementPos = 0;
+                _pos = _next._end;
+                _next = _rows.hasNext() ? _rows.next() : null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            _file.close();
+        }
+    }
+}
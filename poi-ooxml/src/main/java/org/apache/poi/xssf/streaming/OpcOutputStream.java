@@ -20,6 +20,7 @@ package org.apache.poi.xssf.streaming;
 import org.apache.poi.xssf.streaming.Zip64Impl.Entry;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -95,6 +96,38 @@ class OpcOutputStream extends DeflaterOutputStream {
     }
 
 
+    /**
+     * Adds an entry whose content was already compressed with a raw (nowrap) {@link Deflater}.
+     *
+     * @param name the name of the entry
+     * @param crc the CRC-32 of the uncompressed data
+     * @param size the size of the uncompressed data
+     * @param deflated the compressed data, which is copied unmodified
+     */
+    public void putRawEntry(String name, long crc, long size, InputStream deflated) throws IOException {
+        if (current != null) {
+            closeEntry();
+        }
+        Entry entry = new Entry(name);
+        entry.offset = written;
+        written += spec.writeLFH(entry);
+        entries.add(entry);
+
+        byte[] buf = new byte[8192];
+        long compressedSize = 0;
+        int len;
+        while ((len = deflated.read(buf)) != -1) {
+            out.write(buf, 0, len);
+            compressedSize += len;
+        }
+        entry.size = size;
+        entry.compressedSize = Math.toIntExact(compressedSize);
+        entry.crc = crc;
+
+        written += entry.compressedSize;
+        written += spec.writeDAT(entry);
+    }
+
     /**
      * @see ZipOutputStream#finish()
      */
@@ -0,0 +1,522 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.openxml4j.opc.CompressionOptions;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.binary.XSSFBRecordType;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.XSSFBSheetDataWriter.RecordWriter;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFColor;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCol;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCols;
+
+/**
+ * A variant of SXSSFWorkbook which writes the binary Excel workbook format (xlsb) instead of xlsx.
+ * <p>
+ * Rows are flushed to temp files as binary records by {@link XSSFBSheetDataWriter}, so the memory
+ * footprint is the same as for {@link SXSSFWorkbook}. When the workbook is written, the package
+ * parts are generated directly as records, i.e. no xlsx template is saved and transformed.
+ * <p>
+ * Only a subset of the workbook features is written: the cell values, sheet names and visibility,
+ * column widths, merged regions, number formats, fonts, alignment and protection of the cell styles.
+ * Fills, borders, comments, hyperlinks, drawings and defined names are not written and formula cells
+ * are written with their cached results.
+ * <p>
+ * This variant is experimental and APIs may change at short notice.
+ *
+ * @since 5.2.6
+ */
+@Beta
+public class SXSSFBWorkbook extends SXSSFWorkbook {
+    private static final String CONTENT_TYPE_WORKSHEET = "application/vnd.ms-excel.worksheet";
+    private static final String CONTENT_TYPE_STYLES = "application/vnd.ms-excel.styles";
+    private static final String CONTENT_TYPE_SHARED_STRINGS = "application/vnd.ms-excel.sharedStrings";
+
+    /** the default records of the styles part, copied from a workbook saved by Excel */
+    private static final byte[] DEFAULT_FILL = hex(
+        "00 00 00 00 03 40 00 00 00 00 00 ff 03 41 00 00 ff ff ff ff" + zeros(48));
+    private static final byte[] GRAY125_FILL = hex(
+        "11 00 00 00 03 40 00 00 00 00 00 ff 03 41 00 00 ff ff ff ff" + zeros(48));
+    private static final byte[] DEFAULT_BORDER = hex(
+        "00 00 00 01 00 00 00 00 00 00 00 00 00 01 00 00 00 00 00 00 00 00 00 01 00 00 00 00 00 00 00 00 00 " +
+        "01 00 00 00 00 00 00 00 00 00 01 00 00 00 00 00 00 00");
+    private static final byte[] DEFAULT_STYLE_XF = hex(
+        "ff ff 00 00 00 00 00 00 00 00 00 00 10 10 00 00");
+    private static final byte[] WS_PROP = hex(
+        "c9 04 02 00 40 00 00 00 00 00 00 ff ff ff ff ff ff ff ff 00 00 00 00");
+    private static final byte[] CALC_PROP = hex(
+        "13 9c 02 00 01 00 00 00 64 00 00 00 fc a9 f1 d2 4d 62 50 3f 08 00 00 00 6a 00");
+
+    public SXSSFBWorkbook() {
+        this(SXSSFWorkbook.DEFAULT_WINDOW_SIZE);
+    }
+
+    public SXSSFBWorkbook(int rowAccessWindowSize) {
+        this(rowAccessWindowSize, false, false);
+    }
+
+    /**
+     * @param rowAccessWindowSize the number of rows that are kept in memory until flushed out,
+     *                            see {@link SXSSFWorkbook#SXSSFWorkbook(org.apache.poi.xssf.usermodel.XSSFWorkbook, int, boolean, boolean)}
+     * @param compressTmpFiles whether to use gzip compression for temporary files
+     * @param useSharedStringsTable whether to use a shared strings table
+     */
+    public SXSSFBWorkbook(int rowAccessWindowSize, boolean compressTmpFiles, boolean useSharedStringsTable) {
+        super(null, rowAccessWindowSize, compressTmpFiles, useSharedStringsTable);
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        return new XSSFBSheetDataWriter(_sharedStringSource, isCompressTempFiles());
+    }
+
+    /**
+     * Write out this workbook in the binary (xlsb) format to an OutputStream.
+     *
+     * @param stream - the java OutputStream you wish to write to
+     * @throws IOException if anything can't be written.
+     */
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        flushSheets();
+
+        int sheetCount = _wb.getNumberOfSheets();
+        ZipArchiveOutputStream zos = createArchiveOutputStream(stream);
+        CompressionOptions options = _wb.getPackage().getCompressionOptions();
+        try {
+            if (options != null) {
+                zos.setLevel(options.getDefaultLevel());
+            }
+            putEntry(zos, "[Content_Types].xml", createContentTypes(sheetCount));
+            putEntry(zos, "_rels/.rels",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                relationship("rId1", PackageRelationshipTypes.CORE_DOCUMENT, "xl/workbook.bin") +
+                "</Relationships>");
+            putEntry(zos, "xl/_rels/workbook.bin.rels", createWorkbookRelationships(sheetCount));
+
+            zos.putArchiveEntry(new ZipArchiveEntry("xl/workbook.bin"));
+            writeWorkbook(new RecordWriter(zos));
+            zos.closeArchiveEntry();
+
+            zos.putArchiveEntry(new ZipArchiveEntry("xl/styles.bin"));
+            writeStyles(new RecordWriter(zos));
+            zos.closeArchiveEntry();
+
+            for (int i = 0; i < sheetCount; i++) {
+                XSSFSheet xSheet = _wb.getSheetAt(i);
+                SXSSFSheet sxSheet = getSXSSFSheet(xSheet);
+                if (sxSheet == null) {
+                    throw new IllegalStateException("Only worksheets can be written as xlsb: " + xSheet.getSheetName());
+                }
+                zos.putArchiveEntry(new ZipArchiveEntry("xl/worksheets/sheet" + (i + 1) + ".bin"));
+                writeSheet(new RecordWriter(zos), xSheet, sxSheet);
+                zos.closeArchiveEntry();
+            }
+
+            // all rows were flushed, so the shared strings table is complete
+            if (_sharedStringSource != null) {
+                zos.putArchiveEntry(new ZipArchiveEntry("xl/sharedStrings.bin"));
+                writeSharedStrings(new RecordWriter(zos), _sharedStringSource);
+                zos.closeArchiveEntry();
+            }
+        } finally {
+            zos.finish();
+        }
+    }
+
+    /**
+     * The binary parts are generated without a template, so this is the same as {@link #write(OutputStream)}.
+     */
+    @Override
+    public void writeAvoidingTempFiles(OutputStream stream) throws IOException {
+        write(stream);
+    }
+
+    private String createContentTypes(int sheetCount) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+          .append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">")
+          .append("<Default Extension=\"bin\" ContentType=\"")
+          .append(XSSFRelation.XLSB_BINARY_WORKBOOK.getContentType()).append("\"/>")
+          .append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>")
+          .append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        for (int i = 1; i <= sheetCount; i++) {
+            override(sb, "/xl/worksheets/sheet" + i + ".bin", CONTENT_TYPE_WORKSHEET);
+        }
+        override(sb, "/xl/styles.bin", CONTENT_TYPE_STYLES);
+        if (_sharedStringSource != null) {
+            override(sb, "/xl/sharedStrings.bin", CONTENT_TYPE_SHARED_STRINGS);
+        }
+        return sb.append("</Types>").toString();
+    }
+
+    private String createWorkbookRelationships(int sheetCount) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+          .append("<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheetCount; i++) {
+            sb.append(relationship("rId" + i, XSSFRelation.WORKSHEET.getRelation(), "worksheets/sheet" + i + ".bin"));
+        }
+        sb.append(relationship("rId" + (sheetCount + 1), XSSFRelation.STYLES.getRelation(), "styles.bin"));
+        if (_sharedStringSource != null) {
+            sb.append(relationship("rId" + (sheetCount + 2), XSSFRelation.SHARED_STRINGS.getRelation(), "sharedStrings.bin"));
+        }
+        return sb.append("</Relationships>").toString();
+    }
+
+    private static void override(StringBuilder sb, String partName, String contentType) {
+        sb.append("<Override PartName=\"").append(partName)
+          .append("\" ContentType=\"").append(contentType).append("\"/>");
+    }
+
+    private static String relationship(String id, String type, String target) {
+        return "<Relationship Id=\"" + id + "\" Type=\"" + type + "\" Target=\"" + target + "\"/>";
+    }
+
+    private static void putEntry(ZipArchiveOutputStream zos, String name, String content) throws IOException {
+        zos.putArchiveEntry(new ZipArchiveEntry(name));
+        zos.write(content.getBytes(StandardCharsets.UTF_8));
+        zos.closeArchiveEntry();
+    }
+
+    private void writeWorkbook(RecordWriter out) throws IOException {
+        out.writeRecord(XSSFBRecordType.BrtBeginBook);
+
+        // BrtFileVersion: empty guid, application name and the version of the last/lowest editing application
+        String[] versions = {"xl", "7", "7", "17329"};
+        int length = 16;
+        for (String v : versions) {
+            length += RecordWriter.wideStringLength(v);
+        }
+        out.writeRecordHeader(XSSFBRecordType.BrtFileVersion, length);
+        out.writeBytes(new byte[16]);
+        for (String v : versions) {
+            out.writeWideString(v);
+        }
+
+        // BrtWbProp: the flags contain the 1904 date system bit
+        out.writeRecordHeader(XSSFBRecordType.BrtWbProp, 12);
+        out.writeInt(0x00010020 | (_wb.isDate1904() ? 1 : 0));
+        out.writeInt(0);
+        out.writeWideString("");
+
+        out.writeRecord(XSSFBRecordType.BrtBeginBookViews);
+        out.writeRecordHeader(XSSFBRecordType.BrtBookView, 29);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(0x4134);
+        out.writeInt(0x1752);
+        out.writeInt(600);
+        out.writeInt(_wb.getFirstVisibleTab());
+        out.writeInt(_wb.getActiveSheetIndex());
+        out.writeByte(0x78);
+        out.writeRecord(XSSFBRecordType.BrtEndBookViews);
+
+        out.writeRecord(XSSFBRecordType.BrtBeginBundleShs);
+        for (int i = 0; i < _wb.getNumberOfSheets(); i++) {
+            String relId = "rId" + (i + 1);
+            String name = _wb.getSheetName(i);
+            out.writeRecordHeader(XSSFBRecordType.BrtBundleSh,
+                8 + RecordWriter.wideStringLength(relId) + RecordWriter.wideStringLength(name));
+            out.writeInt(_wb.getSheetVisibility(i).ordinal());
+            out.writeInt(i + 1);
+            out.writeWideString(relId);
+            out.writeWideString(name);
+        }
+        out.writeRecord(XSSFBRecordType.BrtEndBundleShs);
+
+        out.writeRecordHeader(XSSFBRecordType.BrtCalcProp, CALC_PROP.length);
+        out.writeBytes(CALC_PROP);
+        out.writeRecord(XSSFBRecordType.BrtEndBook);
+        out.flush();
+    }
+
+    private void writeStyles(RecordWriter out) throws IOException {
+        StylesTable styles = _wb.getStylesSource();
+        out.writeRecord(XSSFBRecordType.BrtBeginStyleSheet);
+
+        Map<Short, String> numberFormats = styles.getNumberFormats();
+        if (!numberFormats.isEmpty()) {
+            out.writeRecordHeader(XSSFBRecordType.BrtBeginFmts, 4);
+            out.writeInt(numberFormats.size());
+            for (Map.Entry<Short, String> fmt : numberFormats.entrySet()) {
+                out.writeRecordHeader(XSSFBRecordType.BrtFmt, 2 + RecordWriter.wideStringLength(fmt.getValue()));
+                out.writeShort(fmt.getKey());
+                out.writeWideString(fmt.getValue());
+            }
+            out.writeRecord(XSSFBRecordType.BrtEndFmts);
+        }
+
+        List<XSSFFont> fonts = styles.getFonts();
+        out.writeRecordHeader(XSSFBRecordType.BrtBeginFonts, 4);
+        out.writeInt(fonts.size());
+        for (XSSFFont font : fonts) {
+            writeFont(out, font);
+        }
+        out.writeRecord(XSSFBRecordType.BrtEndFonts);
+
+        out.writeRecordHeader(XSSFBRecordType.BrtBeginFills, 4);
+        out.writeInt(2);
+        out.writeRecordHeader(XSSFBRecordType.BrtFill, DEFAULT_FILL.length);
+        out.writeBytes(DEFAULT_FILL);
+        out.writeRecordHeader(XSSFBRecordType.BrtFill, GRAY125_FILL.length);
+        out.writeBytes(GRAY125_FILL);
+        out.writeRecord(XSSFBRecordType.BrtEndFills);
+
+        out.writeRecordHeader(XSSFBRecordType.BrtBeginBorders, 4);
+        out.writeInt(1);
+        out.writeRecordHeader(XSSFBRecordType.BrtBorder, DEFAULT_BORDER.length);
+        out.writeBytes(DEFAULT_BORDER);
+        out.writeRecord(XSSFBRecordType.BrtEndBorders);
+
+        out.writeRecordHeader(XSSFBRecordType.BrtBeginCellStyleXFS, 4);
+        out.writeInt(1);
+        out.writeRecordHeader(XSSFBRecordType.BrtXf, DEFAULT_STYLE_XF.length);
+        out.writeBytes(DEFAULT_STYLE_XF);
+        out.writeRecord(XSSFBRecordType.BrtEndCellStyleXFS);
+
+        int numStyles = styles.getNumCellStyles();
+        out.writeRecordHeader(XSSFBRecordType.BrtBeginCellXFs, 4);
+        out.writeInt(numStyles);
+        for (int i = 0; i < numStyles; i++) {
+            writeCellXf(out, styles.getStyleAt(i), fonts.size());
+        }
+        out.writeRecord(XSSFBRecordType.BrtEndCellXFs);
+
+        // the built-in "Normal" cell style
+        String normal = "Normal";
+        out.writeRecordHeader(XSSFBRecordType.BrtBeginStyles, 4);
+        out.writeInt(1);
+        out.writeRecordHeader(XSSFBRecordType.BrtStyle, 8 + RecordWriter.wideStringLength(normal));
+        out.writeInt(0);
+        out.writeShort(1);
+        out.writeByte(0);
+        out.writeByte(0xFF);
+        out.writeWideString(normal);
+        out.writeRecord(XSSFBRecordType.BrtEndStyles);
+
+        out.writeRecord(XSSFBRecordType.BrtEndStyleSheet);
+        out.flush();
+    }
+
+    /** BrtFont (2.4.488) */
+    private static void writeFont(RecordWriter out, XSSFFont font) throws IOException {
+        String name = font.getFontName();
+        out.writeRecordHeader(XSSFBRecordType.BrtFont, 21 + RecordWriter.wideStringLength(name));
+        out.writeShort(font.getFontHeight());
+        out.writeShort((font.getItalic() ? 0x02 : 0) | (font.getStrikeout() ? 0x08 : 0));
+        out.writeShort(font.getBold() ? 700 : 400);
+        out.writeShort(font.getTypeOffset());
+        out.writeByte(font.getUnderline());
+        out.writeByte(font.getFamily());
+        out.writeByte(font.getCharSet());
+        out.writeByte(0);
+        writeColor(out, font.getXSSFColor());
+        out.writeByte(font.getScheme().getValue() - 1);
+        out.writeWideString(name);
+    }
+
+    /** BrtColor (2.5.11) */
+    private static void writeColor(RecordWriter out, XSSFColor color) throws IOException {
+        int type;
+        int index;
+        if (color == null) {
+            // theme color "text 1"
+            type = 3;
+            index = 1;
+        } else if (color.isThemed()) {
+            type = 3;
+            index = color.getTheme();
+        } else if (color.isIndexed()) {
+            type = 1;
+            index = color.getIndexed();
+        } else if (color.isRGB()) {
+            type = 2;
+            index = 0;
+        } else {
+            type = 0;
+            index = 0;
+        }
+        byte[] argb = color == null ? null : color.getARGB();
+        out.writeByte((type << 1) | (argb != null || color == null ? 1 : 0));
+        out.writeByte(index);
+        out.writeShort(color == null ? 0 : (int)Math.round(color.getTint() * 32767));
+        if (argb == null) {
+            out.writeInt(0xFF000000);
+        } else {
+            out.writeByte(argb[1]);
+            out.writeByte(argb[2]);
+            out.writeByte(argb[3]);
+            out.writeByte(argb[0]);
+        }
+    }
+
+    /** BrtXF (2.4.861) */
+    private static void writeCellXf(RecordWriter out, XSSFCellStyle style, int fontCount) throws IOException {
+        int numFmt = style.getDataFormat();
+        int font = style.getFontIndex() < fontCount ? style.getFontIndex() : 0;
+        int flags = style.getAlignment().getCode()
+            | (style.getVerticalAlignment().getCode() << 3)
+            | (style.getWrapText() ? 0x0040 : 0)
+            | (style.getShrinkToFit() ? 0x0100 : 0)
+            | (style.getLocked() ? 0x1000 : 0)
+            | (style.getHidden() ? 0x2000 : 0);
+        // the attributes which are set in this record and not taken from the parent style
+        int attributes = (numFmt != 0 ? 0x01 : 0)
+            | (font != 0 ? 0x02 : 0)
+            | ((flags & 0x01FF) != 0x0010 || style.getIndention() != 0 || style.getRotation() != 0 ? 0x04 : 0)
+            | ((flags & 0x3000) != 0x1000 ? 0x20 : 0);
+
+        out.writeRecordHeader(XSSFBRecordType.BrtXf, 16);
+        out.writeShort(0);
+        out.writeShort(numFmt);
+        out.writeShort(font);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeByte(style.getRotation());
+        out.writeByte(style.getIndention());
+        out.writeShort(flags);
+        out.writeShort(attributes);
+    }
+
+    private void writeSheet(RecordWriter out, XSSFSheet xSheet, SXSSFSheet sxSheet) throws IOException {
+        XSSFBSheetDataWriter writer = (XSSFBSheetDataWriter) sxSheet.getSheetDataWriter();
+        out.writeRecord(XSSFBRecordType.BrtBeginSheet);
+        out.writeRecordHeader(XSSFBRecordType.BrtWsProp, WS_PROP.length);
+        out.writeBytes(WS_PROP);
+
+        out.writeRecordHeader(XSSFBRecordType.BrtWsDim, 16);
+        if (writer.getNumberOfFlushedRows() > 0) {
+            out.writeInt(writer.getLowestIndexOfFlushedRows());
+            out.writeInt(writer.getLastFlushedRow());
+            out.writeInt(Math.max(0, writer.getFirstColumn()));
+            out.writeInt(Math.max(0, writer.getLastColumn()));
+        } else {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(0);
+        }
+
+        writeColumns(out, xSheet);
+
+        out.writeRecord(XSSFBRecordType.BrtBeginSheetData);
+        out.flush();
+        try (InputStream is = sxSheet.getWorksheetXMLInputStream()) {
+            IOUtils.copy(is, out.getOutputStream());
+        }
+        out.writeRecord(XSSFBRecordType.BrtEndSheetData);
+
+        int numMergedRegions = xSheet.getNumMergedRegions();
+        if (numMergedRegions > 0) {
+            out.writeRecordHeader(XSSFBRecordType.BrtBeginMergeCells, 4);
+            out.writeInt(numMergedRegions);
+            for (int i = 0; i < numMergedRegions; i++) {
+                CellRangeAddress region = xSheet.getMergedRegion(i);
+                out.writeRecordHeader(XSSFBRecordType.BrtMergeCell, 16);
+                out.writeInt(region.getFirstRow());
+                out.writeInt(region.getLastRow());
+                out.writeInt(region.getFirstColumn());
+                out.writeInt(region.getLastColumn());
+            }
+            out.writeRecord(XSSFBRecordType.BrtEndMergeCells);
+        }
+
+        out.writeRecord(XSSFBRecordType.BrtEndSheet);
+        out.flush();
+    }
+
+    /** the column widths as BrtColInfo (2.4.323) records */
+    private static void writeColumns(RecordWriter out, XSSFSheet xSheet) throws IOException {
+        CTCols[] colsArray = xSheet.getCTWorksheet().getColsArray();
+        boolean started = false;
+        for (CTCols cols : colsArray) {
+            for (CTCol col : cols.getColArray()) {
+                if (!started) {
+                    out.writeRecord(XSSFBRecordType.BrtBeginColInfos);
+                    started = true;
+                }
+                int flags = (col.getHidden() ? 0x01 : 0)
+                    | (col.getCustomWidth() ? 0x02 : 0)
+                    | (col.getBestFit() ? 0x04 : 0)
+                    | ((col.getOutlineLevel() & 0x07) << 8)
+                    | (col.getCollapsed() ? 0x1000 : 0);
+                out.writeRecordHeader(XSSFBRecordType.BrtColInfo, 18);
+                out.writeInt((int)col.getMin() - 1);
+                out.writeInt((int)col.getMax() - 1);
+                out.writeInt(col.isSetWidth() ? (int)Math.round(col.getWidth() * 256) : 0);
+                out.writeInt(col.isSetStyle() ? (int)col.getStyle() : 0);
+                out.writeShort(flags);
+            }
+        }
+        if (started) {
+            out.writeRecord(XSSFBRecordType.BrtEndColInfos);
+        }
+    }
+
+    private static void writeSharedStrings(RecordWriter out, SharedStringsTable sst) throws IOException {
+        int uniqueCount = sst.getUniqueCount();
+        out.writeRecordHeader(XSSFBRecordType.BrtBeginSst, 8);
+        out.writeInt(sst.getCount());
+        out.writeInt(uniqueCount);
+        for (int i = 0; i < uniqueCount; i++) {
+            String s = sst.getItemAt(i).getString();
+            out.writeRecordHeader(XSSFBRecordType.BrtSstItem, 1 + RecordWriter.wideStringLength(s));
+            out.writeByte(0);
+            out.writeWideString(s);
+        }
+        out.writeRecord(XSSFBRecordType.BrtEndSst);
+        out.flush();
+    }
+
+    private static byte[] hex(String s) {
+        String[] tokens = s.trim().split(" ");
+        byte[] bytes = new byte[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(tokens[i], 16);
+        }
+        return bytes;
+    }
+
+    private static String zeros(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(" 00");
+        }
+        return sb.toString();
+    }
+}
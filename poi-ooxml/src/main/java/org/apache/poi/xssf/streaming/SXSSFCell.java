@@ -48,15 +48,20 @@ import org.apache.poi.xssf.usermodel.XSSFRichTextString;
  */
 public class SXSSFCell extends CellBase {
     private final SXSSFRow _row;
+    // the value object or null, if the value is kept in the columns of an append-only row
     private Value _value;
     private CellStyle _style;
     private Property _firstProperty;
+    private final SXSSFCellColumns _columns;
+    // the index of the values of an append-only cell in the arrays of the columns
+    private int _slot;
 
     private int _columnIndex = -1;
 
     public SXSSFCell(final SXSSFRow row, final CellType cellType)
     {
         _row = row;
+        _columns = null;
         _value = new BlankValue();
         setType(cellType);
     }
@@ -73,6 +78,111 @@ public class SXSSFCell extends CellBase {
         _columnIndex = columnIndex;
     }
 
+    /**
+     * Creates a view on a cell of an append-only row, the value is kept in the columns of the row
+     *
+     * @param row the {@link SXSSFRow}
+     * @param columns the cell values of the row
+     * @see #setColumnSlot(int, int)
+     */
+    SXSSFCell(final SXSSFRow row, final SXSSFCellColumns columns)
+    {
+        _row = row;
+        _columns = columns;
+    }
+
+    /**
+     * Sets the column of a cell of an append-only row and the index of its values in the arrays of the columns
+     */
+    void setColumnSlot(int columnIndex, int slot) {
+        _columnIndex = columnIndex;
+        _slot = slot;
+    }
+
+    /**
+     * Detaches a cell of an append-only row, which was removed or replaced, from the columns.
+     * Its values can't be accessed anymore, as its slot belongs to another cell.
+     */
+    void detachColumnValue() {
+        resetColumnValue();
+        _columnIndex = -1;
+        _slot = -1;
+    }
+
+    /**
+     * @return the index of the values of a cell of an append-only row or -1, if the cell was detached
+     */
+    int getSlot() {
+        return _slot;
+    }
+
+    private int slot() {
+        if (_slot < 0) {
+            throw new IllegalStateException("The cell was removed from its row");
+        }
+        return _slot;
+    }
+
+    /**
+     * Returns the value object, for cells of append-only rows it's created from the columns first
+     */
+    private Value value() {
+        if (_value == null) {
+            final SXSSFCellColumns columns = _columns;
+            final int slot = slot();
+            switch (columns._types[slot]) {
+                case SXSSFCellColumns.NUMERIC:
+                    _value = new NumericValue(columns._numbers[slot]);
+                    break;
+                case SXSSFCellColumns.STRING:
+                    PlainStringValue sval = new PlainStringValue();
+                    sval.setValue(columns._strings[slot]);
+                    columns._strings[slot] = null;
+                    _value = sval;
+                    break;
+                case SXSSFCellColumns.BOOLEAN:
+                    BooleanValue bval = new BooleanValue();
+                    bval.setValue(columns._numbers[slot] != 0);
+                    _value = bval;
+                    break;
+                case SXSSFCellColumns.ERROR:
+                    _value = new ErrorValue((byte) columns._numbers[slot]);
+                    break;
+                default:
+                    _value = new BlankValue();
+                    break;
+            }
+        }
+        return _value;
+    }
+
+    /**
+     * Moves the value of a cell of an append-only row back to the columns, when the cell is reused
+     */
+    void resetColumnValue() {
+        _value = null;
+        _style = null;
+        _firstProperty = null;
+    }
+
+    /**
+     * Sets the type of a cell of an append-only row, which can't be kept in the columns
+     */
+    void initValue(CellType cellType) {
+        _value = new BlankValue();
+        setType(cellType);
+    }
+
+    /**
+     * Sets a value of a cell of an append-only row, which is kept in the columns
+     */
+    private void setColumnValue(byte type, double number, String string) {
+        final int slot = slot();
+        _columns._types[slot] = type;
+        _columns._numbers[slot] = number;
+        _columns._strings[slot] = string;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -130,6 +240,10 @@ public class SXSSFCell extends CellBase {
 
     @Override
     protected void setCellTypeImpl(CellType cellType) {
+        if (_value == null && cellType == CellType.BLANK) {
+            setColumnValue(SXSSFCellColumns.BLANK, 0, null);
+            return;
+        }
         ensureType(cellType);
     }
 
@@ -147,6 +261,9 @@ public class SXSSFCell extends CellBase {
         if (isFormulaCell()) {
             return CellType.FORMULA;
         }
+        if (_value == null) {
+            return SXSSFCellColumns.toCellType(_columns._types[slot()]);
+        }
 
         return _value.getType();
     }
@@ -164,7 +281,7 @@ public class SXSSFCell extends CellBase {
             throw new IllegalStateException("Only formula cells have cached results");
         }
 
-        return ((FormulaValue)_value).getFormulaType();
+        return ((FormulaValue)value()).getFormulaType();
     }
 
     /**
@@ -172,11 +289,15 @@ public class SXSSFCell extends CellBase {
      */
     @Override
     public void setCellValueImpl(double value) {
+        if (_value == null) {
+            setColumnValue(SXSSFCellColumns.NUMERIC, value, null);
+            return;
+        }
         ensureTypeOrFormulaType(CellType.NUMERIC);
-        if(_value.getType() == CellType.FORMULA) {
-            ((NumericFormulaValue) _value).setPreEvaluatedValue(value);
+        if(value().getType() == CellType.FORMULA) {
+            ((NumericFormulaValue) value()).setPreEvaluatedValue(value);
         } else {
-            ((NumericValue)_value).setValue(value);
+            ((NumericValue)value()).setValue(value);
         }
     }
 
@@ -214,10 +335,10 @@ public class SXSSFCell extends CellBase {
     protected void setCellValueImpl(RichTextString value) {
         ensureRichTextStringType();
 
-        if(_value instanceof RichTextStringFormulaValue) {
-            ((RichTextStringFormulaValue) _value).setPreEvaluatedValue(value);
+        if(value() instanceof RichTextStringFormulaValue) {
+            ((RichTextStringFormulaValue) value()).setPreEvaluatedValue(value);
         } else {
-            ((RichTextValue) _value).setValue(value);
+            ((RichTextValue) value()).setValue(value);
         }
     }
 
@@ -226,11 +347,15 @@ public class SXSSFCell extends CellBase {
      */
     @Override
     protected void setCellValueImpl(String value) {
+        if (_value == null) {
+            setColumnValue(SXSSFCellColumns.STRING, 0, value);
+            return;
+        }
         ensureTypeOrFormulaType(CellType.STRING);
-        if(_value.getType() == CellType.FORMULA) {
-            ((StringFormulaValue) _value).setPreEvaluatedValue(value);
+        if(value().getType() == CellType.FORMULA) {
+            ((StringFormulaValue) value()).setPreEvaluatedValue(value);
         } else {
-            ((PlainStringValue) _value).setValue(value);
+            ((PlainStringValue) value()).setValue(value);
         }
     }
 
@@ -249,7 +374,7 @@ public class SXSSFCell extends CellBase {
     public void setCellFormulaImpl(String formula) throws FormulaParseException {
         assert formula != null;
         if (getCellType() == CellType.FORMULA) {
-            ((FormulaValue)_value).setValue(formula);
+            ((FormulaValue)value()).setValue(formula);
         } else {
             switch (getCellType()) {
                 case BLANK:
@@ -257,11 +382,11 @@ public class SXSSFCell extends CellBase {
                     _value = new NumericFormulaValue(formula, getNumericCellValue());
                     break;
                 case STRING:
-                    if (_value instanceof PlainStringValue) {
+                    if (value() instanceof PlainStringValue) {
                         _value = new StringFormulaValue(formula, getStringCellValue());
                     } else {
-                        assert(_value instanceof RichTextValue);
-                        _value = new RichTextStringFormulaValue(formula, ((RichTextValue) _value).getValue());
+                        assert(value() instanceof RichTextValue);
+                        _value = new RichTextStringFormulaValue(formula, ((RichTextValue) value()).getValue());
                     }
                     break;
                 case BOOLEAN:
@@ -281,24 +406,24 @@ public class SXSSFCell extends CellBase {
         assert getCellType() == CellType.FORMULA;
         switch (getCachedFormulaResultType()) {
             case NUMERIC:
-                double numericValue = ((NumericFormulaValue)_value).getPreEvaluatedValue();
+                double numericValue = ((NumericFormulaValue)value()).getPreEvaluatedValue();
                 _value = new NumericValue();
-                ((NumericValue) _value).setValue(numericValue);
+                ((NumericValue) value()).setValue(numericValue);
                 break;
             case STRING:
-                String stringValue = ((StringFormulaValue)_value).getPreEvaluatedValue();
+                String stringValue = ((StringFormulaValue)value()).getPreEvaluatedValue();
                 _value = new PlainStringValue();
-                ((PlainStringValue) _value).setValue(stringValue);
+                ((PlainStringValue) value()).setValue(stringValue);
                 break;
             case BOOLEAN:
-                boolean booleanValue = ((BooleanFormulaValue)_value).getPreEvaluatedValue();
+                boolean booleanValue = ((BooleanFormulaValue)value()).getPreEvaluatedValue();
                 _value = new BooleanValue();
-                ((BooleanValue) _value).setValue(booleanValue);
+                ((BooleanValue) value()).setValue(booleanValue);
                 break;
             case ERROR:
-                byte errorValue = ((ErrorFormulaValue)_value).getPreEvaluatedValue();
+                byte errorValue = ((ErrorFormulaValue)value()).getPreEvaluatedValue();
                 _value = new ErrorValue();
-                ((ErrorValue) _value).setValue(errorValue);
+                ((ErrorValue) value()).setValue(errorValue);
                 break;
             default:
                 throw new AssertionError();
@@ -314,9 +439,9 @@ public class SXSSFCell extends CellBase {
     @Override
     public String getCellFormula()
     {
-       if(_value.getType()!=CellType.FORMULA)
-           throw typeMismatch(CellType.FORMULA,_value.getType(),false);
-        return ((FormulaValue)_value).getValue();
+       if(value().getType()!=CellType.FORMULA)
+           throw typeMismatch(CellType.FORMULA,value().getType(),false);
+        return ((FormulaValue)value()).getValue();
     }
 
     /**
@@ -333,6 +458,12 @@ public class SXSSFCell extends CellBase {
     @Override
     public double getNumericCellValue()
     {
+        if (_value == null) {
+            byte type = _columns._types[slot()];
+            if (type == SXSSFCellColumns.NUMERIC || type == SXSSFCellColumns.BLANK) {
+                return _columns._numbers[slot()];
+            }
+        }
         CellType cellType = getCellType();
         switch(cellType)
         {
@@ -340,13 +471,13 @@ public class SXSSFCell extends CellBase {
                 return 0.0;
             case FORMULA:
             {
-                FormulaValue fv=(FormulaValue)_value;
+                FormulaValue fv=(FormulaValue)value();
                 if(fv.getFormulaType()!=CellType.NUMERIC)
                       throw typeMismatch(CellType.NUMERIC, CellType.FORMULA, false);
-                return ((NumericFormulaValue)_value).getPreEvaluatedValue();
+                return ((NumericFormulaValue)value()).getPreEvaluatedValue();
             }
             case NUMERIC:
-                return ((NumericValue)_value).getValue();
+                return ((NumericValue)value()).getValue();
             default:
                 throw typeMismatch(CellType.NUMERIC, cellType, false);
         }
@@ -408,13 +539,16 @@ public class SXSSFCell extends CellBase {
     @Override
     public RichTextString getRichStringCellValue()
     {
+        if (_value == null && _columns._types[slot()] == SXSSFCellColumns.STRING) {
+            return new XSSFRichTextString(_columns._strings[slot()]);
+        }
         CellType cellType = getCellType();
         if(getCellType() != CellType.STRING)
             throw typeMismatch(CellType.STRING, cellType, false);
 
-        StringValue sval = (StringValue)_value;
+        StringValue sval = (StringValue)value();
         if(sval.isRichText())
-            return ((RichTextValue)_value).getValue();
+            return ((RichTextValue)value()).getValue();
         else {
             String plainText = getStringCellValue();
             // don't use the creation-helper here as it would spam the log with one line per row
@@ -435,6 +569,14 @@ public class SXSSFCell extends CellBase {
     @Override
     public String getStringCellValue()
     {
+        if (_value == null) {
+            byte type = _columns._types[slot()];
+            if (type == SXSSFCellColumns.STRING) {
+                return _columns._strings[slot()];
+            } else if (type == SXSSFCellColumns.BLANK) {
+                return "";
+            }
+        }
         CellType cellType = getCellType();
         switch(cellType)
         {
@@ -442,21 +584,21 @@ public class SXSSFCell extends CellBase {
                 return "";
             case FORMULA:
             {
-                FormulaValue fv=(FormulaValue)_value;
+                FormulaValue fv=(FormulaValue)value();
                 if(fv.getFormulaType()!=CellType.STRING)
                       throw typeMismatch(CellType.STRING, CellType.FORMULA, false);
-                if(_value instanceof RichTextStringFormulaValue) {
-                    return ((RichTextStringFormulaValue) _value).getPreEvaluatedValue().getString();
+                if(value() instanceof RichTextStringFormulaValue) {
+                    return ((RichTextStringFormulaValue) value()).getPreEvaluatedValue().getString();
                 } else {
-                    return ((StringFormulaValue) _value).getPreEvaluatedValue();
+                    return ((StringFormulaValue) value()).getPreEvaluatedValue();
                 }
             }
             case STRING:
             {
-                if(((StringValue)_value).isRichText())
-                    return ((RichTextValue)_value).getValue().getString();
+                if(((StringValue)value()).isRichText())
+                    return ((RichTextValue)value()).getValue().getString();
                 else
-                    return ((PlainStringValue)_value).getValue();
+                    return ((PlainStringValue)value()).getValue();
             }
             default:
                 throw typeMismatch(CellType.STRING, cellType, false);
@@ -473,11 +615,15 @@ public class SXSSFCell extends CellBase {
     @Override
     public void setCellValue(boolean value)
     {
+        if (_value == null) {
+            setColumnValue(SXSSFCellColumns.BOOLEAN, value ? 1 : 0, null);
+            return;
+        }
         ensureTypeOrFormulaType(CellType.BOOLEAN);
-        if(_value.getType()==CellType.FORMULA)
-            ((BooleanFormulaValue)_value).setPreEvaluatedValue(value);
+        if(value().getType()==CellType.FORMULA)
+            ((BooleanFormulaValue)value()).setPreEvaluatedValue(value);
         else
-            ((BooleanValue)_value).setValue(value);
+            ((BooleanValue)value()).setValue(value);
     }
 
     /**
@@ -491,8 +637,12 @@ public class SXSSFCell extends CellBase {
      */
     @Override
     public void setCellErrorValue(byte value) {
+        if (_value == null) {
+            setColumnValue(SXSSFCellColumns.ERROR, value, null);
+            return;
+        }
         // for formulas, we want to keep the type and only have an ERROR as formula value
-        if(_value.getType()==CellType.FORMULA) {
+        if(value().getType()==CellType.FORMULA) {
             _value = new ErrorFormulaValue(getCellFormula(), value);
         } else {
             _value = new ErrorValue(value);
@@ -511,6 +661,12 @@ public class SXSSFCell extends CellBase {
     @Override
     public boolean getBooleanCellValue()
     {
+        if (_value == null) {
+            byte type = _columns._types[slot()];
+            if (type == SXSSFCellColumns.BOOLEAN || type == SXSSFCellColumns.BLANK) {
+                return _columns._numbers[slot()] != 0;
+            }
+        }
         CellType cellType = getCellType();
         switch(cellType)
         {
@@ -518,14 +674,14 @@ public class SXSSFCell extends CellBase {
                 return false;
             case FORMULA:
             {
-                FormulaValue fv=(FormulaValue)_value;
+                FormulaValue fv=(FormulaValue)value();
                 if(fv.getFormulaType()!=CellType.BOOLEAN)
                       throw typeMismatch(CellType.BOOLEAN, CellType.FORMULA, false);
-                return ((BooleanFormulaValue)_value).getPreEvaluatedValue();
+                return ((BooleanFormulaValue)value()).getPreEvaluatedValue();
             }
             case BOOLEAN:
             {
-                return ((BooleanValue)_value).getValue();
+                return ((BooleanValue)value()).getValue();
             }
             default:
                 throw typeMismatch(CellType.BOOLEAN, cellType, false);
@@ -546,6 +702,12 @@ public class SXSSFCell extends CellBase {
     @Override
     public byte getErrorCellValue()
     {
+        if (_value == null) {
+            byte type = _columns._types[slot()];
+            if (type == SXSSFCellColumns.ERROR || type == SXSSFCellColumns.BLANK) {
+                return (byte) _columns._numbers[slot()];
+            }
+        }
         CellType cellType = getCellType();
         switch(cellType)
         {
@@ -553,14 +715,14 @@ public class SXSSFCell extends CellBase {
                 return 0;
             case FORMULA:
             {
-                FormulaValue fv=(FormulaValue)_value;
+                FormulaValue fv=(FormulaValue)value();
                 if(fv.getFormulaType()!=CellType.ERROR)
                       throw typeMismatch(CellType.ERROR, CellType.FORMULA, false);
-                return ((ErrorFormulaValue)_value).getPreEvaluatedValue();
+                return ((ErrorFormulaValue)value()).getPreEvaluatedValue();
             }
             case ERROR:
             {
-                return ((ErrorValue)_value).getValue();
+                return ((ErrorValue)value()).getValue();
             }
             default:
                 throw typeMismatch(CellType.ERROR, cellType, false);
@@ -582,6 +744,9 @@ public class SXSSFCell extends CellBase {
     public void setCellStyle(CellStyle style)
     {
         _style=style;
+        if (_columns != null) {
+            _columns._styles[slot()] = style == null ? SXSSFCellColumns.NO_STYLE : style.getIndex();
+        }
     }
 
     /**
@@ -594,6 +759,9 @@ public class SXSSFCell extends CellBase {
     @Override
     public CellStyle getCellStyle()
     {
+        if (_style == null && _columns != null) {
+            _style = getSheet().getWorkbook().getCellStyleAt(getCellStyleIndex());
+        }
         if (_style == null) {
             CellStyle style = getDefaultCellStyleFromColumn();
             if (style == null) {
@@ -605,6 +773,25 @@ public class SXSSFCell extends CellBase {
         return _style;
     }
 
+    /**
+     * Returns the index of the cell style, cells of append-only rows don't create the style object for it
+     *
+     * @return the unsigned index of the cell style
+     */
+    int getCellStyleIndex() {
+        if (_columns == null) {
+            return getCellStyle().getIndex() & 0xffff;
+        }
+        short style = _columns._styles[slot()];
+        if (style == SXSSFCellColumns.NO_STYLE) {
+            // like getCellStyle(), the default style of the column is used
+            int columnStyle = getSheet()._sh.getColumnHelper().getColDefaultStyle(_columnIndex);
+            style = (short) (columnStyle == -1 ? 0 : columnStyle);
+            _columns._styles[slot()] = style;
+        }
+        return style & 0xffff;
+    }
+
     private CellStyle getDefaultCellStyleFromColumn() {
         CellStyle style = null;
         SXSSFSheet sheet = getSheet();
@@ -830,24 +1017,24 @@ public class SXSSFCell extends CellBase {
     }
     /*package*/ void ensurePlainStringType()
     {
-        if(_value.getType()!=CellType.STRING
-           ||((StringValue)_value).isRichText())
+        if(value().getType()!=CellType.STRING
+           ||((StringValue)value()).isRichText())
             _value = new PlainStringValue();
     }
     /*package*/ void ensureRichTextStringType()
     {
         // don't change cell type for formulas
-        if(_value.getType() == CellType.FORMULA) {
-            String formula = ((FormulaValue)_value).getValue();
+        if(value().getType() == CellType.FORMULA) {
+            String formula = ((FormulaValue)value()).getValue();
             _value = new RichTextStringFormulaValue(formula, new XSSFRichTextString(""));
-        } else if(_value.getType()!=CellType.STRING ||
-                !((StringValue)_value).isRichText()) {
+        } else if(value().getType()!=CellType.STRING ||
+                !((StringValue)value()).isRichText()) {
             _value = new RichTextValue();
         }
     }
     /*package*/ void ensureType(CellType type)
     {
-        if(_value.getType()!=type)
+        if(value().getType()!=type)
             setType(type);
     }
 
@@ -856,15 +1043,15 @@ public class SXSSFCell extends CellBase {
      */
     /*package*/ void ensureTypeOrFormulaType(CellType type)
     {
-        if(_value.getType()==type)
+        if(value().getType()==type)
         {
-            if(type==CellType.STRING&&((StringValue)_value).isRichText())
+            if(type==CellType.STRING&&((StringValue)value()).isRichText())
                 setType(CellType.STRING);
             return;
         }
-        if(_value.getType()==CellType.FORMULA)
+        if(value().getType()==CellType.FORMULA)
         {
-            if(((FormulaValue)_value).getFormulaType()==type)
+            if(((FormulaValue)value()).getFormulaType()==type)
                 return;
             switch (type) {
                 case BOOLEAN:
@@ -905,7 +1092,7 @@ public class SXSSFCell extends CellBase {
             case STRING:
             {
                 PlainStringValue sval = new PlainStringValue();
-                if(_value != null){
+                if(value() != null){
                     // if a cell is not blank then convert the old value to string
                     String str = convertCellValueToString();
                     sval.setValue(str);
@@ -928,7 +1115,7 @@ public class SXSSFCell extends CellBase {
             case BOOLEAN:
             {
                 BooleanValue bval = new BooleanValue();
-                if(_value != null){
+                if(value() != null){
                     // if a cell is not blank then convert the old value to string
                     boolean val = convertCellValueToBoolean();
                     bval.setValue(val);
@@ -1000,8 +1187,8 @@ public class SXSSFCell extends CellBase {
                 byte errVal = getErrorCellValue();
                 return FormulaError.forInt(errVal).getString();
             case FORMULA:
-                if (_value != null) {
-                    FormulaValue fv = (FormulaValue)_value;
+                if (value() != null) {
+                    FormulaValue fv = (FormulaValue)value();
                     if (fv.getFormulaType() != CellType.FORMULA) {
                         return convertCellValueToString(fv.getFormulaType());
                     }
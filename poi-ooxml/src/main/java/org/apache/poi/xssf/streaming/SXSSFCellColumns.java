@@ -0,0 +1,262 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * The cells of a row of an append-only sheet, stored densely in primitive arrays.<p>
+ *
+ * The columns of the cells are kept in ascending order, the values of a cell are stored at the same index
+ * (slot) of the parallel arrays, so sparse rows don't need arrays of the size of their last column.
+ * Cells are usually created in ascending column order and are appended, other cells are inserted.<p>
+ *
+ * The {@link SXSSFCell} objects are views on the arrays and are reused, when the row is reused for
+ * a following row. Numeric, string, boolean, error and blank values are kept in the arrays,
+ * other values (formulas and rich text) are kept by the cell view itself.
+ *
+ * @see SXSSFWorkbook#setAppendOnlyRows(boolean)
+ */
+final class SXSSFCellColumns {
+    static final byte BLANK = 0;
+    static final byte NUMERIC = 1;
+    static final byte STRING = 2;
+    static final byte BOOLEAN = 3;
+    static final byte ERROR = 4;
+
+    private static final CellType[] CELL_TYPES = {
+        CellType.BLANK, CellType.NUMERIC, CellType.STRING, CellType.BOOLEAN, CellType.ERROR
+    };
+
+    /** the style index of cells without a style */
+    static final short NO_STYLE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final SXSSFRow _row;
+    /** the columns of the cells in ascending order */
+    private int[] _columns;
+    /** the cell views, the views after the last cell are kept for reuse, when the row is cleared */
+    private SXSSFCell[] _cells;
+    /** the type of the values */
+    byte[] _types;
+    /** the numeric values, 1/0 for boolean values and the error codes */
+    double[] _numbers;
+    String[] _strings;
+    short[] _styles;
+    private int _size;
+
+    SXSSFCellColumns(SXSSFRow row) {
+        _row = row;
+        _columns = new int[INITIAL_CAPACITY];
+        _cells = new SXSSFCell[INITIAL_CAPACITY];
+        _types = new byte[INITIAL_CAPACITY];
+        _numbers = new double[INITIAL_CAPACITY];
+        _strings = new String[INITIAL_CAPACITY];
+        _styles = new short[INITIAL_CAPACITY];
+    }
+
+    static CellType toCellType(byte type) {
+        return CELL_TYPES[type];
+    }
+
+    /**
+     * Creates the cell at the column, the view of an existing cell of the column is detached
+     */
+    SXSSFCell create(int column, CellType type) {
+        int slot = find(column);
+        SXSSFCell cell;
+        if (slot >= 0) {
+            _cells[slot].detachColumnValue();
+            cell = new SXSSFCell(_row, this);
+            cell.setColumnSlot(column, slot);
+            _cells[slot] = cell;
+        } else {
+            slot = -slot - 1;
+            cell = insert(column, slot);
+        }
+        _styles[slot] = NO_STYLE;
+        _strings[slot] = null;
+        _numbers[slot] = 0;
+        switch (type) {
+            case BLANK:
+                _types[slot] = BLANK;
+                break;
+            case NUMERIC:
+                _types[slot] = NUMERIC;
+                break;
+            case STRING:
+                _types[slot] = STRING;
+                _strings[slot] = "";
+                break;
+            case BOOLEAN:
+                _types[slot] = BOOLEAN;
+                break;
+            default:
+                // the cell keeps the value object
+                _types[slot] = BLANK;
+                cell.initValue(type);
+                break;
+        }
+        return cell;
+    }
+
+    /**
+     * @return the cell at the column or {@code null}, if there's no cell
+     */
+    SXSSFCell get(int column) {
+        int slot = find(column);
+        return slot >= 0 ? _cells[slot] : null;
+    }
+
+    void remove(int column) {
+        int slot = find(column);
+        if (slot < 0) {
+            return;
+        }
+        _cells[slot].detachColumnValue();
+        int moved = _size - slot - 1;
+        if (moved > 0) {
+            System.arraycopy(_columns, slot + 1, _columns, slot, moved);
+            System.arraycopy(_cells, slot + 1, _cells, slot, moved);
+            System.arraycopy(_types, slot + 1, _types, slot, moved);
+            System.arraycopy(_numbers, slot + 1, _numbers, slot, moved);
+            System.arraycopy(_strings, slot + 1, _strings, slot, moved);
+            System.arraycopy(_styles, slot + 1, _styles, slot, moved);
+            for (int i = slot; i < slot + moved; i++) {
+                _cells[i].setColumnSlot(_columns[i], i);
+            }
+        }
+        _size--;
+        // the view of the removed cell isn't reused, as it may still be referenced
+        _cells[_size] = null;
+        _strings[_size] = null;
+    }
+
+    /**
+     * @return the column of the cell or -1, if the cell isn't part of the row
+     */
+    int indexOf(SXSSFCell cell) {
+        int slot = cell.getSlot();
+        return slot >= 0 && slot < _size && _cells[slot] == cell ? _columns[slot] : -1;
+    }
+
+    /**
+     * Removes all cells, so the row can be reused
+     */
+    void clear() {
+        for (int i = 0; i < _size; i++) {
+            _strings[i] = null;
+            _cells[i].resetColumnValue();
+        }
+        _size = 0;
+    }
+
+    int getFirstColumn() {
+        return _size == 0 ? -1 : _columns[0];
+    }
+
+    int getLastColumn() {
+        return _size == 0 ? -1 : _columns[_size - 1];
+    }
+
+    int size() {
+        return _size;
+    }
+
+    /**
+     * @return the length of the arrays
+     */
+    int capacity() {
+        return _columns.length;
+    }
+
+    /**
+     * @return an iterator over the existing cells in ascending column order
+     */
+    Iterator<SXSSFCell> iterator() {
+        return new Iterator<SXSSFCell>() {
+            private int _slot;
+
+            @Override
+            public boolean hasNext() {
+                return _slot < _size;
+            }
+
+            @Override
+            public SXSSFCell next() {
+                if (_slot >= _size) {
+                    throw new NoSuchElementException();
+                }
+                return _cells[_slot++];
+            }
+        };
+    }
+
+    /**
+     * @return the slot of the column or {@code (-(insertion slot) - 1)} like {@link Arrays#binarySearch(int[], int)}
+     */
+    private int find(int column) {
+        // cells are usually created and read in ascending order
+        if (_size == 0 || column > _columns[_size - 1]) {
+            return -_size - 1;
+        }
+        return Arrays.binarySearch(_columns, 0, _size, column);
+    }
+
+    /**
+     * Inserts a cell at the slot and moves the following cells
+     */
+    private SXSSFCell insert(int column, int slot) {
+        if (_size == _columns.length) {
+            int capacity = _size * 2;
+            _columns = Arrays.copyOf(_columns, capacity);
+            _cells = Arrays.copyOf(_cells, capacity);
+            _types = Arrays.copyOf(_types, capacity);
+            _numbers = Arrays.copyOf(_numbers, capacity);
+            _strings = Arrays.copyOf(_strings, capacity);
+            _styles = Arrays.copyOf(_styles, capacity);
+        }
+        // the view after the last cell is reused
+        SXSSFCell cell = _cells[_size];
+        if (cell == null) {
+            cell = new SXSSFCell(_row, this);
+        }
+        int moved = _size - slot;
+        if (moved > 0) {
+            System.arraycopy(_columns, slot, _columns, slot + 1, moved);
+            System.arraycopy(_cells, slot, _cells, slot + 1, moved);
+            System.arraycopy(_types, slot, _types, slot + 1, moved);
+            System.arraycopy(_numbers, slot, _numbers, slot + 1, moved);
+            System.arraycopy(_strings, slot, _strings, slot + 1, moved);
+            System.arraycopy(_styles, slot, _styles, slot + 1, moved);
+            for (int i = slot + 1; i <= _size; i++) {
+                _cells[i].setColumnSlot(_columns[i], i);
+            }
+        }
+        _columns[slot] = column;
+        _cells[slot] = cell;
+        cell.setColumnSlot(column, slot);
+        _size++;
+        return cell;
+    }
+}
@@ -43,7 +43,10 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     private static final Boolean UNDEFINED = null;
 
     private final SXSSFSheet _sheet; // parent sheet
-    private final SortedMap<Integer, SXSSFCell> _cells = new TreeMap<>();
+    // the cells by their column, or null if the cells are kept in columns
+    private final SortedMap<Integer, SXSSFCell> _cells;
+    // the cells of the rows of append-only sheets
+    private final SXSSFCellColumns _columns;
     private short _style = -1; // index of cell style in style table
     private short _height = -1; // row height in twips (1/20 point)
     private boolean _zHeight; // row zero-height (this is somehow different than being hidden)
@@ -56,6 +59,39 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     public SXSSFRow(SXSSFSheet sheet)
     {
         _sheet=sheet;
+        _cells = new TreeMap<>();
+        _columns = null;
+    }
+
+    /**
+     * Creates a row of an append-only sheet, which keeps the cell values in primitive arrays
+     * and is reused after it was flushed.
+     *
+     * @param sheet the sheet of the row
+     * @param rowNum the row number (0-based)
+     * @see SXSSFWorkbook#setAppendOnlyRows(boolean)
+     */
+    SXSSFRow(SXSSFSheet sheet, int rowNum)
+    {
+        _sheet=sheet;
+        _cells = null;
+        _columns = new SXSSFCellColumns(this);
+        _rowNum = rowNum;
+    }
+
+    /**
+     * Resets a flushed row of an append-only sheet, so it can be used for the given row number
+     */
+    void reset(int rowNum)
+    {
+        _columns.clear();
+        _style = -1;
+        _height = -1;
+        _zHeight = false;
+        _outlineLevel = 0;
+        _hidden = UNDEFINED;
+        _collapsed = UNDEFINED;
+        _rowNum = rowNum;
     }
 
     public Iterator<Cell> allCellsIterator()
@@ -139,8 +175,13 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     public SXSSFCell createCell(final int column, final CellType type)
     {
         checkBounds(column);
-        SXSSFCell cell = new SXSSFCell(this, type, column);
-        _cells.put(column, cell);
+        SXSSFCell cell;
+        if (_columns != null) {
+            cell = _columns.create(column, type);
+        } else {
+            cell = new SXSSFCell(this, type, column);
+            _cells.put(column, cell);
+        }
         _sheet.trackNewCell(cell);
         return cell;
     }
@@ -167,7 +208,11 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     public void removeCell(Cell cell)
     {
         int index = getCellIndex((SXSSFCell) cell);
-        _cells.remove(index);
+        if (_columns != null) {
+            _columns.remove(index);
+        } else {
+            _cells.remove(index);
+        }
     }
 
     /**
@@ -179,6 +224,9 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
      */
     /*package*/ int getCellIndex(SXSSFCell cell)
     {
+        if (_columns != null) {
+            return _columns.indexOf(cell);
+        }
         for (Entry<Integer, SXSSFCell> entry : _cells.entrySet()) {
             if (entry.getValue()==cell) {
                 return entry.getKey();
@@ -238,7 +286,7 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     {
         checkBounds(cellnum);
 
-        final SXSSFCell cell = _cells.get(cellnum);
+        final SXSSFCell cell = _columns != null ? _columns.get(cellnum) : _cells.get(cellnum);
         switch (policy) {
             case RETURN_NULL_AND_BLANK:
                 return cell;
@@ -261,6 +309,9 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     @Override
     public short getFirstCellNum()
     {
+        if (_columns != null) {
+            return (short) _columns.getFirstColumn();
+        }
         try {
             return _cells.firstKey().shortValue();
         } catch (final NoSuchElementException e) {
@@ -290,6 +341,9 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     @Override
     public short getLastCellNum()
     {
+        if (_columns != null) {
+            return _columns.size() == 0 ? -1 : (short)(_columns.getLastColumn() + 1);
+        }
         return _cells.isEmpty() ? -1 : (short)(_cells.lastKey() + 1);
     }
 
@@ -302,7 +356,7 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     @Override
     public int getPhysicalNumberOfCells()
     {
-        return _cells.size();
+        return _columns != null ? _columns.size() : _cells.size();
     }
 
     /**
@@ -442,6 +496,10 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
     @Override
     @SuppressWarnings("unchecked")
     public Spliterator<Cell> spliterator() {
+        if (_columns != null) {
+            return Spliterators.spliterator(cellIterator(), _columns.size(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
         return (Spliterator<Cell>)(Spliterator<? extends Cell>) _cells.values().spliterator();
     }
 
@@ -473,7 +531,7 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
      */
     public class FilledCellIterator implements Iterator<Cell>
     {
-        private final Iterator<SXSSFCell> iter = _cells.values().iterator();
+        private final Iterator<SXSSFCell> iter = _columns != null ? _columns.iterator() : _cells.values().iterator();
 
         @Override
         public boolean hasNext()
@@ -518,7 +576,7 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
         public Cell next() throws NoSuchElementException
         {
             if (hasNext()) {
-                return _cells.get(pos++);
+                return _columns != null ? _columns.get(pos++) : _cells.get(pos++);
             } else {
                 throw new NoSuchElementException();
             }
@@ -584,7 +642,7 @@ public class SXSSFRow implements Row, Comparable<SXSSFRow>
 
     @Override
     public int hashCode() {
-        return _cells.hashCode();
+        return _columns != null ? _rowNum : _cells.hashCode();
     }
 
     @Override
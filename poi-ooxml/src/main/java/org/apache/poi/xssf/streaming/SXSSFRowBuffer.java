@@ -0,0 +1,156 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Ring buffer of the rows of an append-only sheet in ascending row order.<p>
+ *
+ * The rows stay in their slot, when they are flushed, and are reset and reused for the rows,
+ * which are appended later on. So once the buffer has reached the size of the window,
+ * no more rows and cells are allocated.
+ *
+ * @see SXSSFWorkbook#setAppendOnlyRows(boolean)
+ */
+final class SXSSFRowBuffer {
+    private final SXSSFSheet _sheet;
+    private SXSSFRow[] _rows = new SXSSFRow[16];
+    // the slot of the first row
+    private int _head;
+    private int _size;
+
+    SXSSFRowBuffer(SXSSFSheet sheet) {
+        _sheet = sheet;
+    }
+
+    /**
+     * Appends a row, the row number must be greater than the number of the last row
+     */
+    SXSSFRow append(int rownum) {
+        if (_size == _rows.length) {
+            SXSSFRow[] rows = new SXSSFRow[_rows.length * 2];
+            for (int i = 0; i < _size; i++) {
+                rows[i] = _rows[slot(i)];
+            }
+            _rows = rows;
+            _head = 0;
+        }
+        int slot = slot(_size);
+        SXSSFRow row = _rows[slot];
+        if (row == null) {
+            row = new SXSSFRow(_sheet, rownum);
+            _rows[slot] = row;
+        } else {
+            row.reset(rownum);
+        }
+        _size++;
+        return row;
+    }
+
+    int size() {
+        return _size;
+    }
+
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    SXSSFRow first() {
+        return _size == 0 ? null : _rows[_head];
+    }
+
+    SXSSFRow last() {
+        return _size == 0 ? null : _rows[slot(_size - 1)];
+    }
+
+    /**
+     * Removes the first row after it was flushed, the row object is kept for reuse
+     */
+    void removeFirst() {
+        _head = slot(1);
+        _size--;
+    }
+
+    /**
+     * @return the row with the number or {@code null}, if it's not in the buffer
+     */
+    SXSSFRow get(int rownum) {
+        int low = 0;
+        int high = _size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            SXSSFRow row = _rows[slot(mid)];
+            int num = row.getRowNum();
+            if (num < rownum) {
+                low = mid + 1;
+            } else if (num > rownum) {
+                high = mid - 1;
+            } else {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the row from the buffer, the row object isn't reused
+     *
+     * @return {@code true}, if the row was part of the buffer
+     */
+    boolean remove(SXSSFRow row) {
+        for (int i = 0; i < _size; i++) {
+            if (_rows[slot(i)] == row) {
+                for (int j = i; j < _size - 1; j++) {
+                    _rows[slot(j)] = _rows[slot(j + 1)];
+                }
+                _rows[slot(_size - 1)] = null;
+                _size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return an iterator over the rows in ascending order
+     */
+    Iterator<SXSSFRow> iterator() {
+        return new Iterator<SXSSFRow>() {
+            private int _index;
+
+            @Override
+            public boolean hasNext() {
+                return _index < _size;
+            }
+
+            @Override
+            public SXSSFRow next() {
+                if (_index >= _size) {
+                    throw new NoSuchElementException();
+                }
+                return _rows[slot(_index++)];
+            }
+        };
+    }
+
+    private int slot(int index) {
+        return (_head + index) % _rows.length;
+    }
+}
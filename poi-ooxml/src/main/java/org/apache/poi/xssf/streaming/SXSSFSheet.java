@@ -29,6 +29,7 @@ import org.apache.poi.ss.util.CellAddress;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.PaneInformation;
 import org.apache.poi.ss.util.SheetUtil;
+import org.apache.poi.util.Beta;
 import org.apache.poi.util.Internal;
 import org.apache.poi.util.NotImplemented;
 import org.apache.poi.util.Removal;
@@ -48,6 +49,8 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     /*package*/ final XSSFSheet _sh;
     protected final SXSSFWorkbook _workbook;
     private final TreeMap<Integer,SXSSFRow> _rows = new TreeMap<>();
+    // the rows of an append-only sheet, which are used instead of _rows
+    private final SXSSFRowBuffer _rowBuffer;
     protected SheetDataWriter _writer;
     private int _randomAccessWindowSize = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
     protected AutoSizeColumnTracker _autoSizeColumnTracker;
@@ -59,6 +62,7 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     protected SXSSFSheet(SXSSFWorkbook workbook, XSSFSheet xSheet, int randomAccessWindowSize) {
         _workbook = workbook;
         _sh = xSheet;
+        _rowBuffer = null;
         calculateLeftAndRightMostColumns(xSheet);
         setRandomAccessWindowSize(randomAccessWindowSize);
         try {
@@ -100,6 +104,7 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     public SXSSFSheet(SXSSFWorkbook workbook, XSSFSheet xSheet) throws IOException {
         _workbook = workbook;
         _sh = xSheet;
+        _rowBuffer = workbook.isAppendOnlyRows() ? new SXSSFRowBuffer(this) : null;
         _writer = workbook.createSheetDataWriter();
         setRandomAccessWindowSize(_workbook.getRandomAccessWindowSize());
         try {
@@ -173,11 +178,21 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
                             "in the range [0," + _sh.getLastRowNum() + "] that is already written to disk.");
         }
 
-        SXSSFRow newRow = new SXSSFRow(this);
-        newRow.setRowNumWithoutUpdatingSheet(rownum);
-        _rows.put(rownum, newRow);
+        SXSSFRow newRow;
+        if (_rowBuffer != null) {
+            SXSSFRow lastRow = _rowBuffer.last();
+            if (lastRow != null && rownum <= lastRow.getRowNum()) {
+                throw new IllegalArgumentException("Rows of an append-only sheet must be created in ascending order, " +
+                        "row[" + rownum + "] can't follow row[" + lastRow.getRowNum() + "]");
+            }
+            newRow = _rowBuffer.append(rownum);
+        } else {
+            newRow = new SXSSFRow(this);
+            newRow.setRowNumWithoutUpdatingSheet(rownum);
+            _rows.put(rownum, newRow);
+        }
         allFlushed = false;
-        if(_randomAccessWindowSize >= 0 && _rows.size() > _randomAccessWindowSize) {
+        if(_randomAccessWindowSize >= 0 && getWindowRowCount() > _randomAccessWindowSize) {
             try {
                 flushRows(_randomAccessWindowSize);
             } catch (IOException ioe) {
@@ -198,6 +213,10 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
             throw new IllegalArgumentException("Specified row does not belong to this sheet");
         }
 
+        if (_rowBuffer != null) {
+            _rowBuffer.remove((SXSSFRow) row);
+            return;
+        }
         for(Iterator<Map.Entry<Integer, SXSSFRow>> iter = _rows.entrySet().iterator(); iter.hasNext();) {
             Map.Entry<Integer, SXSSFRow> entry = iter.next();
             if(entry.getValue() == row) {
@@ -216,7 +235,45 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
      */
     @Override
     public SXSSFRow getRow(int rownum) {
-        return _rows.get(rownum);
+        return _rowBuffer != null ? _rowBuffer.get(rownum) : _rows.get(rownum);
+    }
+
+    /**
+     * @return the number of rows in the window, which weren't flushed yet
+     */
+    private int getWindowRowCount() {
+        return _rowBuffer != null ? _rowBuffer.size() : _rows.size();
+    }
+
+    /**
+     * Reads a row back, which was already flushed to the temp file. The returned row can be changed
+     * until the workbook is written and replaces the flushed row in the sheet data.
+     * Repeated calls return the same row.
+     * <p>
+     * Rows of the current window are returned by {@link #getRow(int)}.
+     *
+     * @param rownum  row to get (0-based)
+     * @return the flushed row or {@code null}, if no row with this number was flushed
+     * @throws IllegalStateException if the workbook doesn't index the flushed rows
+     * @throws IOException if the temp file can't be read
+     * @see SXSSFWorkbook#setFlushedRowAccess(boolean)
+     * @since POI 5.2.6
+     */
+    @Beta
+    public SXSSFRow getFlushedRow(int rownum) throws IOException {
+        if (!(_writer instanceof IndexedSheetDataWriter)) {
+            throw new IllegalStateException("Flushed rows can only be read if the workbook was created with flushed row access");
+        }
+        return ((IndexedSheetDataWriter) _writer).readRow(this, rownum);
+    }
+
+    /**
+     * Serializes the flushed rows, which were read back, before the workbook is written
+     */
+    void serializeFlushedRows() throws IOException {
+        if (_writer instanceof IndexedSheetDataWriter) {
+            ((IndexedSheetDataWriter) _writer).serializeReadRows();
+        }
     }
 
     /**
@@ -226,7 +283,7 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
      */
     @Override
     public int getPhysicalNumberOfRows() {
-        return _rows.size() + _writer.getNumberOfFlushedRows();
+        return getWindowRowCount() + _writer.getNumberOfFlushedRows();
     }
 
     /**
@@ -239,6 +296,9 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
         if(_writer.getNumberOfFlushedRows() > 0) {
             return _writer.getLowestIndexOfFlushedRows();
         }
+        if (_rowBuffer != null) {
+            return _rowBuffer.isEmpty() ? -1 : _rowBuffer.first().getRowNum();
+        }
         return _rows.isEmpty() ? -1 : _rows.firstKey();
     }
 
@@ -249,6 +309,9 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
      */
     @Override
     public int getLastRowNum() {
+        if (_rowBuffer != null) {
+            return _rowBuffer.isEmpty() ? -1 : _rowBuffer.last().getRowNum();
+        }
         return _rows.isEmpty() ? -1 : _rows.lastKey();
     }
 
@@ -541,7 +604,8 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     @Override
     public Iterator<Row> rowIterator() {
         @SuppressWarnings("unchecked")
-        Iterator<Row> result = (Iterator<Row>)(Iterator<? extends Row>)_rows.values().iterator();
+        Iterator<Row> result = (Iterator<Row>)(Iterator<? extends Row>)
+            (_rowBuffer != null ? _rowBuffer.iterator() : _rows.values().iterator());
         return result;
     }
 
@@ -556,6 +620,10 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     @Override
     @SuppressWarnings("unchecked")
     public Spliterator<Row> spliterator() {
+        if (_rowBuffer != null) {
+            return Spliterators.spliterator(rowIterator(), _rowBuffer.size(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
         return (Spliterator<Row>)(Spliterator<? extends Row>) _rows.values().spliterator();
     }
 
@@ -1318,7 +1386,11 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     @Override
     public void groupRow(int fromRow, int toRow) {
         int maxLevelRow = -1;
-        for(SXSSFRow row : _rows.subMap(fromRow, toRow + 1).values()){
+        Iterable<SXSSFRow> rows = _rowBuffer != null ? _rowBuffer::iterator : _rows.subMap(fromRow, toRow + 1).values();
+        for(SXSSFRow row : rows){
+            if (row.getRowNum() < fromRow || row.getRowNum() > toRow) {
+                continue;
+            }
             final int level = row.getOutlineLevel() + 1;
             row.setOutlineLevel(level);
             maxLevelRow = Math.max(maxLevelRow, level);
@@ -1342,7 +1414,7 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
      * @param level     outline level (greater than 0)
      */
     public void setRowOutlineLevel(int rownum, int level) {
-        SXSSFRow row = _rows.get(rownum);
+        SXSSFRow row = getRow(rownum);
         row.setOutlineLevel(level);
         setWorksheetOutlineLevelRowIfNecessary((short) Math.min(Short.MAX_VALUE, level));
     }
@@ -1897,7 +1969,7 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
      * with lower index values are flushed first.
      */
     public void flushRows(int remaining) throws IOException {
-        while(_rows.size() > remaining) {
+        while(getWindowRowCount() > remaining) {
             flushOneRow();
         }
         if (remaining == 0) {
@@ -1924,6 +1996,19 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     }
 
     private void flushOneRow() throws IOException {
+        if (_rowBuffer != null) {
+            SXSSFRow row = _rowBuffer.first();
+            if (_autoSizeColumnTracker != null) {
+                _autoSizeColumnTracker.updateColumnWidths(row);
+            }
+            if (_writer != null) {
+                _writer.writeRow(row.getRowNum(), row);
+            }
+            // the row is reused by the rows created later on
+            _rowBuffer.removeFirst();
+            lastFlushedRowNumber = row.getRowNum();
+            return;
+        }
         Integer firstRowNum = _rows.firstKey();
         if (firstRowNum!=null) {
             int rowIndex = firstRowNum;
@@ -1941,6 +2026,9 @@ public class SXSSFSheet implements Sheet, OoxmlSheetExtensions {
     }
 
     public void changeRowNum(SXSSFRow row, int newRowNum) {
+        if (_rowBuffer != null) {
+            throw new IllegalStateException("The rows of an append-only sheet can't be renumbered");
+        }
         removeRow(row);
         row.setRowNumWithoutUpdatingSheet(newRowNum);
         _rows.put(newRowNum, row);
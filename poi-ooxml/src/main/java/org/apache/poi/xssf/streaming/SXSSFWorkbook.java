@@ -17,16 +17,20 @@
 
 package org.apache.poi.xssf.streaming;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,8 +38,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
-import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.Zip64Mode;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
@@ -43,7 +54,15 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.ooxml.POIXMLRelation;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.CompressionOptions;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.internal.ZipHelper;
+import org.apache.poi.openxml4j.util.ParallelDeflateOutputStream;
 import org.apache.poi.openxml4j.util.ZipArchiveThresholdInputStream;
 import org.apache.poi.openxml4j.util.ZipEntrySource;
 import org.apache.poi.openxml4j.util.ZipFileZipEntrySource;
@@ -71,7 +90,10 @@ import org.apache.poi.util.NotImplemented;
 import org.apache.poi.util.Removal;
 import org.apache.poi.util.TempFile;
 import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.TempFileSharedStringsTable;
 import org.apache.poi.xssf.usermodel.XSSFChartSheet;
+import org.apache.poi.xssf.usermodel.XSSFFactory;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
@@ -96,7 +118,9 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
  * memory, but is also known to produce documents that are incompatible with
  * some clients. With shared strings enabled all unique strings in the document
  * has to be kept in memory. Depending on your document content this could use
- * a lot more resources than with shared strings disabled.
+ * a lot more resources than with shared strings disabled. Use
+ * {@link #SXSSFWorkbook(int, boolean, boolean)} to keep the unique strings in a
+ * temp file instead.
  *
  * Carefully review your memory budget and compatibility needs before deciding
  * whether to enable shared strings or not.
@@ -128,6 +152,21 @@ public class SXSSFWorkbook implements Workbook {
      */
     private boolean _compressTmpFiles;
 
+    /**
+     * whether sheet data is serialized with the byte-level {@link Utf8SheetDataWriter}.
+     */
+    private boolean _useUtf8SheetDataWriter;
+
+    /**
+     * whether flushed rows can be read back from the temp files.
+     */
+    private boolean _flushedRowAccess;
+
+    /**
+     * whether the rows of new sheets are created in ascending order and kept in a ring buffer.
+     */
+    private boolean _appendOnlyRows;
+
     /**
      * shared string table - a cache of strings in this workbook
      */
@@ -140,6 +179,11 @@ public class SXSSFWorkbook implements Workbook {
 
     private boolean shouldCalculateSheetDimensions = true;
 
+    /**
+     * executor for generating and compressing the sheet entries concurrently, null for sequential writing
+     */
+    private ExecutorService _writeExecutor;
+
     /**
      * Construct a new workbook with default row window size
      */
@@ -275,6 +319,31 @@ public class SXSSFWorkbook implements Workbook {
         }
     }
 
+    /**
+     * Construct an empty workbook which uses a {@link TempFileSharedStringsTable}.
+     * <p>
+     * Unlike the in-memory {@link SharedStringsTable}, the temp file based table keeps the unique
+     * strings in a memory-mapped temp file and only holds a compact index on the heap, so memory usage
+     * does not grow with the number of unique strings. The temp file is removed when the workbook
+     * is closed.
+     * </p>
+     * <p>
+     * See {@link #SXSSFWorkbook(XSSFWorkbook, int, boolean, boolean)} for a description of the
+     * sliding window of rows.
+     * </p>
+     *
+     * @param rowAccessWindowSize the number of rows that are kept in memory until flushed out
+     * @param compressTmpFiles whether to use gzip compression for temporary files
+     * @param useTempFileSharedStringsTable whether to use a {@link TempFileSharedStringsTable},
+     *        if false inline strings are used like with {@link #SXSSFWorkbook(int)}
+     * @since POI 5.2.6
+     */
+    @Beta
+    public SXSSFWorkbook(int rowAccessWindowSize, boolean compressTmpFiles, boolean useTempFileSharedStringsTable) {
+        this(useTempFileSharedStringsTable ? new XSSFWorkbook(new TempFileSharedStringsFactory()) : null,
+            rowAccessWindowSize, compressTmpFiles, useTempFileSharedStringsTable);
+    }
+
     /**
      * Construct an empty workbook and specify the window for row access.
      * <p>
@@ -356,6 +425,136 @@ public class SXSSFWorkbook implements Workbook {
         _compressTmpFiles = compress;
     }
 
+    /**
+     * Get whether sheet data is serialized with the byte-level {@link Utf8SheetDataWriter}.
+     *
+     * @return whether the UTF-8 sheet data writer is used
+     * @since POI 5.2.6
+     */
+    @Beta
+    public boolean isUseUtf8SheetDataWriter() {
+        return _useUtf8SheetDataWriter;
+    }
+
+    /**
+     * Set whether sheet data is serialized with the byte-level {@link Utf8SheetDataWriter}.
+     * <p>
+     *     The UTF-8 writer encodes rows and cells directly into a reusable byte buffer instead of
+     *     going through a char based {@link Writer}, which avoids most of the per-cell allocations
+     *     and considerably reduces CPU usage for large exports.
+     * </p>
+     * <p>
+     *     Setting this option only affects subsequent <code>createSheet()</code> calls.
+     * </p>
+     * @param useUtf8SheetDataWriter whether to use the UTF-8 sheet data writer
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setUseUtf8SheetDataWriter(boolean useUtf8SheetDataWriter) {
+        _useUtf8SheetDataWriter = useUtf8SheetDataWriter;
+    }
+
+    /**
+     * Get whether flushed rows can be read back and changed via {@link SXSSFSheet#getFlushedRow(int)}.
+     *
+     * @return whether the flushed rows are indexed
+     * @since POI 5.2.6
+     */
+    @Beta
+    public boolean isFlushedRowAccess() {
+        return _flushedRowAccess;
+    }
+
+    /**
+     * Set whether flushed rows can be read back and changed via {@link SXSSFSheet#getFlushedRow(int)}.
+     * <p>
+     *     The sheet data is written with the UTF-8 writer into uncompressed temp files, which are indexed
+     *     by every 32th flushed row. A row, which is read back, stays in memory and replaces the flushed row
+     *     when the workbook is written, so only these rows add to the memory of the window.
+     * </p>
+     * <p>
+     *     Setting this option only affects subsequent <code>createSheet()</code> calls and takes
+     *     precedence over {@link #setCompressTempFiles(boolean)}.
+     * </p>
+     * @param flushedRowAccess whether to index the flushed rows
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setFlushedRowAccess(boolean flushedRowAccess) {
+        _flushedRowAccess = flushedRowAccess;
+    }
+
+    /**
+     * Get whether the rows of new sheets are created in ascending order and reused after they were flushed.
+     *
+     * @return whether the sheets are append-only
+     * @since POI 5.2.6
+     */
+    @Beta
+    public boolean isAppendOnlyRows() {
+        return _appendOnlyRows;
+    }
+
+    /**
+     * Set whether the rows of new sheets are created in ascending order and reused after they were flushed.
+     * <p>
+     *     The rows of the window are kept in a ring buffer and the numeric, string, boolean and error values
+     *     of their cells in primitive arrays. When a row is flushed, the row and cell objects are reset and
+     *     reused for the rows created later on, so writing a sheet row by row allocates hardly any objects.
+     * </p>
+     * <p>
+     *     Rows must be created in strictly ascending order and can't be renumbered. References to rows and
+     *     cells must not be used after the row was flushed, as they belong to a following row by then.
+     * </p>
+     * <p>
+     *     Setting this option only affects subsequent <code>createSheet()</code> calls.
+     * </p>
+     * @param appendOnlyRows whether the rows of new sheets are append-only
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setAppendOnlyRows(boolean appendOnlyRows) {
+        _appendOnlyRows = appendOnlyRows;
+    }
+
+    /**
+     * Get the executor which generates and compresses the sheet entries concurrently.
+     *
+     * @return the executor, or <code>null</code> if the sheets are written sequentially
+     * @since POI 5.2.6
+     */
+    @Beta
+    public ExecutorService getWriteExecutor() {
+        return _writeExecutor;
+    }
+
+    /**
+     * Set an executor to generate and compress the sheet entries concurrently when the workbook is written.
+     * <p>
+     *     Each worksheet entry is deflated by a separate task into a temp file, afterwards the compressed
+     *     entries are copied into the zip stream in the same order as with sequential writing. The output
+     *     therefore doesn't depend on the scheduling of the tasks.
+     * </p>
+     * <p>
+     *     For a {@link DeferredSXSSFWorkbook} the row generators of the sheets run concurrently as well,
+     *     so they must not modify shared workbook state like styles, fonts or names.
+     * </p>
+     * <p>
+     *     The executor is not shut down by this workbook.
+     * </p>
+     * <p>
+     *     Without a write executor, the blocks of large sheet entries can be compressed in parallel instead,
+     *     see {@link OPCPackage#setParallelDeflateExecutor(ExecutorService)} of the package of
+     *     {@link #getXSSFWorkbook()}.
+     * </p>
+     * @param executor the executor, or <code>null</code> (the default) to write the sheets sequentially
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setWriteExecutor(ExecutorService executor) {
+        _writeExecutor = executor;
+    }
+
     /**
      * @param shouldCalculateSheetDimensions defaults to <code>true</code>, set to <code>false</code> if
      *                                       the calculated dimensions are causing trouble
@@ -380,6 +579,14 @@ public class SXSSFWorkbook implements Workbook {
     }
 
     protected SheetDataWriter createSheetDataWriter() throws IOException {
+        if(_flushedRowAccess) {
+            return new IndexedSheetDataWriter(_sharedStringSource);
+        }
+
+        if(_useUtf8SheetDataWriter) {
+            return new Utf8SheetDataWriter(_sharedStringSource, _compressTmpFiles);
+        }
+
         if(_compressTmpFiles) {
             return new GZIPSheetDataWriter(_sharedStringSource);
         }
@@ -420,24 +627,52 @@ public class SXSSFWorkbook implements Workbook {
     }
 
     protected void injectData(ZipEntrySource zipEntrySource, OutputStream out) throws IOException {
-        ArchiveOutputStream zos = createArchiveOutputStream(out);
+        ZipArchiveOutputStream zos = createArchiveOutputStream(out);
+        Map<String, Future<DeflatedEntry>> deflatedSheets = new HashMap<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        // the blocks are only compressed in parallel, if the sheets aren't, as the sheet tasks would wait for the block tasks
+        ExecutorService deflateExecutor = (_writeExecutor == null) ? _wb.getPackage().getParallelDeflateExecutor() : null;
+        CompressionOptions options = _wb.getPackage().getCompressionOptions();
+        Map<String, String> contentTypes = getContentTypesByEntryName(options);
+        // the Zip64 stream of SXSSF can't store entries
+        boolean storedSupported = !(zos instanceof OpcZipArchiveOutputStream);
+        int sheetLevel = getCompressionLevel(options, XSSFRelation.WORKSHEET.getContentType(), storedSupported);
         try {
+            if (options != null) {
+                zos.setLevel(options.getDefaultLevel());
+            }
+            if (_writeExecutor != null) {
+                startDeflatingSheets(zipEntrySource, deflatedSheets, failed, sheetLevel);
+            }
             Enumeration<? extends ZipArchiveEntry> en = zipEntrySource.getEntries();
             while (en.hasMoreElements()) {
                 ZipArchiveEntry ze = en.nextElement();
+                Future<DeflatedEntry> future = deflatedSheets.get(ze.getName());
+                if (future != null) {
+                    addDeflatedEntry(zos, ze, waitForDeflatedEntry(ze, future));
+                    continue;
+                }
+                XSSFSheet xSheet = getSheetFromZipEntryName(ze.getName());
+                // See bug 56557, we should not inject data into the special ChartSheets
+                boolean isWorksheet = xSheet != null && !(xSheet instanceof XSSFChartSheet);
+                if (isWorksheet && (deflateExecutor != null || sheetLevel == CompressionOptions.STORED)) {
+                    addBufferedSheet(zipEntrySource, zos, ze, xSheet, deflateExecutor, sheetLevel);
+                    continue;
+                }
+                int level = isWorksheet ? sheetLevel : getCompressionLevel(options, contentTypes.get(ze.getName()), storedSupported);
                 ZipArchiveEntry zeOut = new ZipArchiveEntry(ze.getName());
-                if (ze.getSize() >= 0) zeOut.setSize(ze.getSize());
                 if (ze.getTime() >= 0) zeOut.setTime(ze.getTime());
+                if (level == CompressionOptions.STORED) {
+                    ZipHelper.putStoredEntry(zos, zeOut, () -> openTemplateEntry(zipEntrySource, ze));
+                    continue;
+                }
+                if (ze.getSize() >= 0) zeOut.setSize(ze.getSize());
+                if (options != null) {
+                    zos.setLevel(level);
+                }
                 zos.putArchiveEntry(zeOut);
-                try (final InputStream is = zipEntrySource.getInputStream(ze)) {
-                    if (is instanceof ZipArchiveThresholdInputStream) {
-                        // #59743 - disable Threshold handling for SXSSF copy
-                        // as users tend to put too much repetitive data in when using SXSSF :)
-                        ((ZipArchiveThresholdInputStream)is).setGuardState(false);
-                    }
-                    XSSFSheet xSheet = getSheetFromZipEntryName(ze.getName());
-                    // See bug 56557, we should not inject data into the special ChartSheets
-                    if (xSheet != null && !(xSheet instanceof XSSFChartSheet)) {
+                try (final InputStream is = openTemplateEntry(zipEntrySource, ze)) {
+                    if (isWorksheet) {
                         SXSSFSheet sxSheet = getSXSSFSheet(xSheet);
                         copyStreamAndInjectWorksheet(is, zos, createSheetInjector(sxSheet));
                     } else {
@@ -445,11 +680,219 @@ public class SXSSFWorkbook implements Workbook {
                     }
                 } finally {
                     zos.closeArchiveEntry();
+                    if (options != null) {
+                        zos.setLevel(options.getDefaultLevel());
+                    }
                 }
             }
+        } catch (IOException | RuntimeException e) {
+            failed.set(true);
+            throw e;
         } finally {
-            zos.finish();
-            zipEntrySource.close();
+            try {
+                zos.finish();
+                zipEntrySource.close();
+            } finally {
+                discardDeflatedEntries(deflatedSheets.values());
+            }
+        }
+    }
+
+    private static InputStream openTemplateEntry(ZipEntrySource zipEntrySource, ZipArchiveEntry ze) throws IOException {
+        InputStream is = zipEntrySource.getInputStream(ze);
+        if (is instanceof ZipArchiveThresholdInputStream) {
+            // #59743 - disable Threshold handling for SXSSF copy
+            // as users tend to put too much repetitive data in when using SXSSF :)
+            ((ZipArchiveThresholdInputStream)is).setGuardState(false);
+        }
+        return is;
+    }
+
+    /**
+     * @return the content types of the package parts by their zip entry name, empty if there are no compression options
+     */
+    private Map<String, String> getContentTypesByEntryName(CompressionOptions options) throws IOException {
+        Map<String, String> contentTypes = new HashMap<>();
+        if (options != null) {
+            try {
+                for (PackagePart part : _wb.getPackage().getParts()) {
+                    contentTypes.put(ZipHelper.getZipItemNameFromOPCName(part.getPartName().getName()), part.getContentType());
+                }
+            } catch (InvalidFormatException e) {
+                throw new IOException(e);
+            }
+        }
+        return contentTypes;
+    }
+
+    private static int getCompressionLevel(CompressionOptions options, String contentType, boolean storedSupported) {
+        if (options == null) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        int level = options.getLevel(contentType);
+        return (level == CompressionOptions.STORED && !storedSupported) ? Deflater.NO_COMPRESSION : level;
+    }
+
+    /**
+     * Submits a task for each worksheet, which generates the sheet entry and deflates it into a temp file
+     */
+    private void startDeflatingSheets(ZipEntrySource zipEntrySource, Map<String, Future<DeflatedEntry>> deflatedSheets,
+                                      AtomicBoolean failed, int level) throws IOException {
+        Enumeration<? extends ZipArchiveEntry> en = zipEntrySource.getEntries();
+        while (en.hasMoreElements()) {
+            ZipArchiveEntry ze = en.nextElement();
+            XSSFSheet xSheet = getSheetFromZipEntryName(ze.getName());
+            if (xSheet == null || xSheet instanceof XSSFChartSheet) {
+                continue;
+            }
+            // the template entries are read upfront, as the zip sources aren't meant to be shared between threads
+            byte[] template;
+            try (final InputStream is = openTemplateEntry(zipEntrySource, ze);
+                 UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+                IOUtils.copy(is, bos);
+                template = bos.toByteArray();
+            }
+            ISheetInjector injector = createSheetInjector(getSXSSFSheet(xSheet));
+            deflatedSheets.put(ze.getName(), _writeExecutor.submit(() ->
+                failed.get() ? null : DeflatedEntry.deflate(new ByteArrayInputStream(template), injector, null, level)));
+        }
+    }
+
+    /**
+     * Generates a worksheet entry into a temp file, as the zip stream needs the CRC and the size
+     * before the data if the blocks are compressed in parallel or the entry is stored
+     */
+    private void addBufferedSheet(ZipEntrySource zipEntrySource, ZipArchiveOutputStream zos, ZipArchiveEntry ze,
+                                  XSSFSheet xSheet, ExecutorService deflateExecutor, int level) throws IOException {
+        DeflatedEntry deflated;
+        try (final InputStream is = openTemplateEntry(zipEntrySource, ze)) {
+            deflated = DeflatedEntry.deflate(is, createSheetInjector(getSXSSFSheet(xSheet)), deflateExecutor, level);
+        }
+        try {
+            addDeflatedEntry(zos, ze, deflated);
+        } finally {
+            deflated.delete();
+        }
+    }
+
+    private static DeflatedEntry waitForDeflatedEntry(ZipArchiveEntry ze, Future<DeflatedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for sheet entry " + ze.getName());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static void addDeflatedEntry(ZipArchiveOutputStream zos, ZipArchiveEntry ze, DeflatedEntry deflated) throws IOException {
+        ZipArchiveEntry zeOut = new ZipArchiveEntry(ze.getName());
+        zeOut.setMethod(deflated.stored ? ZipArchiveEntry.STORED : ZipArchiveEntry.DEFLATED);
+        zeOut.setCrc(deflated.crc);
+        zeOut.setSize(deflated.size);
+        zeOut.setCompressedSize(deflated.compressedSize);
+        if (ze.getTime() >= 0) zeOut.setTime(ze.getTime());
+        try (InputStream is = Files.newInputStream(deflated.file.toPath())) {
+            zos.addRawArchiveEntry(zeOut, is);
+        }
+    }
+
+    /**
+     * Waits for the remaining tasks and deletes their temp files
+     */
+    private static void discardDeflatedEntries(Collection<Future<DeflatedEntry>> futures) {
+        for (Future<DeflatedEntry> future : futures) {
+            try {
+                DeflatedEntry deflated = future.get();
+                if (deflated != null) {
+                    deflated.delete();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // already reported by addDeflatedEntry, or the write failed before
+                LOG.atDebug().withThrowable(e.getCause()).log("Generating a sheet entry failed");
+            }
+        }
+    }
+
+    /**
+     * A sheet entry which was compressed with a raw deflater into a temp file
+     */
+    private static final class DeflatedEntry {
+        private final File file;
+        private final boolean stored;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+
+        private DeflatedEntry(File file, boolean stored, long crc, long size, long compressedSize) {
+            this.file = file;
+            this.stored = stored;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+        }
+
+        /**
+         * @param blockExecutor the executor for compressing blocks of the entry in parallel,
+         *      or {@code null} to compress the entry on the calling thread
+         * @param level the deflate level, or {@link CompressionOptions#STORED} to write the entry uncompressed
+         */
+        static DeflatedEntry deflate(InputStream template, ISheetInjector injector, ExecutorService blockExecutor, int level)
+                throws IOException {
+            File file = TempFile.createTempFile("poi-sxssf-sheet-entry", ".deflate");
+            try {
+                if (level == CompressionOptions.STORED) {
+                    CRC32 crc = new CRC32();
+                    try (OutputStream fos = Files.newOutputStream(file.toPath());
+                         CheckedOutputStream out = new CheckedOutputStream(new BufferedOutputStream(fos, 65536), crc)) {
+                        copyStreamAndInjectWorksheet(template, out, injector);
+                    }
+                    return new DeflatedEntry(file, true, crc.getValue(), file.length(), file.length());
+                }
+                if (blockExecutor != null) {
+                    try (OutputStream fos = Files.newOutputStream(file.toPath());
+                         ParallelDeflateOutputStream out = new ParallelDeflateOutputStream(fos, blockExecutor, level,
+                             ParallelDeflateOutputStream.DEFAULT_BLOCK_SIZE)) {
+                        copyStreamAndInjectWorksheet(template, out, injector);
+                        out.finish();
+                        return new DeflatedEntry(file, false, out.getCrc(), out.getBytesRead(), out.getBytesWritten());
+                    }
+                }
+                Deflater deflater = new Deflater(level, true);
+                try {
+                    CRC32 crc = new CRC32();
+                    try (OutputStream fos = Files.newOutputStream(file.toPath());
+                         CheckedOutputStream out = new CheckedOutputStream(new DeflaterOutputStream(fos, deflater, 65536), crc)) {
+                        copyStreamAndInjectWorksheet(template, out, injector);
+                    }
+                    return new DeflatedEntry(file, false, crc.getValue(), deflater.getBytesRead(), deflater.getBytesWritten());
+                } finally {
+                    deflater.end();
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                if (!file.delete()) {
+                    LOG.atWarn().log("Could not delete temporary file {}", file);
+                }
+                throw e;
+            }
+        }
+
+        void delete() {
+            if (!file.delete()) {
+                LOG.atWarn().log("Could not delete temporary file {}", file);
+            }
         }
     }
 
@@ -995,6 +1438,8 @@ public class SXSSFWorkbook implements Workbook {
         for (SXSSFSheet sheet : _xFromSxHash.values()) {
             sheet.deriveDimension();
             sheet.flushRows();
+            // the strings of changed flushed rows must be in the shared strings table before it's written
+            sheet.serializeFlushedRows();
         }
     }
 
@@ -1324,4 +1769,22 @@ public class SXSSFWorkbook implements Workbook {
     public void setCellReferenceType(CellReferenceType cellReferenceType) {
         getXSSFWorkbook().setCellReferenceType(cellReferenceType);
     }
+
+    /**
+     * Creates a {@link TempFileSharedStringsTable} instead of the default in-memory
+     * shared strings table for new workbooks.
+     */
+    private static final class TempFileSharedStringsFactory extends XSSFFactory {
+        @Override
+        public POIXMLDocumentPart newDocumentPart(POIXMLRelation descriptor) {
+            if (descriptor == XSSFRelation.SHARED_STRINGS) {
+                try {
+                    return new TempFileSharedStringsTable();
+                } catch (IOException e) {
+                    throw new POIXMLException("Failed to create temp file for shared strings", e);
+                }
+            }
+            return super.newDocumentPart(descriptor);
+        }
+    }
 }
@@ -36,7 +36,6 @@ import java.util.PrimitiveIterator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.ss.usermodel.RichTextString;
@@ -85,6 +84,17 @@ public class SheetDataWriter implements Closeable {
         this._sharedStringSource = sharedStringsTable;
     }
 
+    /**
+     * For subclasses, which write binary records to the temp file themselves. There's no {@link #_out} writer,
+     * so the subclass needs to override all methods, which write to it.
+     *
+     * @param fd the temp file, which is written by the subclass
+     */
+    SheetDataWriter(File fd) {
+        _fd = fd;
+        _out = null;
+    }
+
     /**
      * Create a temp file to write sheet data.
      * By default, temp files are created in the default temporary-file directory
@@ -218,6 +228,19 @@ public class SheetDataWriter implements Closeable {
         endRow();
     }
 
+    /**
+     * Returns the index of the cell style without creating the style objects of append-only rows
+     */
+    static int getStyleIndex(Cell cell) {
+        if (cell instanceof SXSSFCell) {
+            return ((SXSSFCell) cell).getCellStyleIndex();
+        }
+        // need to convert the short to unsigned short as the indexes can be up to 64k
+        // ideally we would use int for this index, but that would need changes to some more
+        // APIs
+        return cell.getCellStyle().getIndex() & 0xffff;
+    }
+
     void beginRow(int rownum, SXSSFRow row) throws IOException {
         _out.write("<row");
         writeAttribute("r", Integer.toString(rownum + 1));
@@ -257,12 +280,9 @@ public class SheetDataWriter implements Closeable {
         String ref = new CellReference(_rownum, columnIndex).formatAsString();
         _out.write("<c");
         writeAttribute("r", ref);
-        CellStyle cellStyle = cell.getCellStyle();
-        if (cellStyle.getIndex() != 0) {
-            // need to convert the short to unsigned short as the indexes can be up to 64k
-            // ideally we would use int for this index, but that would need changes to some more
-            // APIs
-            writeAttribute("s", Integer.toString(cellStyle.getIndex() & 0xffff));
+        int styleIndex = getStyleIndex(cell);
+        if (styleIndex != 0) {
+            writeAttribute("s", Integer.toString(styleIndex));
         }
         CellType cellType = cell.getCellType();
         switch (cellType) {
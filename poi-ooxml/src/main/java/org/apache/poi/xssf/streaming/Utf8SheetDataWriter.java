@@ -0,0 +1,611 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.Internal;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.model.SharedStringsTable;
+
+/**
+ * Sheet writer that serializes rows and cells as UTF-8 bytes straight into a reusable buffer.
+ * <p>
+ * The output is equivalent to {@link SheetDataWriter}, but cell references, numbers and
+ * attribute values are encoded without creating intermediate Strings, and the
+ * {@link java.io.OutputStreamWriter} char-to-byte pipeline is bypassed. Column letters are
+ * taken from a precomputed table and numeric values are written in their shortest
+ * round-trip form where this can be determined cheaply.
+ * <p>
+ * Use {@link SXSSFWorkbook#setUseUtf8SheetDataWriter(boolean)} to enable it.
+ *
+ * @since 5.2.6
+ */
+@Beta
+public class Utf8SheetDataWriter extends SheetDataWriter {
+    private static final int MAX_COLUMNS = SpreadsheetVersion.EXCEL2007.getMaxColumns();
+
+    /** the column letters for all possible columns, 3 bytes reserved per column */
+    private static final byte[] COLUMN_LETTERS = new byte[MAX_COLUMNS * 3];
+    private static final byte[] COLUMN_LETTERS_LENGTH = new byte[MAX_COLUMNS];
+
+    static {
+        for (int col = 0; col < MAX_COLUMNS; col++) {
+            int len = 0;
+            byte[] tmp = new byte[3];
+            int excelColNum = col + 1;
+            while (excelColNum > 0) {
+                int thisPart = excelColNum % 26;
+                if (thisPart == 0) {
+                    thisPart = 26;
+                }
+                excelColNum = (excelColNum - thisPart) / 26;
+                tmp[len++] = (byte) ('A' + thisPart - 1);
+            }
+            for (int i = 0; i < len; i++) {
+                COLUMN_LETTERS[col * 3 + i] = tmp[len - 1 - i];
+            }
+            COLUMN_LETTERS_LENGTH[col] = (byte) len;
+        }
+    }
+
+    /** powers of ten that are exactly representable as double */
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** 2^53 - largest range in which all integers are exactly representable */
+    private static final double MAX_EXACT_INTEGER = 9007199254740992d;
+
+    private static final byte[] ROW_START = ascii("<row r=\"");
+    private static final byte[] ROW_END = ascii("</row>\n");
+    private static final byte[] ROW_STYLE_ATTR = ascii(" s=\"");
+    private static final byte[] CELL_START = ascii("<c r=\"");
+    private static final byte[] CELL_END = ascii("</c>");
+    private static final byte[] STYLE_ATTR = ascii("\" s=\"");
+    private static final byte[] TYPE_NUMERIC = ascii("\" t=\"n\"><v>");
+    private static final byte[] TYPE_SHARED_STRING = ascii("\" t=\"s\"><v>");
+    private static final byte[] TYPE_BOOLEAN = ascii("\" t=\"b\"><v>");
+    private static final byte[] TYPE_ERROR = ascii("\" t=\"e\"><v>");
+    private static final byte[] TYPE_INLINE_STRING = ascii("\" t=\"inlineStr\"><is><t");
+    private static final byte[] VALUE_END = ascii("</v>");
+    private static final byte[] INLINE_STRING_END = ascii("</t></is>");
+    private static final byte[] PRESERVE_SPACE = ascii(" xml:space=\"preserve\"");
+    private static final byte[] FORMULA_TYPE_NUMERIC = ascii("\" t=\"n\"><f>");
+    private static final byte[] FORMULA_TYPE_STRING = ascii("\" t=\"str\"><f>");
+    private static final byte[] FORMULA_TYPE_BOOLEAN = ascii("\" t=\"b\"><f>");
+    private static final byte[] FORMULA_TYPE_ERROR = ascii("\" t=\"e\"><f>");
+    private static final byte[] FORMULA_START = ascii("\"><f>");
+    private static final byte[] FORMULA_END = ascii("</f>");
+    private static final byte[] VALUE_START = ascii("<v>");
+    private static final byte[] BLANK_END = ascii("\">");
+
+    private final File _utf8File;
+    private final boolean _compress;
+    private final Utf8Writer _utf8;
+    private final SharedStringsTable _sharedStrings;
+    private int _rownum;
+
+    public Utf8SheetDataWriter() throws IOException {
+        this(null, false);
+    }
+
+    /**
+     * @param sharedStringsTable the shared strings table, or null if inline text is used
+     * @param compressTmpFile whether to gzip the temporary file
+     */
+    public Utf8SheetDataWriter(SharedStringsTable sharedStringsTable, boolean compressTmpFile) throws IOException {
+        this(createTempFile(compressTmpFile), sharedStringsTable, compressTmpFile);
+    }
+
+    private Utf8SheetDataWriter(File fd, SharedStringsTable sharedStringsTable, boolean compressTmpFile) throws IOException {
+        this(fd, createUtf8Writer(fd, compressTmpFile), sharedStringsTable, compressTmpFile);
+    }
+
+    /**
+     * Creates a writer for rows, which aren't written to a temp file
+     *
+     * @param os the stream receiving the rows
+     * @param sharedStringsTable the shared strings table, or null if inline text is used
+     */
+    Utf8SheetDataWriter(OutputStream os, SharedStringsTable sharedStringsTable) throws IOException {
+        this(null, new Utf8Writer(os), sharedStringsTable, false);
+    }
+
+    private Utf8SheetDataWriter(File fd, Utf8Writer writer, SharedStringsTable sharedStringsTable, boolean compressTmpFile)
+            throws IOException {
+        super(writer);
+        _utf8File = fd;
+        _compress = compressTmpFile;
+        _utf8 = writer;
+        _sharedStrings = sharedStringsTable;
+    }
+
+    private static File createTempFile(boolean compress) throws IOException {
+        return compress
+            ? TempFile.createTempFile("poi-sxssf-sheet-xml", ".gz")
+            : TempFile.createTempFile("poi-sxssf-sheet", ".xml");
+    }
+
+    private static Utf8Writer createUtf8Writer(File fd, boolean compress) throws IOException {
+        FileOutputStream fos = new FileOutputStream(fd);
+        try {
+            return new Utf8Writer(compress ? new GZIPOutputStream(fos) : fos);
+        } catch (IOException e) {
+            fos.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected File getTempFile() {
+        return _utf8File;
+    }
+
+    @Override
+    protected InputStream decorateInputStream(FileInputStream fis) throws IOException {
+        return _compress ? new GZIPInputStream(fis) : fis;
+    }
+
+    @Override
+    void beginRow(int rownum, SXSSFRow row) throws IOException {
+        Utf8Writer out = _utf8;
+        out.writeAscii(ROW_START);
+        out.writeInt(rownum + 1);
+        out.writeByte('"');
+        if (row.hasCustomHeight()) {
+            writeAttribute("customHeight", "1");
+            writeAttribute("ht", Float.toString(row.getHeightInPoints()));
+        }
+        if (row.getZeroHeight()) {
+            writeAttribute("hidden", "1");
+        }
+        if (row.isFormatted()) {
+            out.writeAscii(ROW_STYLE_ATTR);
+            out.writeInt(row.getRowStyleIndex());
+            out.writeByte('"');
+            writeAttribute("customFormat", "1");
+        }
+        if (row.getOutlineLevel() != 0) {
+            writeAttribute("outlineLevel", Integer.toString(row.getOutlineLevel()));
+        }
+        if (row.getHidden() != null) {
+            writeAttribute("hidden", row.getHidden() ? "1" : "0");
+        }
+        if (row.getCollapsed() != null) {
+            writeAttribute("collapsed", row.getCollapsed() ? "1" : "0");
+        }
+        out.writeByte('>');
+        out.writeByte('\n');
+        _rownum = rownum;
+    }
+
+    @Override
+    void endRow() throws IOException {
+        _utf8.writeAscii(ROW_END);
+    }
+
+    @Override
+    public void writeCell(int columnIndex, Cell cell) throws IOException {
+        if (cell == null) {
+            return;
+        }
+        Utf8Writer out = _utf8;
+        out.writeAscii(CELL_START);
+        writeCellReference(columnIndex, _rownum);
+        int styleIndex = getStyleIndex(cell);
+        if (styleIndex != 0) {
+            out.writeAscii(STYLE_ATTR);
+            out.writeInt(styleIndex);
+        }
+        CellType cellType = cell.getCellType();
+        switch (cellType) {
+            case BLANK:
+                out.writeAscii(BLANK_END);
+                break;
+            case FORMULA:
+                writeFormulaCell(cell);
+                break;
+            case STRING:
+                if (_sharedStrings != null) {
+                    int sRef = _sharedStrings.addSharedStringItem(cell.getRichStringCellValue());
+                    out.writeAscii(TYPE_SHARED_STRING);
+                    out.writeInt(sRef);
+                    out.writeAscii(VALUE_END);
+                } else {
+                    String value = cell.getStringCellValue();
+                    out.writeAscii(TYPE_INLINE_STRING);
+                    if (hasLeadingTrailingSpaces(value)) {
+                        out.writeAscii(PRESERVE_SPACE);
+                    }
+                    out.writeByte('>');
+                    outputEscapedString(value);
+                    out.writeAscii(INLINE_STRING_END);
+                }
+                break;
+            case NUMERIC:
+                out.writeAscii(TYPE_NUMERIC);
+                writeDouble(cell.getNumericCellValue());
+                out.writeAscii(VALUE_END);
+                break;
+            case BOOLEAN:
+                out.writeAscii(TYPE_BOOLEAN);
+                out.writeByte(cell.getBooleanCellValue() ? '1' : '0');
+                out.writeAscii(VALUE_END);
+                break;
+            case ERROR:
+                out.writeAscii(TYPE_ERROR);
+                outputEscapedString(FormulaError.forInt(cell.getErrorCellValue()).getString());
+                out.writeAscii(VALUE_END);
+                break;
+            default:
+                throw new IllegalStateException("Invalid cell type: " + cellType);
+        }
+        out.writeAscii(CELL_END);
+    }
+
+    private void writeFormulaCell(Cell cell) throws IOException {
+        Utf8Writer out = _utf8;
+        CellType resultType = cell.getCachedFormulaResultType();
+        switch (resultType) {
+            case NUMERIC:
+                out.writeAscii(FORMULA_TYPE_NUMERIC);
+                break;
+            case STRING:
+                out.writeAscii(FORMULA_TYPE_STRING);
+                break;
+            case BOOLEAN:
+                out.writeAscii(FORMULA_TYPE_BOOLEAN);
+                break;
+            case ERROR:
+                out.writeAscii(FORMULA_TYPE_ERROR);
+                break;
+            default:
+                out.writeAscii(FORMULA_START);
+                break;
+        }
+        outputEscapedString(cell.getCellFormula());
+        out.writeAscii(FORMULA_END);
+        switch (resultType) {
+            case NUMERIC:
+                double nval = cell.getNumericCellValue();
+                if (!Double.isNaN(nval)) {
+                    out.writeAscii(VALUE_START);
+                    writeDouble(nval);
+                    out.writeAscii(VALUE_END);
+                }
+                break;
+            case STRING:
+                String value = cell.getStringCellValue();
+                if (value != null && !value.isEmpty()) {
+                    out.writeAscii(VALUE_START);
+                    outputEscapedString(value);
+                    out.writeAscii(VALUE_END);
+                }
+                break;
+            case BOOLEAN:
+                out.writeAscii(VALUE_START);
+                out.writeByte(cell.getBooleanCellValue() ? '1' : '0');
+                out.writeAscii(VALUE_END);
+                break;
+            case ERROR:
+                out.writeAscii(VALUE_START);
+                outputEscapedString(FormulaError.forInt(cell.getErrorCellValue()).getString());
+                out.writeAscii(VALUE_END);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeCellReference(int columnIndex, int rowIndex) throws IOException {
+        _utf8.writeAscii(COLUMN_LETTERS, columnIndex * 3, COLUMN_LETTERS_LENGTH[columnIndex]);
+        _utf8.writeInt(rowIndex + 1);
+    }
+
+    private void writeAttribute(String name, String value) throws IOException {
+        _utf8.writeByte(' ');
+        _utf8.write(name);
+        _utf8.writeByte('=');
+        _utf8.writeByte('"');
+        _utf8.write(value);
+        _utf8.writeByte('"');
+    }
+
+    /**
+     * Writes the shortest plain decimal representation which parses back to the same double value.
+     * Falls back to {@link Double#toString(double)} for very small or very large values and for
+     * values which need more than 17 significant digits.
+     */
+    void writeDouble(double value) throws IOException {
+        if (value == 0 && Double.doubleToRawLongBits(value) == 0) {
+            _utf8.writeByte('0');
+            return;
+        }
+        double abs = Math.abs(value);
+        if (abs < MAX_EXACT_INTEGER && abs >= 1e-3) {
+            for (int scale = 0; scale < POW10.length; scale++) {
+                double scaled = abs * POW10[scale];
+                if (scaled >= MAX_EXACT_INTEGER) {
+                    break;
+                }
+                long mantissa = Math.round(scaled);
+                // both operands are exact, so the division is correctly rounded like Double.parseDouble()
+                if (mantissa / POW10[scale] == abs) {
+                    if (value < 0) {
+                        _utf8.writeByte('-');
+                    }
+                    _utf8.writeDecimal(mantissa, scale);
+                    return;
+                }
+            }
+        }
+        _utf8.write(Double.toString(value));
+    }
+
+    @Override
+    protected void outputEscapedString(String s) throws IOException {
+        if (s == null || s.isEmpty()) {
+            return;
+        }
+        final Utf8Writer out = _utf8;
+        final int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '<':
+                    out.write("&lt;");
+                    break;
+                case '>':
+                    out.write("&gt;");
+                    break;
+                case '&':
+                    out.write("&amp;");
+                    break;
+                case '\"':
+                    out.write("&quot;");
+                    break;
+                // Special characters
+                case '\n':
+                    out.write("&#xa;");
+                    break;
+                case '\r':
+                    out.write("&#xd;");
+                    break;
+                case '\t':
+                    out.write("&#x9;");
+                    break;
+                case '\u00A0': // NO-BREAK SPACE
+                    out.write("&#xa0;");
+                    break;
+                default:
+                    if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        out.writeCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+                    } else if (replaceWithQuestionMark(c) || Character.isSurrogate(c)) {
+                        // XmlBeans silently replaces all ISO control characters ( < 32) with question marks.
+                        // the same rule applies to "not a character" symbols and unpaired surrogates,
+                        // which the JDK encoder replaces as well.
+                        out.writeByte('?');
+                    } else {
+                        out.writeCodePoint(c);
+                    }
+                    break;
+            }
+        }
+    }
+
+    @Override
+    boolean dispose() throws IOException {
+        final boolean ret;
+        try {
+            _out.close();
+        } finally {
+            ret = _utf8File.delete();
+        }
+        return ret;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * A {@link Writer} which encodes UTF-8 into a reusable byte buffer and additionally
+     * offers methods to append ASCII bytes and numbers without creating Strings.
+     */
+    @Internal
+    static final class Utf8Writer extends Writer {
+        private final OutputStream _os;
+        private final byte[] _buf = new byte[65536];
+        private final byte[] _digits = new byte[20];
+        private int _count;
+        /** the number of bytes written to the stream */
+        private long _written;
+        private char _pendingHighSurrogate;
+
+        Utf8Writer(OutputStream os) {
+            _os = os;
+        }
+
+        void writeByte(int b) throws IOException {
+            if (_count == _buf.length) {
+                flushBuffer();
+            }
+            _buf[_count++] = (byte) b;
+        }
+
+        void writeAscii(byte[] bytes) throws IOException {
+            writeAscii(bytes, 0, bytes.length);
+        }
+
+        void writeAscii(byte[] bytes, int off, int len) throws IOException {
+            if (_count + len > _buf.length) {
+                flushBuffer();
+                if (len > _buf.length) {
+                    _os.write(bytes, off, len);
+                    _written += len;
+                    return;
+                }
+            }
+            System.arraycopy(bytes, off, _buf, _count, len);
+            _count += len;
+        }
+
+        void writeInt(int value) throws IOException {
+            writeDecimal(value, 0);
+        }
+
+        /**
+         * Writes {@code unscaled / 10^scale} in plain decimal notation
+         */
+        void writeDecimal(long unscaled, int scale) throws IOException {
+            if (unscaled < 0) {
+                writeByte('-');
+                unscaled = -unscaled;
+            }
+            // strip trailing zeros of the fraction
+            while (scale > 0 && unscaled % 10 == 0) {
+                unscaled /= 10;
+                scale--;
+            }
+            int pos = _digits.length;
+            do {
+                _digits[--pos] = (byte) ('0' + (unscaled % 10));
+                unscaled /= 10;
+            } while (unscaled != 0 && pos > 0);
+            int numDigits = _digits.length - pos;
+            if (scale == 0) {
+                writeAscii(_digits, pos, numDigits);
+            } else if (numDigits > scale) {
+                writeAscii(_digits, pos, numDigits - scale);
+                writeByte('.');
+                writeAscii(_digits, _digits.length - scale, scale);
+            } else {
+                writeByte('0');
+                writeByte('.');
+                for (int i = numDigits; i < scale; i++) {
+                    writeByte('0');
+                }
+                writeAscii(_digits, pos, numDigits);
+            }
+        }
+
+        void writeCodePoint(int cp) throws IOException {
+            if (_count + 4 > _buf.length) {
+                flushBuffer();
+            }
+            final byte[] buf = _buf;
+            if (cp < 0x80) {
+                buf[_count++] = (byte) cp;
+            } else if (cp < 0x800) {
+                buf[_count++] = (byte) (0xc0 | (cp >> 6));
+                buf[_count++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (cp < 0x10000) {
+                buf[_count++] = (byte) (0xe0 | (cp >> 12));
+                buf[_count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buf[_count++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                buf[_count++] = (byte) (0xf0 | (cp >> 18));
+                buf[_count++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buf[_count++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buf[_count++] = (byte) (0x80 | (cp & 0x3f));
+            }
+        }
+
+        private void writeChar(char c) throws IOException {
+            if (_pendingHighSurrogate != 0) {
+                char high = _pendingHighSurrogate;
+                _pendingHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    writeCodePoint(Character.toCodePoint(high, c));
+                    return;
+                }
+                // unpaired surrogate - same replacement as the JDK encoder
+                writeByte('?');
+            }
+            if (Character.isHighSurrogate(c)) {
+                _pendingHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                writeByte('?');
+            } else {
+                writeCodePoint(c);
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            writeChar((char) c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                writeChar(cbuf[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                writeChar(str.charAt(i));
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (_count > 0) {
+                _os.write(_buf, 0, _count);
+                _written += _count;
+                _count = 0;
+            }
+        }
+
+        /**
+         * @return the number of bytes written so far, including the buffered bytes
+         */
+        long getPosition() {
+            return _written + _count;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            _os.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushBuffer();
+            _os.close();
+        }
+    }
+}
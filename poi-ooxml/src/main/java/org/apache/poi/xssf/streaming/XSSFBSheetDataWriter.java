@@ -0,0 +1,395 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.Internal;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.binary.XSSFBRecordType;
+import org.apache.poi.xssf.model.SharedStringsTable;
+
+/**
+ * Sheet writer that serializes rows and cells as binary (BIFF12) records for xlsb files.
+ * <p>
+ * The temp file contains the records between {@code BrtBeginSheetData} and {@code BrtEndSheetData},
+ * the surrounding sheet records are added by {@link SXSSFBWorkbook} when the workbook is written.
+ * Numbers which fit into an RkNumber are written as {@code BrtCellRk}, strings are written as
+ * {@code BrtCellIsst} if a shared strings table is used and as {@code BrtCellSt} otherwise.
+ * <p>
+ * Formulas can't be written yet, for formula cells the cached result is written as plain value.
+ * <p>
+ * The records are written by a {@link RecordWriter}, there's no character writer. All methods of
+ * {@link SheetDataWriter}, which write text, are overridden or only called by overridden methods.
+ *
+ * @since 5.2.6
+ */
+@Beta
+public class XSSFBSheetDataWriter extends SheetDataWriter {
+    private static final Logger LOG = LogManager.getLogger(XSSFBSheetDataWriter.class);
+
+    /** the default row height in twips, i.e. 15 points */
+    private static final int DEFAULT_ROW_HEIGHT = 300;
+
+    /** the length of the cell header (2.5.9) */
+    private static final int CELL_HEADER_LENGTH = 8;
+
+    private final boolean _compress;
+    private final RecordWriter _bin;
+    private final SharedStringsTable _sharedStrings;
+    private int _rownum;
+    private int _firstColumn = -1;
+    private int _lastColumn = -1;
+    private boolean _formulaWarningLogged;
+
+    public XSSFBSheetDataWriter() throws IOException {
+        this(null, false);
+    }
+
+    /**
+     * @param sharedStringsTable the shared strings table, or null if inline text is used
+     * @param compressTmpFile whether to gzip the temporary file
+     */
+    public XSSFBSheetDataWriter(SharedStringsTable sharedStringsTable, boolean compressTmpFile) throws IOException {
+        this(createTempFile(compressTmpFile), sharedStringsTable, compressTmpFile);
+    }
+
+    private XSSFBSheetDataWriter(File fd, SharedStringsTable sharedStringsTable, boolean compressTmpFile) throws IOException {
+        super(fd);
+        _compress = compressTmpFile;
+        _bin = createRecordWriter(fd, compressTmpFile);
+        _sharedStrings = sharedStringsTable;
+    }
+
+    private static File createTempFile(boolean compress) throws IOException {
+        return compress
+            ? TempFile.createTempFile("poi-sxssfb-sheet-bin", ".gz")
+            : TempFile.createTempFile("poi-sxssfb-sheet", ".bin");
+    }
+
+    private static RecordWriter createRecordWriter(File fd, boolean compress) throws IOException {
+        FileOutputStream fos = new FileOutputStream(fd);
+        try {
+            return new RecordWriter(compress ? new GZIPOutputStream(fos) : fos);
+        } catch (IOException e) {
+            fos.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected InputStream decorateInputStream(FileInputStream fis) throws IOException {
+        return _compress ? new GZIPInputStream(fis) : fis;
+    }
+
+    /**
+     * @return the lowest column index of the written cells, or -1 if no cell was written
+     */
+    int getFirstColumn() {
+        return _firstColumn;
+    }
+
+    /**
+     * @return the highest column index of the written cells, or -1 if no cell was written
+     */
+    int getLastColumn() {
+        return _lastColumn;
+    }
+
+    @Override
+    void beginRow(int rownum, SXSSFRow row) throws IOException {
+        RecordWriter out = _bin;
+        int firstCell = row.getFirstCellNum();
+        int lastCell = row.getLastCellNum() - 1;
+        // BrtRowHdr (2.4.726) with a single column span
+        out.writeRecordHeader(XSSFBRecordType.BrtRowHdr, firstCell < 0 ? 17 : 25);
+        out.writeInt(rownum);
+        out.writeInt(row.isFormatted() ? row.getRowStyleIndex() : 0);
+        out.writeShort(row.hasCustomHeight() ? row.getHeight() : DEFAULT_ROW_HEIGHT);
+        out.writeByte(0);
+        boolean hidden = row.getZeroHeight() || Boolean.TRUE.equals(row.getHidden());
+        out.writeByte((row.getOutlineLevel() & 0x07)
+            | (Boolean.TRUE.equals(row.getCollapsed()) ? 0x08 : 0)
+            | (hidden ? 0x10 : 0)
+            | (row.hasCustomHeight() ? 0x20 : 0)
+            | (row.isFormatted() ? 0x40 : 0));
+        out.writeByte(0);
+        if (firstCell < 0) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(1);
+            out.writeInt(firstCell);
+            out.writeInt(lastCell);
+            if (_firstColumn < 0 || firstCell < _firstColumn) {
+                _firstColumn = firstCell;
+            }
+            _lastColumn = Math.max(_lastColumn, lastCell);
+        }
+        _rownum = rownum;
+    }
+
+    @Override
+    void endRow() {
+        // rows have no end record
+    }
+
+    @Override
+    public void writeCell(int columnIndex, Cell cell) throws IOException {
+        if (cell == null) {
+            return;
+        }
+        int styleIndex = getStyleIndex(cell);
+        CellType cellType = cell.getCellType();
+        if (cellType == CellType.FORMULA) {
+            if (!_formulaWarningLogged) {
+                _formulaWarningLogged = true;
+                LOG.atWarn().log("Formulas are not supported for xlsb output, the cached results are written instead - first formula in row {}", _rownum + 1);
+            }
+            cellType = cell.getCachedFormulaResultType();
+        }
+        RecordWriter out = _bin;
+        switch (cellType) {
+            case BLANK:
+                writeCellHeader(XSSFBRecordType.BrtCellBlank, 0, columnIndex, styleIndex);
+                break;
+            case STRING:
+                if (_sharedStrings != null) {
+                    int sRef = _sharedStrings.addSharedStringItem(cell.getRichStringCellValue());
+                    writeCellHeader(XSSFBRecordType.BrtCellIsst, 4, columnIndex, styleIndex);
+                    out.writeInt(sRef);
+                } else {
+                    String value = cell.getStringCellValue();
+                    writeCellHeader(XSSFBRecordType.BrtCellSt, RecordWriter.wideStringLength(value), columnIndex, styleIndex);
+                    out.writeWideString(value);
+                }
+                break;
+            case NUMERIC:
+                double value = cell.getNumericCellValue();
+                int rk = toRkNumber(value);
+                if (rk != 0) {
+                    writeCellHeader(XSSFBRecordType.BrtCellRk, 4, columnIndex, styleIndex);
+                    out.writeInt(rk);
+                } else {
+                    writeCellHeader(XSSFBRecordType.BrtCellReal, 8, columnIndex, styleIndex);
+                    out.writeDouble(value);
+                }
+                break;
+            case BOOLEAN:
+                writeCellHeader(XSSFBRecordType.BrtCellBool, 1, columnIndex, styleIndex);
+                out.writeByte(cell.getBooleanCellValue() ? 1 : 0);
+                break;
+            case ERROR:
+                writeCellHeader(XSSFBRecordType.BrtCellError, 1, columnIndex, styleIndex);
+                out.writeByte(cell.getErrorCellValue());
+                break;
+            default:
+                throw new IllegalStateException("Invalid cell type: " + cellType);
+        }
+    }
+
+    private void writeCellHeader(XSSFBRecordType type, int valueLength, int columnIndex, int styleIndex) throws IOException {
+        RecordWriter out = _bin;
+        out.writeRecordHeader(type, CELL_HEADER_LENGTH + valueLength);
+        out.writeInt(columnIndex);
+        // 24 bit style index followed by the flags byte
+        out.writeInt(styleIndex & 0xFFFFFF);
+    }
+
+    /**
+     * Encodes a value as RkNumber (2.5.122), if this is possible without loss.
+     *
+     * @return the RkNumber, or 0 if the value needs to be written as double
+     */
+    static int toRkNumber(double value) {
+        // 0 is written as integer, so the encoded value is never 0
+        if (value == Math.rint(value) && value >= -0x20000000 && value < 0x20000000
+            && Double.doubleToRawLongBits(value) != Long.MIN_VALUE) {
+            return ((int)value << 2) | 2;
+        }
+        long bits = Double.doubleToRawLongBits(value);
+        // the lower 34 bits are dropped by the encoding
+        if ((bits & 0x3FFFFFFFFL) == 0) {
+            return (int)(bits >>> 32);
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _bin.close();
+    }
+
+    @Override
+    void flush() throws IOException {
+        _bin.flush();
+    }
+
+    @Override
+    boolean dispose() throws IOException {
+        final boolean ret;
+        try {
+            _bin.close();
+        } finally {
+            ret = getTempFile().delete();
+        }
+        return ret;
+    }
+
+    /**
+     * Writes binary records through a reusable byte buffer
+     */
+    @Internal
+    static final class RecordWriter implements Closeable, Flushable {
+        private final OutputStream _os;
+        private final byte[] _buf = new byte[65536];
+        private int _count;
+
+        RecordWriter(OutputStream os) {
+            _os = os;
+        }
+
+        /**
+         * @return the length of the string written as XLWideString (2.5.168)
+         */
+        static int wideStringLength(String s) {
+            return 4 + 2 * (s == null ? 0 : s.length());
+        }
+
+        void writeRecordHeader(XSSFBRecordType type, int length) throws IOException {
+            int id = type.getId();
+            if (id < 0x80) {
+                writeByte(id);
+            } else {
+                writeByte((id & 0x7F) | 0x80);
+                writeByte(id >>> 7);
+            }
+            // the length is stored in 7 bit chunks, the high bit marks a following byte
+            do {
+                int b = length & 0x7F;
+                length >>>= 7;
+                writeByte(length != 0 ? b | 0x80 : b);
+            } while (length != 0);
+        }
+
+        /**
+         * @return the underlying stream, the buffer needs to be flushed before writing to it
+         */
+        OutputStream getOutputStream() {
+            return _os;
+        }
+
+        void writeRecord(XSSFBRecordType type) throws IOException {
+            writeRecordHeader(type, 0);
+        }
+
+        void writeByte(int b) throws IOException {
+            if (_count == _buf.length) {
+                flushBuffer();
+            }
+            _buf[_count++] = (byte) b;
+        }
+
+        void writeShort(int value) throws IOException {
+            writeByte(value);
+            writeByte(value >>> 8);
+        }
+
+        void writeInt(int value) throws IOException {
+            if (_count + 4 > _buf.length) {
+                flushBuffer();
+            }
+            byte[] buf = _buf;
+            int count = _count;
+            buf[count] = (byte) value;
+            buf[count + 1] = (byte) (value >>> 8);
+            buf[count + 2] = (byte) (value >>> 16);
+            buf[count + 3] = (byte) (value >>> 24);
+            _count = count + 4;
+        }
+
+        void writeDouble(double value) throws IOException {
+            long bits = Double.doubleToRawLongBits(value);
+            writeInt((int) bits);
+            writeInt((int) (bits >>> 32));
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            if (_count + bytes.length > _buf.length) {
+                flushBuffer();
+                if (bytes.length > _buf.length) {
+                    _os.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, _buf, _count, bytes.length);
+            _count += bytes.length;
+        }
+
+        /**
+         * Writes an XLWideString (2.5.168), i.e. the number of characters followed by UTF-16LE chars
+         */
+        void writeWideString(String s) throws IOException {
+            int len = s == null ? 0 : s.length();
+            writeInt(len);
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (_count + 2 > _buf.length) {
+                    flushBuffer();
+                }
+                _buf[_count++] = (byte) c;
+                _buf[_count++] = (byte) (c >>> 8);
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (_count > 0) {
+                _os.write(_buf, 0, _count);
+                _count = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            _os.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBuffer();
+            } finally {
+                _os.close();
+            }
+        }
+    }
+}
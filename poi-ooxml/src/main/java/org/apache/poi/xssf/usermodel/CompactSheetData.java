@@ -0,0 +1,1052 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static org.apache.poi.ooxml.POIXMLTypeLoader.DEFAULT_XML_OPTIONS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.XMLHelper;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+
+/**
+ * The rows of a worksheet, which are kept in primitive columns instead of a {@link CTRow}/{@code CTCell}
+ * tree, see {@link XSSFReadOptions#setCompactCells(boolean)}.<p>
+ *
+ * The cells are stored in the order of the sheet part with their column, type, style and value. Numbers and
+ * booleans are kept in a {@code double} column, the other values in an {@code int} column with the index of
+ * the shared string or of a text. Formulas and cells, which can't be represented by the columns, like rich
+ * inline strings or extension elements, are kept as XML texts. A row is removed from the columns, when the
+ * sheet converts it to a {@link CTRow}. The remaining rows are written from the columns.
+ */
+final class CompactSheetData {
+    private static final String NS_MAIN = XSSFRelation.NS_SPREADSHEETML;
+
+    private static final byte BLANK = 0;
+    private static final byte NUMBER = 1;
+    private static final byte SHARED_STRING = 2;
+    private static final byte STRING = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte ERROR = 5;
+    private static final byte INLINE_STRING = 6;
+    /** the whole cell is kept as XML text */
+    private static final byte RAW = 7;
+    /** the formula of the cell is kept as XML text, the type is the type of the cached value */
+    private static final byte FORMULA = 0x10;
+    private static final byte TYPE_MASK = 0x0f;
+
+    static final XmlOptions FRAGMENT_OPTIONS = new XmlOptions(DEFAULT_XML_OPTIONS);
+
+    static {
+        // the parsed element becomes the bean instead of its only child
+        FRAGMENT_OPTIONS.setLoadReplaceDocumentElement(null);
+    }
+
+    /** the namespaces declared by the worksheet element */
+    private final Map<String, String> _namespaces = new HashMap<>();
+
+    // the rows sorted by the row number, the cells of a row are _rowStarts[i] ... _rowEnds[i]-1
+    private int _rowCount;
+    private int[] _rowNums = new int[64];
+    private int[] _rowStarts = new int[64];
+    private int[] _rowEnds = new int[64];
+    /** the attributes of the row element besides {@code r}, shared by equal rows */
+    private String[] _rowAttributes = new String[64];
+    /** the child elements of rows besides the cells, e.g. {@code extLst}, by row index */
+    private final Map<Integer, String> _rowContents = new HashMap<>();
+    private final BitSet _removedRows = new BitSet();
+    private int _removedCount;
+    private int _firstRow;
+    private int _lastRow;
+
+    private int _cellCount;
+    private int[] _cellColumns = new int[256];
+    private byte[] _cellTypes = new byte[256];
+    /** the style index or -1, if the cell has no style attribute */
+    private int[] _cellStyles = new int[256];
+    private double[] _cellValues = new double[256];
+    /** the index of the shared string or of the text, formula or cell XML in {@link #_texts} */
+    private int[] _cellStrings = new int[256];
+
+    private int _textCount;
+    private String[] _texts = new String[64];
+
+    // the masters of shared formulas and the array formulas
+    private final IntList _formulaRows = new IntList();
+    private final IntList _formulaColumns = new IntList();
+    private final IntList _formulaTexts = new IntList();
+
+    private String[] _columnNames = new String[0];
+
+    /**
+     * Handles the master of a shared formula or an array formula
+     */
+    interface FormulaMasterHandler {
+        void onFormulaMaster(CTCellFormula formula, int rowIndex, int columnIndex);
+    }
+
+    private CompactSheetData() {
+    }
+
+    /**
+     * Reads a worksheet part. The cells of the {@code sheetData} element are read into the columns,
+     * the other elements are appended to {@code worksheet} with an empty {@code sheetData} element.
+     *
+     * @param is the worksheet part
+     * @param worksheet receives the worksheet XML without the rows
+     */
+    static CompactSheetData read(InputStream is, StringBuilder worksheet) throws XMLStreamException {
+        XMLStreamReader reader = XMLHelper.newXMLInputFactory().createXMLStreamReader(is);
+        try {
+            CompactSheetData data = new CompactSheetData();
+            new Loader(data, reader, worksheet).read();
+            data.sortRows();
+            data._lastRow = data._rowCount - 1;
+            return data;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the number of rows, which weren't removed
+     */
+    int getRowCount() {
+        return _rowCount - _removedCount;
+    }
+
+    /**
+     * @return the first row number of the rows, which weren't removed, or -1
+     */
+    int getFirstRowNum() {
+        _firstRow = _removedRows.nextClearBit(_firstRow);
+        return _firstRow < _rowCount ? _rowNums[_firstRow] : -1;
+    }
+
+    /**
+     * @return the last row number of the rows, which weren't removed, or -1
+     */
+    int getLastRowNum() {
+        _lastRow = _removedRows.previousClearBit(_lastRow);
+        return _lastRow >= 0 ? _rowNums[_lastRow] : -1;
+    }
+
+    /**
+     * @return the first row number, which is at least {@code rownum}, of the rows, which weren't removed, or -1
+     */
+    int nextRowNum(int rownum) {
+        int index = _removedRows.nextClearBit(lowerBound(rownum));
+        return index < _rowCount ? _rowNums[index] : -1;
+    }
+
+    /**
+     * Removes a row from the columns
+     *
+     * @return the row or {@code null} if there is no such row
+     */
+    CTRow removeRow(int rownum) {
+        int index = lowerBound(rownum);
+        if (index == _rowCount || _rowNums[index] != rownum || _removedRows.get(index)) {
+            return null;
+        }
+        StringBuilder xml = new StringBuilder(256);
+        CTRow row;
+        try {
+            writeRow(index, xml, true);
+            row = CTRow.Factory.parse(xml.toString(), FRAGMENT_OPTIONS);
+        } catch (IOException | XmlException e) {
+            throw new IllegalStateException("Invalid row " + (rownum + 1), e);
+        }
+        _removedRows.set(index);
+        _removedCount++;
+        _rowContents.remove(index);
+        return row;
+    }
+
+    /**
+     * @return the maximum outline level of the rows, which weren't removed
+     */
+    short getMaxOutlineLevel() {
+        Map<String, Integer> levels = new HashMap<>();
+        int maxLevel = 0;
+        for (int i = _removedRows.nextClearBit(0); i < _rowCount; i = _removedRows.nextClearBit(i + 1)) {
+            String attributes = _rowAttributes[i];
+            if (attributes != null) {
+                maxLevel = Math.max(maxLevel, levels.computeIfAbsent(attributes, CompactSheetData::parseOutlineLevel));
+            }
+        }
+        return (short) maxLevel;
+    }
+
+    private static int parseOutlineLevel(String attributes) {
+        int pos = attributes.indexOf(" outlineLevel=\"");
+        if (pos < 0) {
+            return 0;
+        }
+        pos += 15;
+        return Integer.parseInt(attributes.substring(pos, attributes.indexOf('"', pos)));
+    }
+
+    /**
+     * @return the minimum ({@code [0]}) and maximum ({@code [1]}) column of the cells of the rows,
+     *  which weren't removed, or {@code null} if there are no cells
+     */
+    int[] getColumnRange() {
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        for (int i = _removedRows.nextClearBit(0); i < _rowCount; i = _removedRows.nextClearBit(i + 1)) {
+            for (int c = _rowStarts[i]; c < _rowEnds[i]; c++) {
+                min = Math.min(min, _cellColumns[c]);
+                max = Math.max(max, _cellColumns[c]);
+            }
+        }
+        return max < 0 ? null : new int[]{min, max};
+    }
+
+    /**
+     * Calls the handler for the masters of the shared formulas and the array formulas of all rows
+     */
+    void forEachFormulaMaster(FormulaMasterHandler handler) {
+        for (int i = 0; i < _formulaTexts.size(); i++) {
+            String xml = withNamespaces(_texts[_formulaTexts.get(i)], 2);
+            try {
+                handler.onFormulaMaster(CTCellFormula.Factory.parse(xml, FRAGMENT_OPTIONS),
+                    _formulaRows.get(i), _formulaColumns.get(i));
+            } catch (XmlException e) {
+                throw new IllegalStateException("Invalid formula " + xml, e);
+            }
+        }
+    }
+
+    /**
+     * @return the namespaces of the worksheet element by their prefix
+     */
+    Map<String, String> getNamespaces() {
+        return _namespaces;
+    }
+
+    /**
+     * Writes the row elements of the rows, which weren't removed, with a row number of at least
+     * {@code startRow} and less than {@code endRow}
+     */
+    void writeRows(int startRow, int endRow, Appendable out) throws IOException {
+        for (int i = _removedRows.nextClearBit(lowerBound(startRow));
+             i < _rowCount && _rowNums[i] < endRow;
+             i = _removedRows.nextClearBit(i + 1)) {
+            writeRow(i, out, false);
+        }
+    }
+
+    private void writeRow(int index, Appendable out, boolean declareNamespaces) throws IOException {
+        out.append("<row r=\"").append(Integer.toString(_rowNums[index] + 1)).append('"');
+        if (_rowAttributes[index] != null) {
+            out.append(_rowAttributes[index]);
+        }
+        if (declareNamespaces) {
+            appendNamespaces(out);
+        }
+        String content = _rowContents.get(index);
+        if (_rowStarts[index] == _rowEnds[index] && content == null) {
+            out.append("/>");
+            return;
+        }
+        out.append('>');
+        for (int c = _rowStarts[index]; c < _rowEnds[index]; c++) {
+            writeCell(c, _rowNums[index], out);
+        }
+        if (content != null) {
+            out.append(content);
+        }
+        out.append("</row>");
+    }
+
+    private void writeCell(int c, int rownum, Appendable out) throws IOException {
+        int type = _cellTypes[c];
+        int valueType = type & TYPE_MASK;
+        if (valueType == RAW) {
+            out.append(_texts[_cellStrings[c]]);
+            return;
+        }
+        out.append("<c r=\"").append(getColumnName(_cellColumns[c])).append(Integer.toString(rownum + 1)).append('"');
+        if (_cellStyles[c] >= 0) {
+            out.append(" s=\"").append(Integer.toString(_cellStyles[c])).append('"');
+        }
+        switch (valueType) {
+            case SHARED_STRING:
+                out.append(" t=\"s\"");
+                break;
+            case STRING:
+                out.append(" t=\"str\"");
+                break;
+            case BOOLEAN:
+                out.append(" t=\"b\"");
+                break;
+            case ERROR:
+                out.append(" t=\"e\"");
+                break;
+            case INLINE_STRING:
+                out.append(" t=\"inlineStr\"");
+                break;
+            default:
+                break;
+        }
+        boolean formula = (type & FORMULA) != 0;
+        if (!formula && valueType == BLANK) {
+            out.append("/>");
+            return;
+        }
+        out.append('>');
+        if (formula) {
+            out.append(_texts[_cellStrings[c]]);
+        }
+        switch (valueType) {
+            case NUMBER:
+                out.append("<v>").append(formatNumber(_cellValues[c])).append("</v>");
+                break;
+            case BOOLEAN:
+                out.append(_cellValues[c] == 0 ? "<v>0</v>" : "<v>1</v>");
+                break;
+            case SHARED_STRING:
+                out.append("<v>").append(Integer.toString(_cellStrings[c])).append("</v>");
+                break;
+            case STRING:
+            case ERROR:
+                out.append("<v>");
+                appendText(out, _texts[_cellStrings[c]]);
+                out.append("</v>");
+                break;
+            case INLINE_STRING:
+                String text = _texts[_cellStrings[c]];
+                out.append(hasOuterWhitespace(text) ? "<is><t xml:space=\"preserve\">" : "<is><t>");
+                appendText(out, text);
+                out.append("</t></is>");
+                break;
+            default:
+                break;
+        }
+        out.append("</c>");
+    }
+
+    private String getColumnName(int column) {
+        if (column >= _columnNames.length) {
+            _columnNames = Arrays.copyOf(_columnNames, Math.max(column + 1, _columnNames.length * 2));
+        }
+        String name = _columnNames[column];
+        if (name == null) {
+            name = CellReference.convertNumToColString(column);
+            _columnNames[column] = name;
+        }
+        return name;
+    }
+
+    private static String formatNumber(double value) {
+        // integers are written without a fraction, like Excel does
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static boolean hasOuterWhitespace(String text) {
+        return !text.isEmpty() && (Character.isWhitespace(text.charAt(0))
+            || Character.isWhitespace(text.charAt(text.length() - 1)));
+    }
+
+    private void appendNamespaces(Appendable out) throws IOException {
+        out.append(" xmlns=\"").append(NS_MAIN).append('"');
+        for (Map.Entry<String, String> ns : _namespaces.entrySet()) {
+            if (!ns.getKey().isEmpty()) {
+                out.append(" xmlns:").append(ns.getKey()).append("=\"");
+                appendAttributeValue(out, ns.getValue());
+                out.append('"');
+            }
+        }
+    }
+
+    /**
+     * @param nameLength the length of the element name, e.g. 2 for {@code <f}
+     */
+    private String withNamespaces(String xml, int nameLength) {
+        StringBuilder sb = new StringBuilder(xml.length() + 200);
+        sb.append(xml, 0, nameLength);
+        try {
+            appendNamespaces(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sb.append(xml, nameLength, xml.length()).toString();
+    }
+
+    private int lowerBound(int rownum) {
+        int low = 0;
+        int high = _rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (_rowNums[mid] < rownum) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void sortRows() {
+        boolean sorted = true;
+        for (int i = 1; i < _rowCount && sorted; i++) {
+            sorted = _rowNums[i - 1] < _rowNums[i];
+        }
+        if (!sorted) {
+            // the cells stay in place, only the row entries are reordered
+            Integer[] order = new Integer[_rowCount];
+            for (int i = 0; i < _rowCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(_rowNums[a], _rowNums[b]));
+            int[] rowNums = new int[_rowCount];
+            int[] rowStarts = new int[_rowCount];
+            int[] rowEnds = new int[_rowCount];
+            String[] rowAttributes = new String[_rowCount];
+            Map<Integer, String> rowContents = new HashMap<>();
+            for (int i = 0; i < _rowCount; i++) {
+                int from = order[i];
+                rowNums[i] = _rowNums[from];
+                rowStarts[i] = _rowStarts[from];
+                rowEnds[i] = _rowEnds[from];
+                rowAttributes[i] = _rowAttributes[from];
+                String content = _rowContents.get(from);
+                if (content != null) {
+                    rowContents.put(i, content);
+                }
+            }
+            _rowNums = rowNums;
+            _rowStarts = rowStarts;
+            _rowEnds = rowEnds;
+            _rowAttributes = rowAttributes;
+            _rowContents.clear();
+            _rowContents.putAll(rowContents);
+        }
+    }
+
+    private void addRow(int rownum, int start, int end, String attributes, String content) {
+        if (_rowCount == _rowNums.length) {
+            int capacity = _rowCount * 3 / 2 + 1;
+            _rowNums = Arrays.copyOf(_rowNums, capacity);
+            _rowStarts = Arrays.copyOf(_rowStarts, capacity);
+            _rowEnds = Arrays.copyOf(_rowEnds, capacity);
+            _rowAttributes = Arrays.copyOf(_rowAttributes, capacity);
+        }
+        _rowNums[_rowCount] = rownum;
+        _rowStarts[_rowCount] = start;
+        _rowEnds[_rowCount] = end;
+        _rowAttributes[_rowCount] = attributes;
+        if (content != null) {
+            _rowContents.put(_rowCount, content);
+        }
+        _rowCount++;
+    }
+
+    private void addCell(int column, byte type, int style, double value, int string) {
+        if (_cellCount == _cellColumns.length) {
+            int capacity = _cellCount * 3 / 2 + 1;
+            _cellColumns = Arrays.copyOf(_cellColumns, capacity);
+            _cellTypes = Arrays.copyOf(_cellTypes, capacity);
+            _cellStyles = Arrays.copyOf(_cellStyles, capacity);
+            _cellValues = Arrays.copyOf(_cellValues, capacity);
+            _cellStrings = Arrays.copyOf(_cellStrings, capacity);
+        }
+        _cellColumns[_cellCount] = column;
+        _cellTypes[_cellCount] = type;
+        _cellStyles[_cellCount] = style;
+        _cellValues[_cellCount] = value;
+        _cellStrings[_cellCount] = string;
+        _cellCount++;
+    }
+
+    private int addText(String text) {
+        if (_textCount == _texts.length) {
+            _texts = Arrays.copyOf(_texts, _textCount * 3 / 2 + 1);
+        }
+        _texts[_textCount] = text;
+        return _textCount++;
+    }
+
+    private void trimToSize() {
+        _cellColumns = Arrays.copyOf(_cellColumns, _cellCount);
+        _cellTypes = Arrays.copyOf(_cellTypes, _cellCount);
+        _cellStyles = Arrays.copyOf(_cellStyles, _cellCount);
+        _cellValues = Arrays.copyOf(_cellValues, _cellCount);
+        _cellStrings = Arrays.copyOf(_cellStrings, _cellCount);
+        _texts = Arrays.copyOf(_texts, _textCount);
+    }
+
+    /**
+     * @return the column of a cell reference like {@code AB12} or -1, if it isn't valid
+     */
+    static int parseColumn(String ref) {
+        int column = 0;
+        int i = 0;
+        for (; i < ref.length() && ref.charAt(i) >= 'A' && ref.charAt(i) <= 'Z'; i++) {
+            column = column * 26 + ref.charAt(i) - 'A' + 1;
+        }
+        return i == 0 || i > 3 ? -1 : column - 1;
+    }
+
+    /**
+     * @return the row of a cell reference like {@code AB12} or -1, if it isn't valid
+     */
+    static int parseRow(String ref) {
+        int i = 0;
+        while (i < ref.length() && ref.charAt(i) >= 'A' && ref.charAt(i) <= 'Z') {
+            i++;
+        }
+        if (i == ref.length() || ref.length() - i > 7) {
+            return -1;
+        }
+        int row = 0;
+        for (; i < ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            row = row * 10 + c - '0';
+        }
+        return row - 1;
+    }
+
+    static void appendText(Appendable out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    // like XmlBeans, only the end of a CDATA section needs to be escaped
+                    out.append(i >= 2 && text.charAt(i - 1) == ']' && text.charAt(i - 2) == ']' ? "&gt;" : ">");
+                    break;
+                case '\r':
+                    out.append("&#13;");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+    }
+
+    static void appendAttributeValue(Appendable out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\t':
+                    out.append("&#9;");
+                    break;
+                case '\n':
+                    out.append("&#10;");
+                    break;
+                case '\r':
+                    out.append("&#13;");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads the worksheet part. The elements of the rows are written with the main namespace as default
+     * namespace, the other namespaces keep their prefix and are declared again, if the worksheet element
+     * doesn't declare them.
+     */
+    private static final class Loader {
+        private final CompactSheetData _data;
+        private final XMLStreamReader _reader;
+        private final StringBuilder _worksheet;
+        private final Map<String, Integer> _sharedTexts = new HashMap<>();
+        private final Map<String, String> _rowAttributes = new HashMap<>();
+        private final StringBuilder _xml = new StringBuilder(256);
+        private final StringBuilder _text = new StringBuilder(64);
+
+        private Loader(CompactSheetData data, XMLStreamReader reader, StringBuilder worksheet) {
+            _data = data;
+            _reader = reader;
+            _worksheet = worksheet;
+        }
+
+        private void read() throws XMLStreamException {
+            int depth = 0;
+            while (_reader.hasNext()) {
+                switch (_reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (depth == 0) {
+                            for (int i = 0; i < _reader.getNamespaceCount(); i++) {
+                                String prefix = _reader.getNamespacePrefix(i);
+                                _data._namespaces.put(prefix == null ? "" : prefix, _reader.getNamespaceURI(i));
+                            }
+                        }
+                        appendStartTag(_worksheet);
+                        if (depth == 1 && isMain("sheetData")) {
+                            _worksheet.append('>');
+                            readSheetData();
+                            _worksheet.append("</").append(qName()).append('>');
+                        } else {
+                            _worksheet.append('>');
+                            depth++;
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        _worksheet.append("</").append(qName()).append('>');
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (depth > 0) {
+                            appendText(_worksheet, _reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        _worksheet.append("<!--").append(_reader.getText()).append("-->");
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        _worksheet.append("<?").append(_reader.getPITarget()).append(' ')
+                            .append(_reader.getPIData()).append("?>");
+                        break;
+                    default:
+                        break;
+                }
+            }
+            _data.trimToSize();
+        }
+
+        private void readSheetData() throws XMLStreamException {
+            int rownum = -1;
+            for (int event = _reader.next(); event != XMLStreamConstants.END_ELEMENT; event = _reader.next()) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (isMain("row")) {
+                        rownum = readRow(rownum + 1);
+                    } else {
+                        skipElement();
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param rownum the row number, if the row has no {@code r} attribute
+         * @return the row number
+         */
+        private int readRow(int rownum) throws XMLStreamException {
+            _xml.setLength(0);
+            for (int i = 0; i < _reader.getAttributeCount(); i++) {
+                if (isPlainAttribute(i, "r")) {
+                    rownum = Integer.parseInt(_reader.getAttributeValue(i).trim()) - 1;
+                } else {
+                    appendAttribute(_xml, i);
+                }
+            }
+            appendNamespaceDeclarations(_xml);
+            String attributes = _xml.length() == 0 ? null : _rowAttributes.computeIfAbsent(_xml.toString(), a -> a);
+
+            int start = _data._cellCount;
+            int column = -1;
+            StringBuilder content = null;
+            for (int event = _reader.next(); event != XMLStreamConstants.END_ELEMENT; event = _reader.next()) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (isMain("c")) {
+                        column = readCell(rownum, column + 1);
+                    } else {
+                        if (content == null) {
+                            content = new StringBuilder();
+                        }
+                        appendElement(content);
+                    }
+                }
+            }
+            _data.addRow(rownum, start, _data._cellCount, attributes, content == null ? null : content.toString());
+            return rownum;
+        }
+
+        /**
+         * @param column the column, if the cell has no {@code r} attribute
+         * @return the column
+         */
+        private int readCell(int rownum, int column) throws XMLStreamException {
+            boolean raw = false;
+            int style = -1;
+            String type = null;
+            _xml.setLength(0);
+            _xml.append("<c");
+            for (int i = 0; i < _reader.getAttributeCount(); i++) {
+                String value = _reader.getAttributeValue(i);
+                if (isPlainAttribute(i, "r")) {
+                    int refColumn = parseColumn(value);
+                    if (refColumn < 0 || parseRow(value) != rownum) {
+                        raw = true;
+                    }
+                    if (refColumn >= 0) {
+                        column = refColumn;
+                    }
+                } else if (isPlainAttribute(i, "s")) {
+                    try {
+                        style = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        raw = true;
+                    }
+                    raw |= style < 0;
+                } else if (isPlainAttribute(i, "t")) {
+                    type = value;
+                } else {
+                    raw = true;
+                }
+                appendAttribute(_xml, i);
+            }
+            raw |= _reader.getNamespaceCount() > 0;
+            appendNamespaceDeclarations(_xml);
+            _xml.append('>');
+
+            String formula = null;
+            boolean formulaMaster = false;
+            String value = null;
+            String inlineString = null;
+            for (int event = _reader.next(); event != XMLStreamConstants.END_ELEMENT; event = _reader.next()) {
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (isMain("f") && formula == null && value == null) {
+                    String formulaType = _reader.getAttributeValue(null, "t");
+                    formulaMaster = ("shared".equals(formulaType) || "array".equals(formulaType))
+                        && _reader.getAttributeValue(null, "ref") != null;
+                    int start = _xml.length();
+                    appendElement(_xml);
+                    formula = _xml.substring(start);
+                } else if (isMain("v") && value == null && _reader.getAttributeCount() == 0) {
+                    value = appendElement(_xml);
+                    raw |= value == null;
+                } else if (isMain("is") && inlineString == null && _reader.getAttributeCount() == 0) {
+                    inlineString = readInlineString();
+                    raw |= inlineString == null;
+                } else {
+                    appendElement(_xml);
+                    raw = true;
+                }
+            }
+            _xml.append("</c>");
+
+            if (formulaMaster) {
+                _data._formulaRows.add(rownum);
+                _data._formulaColumns.add(column);
+                _data._formulaTexts.add(sharedText(formula));
+            }
+            if (!raw && addCell(column, type, style, formula, value, inlineString)) {
+                return column;
+            }
+            _data.addCell(column, RAW, -1, 0, _data.addText(_xml.toString()));
+            return column;
+        }
+
+        /**
+         * @return false, if the cell can't be represented by the columns
+         */
+        private boolean addCell(int column, String type, int style, String formula, String value, String inlineString) {
+            if (inlineString != null && (formula != null || value != null || !"inlineStr".equals(type))) {
+                return false;
+            }
+            byte formulaFlag = 0;
+            int string = 0;
+            if (formula != null) {
+                formulaFlag = FORMULA;
+                string = sharedText(formula);
+            }
+            if (type == null || "n".equals(type)) {
+                if (value == null) {
+                    _data.addCell(column, (byte) (BLANK | formulaFlag), style, 0, string);
+                    return true;
+                }
+                double number;
+                try {
+                    number = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                _data.addCell(column, (byte) (NUMBER | formulaFlag), style, number, string);
+                return true;
+            }
+            if ("b".equals(type)) {
+                if (!"0".equals(value) && !"1".equals(value)) {
+                    return false;
+                }
+                _data.addCell(column, (byte) (BOOLEAN | formulaFlag), style, "1".equals(value) ? 1 : 0, string);
+                return true;
+            }
+            if (formula != null) {
+                // the cached texts of formulas stay in the cell XML
+                return false;
+            }
+            switch (type) {
+                case "s":
+                    try {
+                        int index = Integer.parseInt(value == null ? "" : value.trim());
+                        if (index < 0) {
+                            return false;
+                        }
+                        _data.addCell(column, SHARED_STRING, style, 0, index);
+                        return true;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                case "str":
+                    if (value == null) {
+                        return false;
+                    }
+                    _data.addCell(column, STRING, style, 0, _data.addText(value));
+                    return true;
+                case "e":
+                    if (value == null) {
+                        return false;
+                    }
+                    _data.addCell(column, ERROR, style, 0, sharedText(value));
+                    return true;
+                case "inlineStr":
+                    if (inlineString == null) {
+                        return false;
+                    }
+                    _data.addCell(column, INLINE_STRING, style, 0, _data.addText(inlineString));
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Reads an {@code is} element into the cell XML
+         *
+         * @return the text of the inline string or {@code null} if it has runs or phonetic properties
+         */
+        private String readInlineString() throws XMLStreamException {
+            _xml.append("<is>");
+            String text = null;
+            boolean plain = true;
+            for (int event = _reader.next(); event != XMLStreamConstants.END_ELEMENT; event = _reader.next()) {
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                boolean plainText = text == null && isMain("t") && _reader.getNamespaceCount() == 0;
+                for (int i = 0; i < _reader.getAttributeCount() && plainText; i++) {
+                    plainText = XMLConstants.XML_NS_URI.equals(_reader.getAttributeNamespace(i))
+                        && "space".equals(_reader.getAttributeLocalName(i));
+                }
+                String elementText = appendElement(_xml);
+                if (plainText && elementText != null) {
+                    text = elementText;
+                } else {
+                    plain = false;
+                }
+            }
+            _xml.append("</is>");
+            return plain ? text : null;
+        }
+
+        private int sharedText(String text) {
+            return _sharedTexts.computeIfAbsent(text, _data::addText);
+        }
+
+        /**
+         * Appends the current element with its content
+         *
+         * @return the text of the element or {@code null} if it has child elements
+         */
+        private String appendElement(StringBuilder out) throws XMLStreamException {
+            appendNormalizedStartTag(out);
+            _text.setLength(0);
+            boolean open = false;
+            boolean hasChildren = false;
+            int depth = 0;
+            while (true) {
+                int event = _reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (!open) {
+                        out.append('>');
+                        open = true;
+                    }
+                    hasChildren = true;
+                    appendNormalizedStartTag(out);
+                    out.append('>');
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == 0) {
+                        break;
+                    }
+                    out.append("</").append(normalizedName()).append('>');
+                    depth--;
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                    if (!open) {
+                        out.append('>');
+                        open = true;
+                    }
+                    String text = _reader.getText();
+                    appendText(out, text);
+                    if (depth == 0) {
+                        _text.append(text);
+                    }
+                }
+            }
+            if (open) {
+                out.append("</").append(normalizedName()).append('>');
+            } else {
+                out.append("/>");
+            }
+            return hasChildren ? null : _text.toString();
+        }
+
+        private void skipElement() throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0) {
+                int event = _reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+
+        private boolean isMain(String localName) {
+            return localName.equals(_reader.getLocalName()) && NS_MAIN.equals(_reader.getNamespaceURI());
+        }
+
+        private boolean isPlainAttribute(int index, String localName) {
+            String ns = _reader.getAttributeNamespace(index);
+            return (ns == null || ns.isEmpty()) && localName.equals(_reader.getAttributeLocalName(index));
+        }
+
+        private String qName() {
+            String prefix = _reader.getPrefix();
+            return prefix == null || prefix.isEmpty() ? _reader.getLocalName() : prefix + ":" + _reader.getLocalName();
+        }
+
+        /**
+         * @return the name of the element, without prefix for the main namespace
+         */
+        private String normalizedName() {
+            return NS_MAIN.equals(_reader.getNamespaceURI()) ? _reader.getLocalName() : qName();
+        }
+
+        /**
+         * Appends the start tag of the worksheet XML as it was read, without the closing {@code >}
+         */
+        private void appendStartTag(StringBuilder out) {
+            out.append('<').append(qName());
+            for (int i = 0; i < _reader.getNamespaceCount(); i++) {
+                String prefix = _reader.getNamespacePrefix(i);
+                out.append(prefix == null || prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix).append("=\"");
+                appendValue(out, _reader.getNamespaceURI(i));
+                out.append('"');
+            }
+            for (int i = 0; i < _reader.getAttributeCount(); i++) {
+                appendAttribute(out, i);
+            }
+        }
+
+        /**
+         * Appends the start tag of an element of a row, without the closing {@code >}
+         */
+        private void appendNormalizedStartTag(StringBuilder out) {
+            out.append('<').append(normalizedName());
+            appendNamespaceDeclarations(out);
+            for (int i = 0; i < _reader.getAttributeCount(); i++) {
+                appendAttribute(out, i);
+            }
+        }
+
+        /**
+         * Appends the namespace declarations of the current element besides the main namespace and
+         * the namespaces of the worksheet element
+         */
+        private void appendNamespaceDeclarations(StringBuilder out) {
+            for (int i = 0; i < _reader.getNamespaceCount(); i++) {
+                String prefix = _reader.getNamespacePrefix(i);
+                String uri = _reader.getNamespaceURI(i);
+                if (prefix == null || prefix.isEmpty() || NS_MAIN.equals(uri)
+                        || uri.equals(_data._namespaces.get(prefix))) {
+                    continue;
+                }
+                out.append(" xmlns:").append(prefix).append("=\"");
+                appendValue(out, uri);
+                out.append('"');
+            }
+        }
+
+        private void appendAttribute(StringBuilder out, int index) {
+            String prefix = _reader.getAttributePrefix(index);
+            out.append(' ');
+            if (prefix != null && !prefix.isEmpty()) {
+                out.append(prefix).append(':');
+            }
+            out.append(_reader.getAttributeLocalName(index)).append("=\"");
+            appendValue(out, _reader.getAttributeValue(index));
+            out.append('"');
+        }
+
+        private static void appendValue(StringBuilder out, String value) {
+            try {
+                appendAttributeValue(out, value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static void appendText(StringBuilder out, String text) {
+            try {
+                CompactSheetData.appendText(out, text);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
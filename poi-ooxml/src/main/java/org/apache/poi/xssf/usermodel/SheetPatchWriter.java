@@ -0,0 +1,686 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static org.apache.poi.ooxml.POIXMLTypeLoader.DEFAULT_XML_OPTIONS;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.CalculationChain;
+import org.apache.poi.xssf.usermodel.XSSFSheetPatch.CellEdit;
+import org.apache.poi.xssf.usermodel.XSSFSheetPatch.RowEdit;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+
+/**
+ * Streams a worksheet part and applies the edits of a {@link XSSFSheetPatch}.<p>
+ *
+ * The elements are copied as they were read. Only the edited cells and the cells depending on a replaced
+ * shared formula are parsed to {@link CTCell}s and saved again. Rows and cells, which don't exist, are written
+ * before the following row or cell. The multi-cell array formulas and the masters of the replaced shared
+ * formulas are remembered, as far as they overlap the edited rows.
+ */
+final class SheetPatchWriter {
+    private static final String NS_MAIN = XSSFRelation.NS_SPREADSHEETML;
+
+    private final XSSFSheet _sheet;
+    private final XSSFWorkbook _workbook;
+    private final XSSFSheetPatch _patch;
+    private final XMLStreamReader _reader;
+    private final Writer _out;
+    /** the edits of the rows, which weren't written yet */
+    private final NavigableMap<Integer, RowEdit> _pendingRows;
+    private final Set<Integer> _insertedRows = new HashSet<>();
+    /** the namespaces declared by the worksheet and the sheetData element */
+    private final Map<String, String> _namespaces = new HashMap<>();
+    private XmlOptions _cellOptions;
+    /** the prefix of the main namespace for new rows, e.g. {@code x:} */
+    private String _mainPrefix = "";
+    private final List<CellRangeAddress> _arrayFormulas = new ArrayList<>();
+    /** the masters of the shared formulas, whose cell was replaced, by the shared index */
+    private final Map<String, SharedMaster> _replacedMasters = new HashMap<>();
+    private XSSFEvaluationWorkbook _evaluationWorkbook;
+    /** true, if the start tag of the last element isn't closed by {@code >} yet */
+    private boolean _startTagOpen;
+
+    /** the XML of the current cell */
+    private final StringBuilder _xml = new StringBuilder(256);
+    private final CellInfo _cell = new CellInfo();
+
+    private SheetPatchWriter(XSSFSheet sheet, XSSFSheetPatch patch, XMLStreamReader reader, Writer out) {
+        _sheet = sheet;
+        _workbook = sheet.getWorkbook();
+        _patch = patch;
+        _reader = reader;
+        _out = out;
+        _pendingRows = new TreeMap<>(patch.getRows());
+    }
+
+    /**
+     * Writes the worksheet part with the edits of the patch
+     *
+     * @param sheet the sheet of the worksheet part
+     * @param patch the edits
+     * @param is the worksheet part
+     * @param os receives the edited worksheet part
+     * @throws IllegalStateException if an edited cell is part of a multi-cell array formula
+     */
+    static void write(XSSFSheet sheet, XSSFSheetPatch patch, InputStream is, OutputStream os)
+            throws IOException, XMLStreamException, XmlException {
+        XMLStreamReader reader = XMLHelper.newXMLInputFactory().createXMLStreamReader(is);
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+            new SheetPatchWriter(sheet, patch, reader, out).write();
+            out.flush();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void write() throws IOException, XMLStreamException, XmlException {
+        String version = _reader.getVersion();
+        _out.write("<?xml version=\"" + (version == null ? "1.0" : version) + "\" encoding=\"UTF-8\""
+            + (_reader.standaloneSet() ? (_reader.isStandalone() ? " standalone=\"yes\"" : " standalone=\"no\"") : "")
+            + "?>\n");
+        int depth = 0;
+        while (_reader.hasNext()) {
+            switch (_reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    closeStartTag();
+                    if (depth == 0) {
+                        addNamespaces(_namespaces);
+                    }
+                    if (depth == 1 && isMain("sheetData")) {
+                        writeSheetData();
+                    } else if (depth == 1 && isMain("dimension")) {
+                        writeDimension();
+                        depth++;
+                    } else {
+                        appendStartTag(_out, null);
+                        _startTagOpen = true;
+                        depth++;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    writeEndTag();
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth > 0) {
+                        closeStartTag();
+                        CompactSheetData.appendText(_out, _reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    closeStartTag();
+                    _out.write("<!--" + _reader.getText() + "-->");
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    closeStartTag();
+                    _out.write("<?" + _reader.getPITarget() + " " + _reader.getPIData() + "?>");
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes the dimension element with a range, which includes the edited cells
+     */
+    private void writeDimension() throws IOException {
+        String ref = _reader.getAttributeValue(null, "ref");
+        CellRangeAddress edited = _patch.getCellRange();
+        if (ref != null && edited != null) {
+            try {
+                CellRangeAddress range = CellRangeAddress.valueOf(ref);
+                ref = new CellRangeAddress(
+                    Math.min(range.getFirstRow(), edited.getFirstRow()),
+                    Math.max(range.getLastRow(), edited.getLastRow()),
+                    Math.min(range.getFirstColumn(), edited.getFirstColumn()),
+                    Math.max(range.getLastColumn(), edited.getLastColumn())).formatAsString();
+            } catch (IllegalArgumentException e) {
+                // keep an invalid range, like the parsed sheet does
+            }
+        }
+        appendStartTag(_out, "ref");
+        if (ref != null) {
+            appendAttribute(_out, "ref", ref);
+        }
+        _startTagOpen = true;
+    }
+
+    private void writeSheetData() throws IOException, XMLStreamException, XmlException {
+        String prefix = _reader.getPrefix();
+        _mainPrefix = prefix == null || prefix.isEmpty() ? "" : prefix + ":";
+        addNamespaces(_namespaces);
+        _cellOptions = cellOptions(_namespaces);
+        String name = qName();
+        appendStartTag(_out, null);
+        _startTagOpen = true;
+
+        int rownum = -1;
+        for (int event = _reader.next(); event != XMLStreamConstants.END_ELEMENT; event = _reader.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                closeStartTag();
+                if (isMain("row")) {
+                    String r = _reader.getAttributeValue(null, "r");
+                    rownum = r == null ? rownum + 1 : Integer.parseInt(r.trim()) - 1;
+                    writeNewRows(rownum);
+                    writeRow(rownum);
+                } else {
+                    copyElement(_out, false);
+                }
+            }
+        }
+        writeNewRows(Integer.MAX_VALUE);
+        writeEndTag(name);
+    }
+
+    /**
+     * Writes the rows of the edits before a row, which don't exist
+     */
+    private void writeNewRows(int rownum) throws IOException {
+        while (!_pendingRows.isEmpty() && _pendingRows.firstKey() < rownum) {
+            Map.Entry<Integer, RowEdit> entry = _pendingRows.pollFirstEntry();
+            RowEdit edit = entry.getValue();
+            if (edit.createsRow()) {
+                closeStartTag();
+                writeNewRow(entry.getKey(), edit);
+            }
+        }
+    }
+
+    private void writeNewRow(int rownum, RowEdit edit) throws IOException {
+        _insertedRows.add(rownum);
+        _out.write("<" + _mainPrefix + "row r=\"" + (rownum + 1) + "\"");
+        appendHeight(edit);
+        _startTagOpen = true;
+        writeNewCells(new TreeMap<>(edit.getCells()), rownum, Integer.MAX_VALUE);
+        writeEndTag(_mainPrefix + "row");
+    }
+
+    private void writeRow(int rownum) throws IOException, XMLStreamException, XmlException {
+        if (_insertedRows.contains(rownum)) {
+            throw new IllegalStateException("The rows of sheet " + _sheet.getSheetName()
+                + " aren't sorted, row " + (rownum + 1) + " follows a higher row");
+        }
+        RowEdit edit = _pendingRows.remove(rownum);
+        Map<String, String> namespaces = _namespaces;
+        XmlOptions options = _cellOptions;
+        if (_reader.getNamespaceCount() > 0) {
+            namespaces = new HashMap<>(_namespaces);
+            addNamespaces(namespaces);
+            options = cellOptions(namespaces);
+        }
+        if (edit != null && edit.isRemoved()) {
+            removeRow(rownum, namespaces);
+            if (edit.createsRow()) {
+                writeNewRow(rownum, edit);
+            }
+            return;
+        }
+
+        NavigableMap<Integer, CellEdit> cells = edit == null ? null : new TreeMap<>(edit.getCells());
+        boolean heightChanged = edit != null && !Float.isNaN(edit.getHeight());
+        String name = qName();
+        _out.write("<" + name + " r=\"" + (rownum + 1) + "\"");
+        appendNamespaceDeclarations(_out);
+        for (int i = 0; i < _reader.getAttributeCount(); i++) {
+            String localName = _reader.getAttributeLocalName(i);
+            boolean plain = isPlainAttribute(i);
+            if (!(plain && ("r".equals(localName)
+                    || (heightChanged && ("ht".equals(localName) || "customHeight".equals(localName)))
+                    || (cells != null && !cells.isEmpty() && "spans".equals(localName))))) {
+                appendAttribute(_out, i);
+            }
+        }
+        if (heightChanged) {
+            appendHeight(edit);
+        }
+        _startTagOpen = true;
+
+        int column = -1;
+        for (int event = _reader.next(); event != XMLStreamConstants.END_ELEMENT; event = _reader.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isMain("c")) {
+                    readCell(column + 1);
+                    column = _cell.column;
+                    writeNewCells(cells, rownum, column);
+                    closeStartTag();
+                    writeCell(rownum, cells == null ? null : cells.remove(column), edit != null, namespaces, options);
+                } else {
+                    writeNewCells(cells, rownum, Integer.MAX_VALUE);
+                    closeStartTag();
+                    copyElement(_out, false);
+                }
+            }
+        }
+        writeNewCells(cells, rownum, Integer.MAX_VALUE);
+        writeEndTag(name);
+    }
+
+    /**
+     * Skips a removed row, but remembers the formulas of its cells
+     */
+    private void removeRow(int rownum, Map<String, String> namespaces) throws IOException, XMLStreamException {
+        int column = -1;
+        for (int event = _reader.next(); event != XMLStreamConstants.END_ELEMENT; event = _reader.next()) {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (isMain("c")) {
+                    readCell(column + 1);
+                    column = _cell.column;
+                    recordArrayFormula(rownum, true);
+                    onReplaceCell(rownum, column);
+                } else {
+                    skipElement();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the new cells of the edits before a column
+     */
+    private void writeNewCells(NavigableMap<Integer, CellEdit> cells, int rownum, int column) throws IOException {
+        while (cells != null && !cells.isEmpty() && cells.firstKey() < column) {
+            Map.Entry<Integer, CellEdit> entry = cells.pollFirstEntry();
+            CellEdit edit = entry.getValue();
+            if (!edit.isRemoved()) {
+                checkArrayFormulas(rownum, entry.getKey());
+                closeStartTag();
+                String ref = new CellReference(rownum, entry.getKey()).formatAsString(false);
+                edit.applyTo(null, ref, _workbook).save(_out, _cellOptions);
+            }
+        }
+    }
+
+    /**
+     * Writes the current cell with its edit
+     *
+     * @param edit the edit of the cell or {@code null}
+     * @param rowEdited true, if the row has edits, so the cell needs a reference
+     */
+    private void writeCell(int rownum, CellEdit edit, boolean rowEdited, Map<String, String> namespaces,
+            XmlOptions options) throws IOException, XmlException {
+        CellInfo cell = _cell;
+        int column = cell.column;
+        recordArrayFormula(rownum, rowEdited);
+        if (edit != null) {
+            if (edit.changesContent()) {
+                onReplaceCell(rownum, column);
+            }
+            CTCell ct = edit.applyTo(parseCell(namespaces), new CellReference(rownum, column).formatAsString(false), _workbook);
+            if (ct != null) {
+                ct.save(_out, options);
+            }
+        } else if ("shared".equals(cell.formulaType) && cell.formulaRef == null
+                && _replacedMasters.containsKey(cell.sharedIndex)) {
+            CTCell ct = parseCell(namespaces);
+            CTCellFormula f = ct.getF();
+            f.setStringValue(_replacedMasters.get(cell.sharedIndex).convert(rownum, column));
+            f.unsetT();
+            f.unsetSi();
+            ct.save(_out, options);
+        } else if (rowEdited && !cell.hasRef) {
+            // the position of the following cells may change
+            CTCell ct = parseCell(namespaces);
+            ct.setR(new CellReference(rownum, column).formatAsString(false));
+            ct.save(_out, options);
+        } else {
+            _out.append(_xml);
+        }
+    }
+
+    /**
+     * Handles the formula of the current cell, which is replaced or removed
+     *
+     * @throws IllegalStateException if the cell is part of a multi-cell array formula
+     */
+    private void onReplaceCell(int rownum, int column) {
+        CellInfo cell = _cell;
+        checkArrayFormulas(rownum, column);
+        if (cell.formulaType == null && cell.formula.length() == 0) {
+            return;
+        }
+        if ("shared".equals(cell.formulaType) && cell.formulaRef != null && cell.sharedIndex != null) {
+            _replacedMasters.put(cell.sharedIndex, new SharedMaster(cell.formula.toString(),
+                CellRangeAddress.valueOf(cell.formulaRef)));
+        }
+        CalculationChain calcChain = _workbook.getCalculationChain();
+        if (calcChain != null) {
+            calcChain.removeItem((int) _sheet.sheet.getSheetId(),
+                new CellReference(rownum, column).formatAsString(false));
+        }
+    }
+
+    /**
+     * Remembers a multi-cell array formula of the current cell, if it overlaps the edited rows
+     */
+    private void recordArrayFormula(int rownum, boolean rowEdited) {
+        CellInfo cell = _cell;
+        if (!"array".equals(cell.formulaType) || cell.formulaRef == null) {
+            return;
+        }
+        CellRangeAddress range;
+        try {
+            range = CellRangeAddress.valueOf(cell.formulaRef);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (range.getNumberOfCells() > 1 && (rowEdited
+                || !_pendingRows.subMap(range.getFirstRow(), true, range.getLastRow(), true).isEmpty())) {
+            _arrayFormulas.add(range);
+        }
+    }
+
+    private void checkArrayFormulas(int rownum, int column) {
+        _arrayFormulas.removeIf(range -> range.getLastRow() < rownum);
+        for (CellRangeAddress range : _arrayFormulas) {
+            if (range.isInRange(rownum, column)) {
+                throw new IllegalStateException("Cell " + new CellReference(rownum, column).formatAsString()
+                    + " is part of a multi-cell array formula. You cannot change part of an array.");
+            }
+        }
+    }
+
+    private void appendHeight(RowEdit edit) throws IOException {
+        float height = edit.getHeight();
+        if (!Float.isNaN(height) && height != RowEdit.DEFAULT_HEIGHT) {
+            // like XSSFRow.setHeightInPoints
+            _out.write(" ht=\"" + ((short) (height * 20)) / 20d + "\" customHeight=\"1\"");
+        }
+    }
+
+    /**
+     * Reads the current cell into {@link #_xml} and {@link #_cell}
+     *
+     * @param column the column, if the cell has no reference
+     */
+    private void readCell(int column) throws IOException, XMLStreamException {
+        CellInfo cell = _cell;
+        cell.reset();
+        String ref = _reader.getAttributeValue(null, "r");
+        if (ref != null) {
+            cell.hasRef = true;
+            int refColumn = CompactSheetData.parseColumn(ref);
+            if (refColumn >= 0) {
+                column = refColumn;
+            }
+        }
+        cell.column = column;
+        for (int i = 0; i < _reader.getNamespaceCount(); i++) {
+            String prefix = _reader.getNamespacePrefix(i);
+            cell.declaredPrefixes.add(prefix == null ? "" : prefix);
+        }
+        _xml.setLength(0);
+        cell.nameLength = qName().length() + 1;
+        copyElement(_xml, true);
+    }
+
+    /**
+     * Copies the current element with its content
+     *
+     * @param cell true, if the element is a cell, whose formula is read into {@link #_cell}
+     */
+    private void copyElement(Appendable out, boolean cell) throws IOException, XMLStreamException {
+        appendStartTag(out, null);
+        boolean open = true;
+        boolean formula = false;
+        int depth = 0;
+        while (true) {
+            int event = _reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (open) {
+                    out.append('>');
+                }
+                if (cell && depth == 0 && isMain("f")) {
+                    formula = true;
+                    _cell.formulaType = _reader.getAttributeValue(null, "t");
+                    _cell.formulaRef = _reader.getAttributeValue(null, "ref");
+                    _cell.sharedIndex = _reader.getAttributeValue(null, "si");
+                }
+                appendStartTag(out, null);
+                open = true;
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (open) {
+                    out.append("/>");
+                    open = false;
+                } else {
+                    out.append("</").append(qName()).append('>');
+                }
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+                formula = false;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                if (open) {
+                    out.append('>');
+                    open = false;
+                }
+                CompactSheetData.appendText(out, _reader.getText());
+                if (formula && depth == 1) {
+                    _cell.formula.append(_reader.getText());
+                }
+            }
+        }
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = _reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @return the current cell as bean
+     */
+    private CTCell parseCell(Map<String, String> namespaces) throws IOException, XmlException {
+        StringBuilder xml = new StringBuilder(_xml.length() + 200);
+        xml.append(_xml, 0, _cell.nameLength);
+        for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+            if (!_cell.declaredPrefixes.contains(ns.getKey())) {
+                xml.append(ns.getKey().isEmpty() ? " xmlns=\"" : " xmlns:" + ns.getKey() + "=\"");
+                CompactSheetData.appendAttributeValue(xml, ns.getValue());
+                xml.append('"');
+            }
+        }
+        xml.append(_xml, _cell.nameLength, _xml.length());
+        return CTCell.Factory.parse(xml.toString(), CompactSheetData.FRAGMENT_OPTIONS);
+    }
+
+    /**
+     * @return the options for saving a cell, which uses the declared namespaces
+     */
+    private static XmlOptions cellOptions(Map<String, String> namespaces) {
+        XmlOptions options = new XmlOptions(DEFAULT_XML_OPTIONS);
+        options.setSaveSyntheticDocumentElement(new QName(NS_MAIN, "c"));
+        options.setSaveImplicitNamespaces(new HashMap<>(namespaces));
+        return options;
+    }
+
+    private void addNamespaces(Map<String, String> namespaces) {
+        for (int i = 0; i < _reader.getNamespaceCount(); i++) {
+            String prefix = _reader.getNamespacePrefix(i);
+            namespaces.put(prefix == null ? "" : prefix, _reader.getNamespaceURI(i));
+        }
+    }
+
+    private XSSFEvaluationWorkbook getEvaluationWorkbook() {
+        if (_evaluationWorkbook == null) {
+            _evaluationWorkbook = XSSFEvaluationWorkbook.create(_workbook);
+        }
+        return _evaluationWorkbook;
+    }
+
+    private void closeStartTag() throws IOException {
+        if (_startTagOpen) {
+            _out.write('>');
+            _startTagOpen = false;
+        }
+    }
+
+    private void writeEndTag() throws IOException {
+        writeEndTag(qName());
+    }
+
+    private void writeEndTag(String name) throws IOException {
+        if (_startTagOpen) {
+            _out.write("/>");
+            _startTagOpen = false;
+        } else {
+            _out.write("</" + name + ">");
+        }
+    }
+
+    private boolean isMain(String localName) {
+        return localName.equals(_reader.getLocalName()) && NS_MAIN.equals(_reader.getNamespaceURI());
+    }
+
+    private boolean isPlainAttribute(int index) {
+        String ns = _reader.getAttributeNamespace(index);
+        return ns == null || ns.isEmpty();
+    }
+
+    private String qName() {
+        String prefix = _reader.getPrefix();
+        return prefix == null || prefix.isEmpty() ? _reader.getLocalName() : prefix + ":" + _reader.getLocalName();
+    }
+
+    /**
+     * Appends the start tag of the current element as it was read, without the closing {@code >}
+     *
+     * @param skippedAttribute the name of an attribute without namespace, which isn't appended, or {@code null}
+     */
+    private void appendStartTag(Appendable out, String skippedAttribute) throws IOException {
+        out.append('<').append(qName());
+        appendNamespaceDeclarations(out);
+        for (int i = 0; i < _reader.getAttributeCount(); i++) {
+            if (skippedAttribute == null || !isPlainAttribute(i)
+                    || !skippedAttribute.equals(_reader.getAttributeLocalName(i))) {
+                appendAttribute(out, i);
+            }
+        }
+    }
+
+    private void appendNamespaceDeclarations(Appendable out) throws IOException {
+        for (int i = 0; i < _reader.getNamespaceCount(); i++) {
+            String prefix = _reader.getNamespacePrefix(i);
+            appendAttribute(out, prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+                _reader.getNamespaceURI(i));
+        }
+    }
+
+    private void appendAttribute(Appendable out, int index) throws IOException {
+        String prefix = _reader.getAttributePrefix(index);
+        String localName = _reader.getAttributeLocalName(index);
+        appendAttribute(out, prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName,
+            _reader.getAttributeValue(index));
+    }
+
+    private static void appendAttribute(Appendable out, String name, String value) throws IOException {
+        out.append(' ').append(name).append("=\"");
+        CompactSheetData.appendAttributeValue(out, value);
+        out.append('"');
+    }
+
+    /**
+     * The current cell of the worksheet part
+     */
+    private static final class CellInfo {
+        private int column;
+        private boolean hasRef;
+        /** the length of the element name with {@code <} */
+        private int nameLength;
+        private final Set<String> declaredPrefixes = new HashSet<>();
+        // the attributes and the text of the formula
+        private String formulaType;
+        private String formulaRef;
+        private String sharedIndex;
+        private final StringBuilder formula = new StringBuilder();
+
+        private void reset() {
+            hasRef = false;
+            declaredPrefixes.clear();
+            formulaType = null;
+            formulaRef = null;
+            sharedIndex = null;
+            formula.setLength(0);
+        }
+    }
+
+    /**
+     * The master of a shared formula, whose cell was replaced
+     */
+    private final class SharedMaster {
+        private final String _formula;
+        private final CellRangeAddress _range;
+
+        private SharedMaster(String formula, CellRangeAddress range) {
+            _formula = formula;
+            _range = range;
+        }
+
+        /**
+         * @return the formula of a cell depending on the master
+         */
+        private String convert(int rownum, int column) {
+            XSSFEvaluationWorkbook fpb = getEvaluationWorkbook();
+            Ptg[] ptgs = _workbook.getFormulaParseCache().parseShared(_formula, fpb, _workbook.getSheetIndex(_sheet),
+                _range.getFirstRow(), _range.getFirstColumn(), rownum, column);
+            return FormulaRenderer.toFormulaString(fpb, ptgs);
+        }
+    }
+}
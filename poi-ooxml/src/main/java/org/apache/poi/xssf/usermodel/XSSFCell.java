@@ -24,10 +24,8 @@ import java.util.Calendar;
 import java.util.Date;
 
 import org.apache.poi.ss.SpreadsheetVersion;
-import org.apache.poi.ss.formula.FormulaParser;
 import org.apache.poi.ss.formula.FormulaRenderer;
 import org.apache.poi.ss.formula.FormulaType;
-import org.apache.poi.ss.formula.SharedFormula;
 import org.apache.poi.ss.formula.eval.ErrorEval;
 import org.apache.poi.ss.formula.ptg.Ptg;
 import org.apache.poi.ss.usermodel.Cell;
@@ -429,6 +427,16 @@ public final class XSSFCell extends CellBase {
      * @return non shared formula created for the given shared formula and this cell
      */
     private String convertSharedFormula(int si, BaseXSSFEvaluationWorkbook fpb){
+        return FormulaRenderer.toFormulaString(fpb, parseSharedFormula(si, fpb));
+    }
+
+    /**
+     * Parses the shared formula for this cell
+     *
+     * @param si Shared Group Index
+     * @return the tokens of the formula of this cell
+     */
+    private Ptg[] parseSharedFormula(int si, BaseXSSFEvaluationWorkbook fpb){
         XSSFSheet sheet = getSheet();
 
         CTCellFormula f = sheet.getSharedFormula(si);
@@ -443,13 +451,30 @@ public final class XSSFCell extends CellBase {
 
         CellRangeAddress ref = CellRangeAddress.valueOf(sharedFormulaRange);
 
-        int sheetIndex = sheet.getWorkbook().getSheetIndex(sheet);
-        SharedFormula sf = new SharedFormula(SpreadsheetVersion.EXCEL2007);
+        XSSFWorkbook wb = sheet.getWorkbook();
+        int sheetIndex = wb.getSheetIndex(sheet);
+        return wb.getFormulaParseCache().parseShared(sharedFormula, fpb, sheetIndex,
+                ref.getFirstRow(), ref.getFirstColumn(), getRowIndex(), getColumnIndex());
+    }
 
-        Ptg[] ptgs = FormulaParser.parse(sharedFormula, fpb, FormulaType.CELL, sheetIndex, getRowIndex());
-        Ptg[] fmla = sf.convertSharedFormulas(ptgs,
-                getRowIndex() - ref.getFirstRow(), getColumnIndex() - ref.getFirstColumn());
-        return FormulaRenderer.toFormulaString(fpb, fmla);
+    /**
+     * package/hierarchy use only - parses the formula of this cell with the parse cache of the workbook,
+     * shared formulas are re-based from the first cell of their group
+     *
+     * @param fpb evaluation workbook for parsing the formula
+     * @return the tokens of the formula of this cell
+     * @throws IllegalStateException if the cell type returned by {@link #getCellType()} is not {@link CellType#FORMULA}
+     */
+    Ptg[] getFormulaTokens(BaseXSSFEvaluationWorkbook fpb) {
+        CTCellFormula f = _cell.getF();
+        if (f != null && f.getT() == STCellFormulaType.SHARED && getCellType() == CellType.FORMULA
+                && !(f.getStringValue().isEmpty() && isPartOfArrayFormulaGroup())) {
+            return parseSharedFormula(Math.toIntExact(f.getSi()), fpb);
+        }
+        XSSFSheet sheet = getSheet();
+        XSSFWorkbook wb = sheet.getWorkbook();
+        return wb.getFormulaParseCache().parse(getCellFormula(fpb), fpb, FormulaType.CELL,
+                wb.getSheetIndex(sheet), getRowIndex(), getColumnIndex());
     }
 
     /**
@@ -491,8 +516,9 @@ public final class XSSFCell extends CellBase {
 
         if (wb.getCellFormulaValidation()) {
             XSSFEvaluationWorkbook fpb = XSSFEvaluationWorkbook.create(wb);
-            //validate through the FormulaParser
-            FormulaParser.parse(formula, fpb, formulaType, wb.getSheetIndex(getSheet()), getRowIndex());
+            //validate through the FormulaParser, repeated formulas are only parsed once
+            wb.getFormulaParseCache().parse(formula, fpb, formulaType, wb.getSheetIndex(getSheet()),
+                    getRowIndex(), getColumnIndex());
         }
 
         CTCellFormula f;
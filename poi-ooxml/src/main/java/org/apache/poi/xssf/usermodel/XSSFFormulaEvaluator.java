@@ -23,6 +23,8 @@ import org.apache.poi.ss.formula.IStabilityClassifier;
 import org.apache.poi.ss.formula.WorkbookEvaluator;
 import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.Beta;
 
 /**
  * Evaluates formula cells.<p>
@@ -100,6 +102,19 @@ public final class XSSFFormulaEvaluator extends BaseXSSFFormulaEvaluator {
         evaluateAllFormulaCells(_book, this);
     }
 
+    /**
+     * Recalculates only the formula cells, which depend on the cells changed since the last call.
+     * The changes must be reported by the notify~ methods, the first call recalculates all formula cells.
+     *
+     * @return the number of recalculated formula cells
+     * @see BaseFormulaEvaluator#recalculateDirty(Workbook)
+     * @since POI 5.2.6
+     */
+    @Beta
+    public int recalculateDirty() {
+        return recalculateDirty(_book);
+    }
+
     /**
      * Turns a XSSFCell into a XSSFEvaluationCell
      */
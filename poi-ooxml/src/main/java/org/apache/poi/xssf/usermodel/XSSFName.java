@@ -231,6 +231,8 @@ public final class XSSFName implements Name {
         } else {
             _ctName.setLocalSheetId(index);
         }
+        // the scope of the name changes the parsed formulas
+        _workbook.getFormulaParseCache().clear();
     }
 
     /**
@@ -0,0 +1,88 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.util.Beta;
+
+/**
+ * The options for reading an existing workbook:
+ * <pre>{@code
+ * XSSFReadOptions options = new XSSFReadOptions();
+ * options.setCompactCells(true);
+ * try (XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(file), options)) {
+ *     ...
+ * }
+ * }</pre>
+ *
+ * @see XSSFWorkbook#XSSFWorkbook(OPCPackage, XSSFReadOptions)
+ * @since POI 5.2.6
+ */
+@Beta
+public final class XSSFReadOptions {
+    private boolean compactCells;
+    private boolean lazySheets;
+
+    /**
+     * @return true, if the cells of the worksheets are kept in compact columns until their rows are used
+     */
+    public boolean isCompactCells() {
+        return compactCells;
+    }
+
+    /**
+     * Keeps the cells of the worksheets in primitive columns, instead of parsing them into a tree of
+     * {@code CTRow} and {@code CTCell} beans, which needs about 1 KB per cell.
+     * <p>
+     * A row is converted to a {@link XSSFRow} with its beans, when it is used by {@link XSSFSheet#getRow(int)},
+     * by iterating the rows or by changing the sheet, e.g. by {@link XSSFSheet#shiftRows(int, int, int)}.
+     * So the workbook stays small, if only some rows are read or changed. The rows, which weren't used, are
+     * written from the columns when the workbook is saved.
+     * <p>
+     * The {@code sheetData} element of {@link XSSFSheet#getCTWorksheet()} is empty in this mode,
+     * the rows have to be accessed by the sheet.
+     *
+     * @param compactCells true to keep the cells in compact columns, the default is false
+     */
+    public void setCompactCells(boolean compactCells) {
+        this.compactCells = compactCells;
+    }
+
+    /**
+     * @return true, if a worksheet is only parsed when the sheet is first accessed
+     */
+    public boolean isLazySheets() {
+        return lazySheets;
+    }
+
+    /**
+     * Defers parsing the XML of a worksheet until the sheet is first accessed by
+     * {@link XSSFWorkbook#getSheetAt(int)}, {@link XSSFWorkbook#getSheet(String)} or by iterating the sheets.
+     * So opening a workbook with many sheets only parses the sheets, which are used.
+     * <p>
+     * The names, the order and the visibility of the sheets can be read and changed without parsing them.
+     * A worksheet which wasn't accessed is copied unchanged from the source package, when the workbook is saved.
+     * Some operations of the workbook need all sheets, e.g. renaming a sheet updates the formulas
+     * of all sheets, so they parse the remaining worksheets.
+     *
+     * @param lazySheets true to parse the worksheets when they are accessed, the default is false
+     */
+    public void setLazySheets(boolean lazySheets) {
+        this.lazySheets = lazySheets;
+    }
+}
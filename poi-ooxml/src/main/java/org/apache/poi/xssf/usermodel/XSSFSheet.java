@@ -21,15 +21,26 @@ import static org.apache.poi.ooxml.POIXMLTypeLoader.DEFAULT_XML_OPTIONS;
 import static org.apache.poi.xssf.usermodel.helpers.XSSFPasswordHelper.setPassword;
 import static org.apache.poi.xssf.usermodel.helpers.XSSFPasswordHelper.validatePassword;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.poi.ooxml.POIXMLDocumentPart;
@@ -51,8 +62,10 @@ import org.apache.poi.ss.util.PaneInformation;
 import org.apache.poi.ss.util.SSCellRange;
 import org.apache.poi.ss.util.SheetUtil;
 import org.apache.poi.util.Beta;
+import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.Internal;
 import org.apache.poi.util.Removal;
+import org.apache.poi.util.TempFile;
 import org.apache.poi.util.Units;
 import org.apache.poi.xssf.model.Comments;
 import org.apache.poi.xssf.usermodel.XSSFPivotTable.PivotTableReferenceConfigurator;
@@ -85,12 +98,24 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
     private static final double DEFAULT_MARGIN_BOTTOM = 0.75;
     private static final double DEFAULT_MARGIN_LEFT = 0.7;
     private static final double DEFAULT_MARGIN_RIGHT = 0.7;
+    private static final Pattern EMPTY_SHEET_DATA = Pattern.compile("<([\\w.-]+:)?sheetData\\s*/>");
 
     //TODO make the two variable below private!
     protected CTSheet sheet;
     protected CTWorksheet worksheet;
 
     private final SortedMap<Integer, XSSFRow> _rows = new TreeMap<>();
+    /**
+     * the rows, which weren't converted to {@link XSSFRow}s, if the sheet was read with compact cells.
+     * The {@link CTRow}s of the converted rows aren't part of the {@code sheetData} element then.
+     */
+    private CompactSheetData _compactRows;
+    /** true while a row of {@link #_compactRows} is converted */
+    private boolean _convertingRow;
+    /** true, if the worksheet part of a lazily loaded sheet wasn't parsed yet */
+    private boolean _readDeferred;
+    /** the edits of the sheet, which are streamed through the worksheet part, if it wasn't read */
+    private XSSFSheetPatch _patch;
     private List<XSSFHyperlink> hyperlinks;
     private ColumnHelper columnHelper;
     private Comments sheetComments;
@@ -151,15 +176,94 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         }
     }
 
+    /**
+     * Defers reading the worksheet part until {@link #readIfDeferred()} is called
+     */
+    void deferRead() {
+        _readDeferred = true;
+    }
+
+    /**
+     * Reads the worksheet part, if the sheet was loaded lazily and wasn't read yet
+     *
+     * @return this sheet
+     */
+    XSSFSheet readIfDeferred() {
+        if (_readDeferred) {
+            _readDeferred = false;
+            onDocumentRead();
+            if (_patch != null) {
+                _patch.applyTo(this);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @return true, if the worksheet part of a lazily loaded sheet wasn't parsed yet
+     */
+    boolean isReadDeferred() {
+        return _readDeferred;
+    }
+
+    /**
+     * @return the patch of this sheet, see {@link XSSFWorkbook#getSheetPatch(int)}
+     */
+    XSSFSheetPatch getPatch() {
+        if (_patch == null) {
+            _patch = new XSSFSheetPatch(this);
+        }
+        return _patch;
+    }
+
+    /**
+     * Streams the worksheet part through the edits of the patch, if the sheet wasn't read.
+     * The part is kept unchanged otherwise. The edits are kept, because the original part is
+     * read again, if the workbook is written once more.
+     */
+    void writePatch() throws IOException {
+        if (!_readDeferred || _patch == null || _patch.isEmpty()) {
+            return;
+        }
+        PackagePart part = getPackagePart();
+        File tmp = TempFile.createTempFile("poi-sheet-patch", ".xml");
+        try {
+            try (InputStream is = part.getInputStream();
+                 OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                SheetPatchWriter.write(this, _patch, is, os);
+            } catch (XMLStreamException | XmlException e) {
+                throw new POIXMLException(e);
+            }
+            try (InputStream is = new FileInputStream(tmp);
+                 OutputStream os = part.getOutputStream()) {
+                IOUtils.copy(is, os);
+            }
+        } finally {
+            if (!tmp.delete()) {
+                LOG.atWarn().log("Could not delete temporary file {}", tmp);
+            }
+        }
+    }
+
     protected void read(InputStream is) throws IOException {
+        _compactRows = null;
         try {
-            worksheet = WorksheetDocument.Factory.parse(is, DEFAULT_XML_OPTIONS).getWorksheet();
-        } catch (XmlException e){
+            if (getParent() instanceof XSSFWorkbook && getWorkbook().getReadOptions().isCompactCells()) {
+                StringBuilder xml = new StringBuilder();
+                _compactRows = CompactSheetData.read(is, xml);
+                worksheet = WorksheetDocument.Factory.parse(xml.toString(), DEFAULT_XML_OPTIONS).getWorksheet();
+            } else {
+                worksheet = WorksheetDocument.Factory.parse(is, DEFAULT_XML_OPTIONS).getWorksheet();
+            }
+        } catch (XmlException | XMLStreamException e){
             throw new POIXMLException(e);
         }
 
         columnHelper = new ColumnHelper(worksheet);
         initRows(worksheet);
+        if (_compactRows != null) {
+            _compactRows.forEachFormulaMaster(this::onReadFormula);
+        }
         // Look for bits we're interested in
         for(RelationPart rp : getRelationParts()){
             POIXMLDocumentPart p = rp.getDocumentPart();
@@ -171,7 +275,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
                 tables.put( rp.getRelationship().getId(), (XSSFTable)p );
             }
             if(p instanceof XSSFPivotTable) {
-                getWorkbook().getPivotTables().add((XSSFPivotTable) p);
+                getWorkbook().onReadPivotTable((XSSFPivotTable) p);
             }
         }
 
@@ -706,6 +810,9 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         final Integer rownumI = Integer.valueOf(rownum); // NOSONAR
         CTRow ctRow;
         XSSFRow prev = _rows.get(rownumI);
+        if (prev == null && _compactRows != null) {
+            prev = convertCompactRow(rownum);
+        }
         if(prev != null){
             // the Cells in an existing row are invalidated on-purpose, in order to clean up correctly, we
             // need to call the remove, so things like ArrayFormulas and CalculationChain updates are done
@@ -718,6 +825,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
 
             ctRow = prev.getCTRow();
             ctRow.set(CTRow.Factory.newInstance());
+        } else if (_compactRows != null) {
+            ctRow = CTRow.Factory.newInstance();
         } else {
             if(_rows.isEmpty() || rownum > _rows.lastKey()) {
                 // we can append the new row at the end
@@ -1073,7 +1182,14 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
      */
     @Override
     public int getFirstRowNum() {
-        return _rows.isEmpty() ? -1 : _rows.firstKey();
+        int first = _rows.isEmpty() ? -1 : _rows.firstKey();
+        if (_compactRows != null) {
+            int compactFirst = _compactRows.getFirstRowNum();
+            if (first == -1 || (compactFirst != -1 && compactFirst < first)) {
+                first = compactFirst;
+            }
+        }
+        return first;
     }
 
     /**
@@ -1195,7 +1311,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         // A test with 1_000_000 rows shows that querying getLastRowNum with lastKey() implementation takes ~40 ms,
         // and ~1.2 ms with cached implementation. 40 ms is negligible compared to the time of evaluation a million
         // cells, and the lastKey implementation is much more elegant and less error prone than caching.
-        return _rows.isEmpty() ? -1 : _rows.lastKey();
+        int last = _rows.isEmpty() ? -1 : _rows.lastKey();
+        return _compactRows == null ? last : Math.max(last, _compactRows.getLastRowNum());
     }
 
     @Override
@@ -1409,7 +1526,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
      */
     @Override
     public int getPhysicalNumberOfRows() {
-        return _rows.size();
+        return _compactRows == null ? _rows.size() : _rows.size() + _compactRows.getRowCount();
     }
 
     /**
@@ -1490,7 +1607,55 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
         //noinspection UnnecessaryBoxing
         final Integer rownumI = Integer.valueOf(rownum); // NOSONAR
-        return _rows.get(rownumI);
+        XSSFRow row = _rows.get(rownumI);
+        if (row == null && _compactRows != null) {
+            row = convertCompactRow(rownum);
+        }
+        return row;
+    }
+
+    /**
+     * Converts a row of the compact cells to a {@link XSSFRow}
+     *
+     * @return the row or {@code null} if there is no such compact row
+     */
+    private XSSFRow convertCompactRow(int rownum) {
+        CTRow ctRow = _compactRows.removeRow(rownum);
+        if (ctRow == null) {
+            return null;
+        }
+        XSSFRow row;
+        _convertingRow = true;
+        try {
+            row = new XSSFRow(ctRow, this);
+        } finally {
+            _convertingRow = false;
+        }
+        // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
+        //noinspection UnnecessaryBoxing
+        _rows.put(Integer.valueOf(rownum), row); // NOSONAR
+        return row;
+    }
+
+    /**
+     * Converts all rows of the compact cells to {@link XSSFRow}s
+     */
+    private void convertCompactRows() {
+        if (_compactRows != null) {
+            for (int rownum = _compactRows.nextRowNum(0); rownum != -1; rownum = _compactRows.nextRowNum(rownum + 1)) {
+                convertCompactRow(rownum);
+            }
+        }
+    }
+
+    /**
+     * @return the first row number, which is at least {@code rownum}, or -1
+     */
+    private int nextRowNum(int rownum) {
+        SortedMap<Integer, XSSFRow> tail = _rows.tailMap(rownum);
+        int next = tail.isEmpty() ? -1 : tail.firstKey();
+        int compactNext = _compactRows.nextRowNum(rownum);
+        return next == -1 || (compactNext != -1 && compactNext < next) ? compactNext : next;
     }
 
     /**
@@ -1525,6 +1690,13 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
             final Integer startI = Integer.valueOf(startRowNum); // NOSONAR
             //noinspection UnnecessaryBoxing
             final Integer endI = Integer.valueOf(endRowNum+1); // NOSONAR
+            if (_compactRows != null) {
+                for (int rownum = _compactRows.nextRowNum(startRowNum);
+                     rownum != -1 && rownum <= endRowNum;
+                     rownum = _compactRows.nextRowNum(rownum + 1)) {
+                    convertCompactRow(rownum);
+                }
+            }
             final Collection<XSSFRow> inclusive = _rows.subMap(startI, endI).values();
             rows.addAll(inclusive);
         }
@@ -1750,6 +1922,9 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         for (XSSFRow xrow : _rows.values()) {
             outlineLevel = Math.max(outlineLevel, xrow.getCTRow().getOutlineLevel());
         }
+        if (_compactRows != null) {
+            outlineLevel = Math.max(outlineLevel, _compactRows.getMaxOutlineLevel());
+        }
         return (short) outlineLevel;
     }
 
@@ -2047,7 +2222,9 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         // this is not the physical row number!
         final int idx = _rows.headMap(rowNumI).size();
         _rows.remove(rowNumI);
-        worksheet.getSheetData().removeRow(idx);
+        if (_compactRows == null) {
+            worksheet.getSheetData().removeRow(idx);
+        }
 
         // also remove any comment located in that row
         if(sheetComments != null) {
@@ -2135,6 +2312,9 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
     @Override
     @SuppressWarnings("unchecked")
     public Iterator<Row> rowIterator() {
+        if (_compactRows != null) {
+            return new CompactRowIterator();
+        }
         return (Iterator<Row>)(Iterator<? extends Row>) _rows.values().iterator();
     }
 
@@ -2148,9 +2328,46 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
     @Override
     @SuppressWarnings("unchecked")
     public Spliterator<Row> spliterator() {
+        if (_compactRows != null) {
+            return Spliterators.spliterator(rowIterator(), getPhysicalNumberOfRows(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+        }
         return (Spliterator<Row>)(Spliterator<? extends Row>) _rows.values().spliterator();
     }
 
+    /**
+     * Iterates the rows in the order of the row numbers and converts the compact rows on the way
+     */
+    private final class CompactRowIterator implements Iterator<Row> {
+        private int nextRowNum;
+        private Integer lastRowNum;
+
+        @Override
+        public boolean hasNext() {
+            return nextRowNum(nextRowNum) != -1;
+        }
+
+        @Override
+        public Row next() {
+            int rownum = nextRowNum(nextRowNum);
+            if (rownum == -1) {
+                throw new NoSuchElementException();
+            }
+            nextRowNum = rownum + 1;
+            lastRowNum = rownum;
+            return getRow(rownum);
+        }
+
+        @Override
+        public void remove() {
+            if (lastRowNum == null) {
+                throw new IllegalStateException();
+            }
+            _rows.remove(lastRowNum);
+            lastRowNum = null;
+        }
+    }
+
     /**
      * Flag indicating whether the sheet displays Automatic Page Breaks.
      *
@@ -3049,6 +3266,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
      */
     @Override
     public void shiftRows(int startRow, int endRow, final int n, boolean copyRowHeight, boolean resetOriginalRowHeight) {
+        convertCompactRows();
         List<XSSFTable> overlappingTables = new ArrayList<>();
         for (XSSFTable table : getTables()) {
             if ((table.getStartRowIndex() < startRow && table.getEndRowIndex() < startRow)
@@ -3090,6 +3308,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
      */
     @Override
     public void shiftColumns(int startColumn, int endColumn, final int n) {
+        convertCompactRows();
         List<XSSFTable> overlappingTables = new ArrayList<>();
         for (XSSFTable table : getTables()) {
             if ((table.getStartColIndex() < startColumn && table.getEndColIndex() < startColumn)
@@ -3143,6 +3362,19 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
     }
 
     private void rebuildRows() {
+        if (_compactRows != null) {
+            //the CTRows aren't part of the CTSheetData, only the _rows map is rebuilt
+            SortedMap<Long, CTRow> ctRows = new TreeMap<>();
+            for (XSSFRow row : _rows.values()) {
+                ctRows.put(row.getCTRow().getR(), row.getCTRow());
+            }
+            _rows.clear();
+            for (CTRow ctRow : ctRows.values()) {
+                XSSFRow row = new XSSFRow(ctRow, this);
+                _rows.put(Math.toIntExact(row.getRowNum()), row);
+            }
+            return;
+        }
         //rebuild the CTSheetData CTRow order
         SortedMap<Long, CTRow> ctRows = new TreeMap<>();
         CTSheetData sheetData = getCTWorksheet().getSheetData();
@@ -3185,8 +3417,10 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
                 // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
                 //noinspection UnnecessaryBoxing
                 final Integer rownumI = Integer.valueOf(row.getRowNum()); // NOSONAR
-                int idx = _rows.headMap(rownumI).size();
-                worksheet.getSheetData().removeRow(idx);
+                if (_compactRows == null) {
+                    int idx = _rows.headMap(rownumI).size();
+                    worksheet.getSheetData().removeRow(idx);
+                }
 
                 // remove row from _rows
                 it.remove();
@@ -3754,15 +3988,25 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
     }
 
     void onReadCell(XSSFCell cell){
+        if (_convertingRow) {
+            // the formulas of the compact rows were collected, when the sheet was read
+            return;
+        }
         //collect cells holding shared formulas
         CTCell ct = cell.getCTCell();
         CTCellFormula f = ct.getF();
-        if (f != null && f.getT() == STCellFormulaType.SHARED && f.isSetRef() && f.getStringValue() != null) {
+        if (f != null) {
+            onReadFormula(f, cell.getRowIndex(), cell.getColumnIndex());
+        }
+    }
+
+    private void onReadFormula(CTCellFormula f, int rowIndex, int columnIndex) {
+        if (f.getT() == STCellFormulaType.SHARED && f.isSetRef() && f.getStringValue() != null) {
             // save a detached  copy to avoid XmlValueDisconnectedException,
             // this may happen when the master cell of a shared formula is changed
             CTCellFormula sf = (CTCellFormula)f.copy();
             CellRangeAddress sfRef = CellRangeAddress.valueOf(sf.getRef());
-            CellReference cellRef = new CellReference(cell);
+            CellReference cellRef = new CellReference(rowIndex, columnIndex);
             // If the shared formula range precedes the master cell then the preceding  part is discarded, e.g.
             // if the cell is E60 and the shared formula range is C60:M85 then the effective range is E60:M85
             // see more details in https://issues.apache.org/bugzilla/show_bug.cgi?id=51710
@@ -3776,13 +4020,24 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
 
             sharedFormulas.put(Math.toIntExact(f.getSi()), sf);
         }
-        if (f != null && f.getT() == STCellFormulaType.ARRAY && f.getRef() != null) {
+        if (f.getT() == STCellFormulaType.ARRAY && f.getRef() != null) {
             arrayFormulas.add(CellRangeAddress.valueOf(f.getRef()));
         }
     }
 
+    @Override
+    protected void prepareForCommit() {
+        // a worksheet which wasn't read is kept unchanged in the package
+        if (!_readDeferred) {
+            super.prepareForCommit();
+        }
+    }
+
     @Override
     protected void commit() throws IOException {
+        if (_readDeferred) {
+            return;
+        }
         PackagePart part = getPackagePart();
         try (OutputStream out = part.getOutputStream()) {
             write(out);
@@ -3856,6 +4111,11 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
                     maxCell = Math.max(maxCell, row.getLastCellNum()-1);
                 }
             }
+            int[] compactColumns = _compactRows == null ? null : _compactRows.getColumnRange();
+            if (compactColumns != null) {
+                minCell = Math.min(minCell, compactColumns[0]);
+                maxCell = Math.max(maxCell, compactColumns[1]);
+            }
 
             // finally, if we had at least one cell we can populate the optional dimension-field
             if(minCell != Integer.MAX_VALUE) {
@@ -3873,7 +4133,11 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         XmlOptions xmlOptions = new XmlOptions(DEFAULT_XML_OPTIONS);
         xmlOptions.setSaveSyntheticDocumentElement(new QName(CTWorksheet.type.getName().getNamespaceURI(), "worksheet"));
 
-        worksheet.save(out, xmlOptions);
+        if (_compactRows == null) {
+            worksheet.save(out, xmlOptions);
+        } else {
+            writeCompactRows(out, xmlOptions);
+        }
 
         // Bug 52233: Ensure that we have a col-array even if write() removed it
         if(setToNull) {
@@ -3881,6 +4145,46 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet, OoxmlSheetEx
         }
     }
 
+    /**
+     * Writes the worksheet with the {@link XSSFRow}s and the compact rows in the {@code sheetData} element
+     */
+    private void writeCompactRows(OutputStream out, XmlOptions xmlOptions) throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        worksheet.save(bos, xmlOptions);
+        String xml = bos.toString(StandardCharsets.UTF_8);
+        // the sheetData element is empty, as the CTRows aren't part of it
+        Matcher matcher = EMPTY_SHEET_DATA.matcher(xml);
+        if (!matcher.find()) {
+            throw new POIXMLException("Cannot find the sheetData element of the worksheet");
+        }
+        String prefix = matcher.group(1) == null ? "" : matcher.group(1);
+
+        Map<String, String> namespaces = new HashMap<>(_compactRows.getNamespaces());
+        namespaces.put("", XSSFRelation.NS_SPREADSHEETML);
+        XmlOptions rowOptions = new XmlOptions(DEFAULT_XML_OPTIONS);
+        rowOptions.setSaveSyntheticDocumentElement(new QName(XSSFRelation.NS_SPREADSHEETML, "row"));
+        rowOptions.setSaveImplicitNamespaces(namespaces);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(xml, 0, matcher.start());
+        writer.write("<" + prefix + "sheetData");
+        if (!prefix.isEmpty()) {
+            // the rows are written with the main namespace as default namespace
+            writer.write(" xmlns=\"" + XSSFRelation.NS_SPREADSHEETML + "\"");
+        }
+        writer.write('>');
+        int rownum = 0;
+        for (XSSFRow row : _rows.values()) {
+            _compactRows.writeRows(rownum, row.getRowNum(), writer);
+            row.getCTRow().save(writer, rowOptions);
+            rownum = row.getRowNum() + 1;
+        }
+        _compactRows.writeRows(rownum, Integer.MAX_VALUE, writer);
+        writer.write("</" + prefix + "sheetData>");
+        writer.write(xml, matcher.end(), xml.length() - matcher.end());
+        writer.flush();
+    }
+
     /**
      * @return true when Autofilters are locked and the sheet is protected.
      */
@@ -0,0 +1,566 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.Beta;
+import org.apache.poi.xssf.model.Comments;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+
+/**
+ * A set of cell and row edits of a worksheet, which is applied while the worksheet part is streamed,
+ * when the workbook is written. So a few cells of a large sheet can be changed without parsing the sheet:
+ * <pre>{@code
+ * XSSFReadOptions options = new XSSFReadOptions();
+ * options.setLazySheets(true);
+ * try (XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(file), options)) {
+ *     XSSFSheetPatch patch = wb.getSheetPatch(wb.getSheetIndex("Data"));
+ *     patch.setCellValue(1000, 3, 42.0);
+ *     patch.setCellFormula(1001, 3, "SUM(D1:D1001)");
+ *     patch.removeRow(1002);
+ *     wb.write(out);
+ * }
+ * }</pre>
+ *
+ * The patch keeps only the edits, the rows of the sheet are streamed from the source package to the written
+ * package. The edited cells are parsed to beans, the other rows are copied unchanged. Rows and cells, which don't
+ * exist, are inserted at their position. Unlike {@link XSSFSheet#shiftRows(int, int, int)}, removing a row
+ * doesn't move the following rows, so formulas, merged regions and hyperlinks stay as they are.<p>
+ *
+ * The edits replace the content of a cell, i.e. setting a value of a formula cell removes the formula.
+ * The cells depending on the master of a shared formula, which is replaced, get their own formula.
+ * An edit of a cell, which is part of a multi-cell array formula, fails with an {@link IllegalStateException}
+ * when the workbook is written, as the array formulas aren't known before.<p>
+ *
+ * If the sheet is accessed, e.g. by {@link XSSFWorkbook#getSheetAt(int)}, the recorded edits are applied to the
+ * parsed sheet, and the following edits change the {@link XSSFRow}s and {@link XSSFCell}s directly.
+ *
+ * @see XSSFWorkbook#getSheetPatch(int)
+ * @see XSSFReadOptions#setLazySheets(boolean)
+ * @since POI 5.2.6
+ */
+@Beta
+public final class XSSFSheetPatch {
+    private final XSSFSheet _sheet;
+    private final NavigableMap<Integer, RowEdit> _rows = new TreeMap<>();
+
+    XSSFSheetPatch(XSSFSheet sheet) {
+        _sheet = sheet;
+    }
+
+    /**
+     * Sets a numeric value. Infinite values are written as {@code #DIV/0!} and {@code NaN} as {@code #NUM!} error,
+     * like {@link XSSFCell#setCellValue(double)}.
+     *
+     * @param rowIndex the 0-based row index
+     * @param columnIndex the 0-based column index
+     * @param value the value
+     * @throws IllegalArgumentException if the row or column index is outside the allowable range
+     */
+    public void setCellValue(int rowIndex, int columnIndex, double value) {
+        CellEdit edit = new CellEdit();
+        if (Double.isInfinite(value)) {
+            edit.setValue(CellType.ERROR, FormulaError.DIV0.getString());
+        } else if (Double.isNaN(value)) {
+            edit.setValue(CellType.ERROR, FormulaError.NUM.getString());
+        } else {
+            edit._type = CellType.NUMERIC;
+            edit._number = value;
+        }
+        editCell(rowIndex, columnIndex, edit);
+    }
+
+    /**
+     * Sets a string value, which is added to the shared strings table
+     *
+     * @param rowIndex the 0-based row index
+     * @param columnIndex the 0-based column index
+     * @param value the value or {@code null} to make the cell blank
+     * @throws IllegalArgumentException if the row or column index is outside the allowable range
+     *  or the text is too long
+     */
+    public void setCellValue(int rowIndex, int columnIndex, String value) {
+        if (value == null) {
+            setBlank(rowIndex, columnIndex);
+            return;
+        }
+        int maxLength = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+        if (value.length() > maxLength) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                "The maximum length of cell contents (text) is %d characters", maxLength));
+        }
+        CellEdit edit = new CellEdit();
+        edit.setValue(CellType.STRING, value);
+        editCell(rowIndex, columnIndex, edit);
+    }
+
+    /**
+     * Sets a boolean value
+     *
+     * @param rowIndex the 0-based row index
+     * @param columnIndex the 0-based column index
+     * @param value the value
+     * @throws IllegalArgumentException if the row or column index is outside the allowable range
+     */
+    public void setCellValue(int rowIndex, int columnIndex, boolean value) {
+        CellEdit edit = new CellEdit();
+        edit._type = CellType.BOOLEAN;
+        edit._number = value ? 1 : 0;
+        editCell(rowIndex, columnIndex, edit);
+    }
+
+    /**
+     * Sets a formula without a cached result
+     *
+     * @param rowIndex the 0-based row index
+     * @param columnIndex the 0-based column index
+     * @param formula the formula, e.g. {@code SUM(C4:E4)}, or {@code null} to make the cell blank
+     * @throws IllegalArgumentException if the row or column index is outside the allowable range
+     * @throws org.apache.poi.ss.formula.FormulaParseException if the formula has incorrect syntax
+     *  and the formulas of the workbook are validated
+     * @see XSSFWorkbook#setCellFormulaValidation(boolean)
+     */
+    public void setCellFormula(int rowIndex, int columnIndex, String formula) {
+        if (formula == null) {
+            setBlank(rowIndex, columnIndex);
+            return;
+        }
+        checkBounds(rowIndex, columnIndex);
+        XSSFWorkbook wb = _sheet.getWorkbook();
+        if (wb.getCellFormulaValidation()) {
+            wb.getFormulaParseCache().parse(formula, XSSFEvaluationWorkbook.create(wb), FormulaType.CELL,
+                wb.getSheetIndex(_sheet), rowIndex, columnIndex);
+        }
+        CellEdit edit = new CellEdit();
+        edit.setValue(CellType.FORMULA, formula);
+        editCell(rowIndex, columnIndex, edit);
+    }
+
+    /**
+     * Removes the value and the formula of a cell, but keeps its style
+     *
+     * @param rowIndex the 0-based row index
+     * @param columnIndex the 0-based column index
+     * @throws IllegalArgumentException if the row or column index is outside the allowable range
+     */
+    public void setBlank(int rowIndex, int columnIndex) {
+        CellEdit edit = new CellEdit();
+        edit._type = CellType.BLANK;
+        editCell(rowIndex, columnIndex, edit);
+    }
+
+    /**
+     * Sets the style of a cell and keeps its value
+     *
+     * @param rowIndex the 0-based row index
+     * @param columnIndex the 0-based column index
+     * @param style a style of this workbook or {@code null} to remove the style of the cell
+     * @throws IllegalArgumentException if the row or column index is outside the allowable range
+     *  or the style belongs to another workbook
+     */
+    public void setCellStyle(int rowIndex, int columnIndex, CellStyle style) {
+        CellEdit edit = new CellEdit();
+        if (style == null) {
+            edit._style = CellEdit.NO_STYLE;
+        } else {
+            XSSFCellStyle xStyle = (XSSFCellStyle) style;
+            xStyle.verifyBelongsToStylesSource(_sheet.getWorkbook().getStylesSource());
+            edit._style = xStyle.getIndex();
+        }
+        editCell(rowIndex, columnIndex, edit);
+    }
+
+    /**
+     * Removes a cell, if it exists
+     *
+     * @param rowIndex the 0-based row index
+     * @param columnIndex the 0-based column index
+     * @throws IllegalArgumentException if the row or column index is outside the allowable range
+     */
+    public void removeCell(int rowIndex, int columnIndex) {
+        CellEdit edit = new CellEdit();
+        edit._removed = true;
+        editCell(rowIndex, columnIndex, edit);
+    }
+
+    /**
+     * Sets the height of a row
+     *
+     * @param rowIndex the 0-based row index
+     * @param height the height in points or {@code -1} for the default height
+     * @throws IllegalArgumentException if the row index is outside the allowable range
+     */
+    public void setRowHeightInPoints(int rowIndex, float height) {
+        checkBounds(rowIndex, 0);
+        if (!_sheet.isReadDeferred()) {
+            XSSFRow row = _sheet.getRow(rowIndex);
+            if (row == null) {
+                row = _sheet.createRow(rowIndex);
+            }
+            row.setHeightInPoints(height);
+            return;
+        }
+        _rows.computeIfAbsent(rowIndex, r -> new RowEdit())._height = height == -1 ? RowEdit.DEFAULT_HEIGHT : height;
+    }
+
+    /**
+     * Removes a row with its cells and comments, if it exists. The following rows aren't moved.
+     *
+     * @param rowIndex the 0-based row index
+     * @throws IllegalArgumentException if the row index is outside the allowable range
+     */
+    public void removeRow(int rowIndex) {
+        checkBounds(rowIndex, 0);
+        if (!_sheet.isReadDeferred()) {
+            XSSFRow row = _sheet.getRow(rowIndex);
+            if (row != null) {
+                _sheet.removeRow(row);
+            }
+            return;
+        }
+        RowEdit edit = _rows.computeIfAbsent(rowIndex, r -> new RowEdit());
+        edit._removed = true;
+        edit._height = Float.NaN;
+        edit._cells.clear();
+
+        // like XSSFSheet.removeRow, which removes the comments of the row
+        for (POIXMLDocumentPart part : _sheet.getRelations()) {
+            if (part instanceof Comments) {
+                Comments comments = (Comments) part;
+                List<CellAddress> refs = new ArrayList<>();
+                for (Iterator<CellAddress> it = comments.getCellAddresses(); it.hasNext(); ) {
+                    CellAddress ref = it.next();
+                    if (ref.getRow() == rowIndex) {
+                        refs.add(ref);
+                    }
+                }
+                refs.forEach(comments::removeComment);
+            }
+        }
+    }
+
+    /**
+     * @return true, if no edits are recorded
+     */
+    boolean isEmpty() {
+        return _rows.isEmpty();
+    }
+
+    NavigableMap<Integer, RowEdit> getRows() {
+        return _rows;
+    }
+
+    /**
+     * @return the range of the cells, which are set by the edits, or {@code null} if no cells are set
+     */
+    CellRangeAddress getCellRange() {
+        int firstRow = Integer.MAX_VALUE;
+        int lastRow = -1;
+        int firstColumn = Integer.MAX_VALUE;
+        int lastColumn = -1;
+        for (Map.Entry<Integer, RowEdit> row : _rows.entrySet()) {
+            for (Map.Entry<Integer, CellEdit> cell : row.getValue()._cells.entrySet()) {
+                if (!cell.getValue()._removed) {
+                    firstRow = Math.min(firstRow, row.getKey());
+                    lastRow = Math.max(lastRow, row.getKey());
+                    firstColumn = Math.min(firstColumn, cell.getKey());
+                    lastColumn = Math.max(lastColumn, cell.getKey());
+                }
+            }
+        }
+        return lastRow < 0 ? null : new CellRangeAddress(firstRow, lastRow, firstColumn, lastColumn);
+    }
+
+    /**
+     * Applies the recorded edits to the parsed sheet
+     */
+    void applyTo(XSSFSheet sheet) {
+        for (Map.Entry<Integer, RowEdit> entry : _rows.entrySet()) {
+            RowEdit edit = entry.getValue();
+            XSSFRow row = sheet.getRow(entry.getKey());
+            if (edit._removed && row != null) {
+                sheet.removeRow(row);
+                row = null;
+            }
+            if (!Float.isNaN(edit._height) || !edit._cells.isEmpty()) {
+                if (row == null) {
+                    row = sheet.createRow(entry.getKey());
+                }
+                if (!Float.isNaN(edit._height)) {
+                    row.setHeightInPoints(edit._height == RowEdit.DEFAULT_HEIGHT ? -1 : edit._height);
+                }
+                for (Map.Entry<Integer, CellEdit> cell : edit._cells.entrySet()) {
+                    cell.getValue().applyTo(row, cell.getKey());
+                }
+            }
+        }
+        _rows.clear();
+    }
+
+    private void editCell(int rowIndex, int columnIndex, CellEdit edit) {
+        checkBounds(rowIndex, columnIndex);
+        if (!_sheet.isReadDeferred()) {
+            XSSFRow row = _sheet.getRow(rowIndex);
+            if (row == null) {
+                if (edit._removed) {
+                    return;
+                }
+                row = _sheet.createRow(rowIndex);
+            }
+            edit.applyTo(row, columnIndex);
+            return;
+        }
+        RowEdit rowEdit = _rows.computeIfAbsent(rowIndex, r -> new RowEdit());
+        CellEdit previous = rowEdit._cells.get(columnIndex);
+        if (previous != null) {
+            edit.mergePrevious(previous);
+        }
+        rowEdit._cells.put(columnIndex, edit);
+    }
+
+    private static void checkBounds(int rowIndex, int columnIndex) {
+        SpreadsheetVersion version = SpreadsheetVersion.EXCEL2007;
+        if (rowIndex < 0 || rowIndex > version.getLastRowIndex()) {
+            throw new IllegalArgumentException("Invalid row number (" + rowIndex
+                + ") outside allowable range (0.." + version.getLastRowIndex() + ")");
+        }
+        if (columnIndex < 0 || columnIndex > version.getLastColumnIndex()) {
+            throw new IllegalArgumentException("Invalid column index (" + columnIndex
+                + ").  Allowable column range for " + version.name() + " is (0.."
+                + version.getLastColumnIndex() + ") or ('A'..'" + version.getLastColumnName() + "')");
+        }
+    }
+
+    /**
+     * The edits of a row
+     */
+    static final class RowEdit {
+        /** the height, which resets the row to the default height */
+        static final float DEFAULT_HEIGHT = -1;
+
+        /** true, if the existing row is removed and the cells are written to a new row */
+        private boolean _removed;
+        /** the height in points or {@code NaN}, if it isn't changed */
+        private float _height = Float.NaN;
+        private final NavigableMap<Integer, CellEdit> _cells = new TreeMap<>();
+
+        boolean isRemoved() {
+            return _removed;
+        }
+
+        float getHeight() {
+            return _height;
+        }
+
+        NavigableMap<Integer, CellEdit> getCells() {
+            return _cells;
+        }
+
+        /**
+         * @return true, if a new row element is written, when the row doesn't exist
+         */
+        boolean createsRow() {
+            return !Float.isNaN(_height) || _cells.values().stream().anyMatch(c -> !c._removed);
+        }
+    }
+
+    /**
+     * The edit of a cell
+     */
+    static final class CellEdit {
+        /** the style isn't changed */
+        static final int KEEP_STYLE = -1;
+        /** the style attribute is removed */
+        static final int NO_STYLE = -2;
+
+        /** true, if the cell is removed */
+        private boolean _removed;
+        /** true, if an existing cell is replaced by a new cell, i.e. it was removed before */
+        private boolean _replaced;
+        /** the type of the new content or {@code null}, if the content isn't changed */
+        private CellType _type;
+        private double _number;
+        private String _text;
+        private int _style = KEEP_STYLE;
+
+        private void setValue(CellType type, String text) {
+            _type = type;
+            _text = text;
+        }
+
+        /**
+         * Keeps the parts of an earlier edit of the same cell, which this edit doesn't change
+         */
+        private void mergePrevious(CellEdit previous) {
+            if (_removed) {
+                return;
+            }
+            _replaced = previous._removed || previous._replaced;
+            if (_type == null && !previous._removed) {
+                _type = previous._type;
+                _number = previous._number;
+                _text = previous._text;
+            }
+            if (_style == KEEP_STYLE && !previous._removed) {
+                _style = previous._style;
+            }
+        }
+
+        boolean isRemoved() {
+            return _removed;
+        }
+
+        /**
+         * @return true, if the value or formula of an existing cell is replaced
+         */
+        boolean changesContent() {
+            return _removed || _replaced || _type != null;
+        }
+
+        /**
+         * Applies the edit to a bean of the worksheet part
+         *
+         * @param cell the existing cell or {@code null}
+         * @param ref the reference of the cell
+         * @param wb the workbook, whose shared strings table receives the strings
+         * @return the edited cell or {@code null}, if the cell is removed
+         */
+        CTCell applyTo(CTCell cell, String ref, XSSFWorkbook wb) {
+            if (_removed) {
+                return null;
+            }
+            CTCell ct = cell == null || _replaced ? CTCell.Factory.newInstance() : cell;
+            ct.setR(ref);
+            if (_type == CellType.FORMULA) {
+                // like XSSFCell.setCellFormula, the cached result is kept until the formula is evaluated
+                if (ct.isSetF()) {
+                    ct.unsetF();
+                }
+                ct.addNewF().setStringValue(_text);
+            } else if (_type != null) {
+                if (ct.isSetF()) {
+                    ct.unsetF();
+                }
+                if (ct.isSetV()) {
+                    ct.unsetV();
+                }
+                if (ct.isSetIs()) {
+                    ct.unsetIs();
+                }
+                if (ct.isSetT()) {
+                    ct.unsetT();
+                }
+                switch (_type) {
+                    case NUMERIC:
+                        ct.setT(STCellType.N);
+                        ct.setV(String.valueOf(_number));
+                        break;
+                    case STRING:
+                        XSSFRichTextString rt = new XSSFRichTextString(_text);
+                        rt.setStylesTableReference(wb.getStylesSource());
+                        ct.setT(STCellType.S);
+                        ct.setV(Integer.toString(wb.getSharedStringSource().addSharedStringItem(rt)));
+                        break;
+                    case BOOLEAN:
+                        ct.setT(STCellType.B);
+                        ct.setV(_number == 0 ? "0" : "1");
+                        break;
+                    case ERROR:
+                        ct.setT(STCellType.E);
+                        ct.setV(_text);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (_style == NO_STYLE) {
+                if (ct.isSetS()) {
+                    ct.unsetS();
+                }
+            } else if (_style != KEEP_STYLE) {
+                ct.setS(_style);
+            }
+            return ct;
+        }
+
+        /**
+         * Applies the edit to a row of a parsed sheet
+         */
+        void applyTo(XSSFRow row, int columnIndex) {
+            XSSFCell cell = row.getCell(columnIndex);
+            if (_removed || (_replaced && cell != null)) {
+                if (cell != null) {
+                    row.removeCell(cell);
+                }
+                if (_removed) {
+                    return;
+                }
+                cell = null;
+            }
+            if (cell == null) {
+                cell = row.createCell(columnIndex);
+            }
+            if (_type != null) {
+                if (cell.getCellType() == CellType.FORMULA && _type != CellType.FORMULA) {
+                    cell.removeFormula();
+                }
+                switch (_type) {
+                    case NUMERIC:
+                        cell.setCellValue(_number);
+                        break;
+                    case STRING:
+                        cell.setCellValue(_text);
+                        break;
+                    case BOOLEAN:
+                        cell.setCellValue(_number != 0);
+                        break;
+                    case ERROR:
+                        cell.setCellErrorValue(FormulaError.forString(_text));
+                        break;
+                    case FORMULA:
+                        cell.setCellFormula(_text);
+                        break;
+                    default:
+                        cell.setBlank();
+                        break;
+                }
+            }
+            if (_style == NO_STYLE) {
+                cell.setCellStyle(null);
+            } else if (_style != KEEP_STYLE) {
+                cell.setCellStyle(row.getSheet().getWorkbook().getCellStyleAt(_style));
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
@@ -67,6 +68,7 @@ import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.Ole10Native;
 import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParseCache;
 import org.apache.poi.ss.formula.SheetNameFormatter;
 import org.apache.poi.ss.formula.udf.AggregatingUDFFinder;
 import org.apache.poi.ss.formula.udf.IndexedUDFFinder;
@@ -155,6 +157,12 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
      */
     private final IndexedUDFFinder _udfFinder = new IndexedUDFFinder(AggregatingUDFFinder.DEFAULT);
 
+    /**
+     * The parsed cell formulas, which are shared by repeated formulas.
+     * It's cleared, when the names, sheets or functions of the workbook change.
+     */
+    private final FormulaParseCache formulaParseCache = new FormulaParseCache();
+
     private CalculationChain calcChain;
 
     /**
@@ -208,6 +216,8 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
 
     private final XSSFFactory xssfFactory;
 
+    private final XSSFReadOptions readOptions;
+
     /**
      * Create a new SpreadsheetML workbook.
      */
@@ -230,6 +240,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     private XSSFWorkbook(XSSFWorkbookType workbookType, XSSFFactory factory) {
         super(newPackage(workbookType));
         this.xssfFactory = (factory == null) ? XSSFFactory.getInstance() : factory;
+        this.readOptions = new XSSFReadOptions();
         onWorkbookCreate();
     }
 
@@ -251,8 +262,30 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
      * input format
      */
     public XSSFWorkbook(OPCPackage pkg) throws IOException {
+        this(pkg, new XSSFReadOptions());
+    }
+
+    /**
+     * Constructs a XSSFWorkbook object given a OpenXML4J {@code Package} object, which is read with
+     * the given options.
+     *
+     * <p>Once you have finished working with the Workbook, you should close the package
+     * by calling either {@link #close()} or {@link OPCPackage#close()}, to avoid
+     * leaving file handles open.
+     *
+     * @param pkg the OpenXML4J {@code OPC Package} object.
+     * @param options the options for reading the workbook
+     * @throws IOException If reading data from the package fails
+     * @throws POIXMLException a RuntimeException that can be caused by invalid OOXML data
+     * @throws IllegalStateException a number of other runtime exceptions can be thrown, especially if there are problems with the
+     * input format
+     * @since POI 5.2.6
+     */
+    @Beta
+    public XSSFWorkbook(OPCPackage pkg, XSSFReadOptions options) throws IOException {
         super(pkg);
         this.xssfFactory = XSSFFactory.getInstance();
+        this.readOptions = options;
 
         beforeDocumentRead();
 
@@ -369,6 +402,13 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
         this(part.getInputStream(), true);
     }
 
+    /**
+     * @return the options, which were used for reading this workbook
+     */
+    XSSFReadOptions getReadOptions() {
+        return readOptions;
+    }
+
     /**
      * @return the XSSFFactory
      * @since POI 5.1.0
@@ -495,7 +535,11 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
             return;
         }
         sh.sheet = ctSheet;
-        sh.onDocumentRead();
+        if (readOptions.isLazySheets()) {
+            sh.deferRead();
+        } else {
+            sh.onDocumentRead();
+        }
         sheets.add(sh);
     }
 
@@ -657,7 +701,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
      */
     public XSSFSheet cloneSheet(int sheetNum, String newName) {
         validateSheetIndex(sheetNum);
-        XSSFSheet srcSheet = sheets.get(sheetNum);
+        XSSFSheet srcSheet = sheets.get(sheetNum).readIfDeferred();
 
         if (newName == null) {
             String srcName = srcSheet.getSheetName();
@@ -1197,7 +1241,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     public XSSFSheet getSheet(String name) {
         for (XSSFSheet sheet : sheets) {
             if (name.equalsIgnoreCase(sheet.getSheetName())) {
-                return sheet;
+                return sheet.readIfDeferred();
             }
         }
         return null;
@@ -1214,7 +1258,26 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     @Override
     public XSSFSheet getSheetAt(int index) {
         validateSheetIndex(index);
-        return sheets.get(index);
+        return sheets.get(index).readIfDeferred();
+    }
+
+    /**
+     * Returns the patch of the sheet at the given index. If the workbook was read with
+     * {@link XSSFReadOptions#setLazySheets(boolean) lazy sheets} and the sheet isn't accessed,
+     * the edits of the patch are applied, while the worksheet part is streamed on writing the workbook.
+     * Otherwise, the edits are applied to the sheet directly.
+     *
+     * @param index of the sheet number (0-based physical &amp; logical)
+     * @return the patch of the sheet
+     * @throws IllegalArgumentException if the index is out of range (index
+     *            &lt; 0 || index &gt;= getNumberOfSheets()).
+     * @see XSSFSheetPatch
+     * @since POI 5.2.6
+     */
+    @Beta
+    public XSSFSheetPatch getSheetPatch(int index) {
+        validateSheetIndex(index);
+        return sheets.get(index).getPatch();
     }
 
     /**
@@ -1304,6 +1367,9 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     @Override
     @SuppressWarnings("unchecked")
     public Spliterator<Sheet> spliterator() {
+        if (readOptions.isLazySheets()) {
+            return Spliterators.spliterator(sheetIterator(), sheets.size(), Spliterator.ORDERED);
+        }
         return (Spliterator<Sheet>)(Spliterator<? extends Sheet>) sheets.spliterator();
     }
 
@@ -1319,7 +1385,9 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
         }
         @Override
         public T next() throws NoSuchElementException {
-            return it.next();
+            T sheet = it.next();
+            ((XSSFSheet) sheet).readIfDeferred();
+            return sheet;
         }
         /**
          * Unexpected behavior may occur if sheets are reordered after iterator
@@ -1354,6 +1422,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
                 || !namedRanges.remove(name)) {
             throw new IllegalArgumentException("Name was not found: " + name);
         }
+        formulaParseCache.clear();
     }
 
     void updateName(XSSFName name, String oldName) {
@@ -1361,6 +1430,14 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
             throw new IllegalArgumentException("Name was not found: " + name);
         }
         namedRangesByName.put(name.getNameName().toLowerCase(Locale.ENGLISH), name);
+        formulaParseCache.clear();
+    }
+
+    /**
+     * @return the parsed cell formulas of this workbook
+     */
+    FormulaParseCache getFormulaParseCache() {
+        return formulaParseCache;
     }
 
 
@@ -1400,6 +1477,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
         XSSFSheet sheet = getSheetAt(index);
         removeRelation(sheet);
         sheets.remove(index);
+        formulaParseCache.clear();
 
         // only set new sheet if there are still some left
         if(sheets.isEmpty()) {
@@ -1659,7 +1737,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     public void setSelectedTab(int index) {
         int idx = 0;
         for (XSSFSheet sh : sheets) {
-            sh.setSelected(idx == index);
+            sh.readIfDeferred().setSelected(idx == index);
             idx++;
         }
     }
@@ -1704,6 +1782,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
         utils.updateSheetName(sheetIndex, oldSheetName, sheetname);
 
         workbook.getSheets().getSheetArray(sheetIndex).setName(sheetname);
+        formulaParseCache.clear();
     }
 
     /**
@@ -1732,6 +1811,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
 
         updateNamedRangesAfterSheetReorder(idx, pos);
         updateActiveSheetAfterSheetReorder(idx, pos);
+        formulaParseCache.clear();
     }
 
     /**
@@ -1832,6 +1912,10 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
 
     @Override
     protected void commit() throws IOException {
+        // the patches may add shared strings and remove items of the calculation chain
+        for (XSSFSheet sheet : sheets) {
+            sheet.writePatch();
+        }
         saveNamedRanges();
         saveCalculationChain();
 
@@ -2304,6 +2388,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     @Override
     public void addToolPack(UDFFinder toolpack){
         _udfFinder.add(toolpack);
+        formulaParseCache.clear();
     }
 
     /**
@@ -2376,9 +2461,17 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
 
     @Beta
     public List<XSSFPivotTable> getPivotTables() {
+        // the pivot tables are registered by their sheets
+        for (XSSFSheet sheet : sheets) {
+            sheet.readIfDeferred();
+        }
         return pivotTables;
     }
 
+    void onReadPivotTable(XSSFPivotTable pivotTable) {
+        pivotTables.add(pivotTable);
+    }
+
     @Beta
     protected void setPivotTables(List<XSSFPivotTable> pivotTables) {
         this.pivotTables = pivotTables;
@@ -2468,7 +2561,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     public XSSFTable getTable(String name) {
         if (name != null && sheets != null) {
             for (XSSFSheet sheet : sheets) {
-                for (XSSFTable tbl : sheet.getTables()) {
+                for (XSSFTable tbl : sheet.readIfDeferred().getTables()) {
                     if (name.equalsIgnoreCase(tbl.getName())) {
                         return tbl;
                     }
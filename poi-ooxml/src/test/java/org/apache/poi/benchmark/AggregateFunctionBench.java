@@ -0,0 +1,102 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures aggregate functions over large areas, like the summary cells of a report.
+ * {@code formulas} cells use SUM, AVERAGE, MAX and SUMPRODUCT over the same {@code rows} long columns,
+ * so after the first reads the functions work on the shared values of the areas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class AggregateFunctionBench {
+
+    private static final String[] FORMULAS = {
+        "SUM(Data!$A$1:$A$%d)",
+        "AVERAGE(Data!$B$1:$B$%d)",
+        "MAX(Data!$A$1:$C$%d)",
+        "SUMPRODUCT(Data!$A$1:$A$%1$d,Data!$C$1:$C$%1$d)"
+    };
+
+    @Param({"xls", "xlsx"})
+    public String format;
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"400"})
+    public int formulas;
+
+    private Workbook wb;
+    private FormulaEvaluator evaluator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wb = "xls".equals(format) ? new HSSFWorkbook() : new XSSFWorkbook();
+        Sheet data = wb.createSheet("Data");
+        Sheet calc = wb.createSheet("Calc");
+        for (int r = 0; r < rows; r++) {
+            Row row = data.createRow(r);
+            row.createCell(0).setCellValue(r);
+            row.createCell(1).setCellValue(r * 0.5);
+            row.createCell(2).setCellValue(rows - r);
+        }
+        for (int r = 0; r < formulas; r++) {
+            String formula = String.format(FORMULAS[r % FORMULAS.length], rows);
+            calc.createRow(r).createCell(0).setCellFormula(formula + "+" + r);
+        }
+        evaluator = wb.getCreationHelper().createFormulaEvaluator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wb.close();
+    }
+
+    @Benchmark
+    public void benchEvaluateAll() {
+        evaluator.clearAllCachedResultValues();
+        evaluator.evaluateAll();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + AggregateFunctionBench.class.getSimpleName() + ".*")
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
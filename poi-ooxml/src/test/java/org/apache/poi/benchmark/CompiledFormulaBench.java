@@ -0,0 +1,112 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.BaseFormulaEvaluator;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the recalculation of filled-down formulas, like the calculation columns of a template.
+ * Each of the {@code rows} rows has the same few formulas with relative references,
+ * which are interpreted or (with {@code compiled}) executed as compiled formulas.
+ * All formulas depend on the input cell H1, so changing it recalculates the whole sheet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CompiledFormulaBench {
+
+    private static final String[] FORMULAS = {
+        "A%1$d*B%1$d+$H$1",
+        "IF(C%1$d>100,C%1$d*0.9,C%1$d)-ROUND(A%1$d/3,2)",
+        "CHOOSE(MOD(C%1$d,3)+1,\"low\",\"mid\",\"high\")&\"-\"&B%1$d",
+        "SUM(A%1$d:D%1$d)/MAX(1,B%1$d)"
+    };
+
+    @Param({"xls", "xlsx"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    @Param({"5000"})
+    public int rows;
+
+    private Workbook wb;
+    private BaseFormulaEvaluator evaluator;
+    private Cell input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wb = "xls".equals(format) ? new HSSFWorkbook() : new XSSFWorkbook();
+        Sheet sheet = wb.createSheet();
+        for (int r = 0; r < rows; r++) {
+            Row row = sheet.createRow(r);
+            row.createCell(0).setCellValue(r);
+            row.createCell(1).setCellValue(r % 17 + 1);
+            for (int c = 0; c < FORMULAS.length; c++) {
+                row.createCell(c + 2).setCellFormula(String.format(FORMULAS[c], r + 1));
+            }
+        }
+        input = sheet.getRow(0).createCell(7);
+        input.setCellValue(5);
+        evaluator = (BaseFormulaEvaluator) wb.getCreationHelper().createFormulaEvaluator();
+        evaluator.setCompileFormulas(compiled);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wb.close();
+    }
+
+    @Benchmark
+    public void benchEvaluateAll() {
+        evaluator.clearAllCachedResultValues();
+        evaluator.evaluateAll();
+    }
+
+    @Benchmark
+    public void benchUpdateInput() {
+        input.setCellValue(input.getNumericCellValue() + 1);
+        evaluator.notifyUpdateCell(input);
+        evaluator.evaluateAll();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + CompiledFormulaBench.class.getSimpleName() + ".*")
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,109 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures a large evaluation, which fills the plain and formula cell caches of the evaluator with many entries.
+ * {@code benchEvaluateAll} evaluates all formulas with an empty cache, {@code benchUpdateInputs} changes some
+ * inputs and evaluates again, which clears the dependent cache entries by the notify~ methods.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class EvaluationCacheBench {
+
+    @Param({"xls", "xlsx"})
+    public String format;
+
+    @Param({"20000"})
+    public int rows;
+
+    private Workbook wb;
+    private Sheet data;
+    private FormulaEvaluator evaluator;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wb = "xls".equals(format) ? new HSSFWorkbook() : new XSSFWorkbook();
+        data = wb.createSheet("Data");
+        Sheet calc = wb.createSheet("Calc");
+        for (int r = 0; r < rows; r++) {
+            Row row = data.createRow(r);
+            for (int c = 0; c < 5; c++) {
+                row.createCell(c).setCellValue(r * 5 + c);
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            int n = r + 1;
+            Row row = calc.createRow(r);
+            row.createCell(0).setCellFormula("SUM(Data!A" + n + ":E" + n + ")");
+            row.createCell(1).setCellFormula("Data!A" + n + "*Data!C" + n + "-Data!E" + n);
+            row.createCell(2).setCellFormula("A" + n + "+B" + n + "*$A$1");
+        }
+        evaluator = wb.getCreationHelper().createFormulaEvaluator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wb.close();
+    }
+
+    @Benchmark
+    public void benchEvaluateAll() {
+        evaluator.clearAllCachedResultValues();
+        evaluator.evaluateAll();
+    }
+
+    @Benchmark
+    public void benchUpdateInputs() {
+        // changes one value in each block of 1000 rows
+        round++;
+        for (int r = round % 1000; r < rows; r += 1000) {
+            data.getRow(r).getCell(2).setCellValue(round);
+            evaluator.notifyUpdateCell(data.getRow(r).getCell(2));
+        }
+        evaluator.evaluateAll();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + EvaluationCacheBench.class.getSimpleName() + ".*")
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,116 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.eval.forked.ForkedEvaluationBase;
+import org.apache.poi.ss.formula.eval.forked.ForkedEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures concurrent what-if scenarios on one workbook: each scenario sets the input cells of a model
+ * and evaluates its outputs, which depend on the inputs and on a data sheet of {@code rows} formula rows.
+ * The scenarios use a new {@link ForkedEvaluator} of the master workbook or (with {@code shared})
+ * of a {@link ForkedEvaluationBase}, which keeps the results of the data sheet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ForkedEvaluationBench {
+
+    @Param({"xls", "xlsx"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean shared;
+
+    @Param({"2000"})
+    public int rows;
+
+    private Workbook wb;
+    private ForkedEvaluationBase base;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wb = "xls".equals(format) ? new HSSFWorkbook() : new XSSFWorkbook();
+        Sheet data = wb.createSheet("Data");
+        for (int r = 0; r < rows; r++) {
+            Row row = data.createRow(r);
+            row.createCell(0).setCellValue(r);
+            row.createCell(1).setCellValue(r % 17 + 1);
+            row.createCell(2).setCellFormula(String.format("A%1$d*B%1$d+ROUND(A%1$d/3,2)", r + 1));
+        }
+        Sheet model = wb.createSheet("Model");
+        Row inputs = model.createRow(0);
+        inputs.createCell(0).setCellValue(1.5);
+        inputs.createCell(1).setCellValue(10);
+        inputs.createCell(2).setCellValue(0.5);
+        Row outputs = model.createRow(1);
+        outputs.createCell(0).setCellFormula("SUM(Data!C1:C" + rows + ")*A1");
+        outputs.createCell(1).setCellFormula("VLOOKUP(B1,Data!A1:C" + rows + ",3,FALSE)");
+        outputs.createCell(2).setCellFormula("A2+B2*C1");
+        if (shared) {
+            base = ForkedEvaluationBase.create(wb, null, null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wb.close();
+    }
+
+    @Benchmark
+    public void benchScenario(Blackhole bh) {
+        ForkedEvaluator fe = shared ? base.createEvaluator() : ForkedEvaluator.create(wb, null, null);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        fe.updateCell("Model", 0, 0, new NumberEval(random.nextDouble()));
+        fe.updateCell("Model", 0, 1, new NumberEval(random.nextInt(rows)));
+        fe.updateCell("Model", 0, 2, new NumberEval(random.nextDouble()));
+        for (int c = 0; c < 3; c++) {
+            ValueEval result = fe.evaluate("Model", 1, c);
+            bh.consume(result);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ForkedEvaluationBench.class.getSimpleName() + ".*")
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,102 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.BaseFormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the sequential recalculation of all formulas with the parallel recalculation by dependency levels.
+ * The workbook has a few wide levels of independent formulas, like typical calculation sheets, so the
+ * speedup of {@code parallelism} threads against {@code benchSequential} is reported by {@code benchParallel}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ParallelRecalcBench {
+
+    @Param({"xls", "xlsx"})
+    public String format;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Workbook wb;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wb = "xls".equals(format) ? new HSSFWorkbook() : new XSSFWorkbook();
+        Sheet data = wb.createSheet("Data");
+        Sheet calc = wb.createSheet("Calc");
+        for (int r = 0; r < 5000; r++) {
+            Row row = data.createRow(r);
+            row.createCell(0).setCellValue(r % 97);
+            row.createCell(1).setCellValue("key" + (r % 50));
+        }
+        for (int r = 0; r < 5000; r++) {
+            int n = r + 1;
+            Row row = calc.createRow(r);
+            row.createCell(0).setCellFormula("Data!A" + n + "*1.5+SQRT(Data!A" + n + ")");
+            row.createCell(1).setCellFormula("SUMIF(Data!$B$1:$B$500,Data!B" + n + ",Data!$A$1:$A$500)");
+            row.createCell(2).setCellFormula("IF(A" + n + ">B" + n + ",A" + n + ",B" + n + ")*ROUND(A" + n + "/7,2)");
+            row.createCell(3).setCellFormula("VLOOKUP(Data!A" + n + ",Data!$A$1:$B$200,2,FALSE)&\"-\"&C" + n);
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        wb.close();
+    }
+
+    @Benchmark
+    public void benchSequential() {
+        BaseFormulaEvaluator.evaluateAllFormulaCells(wb);
+    }
+
+    @Benchmark
+    public void benchParallel() {
+        BaseFormulaEvaluator.evaluateAllFormulaCells(wb, pool);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ParallelRecalcBench.class.getSimpleName() + ".*")
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,105 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the default rows of a streaming sheet with the append-only rows, which are kept in a ring buffer
+ * and store the cell values in primitive arrays. {@code benchFill} only creates the rows, which are flushed
+ * to the temp file, {@code benchWrite} also writes the workbook. The allocations are reported by the
+ * gc profiler as {@code gc.alloc.rate.norm}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SXSSFAppendOnlyRowsBench {
+
+    private static final int ROWS = 50_000;
+    private static final int COLUMNS = 10;
+
+    @Param({"false", "true"})
+    public boolean appendOnlyRows;
+
+    @Benchmark
+    public int benchFill() throws IOException {
+        try (SXSSFWorkbook wb = createWorkbook()) {
+            SXSSFSheet sheet = fill(wb);
+            int rows = sheet.getPhysicalNumberOfRows();
+            wb.dispose();
+            return rows;
+        }
+    }
+
+    @Benchmark
+    public void benchWrite() throws IOException {
+        try (SXSSFWorkbook wb = createWorkbook()) {
+            fill(wb);
+            wb.write(NullOutputStream.INSTANCE);
+            wb.dispose();
+        }
+    }
+
+    private SXSSFWorkbook createWorkbook() {
+        SXSSFWorkbook wb = new SXSSFWorkbook(100);
+        wb.setUseUtf8SheetDataWriter(true);
+        wb.setAppendOnlyRows(appendOnlyRows);
+        return wb;
+    }
+
+    private static SXSSFSheet fill(SXSSFWorkbook wb) {
+        CellStyle style = wb.createCellStyle();
+        style.setWrapText(true);
+        SXSSFSheet sheet = wb.createSheet();
+        for (int r = 0; r < ROWS; r++) {
+            SXSSFRow row = sheet.createRow(r);
+            row.createCell(0).setCellValue("item");
+            for (int c = 1; c < COLUMNS - 2; c++) {
+                row.createCell(c).setCellValue(r * 1.5 + c);
+            }
+            row.createCell(COLUMNS - 2).setCellValue(r % 7 == 0);
+            row.createCell(COLUMNS - 1).setCellStyle(style);
+        }
+        return sheet;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + SXSSFAppendOnlyRowsBench.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,113 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.openxml4j.opc.CompressionOptions;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the time and the size of saving a workbook with different compression levels
+ * of the worksheets and stored images. The size of the last written file is reported
+ * as secondary result {@code bytes} of the benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SaveCompressionBench {
+
+    @Param({"-1", "1", "0", "-2"})
+    public int sheetLevel;
+
+    @Param({"false", "true"})
+    public boolean storeImages;
+
+    private XSSFWorkbook wb;
+    private CompressionOptions options;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wb = new XSSFWorkbook();
+        for (int s = 0; s < 3; s++) {
+            Sheet sheet = wb.createSheet();
+            for (int r = 0; r < 20000; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("row " + r);
+                row.createCell(1).setCellValue(r * 1.5);
+                row.createCell(2).setCellValue(r % 7 == 0);
+            }
+        }
+        byte[] picture = HSSFTestDataSamples.getTestDataFileContent("45829.png");
+        for (int i = 0; i < 10; i++) {
+            wb.addPicture(picture, Workbook.PICTURE_TYPE_PNG);
+        }
+
+        options = new CompressionOptions();
+        options.setLevel(XSSFRelation.WORKSHEET.getContentType(), sheetLevel);
+        if (storeImages) {
+            options.setLevel("image/*", CompressionOptions.STORED);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wb.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        public long bytes;
+    }
+
+    @Benchmark
+    public void benchWrite(Size size) throws IOException {
+        try (CountingOutputStream cos = new CountingOutputStream(NullOutputStream.INSTANCE)) {
+            wb.write(cos, options);
+            size.bytes = cos.getByteCount();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + SaveCompressionBench.class.getSimpleName() + ".*")
+                .param("sheetLevel", String.valueOf(Deflater.DEFAULT_COMPRESSION), String.valueOf(Deflater.BEST_SPEED),
+                    String.valueOf(Deflater.NO_COMPRESSION), String.valueOf(CompressionOptions.STORED))
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,139 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.forked.ForkedEvaluationBase;
+import org.apache.poi.ss.formula.eval.forked.ForkedEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures a batch of {@code scenarios} Monte Carlo trials, which set the 3 input cells of a model and read
+ * its 3 outputs, which depend on a data sheet of {@code rows} formula rows. The trials are evaluated one
+ * after the other with a new {@link ForkedEvaluator} of the master workbook ({@code forked}) or of a
+ * {@link ForkedEvaluationBase} ({@code base}), or at once by
+ * {@link ForkedEvaluationBase#evaluateScenarios} on the common pool ({@code batch}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ScenarioBench {
+
+    private static final CellReference[] INPUT_CELLS = {
+        new CellReference("Model!A1"), new CellReference("Model!B1"), new CellReference("Model!C1")
+    };
+    private static final CellReference[] OUTPUT_CELLS = {
+        new CellReference("Model!A2"), new CellReference("Model!B2"), new CellReference("Model!C2")
+    };
+
+    @Param({"xls", "xlsx"})
+    public String format;
+
+    @Param({"forked", "base", "batch"})
+    public String mode;
+
+    @Param({"1000"})
+    public int rows;
+
+    @Param({"100"})
+    public int scenarios;
+
+    private Workbook wb;
+    private ForkedEvaluationBase base;
+    private double[][] inputs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wb = "xls".equals(format) ? new HSSFWorkbook() : new XSSFWorkbook();
+        Sheet data = wb.createSheet("Data");
+        for (int r = 0; r < rows; r++) {
+            Row row = data.createRow(r);
+            row.createCell(0).setCellValue(r);
+            row.createCell(1).setCellValue(r % 17 + 1);
+            row.createCell(2).setCellFormula(String.format("A%1$d*B%1$d+ROUND(A%1$d/3,2)", r + 1));
+        }
+        Sheet model = wb.createSheet("Model");
+        Row inputRow = model.createRow(0);
+        for (int c = 0; c < INPUT_CELLS.length; c++) {
+            inputRow.createCell(c).setCellValue(0);
+        }
+        Row outputs = model.createRow(1);
+        outputs.createCell(0).setCellFormula("SUM(Data!C1:C" + rows + ")*A1");
+        outputs.createCell(1).setCellFormula("VLOOKUP(B1,Data!A1:C" + rows + ",3,FALSE)");
+        outputs.createCell(2).setCellFormula("A2+B2*C1");
+        if (!"forked".equals(mode)) {
+            base = ForkedEvaluationBase.create(wb, null, null);
+        }
+
+        Random random = new Random(42);
+        inputs = new double[scenarios][];
+        for (int i = 0; i < scenarios; i++) {
+            inputs[i] = new double[]{random.nextDouble(), random.nextInt(rows), random.nextDouble()};
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        wb.close();
+    }
+
+    @Benchmark
+    public void benchScenarios(Blackhole bh) {
+        if ("batch".equals(mode)) {
+            bh.consume(base.evaluateScenarios(INPUT_CELLS, inputs, OUTPUT_CELLS, ForkJoinPool.commonPool()));
+            return;
+        }
+        for (double[] scenario : inputs) {
+            ForkedEvaluator fe = "base".equals(mode) ? base.createEvaluator() : ForkedEvaluator.create(wb, null, null);
+            for (int c = 0; c < INPUT_CELLS.length; c++) {
+                CellReference cell = INPUT_CELLS[c];
+                fe.updateCell(cell.getSheetName(), cell.getRow(), cell.getCol(), new NumberEval(scenario[c]));
+            }
+            for (CellReference cell : OUTPUT_CELLS) {
+                bh.consume(fe.evaluate(cell.getSheetName(), cell.getRow(), cell.getCol()));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ScenarioBench.class.getSimpleName() + ".*")
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,56 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.opc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+
+class TestCompressionOptions {
+    @Test
+    void testLevels() {
+        CompressionOptions options = new CompressionOptions();
+        assertEquals(Deflater.DEFAULT_COMPRESSION, options.getLevel("image/png"));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, options.getLevel(null));
+
+        options.setDefaultLevel(Deflater.BEST_COMPRESSION);
+        options.setLevel("image/*", CompressionOptions.STORED);
+        options.setLevel("image/x-emf", Deflater.BEST_SPEED);
+        options.setLevel(ContentTypes.XML, Deflater.NO_COMPRESSION);
+
+        assertEquals(Deflater.BEST_COMPRESSION, options.getDefaultLevel());
+        assertEquals(CompressionOptions.STORED, options.getLevel("image/png"));
+        assertEquals(CompressionOptions.STORED, options.getLevel("Image/JPEG"));
+        // the exact content type has precedence over the wildcard
+        assertEquals(Deflater.BEST_SPEED, options.getLevel("image/x-emf"));
+        // parameters are ignored
+        assertEquals(Deflater.NO_COMPRESSION, options.getLevel("text/xml; charset=UTF-8"));
+        assertEquals(Deflater.BEST_COMPRESSION, options.getLevel("application/vnd.ms-excel.worksheet"));
+    }
+
+    @Test
+    void testInvalidLevels() {
+        CompressionOptions options = new CompressionOptions();
+        assertThrows(IllegalArgumentException.class, () -> options.setDefaultLevel(CompressionOptions.STORED));
+        assertThrows(IllegalArgumentException.class, () -> options.setDefaultLevel(10));
+        assertThrows(IllegalArgumentException.class, () -> options.setLevel("image/png", -3));
+    }
+}
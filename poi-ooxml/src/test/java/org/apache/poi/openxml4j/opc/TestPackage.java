@@ -23,6 +23,7 @@ import static org.apache.poi.openxml4j.OpenXML4JTestDataSamples.getSampleFileNam
 import static org.apache.poi.openxml4j.OpenXML4JTestDataSamples.openSampleStream;
 import static org.apache.poi.openxml4j.opc.PackagingURIHelper.createPartName;
 import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_WORDPROCESSINGML;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -33,6 +34,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -48,15 +50,19 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.logging.log4j.LogManager;
@@ -79,6 +85,8 @@ import org.apache.poi.openxml4j.opc.internal.ZipHelper;
 import org.apache.poi.openxml4j.util.ZipSecureFile;
 import org.apache.poi.sl.usermodel.SlideShow;
 import org.apache.poi.sl.usermodel.SlideShowFactory;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.util.IOUtils;
@@ -1107,4 +1115,83 @@ public final class TestPackage {
         }
 
     }
+
+    @Test
+    void testParallelDeflate() throws IOException {
+        byte[] sequential, parallel;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            sequential = writeLargeWorkbook(null);
+            parallel = writeLargeWorkbook(executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        try (ZipFile zip1 = new ZipFile(new SeekableInMemoryByteChannel(sequential));
+             ZipFile zip2 = new ZipFile(new SeekableInMemoryByteChannel(parallel))) {
+            ZipArchiveEntry sheet1 = zip1.getEntry("xl/worksheets/sheet1.xml");
+            ZipArchiveEntry sheet2 = zip2.getEntry("xl/worksheets/sheet1.xml");
+            assertEquals(ZipArchiveEntry.DEFLATED, sheet2.getMethod());
+            assertEquals(sheet1.getSize(), sheet2.getSize());
+            assertTrue(sheet2.getSize() > 1_000_000);
+            // the sync flushes between the blocks make the parallel result a bit larger
+            assertTrue(sheet2.getCompressedSize() > sheet1.getCompressedSize());
+        }
+        try (XSSFWorkbook wb1 = new XSSFWorkbook(new ByteArrayInputStream(sequential));
+             XSSFWorkbook wb2 = new XSSFWorkbook(new ByteArrayInputStream(parallel))) {
+            assertEquals(wb1.getSheetAt(0).getLastRowNum(), wb2.getSheetAt(0).getLastRowNum());
+            assertEquals("row 19999", wb2.getSheetAt(0).getRow(19999).getCell(1).getStringCellValue());
+            assertEquals(19999, wb2.getSheetAt(0).getRow(19999).getCell(0).getNumericCellValue(), 0);
+        }
+    }
+
+    private static byte[] writeLargeWorkbook(ExecutorService executor) throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook();
+             UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+            Sheet sheet = wb.createSheet();
+            for (int r = 0; r < 20000; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r);
+                row.createCell(1).setCellValue("row " + r);
+            }
+            wb.getPackage().setParallelDeflateExecutor(executor);
+            wb.write(bos);
+            return bos.toByteArray();
+        }
+    }
+
+    @Test
+    void testCompressionOptions() throws IOException {
+        CompressionOptions options = new CompressionOptions();
+        options.setLevel(XSSFRelation.WORKSHEET.getContentType(), Deflater.BEST_SPEED);
+        options.setLevel("image/*", CompressionOptions.STORED);
+
+        byte[] picture = xlsSamples.readFile("45829.png");
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            for (int r = 0; r < 1000; r++) {
+                sheet.createRow(r).createCell(0).setCellValue("row " + r);
+            }
+            wb.addPicture(picture, Workbook.PICTURE_TYPE_PNG);
+            wb.write(bos, options);
+            // the options only apply to this write
+            assertNull(wb.getPackage().getCompressionOptions());
+        }
+
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(bos.toByteArray()))) {
+            ZipArchiveEntry image = zip.getEntry("xl/media/image1.png");
+            assertEquals(ZipArchiveEntry.STORED, image.getMethod());
+            assertEquals(picture.length, image.getCompressedSize());
+            try (InputStream is = zip.getInputStream(image)) {
+                assertArrayEquals(picture, IOUtils.toByteArray(is));
+            }
+            assertEquals(ZipArchiveEntry.DEFLATED, zip.getEntry("xl/worksheets/sheet1.xml").getMethod());
+            assertEquals(ZipArchiveEntry.DEFLATED, zip.getEntry("[Content_Types].xml").getMethod());
+        }
+        try (XSSFWorkbook wb = new XSSFWorkbook(bos.toInputStream())) {
+            assertEquals("row 999", wb.getSheetAt(0).getRow(999).getCell(0).getStringCellValue());
+            assertArrayEquals(picture, wb.getAllPictures().get(0).getData());
+        }
+    }
 }
@@ -0,0 +1,159 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.util.IOUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TestParallelDeflateOutputStream {
+    private static final int BLOCK_SIZE = 32 * 1024;
+
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        executor.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, 10 * BLOCK_SIZE, 100 * BLOCK_SIZE + 17})
+    void testRoundTrip(int size) throws IOException {
+        byte[] data = createXmlLikeData(size);
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        ParallelDeflateOutputStream pdos = new ParallelDeflateOutputStream(bos, executor, Deflater.DEFAULT_COMPRESSION, BLOCK_SIZE);
+        // mix single bytes and arrays of different lengths
+        int pos = 0;
+        for (int len = 1; pos < data.length; len = (len * 3 + 1) % 50000) {
+            if (len == 1) {
+                pdos.write(data[pos++]);
+            } else {
+                int n = Math.min(len, data.length - pos);
+                pdos.write(data, pos, n);
+                pos += n;
+            }
+        }
+        pdos.close();
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        assertEquals(crc.getValue(), pdos.getCrc());
+        assertEquals(size, pdos.getBytesRead());
+        assertEquals(bos.size(), pdos.getBytesWritten());
+        assertArrayEquals(data, inflate(bos.toByteArray()));
+    }
+
+    @Test
+    void testCompressionRatio() throws IOException {
+        byte[] data = createXmlLikeData(50 * BLOCK_SIZE);
+
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (ParallelDeflateOutputStream pdos = new ParallelDeflateOutputStream(bos, executor)) {
+            pdos.write(data);
+        }
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buf = new byte[data.length];
+        int sequential = deflater.deflate(buf);
+        deflater.end();
+
+        // the dictionaries keep the ratio close to the one of a single deflater
+        assertTrue(bos.size() < sequential * 1.1, bos.size() + " vs. " + sequential);
+        assertArrayEquals(data, inflate(bos.toByteArray()));
+    }
+
+    @Test
+    void testIncompressibleData() throws IOException {
+        byte[] data = new byte[5 * BLOCK_SIZE + 3];
+        new Random(4711).nextBytes(data);
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (ParallelDeflateOutputStream pdos = new ParallelDeflateOutputStream(bos, executor, 9, BLOCK_SIZE)) {
+            pdos.write(data);
+        }
+        assertArrayEquals(data, inflate(bos.toByteArray()));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDeflateOutputStream(bos, executor, 10, BLOCK_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDeflateOutputStream(bos, executor, 1, 1024));
+    }
+
+    @Test
+    void testWriteAfterFinish() throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        ParallelDeflateOutputStream pdos = new ParallelDeflateOutputStream(bos, executor);
+        pdos.write(1);
+        pdos.finish();
+        assertThrows(IOException.class, () -> pdos.write(2));
+        assertArrayEquals(new byte[]{1}, inflate(bos.toByteArray()));
+    }
+
+    private static byte[] createXmlLikeData(int size) {
+        StringBuilder sb = new StringBuilder(size + 100);
+        Random random = new Random(size);
+        for (int row = 1; sb.length() < size; row++) {
+            sb.append("<row r=\"").append(row).append("\"><c r=\"A").append(row).append("\" t=\"n\"><v>")
+                .append(random.nextInt(100000)).append("</v></c></row>");
+        }
+        byte[] data = new byte[size];
+        System.arraycopy(sb.toString().getBytes(StandardCharsets.US_ASCII), 0, data, 0, size);
+        return data;
+    }
+
+    private static byte[] inflate(byte[] deflated) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try (InputStream is = new InflaterInputStream(new ByteArrayInputStream(deflated), inflater)) {
+            byte[] data = IOUtils.toByteArray(is);
+            // the last block must terminate the deflate stream
+            assertTrue(inflater.finished());
+            return data;
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.binary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.POIDataSamples;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.XSSFBReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link XSSFBSheetRowReader}
+ */
+class TestXSSFBSheetRowReader {
+    private static final POIDataSamples _ssTests = POIDataSamples.getSpreadSheetInstance();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Simple.xlsb", "sample.xlsb", "testVarious.xlsb", "bug66682.xlsb", "date.xlsb", "51519.xlsb"})
+    void testSameAsSheetHandler(String file) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream(file))) {
+            XSSFBReader reader = new XSSFBReader(pkg);
+            XSSFBStylesTable styles = reader.getXSSFBStylesTable();
+            XSSFBSharedStringsTable strings = new XSSFBSharedStringsTable(pkg);
+            XSSFBReader.SheetIterator it = (XSSFBReader.SheetIterator) reader.getSheetsData();
+            while (it.hasNext()) {
+                List<String> expected = new ArrayList<>();
+                try (InputStream is = it.next()) {
+                    new XSSFBSheetHandler(is, styles, null, strings, new XSSFSheetXMLHandler.SheetContentsHandler() {
+                        @Override
+                        public void startRow(int rowNum) {
+                            expected.add("row " + rowNum);
+                        }
+
+                        @Override
+                        public void endRow(int rowNum) {
+                        }
+
+                        @Override
+                        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                            expected.add(cellReference + "=" + formattedValue);
+                        }
+                    }, new DataFormatter(), false).parse();
+                }
+
+                List<String> actual = new ArrayList<>();
+                DataFormatter formatter = new DataFormatter();
+                try (InputStream is = it.getSheetPart().getInputStream()) {
+                    new XSSFBSheetRowReader(is, styles, strings, new XSSFBSheetRowReader.CellHandler() {
+                        @Override
+                        public void startRow(int rowNum) {
+                            actual.add("row " + rowNum);
+                        }
+
+                        @Override
+                        public void cell(XSSFBSheetRowReader.CellValue cell) {
+                            if (cell.getCellType() != CellType.BLANK) {
+                                String ref = new CellReference(cell.getRowNum(), cell.getColNum()).formatAsString();
+                                actual.add(ref + "=" + cell.getFormattedValue(formatter));
+                            }
+                        }
+                    }).parse();
+                }
+                assertEquals(expected, actual, file + " " + it.getSheetName());
+            }
+        }
+    }
+
+    @Test
+    void testTypedValues() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("bug66682.xlsb"))) {
+            XSSFBReader reader = new XSSFBReader(pkg);
+            XSSFBReader.SheetIterator it = (XSSFBReader.SheetIterator) reader.getSheetsData();
+            List<String> values = new ArrayList<>();
+            int[] formulas = new int[1];
+            while (it.hasNext()) {
+                try (InputStream is = it.next()) {
+                    new XSSFBSheetRowReader(is, null, new XSSFBSharedStringsTable(pkg), cell -> {
+                        if (cell.isFormula()) {
+                            formulas[0]++;
+                        }
+                        switch (cell.getCellType()) {
+                            case NUMERIC:
+                                values.add("n" + cell.getNumericValue());
+                                break;
+                            case STRING:
+                                values.add("s" + cell.getStringValue());
+                                break;
+                            case BOOLEAN:
+                                values.add("b" + cell.getBooleanValue());
+                                break;
+                            case ERROR:
+                                values.add("e" + cell.getErrorString());
+                                break;
+                            default:
+                                break;
+                        }
+                    }).parse();
+                }
+            }
+            assertTrue(formulas[0] > 0);
+            assertTrue(values.contains("btrue"), values.toString());
+            assertTrue(values.contains("e#DIV/0!") || values.contains("e#N/A") || values.contains("e#VALUE!"), values.toString());
+        }
+    }
+
+    @Test
+    void testRkNumber() {
+        // 0x3FF00000 is the upper half of 1.0
+        assertEquals(1.0, XSSFBSheetRowReader.rkNumber(0x3FF00000), 0);
+        assertEquals(0.01, XSSFBSheetRowReader.rkNumber(0x3FF00000 | 1), 0);
+        assertEquals(-5, XSSFBSheetRowReader.rkNumber((-5 << 2) | 2), 0);
+        assertEquals(12.34, XSSFBSheetRowReader.rkNumber((1234 << 2) | 3), 1e-12);
+    }
+}
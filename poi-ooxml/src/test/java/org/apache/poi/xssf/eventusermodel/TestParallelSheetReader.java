@@ -0,0 +1,163 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test {@link ParallelSheetReader}
+ */
+public final class TestParallelSheetReader {
+    private static final int SHEETS = 6;
+    private static final int ROWS = 500;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testAllSheets(boolean useTempFile) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (OPCPackage pkg = OPCPackage.open(createWorkbook().toInputStream())) {
+            XSSFReader reader = new XSSFReader(pkg);
+            reader.setUseTempFileSharedStringsTable(useTempFile);
+            Map<String, CollectingHandler> results = new ConcurrentHashMap<>();
+            try (ParallelSheetReader sheetReader = new ParallelSheetReader(reader)) {
+                sheetReader.setExecutor(executor);
+                sheetReader.processSheets(new ParallelSheetReader.SheetCallback() {
+                    @Override
+                    public SheetContentsHandler startSheet(int sheetIndex, String sheetName) {
+                        assertEquals("Sheet" + sheetIndex, sheetName);
+                        return new CollectingHandler();
+                    }
+
+                    @Override
+                    public void endSheet(int sheetIndex, String sheetName, SheetContentsHandler handler) {
+                        assertTrue(((CollectingHandler)handler).ended);
+                        results.put(sheetName, (CollectingHandler)handler);
+                    }
+                });
+            }
+
+            assertEquals(SHEETS, results.size());
+            for (int s = 0; s < SHEETS; s++) {
+                List<String> cells = results.get("Sheet" + s).cells;
+                assertEquals(ROWS * 2, cells.size());
+                for (int r = 0; r < ROWS; r++) {
+                    assertEquals("A" + (r + 1) + "=sheet " + s + " row " + r, cells.get(r * 2));
+                    assertEquals("B" + (r + 1) + "=" + (r * s) + ".00", cells.get(r * 2 + 1));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testSelectedSheetsWithDefaultExecutor() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(createWorkbook().toInputStream());
+             ParallelSheetReader sheetReader = new ParallelSheetReader(new XSSFReader(pkg))) {
+            Map<Integer, CollectingHandler> results = new ConcurrentHashMap<>();
+            sheetReader.processSheets(name -> name.equals("Sheet1") || name.equals("Sheet4"), (sheetIndex, sheetName) -> {
+                CollectingHandler handler = new CollectingHandler();
+                results.put(sheetIndex, handler);
+                return handler;
+            });
+            assertEquals(2, results.size());
+            assertNotNull(results.get(1));
+            assertEquals("A1=sheet 4 row 0", results.get(4).cells.get(0));
+        }
+    }
+
+    @Test
+    void testFailure() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(createWorkbook().toInputStream());
+             ParallelSheetReader sheetReader = new ParallelSheetReader(new XSSFReader(pkg))) {
+            IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> sheetReader.processSheets((sheetIndex, sheetName) -> {
+                    if (sheetIndex == 2) {
+                        throw new IllegalStateException("failed " + sheetName);
+                    }
+                    return new CollectingHandler();
+                }));
+            assertEquals("failed Sheet2", ex.getMessage());
+        }
+    }
+
+    private static UnsynchronizedByteArrayOutputStream createWorkbook() throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            CellStyle style = wb.createCellStyle();
+            style.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+            for (int s = 0; s < SHEETS; s++) {
+                XSSFSheet sheet = wb.createSheet("Sheet" + s);
+                for (int r = 0; r < ROWS; r++) {
+                    XSSFRow row = sheet.createRow(r);
+                    row.createCell(0).setCellValue("sheet " + s + " row " + r);
+                    row.createCell(1).setCellValue(r * s);
+                    row.getCell(1).setCellStyle(style);
+                }
+            }
+            wb.write(bos);
+        }
+        return bos;
+    }
+
+    private static final class CollectingHandler implements SheetContentsHandler {
+        private final List<String> cells = new ArrayList<>();
+        private boolean ended;
+
+        @Override
+        public void startRow(int rowNum) {
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            cells.add(cellReference + "=" + formattedValue);
+        }
+
+        @Override
+        public void endSheet() {
+            ended = true;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.POIDataSamples;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link TempFileReadOnlySharedStringsTable}
+ */
+public final class TestTempFileReadOnlySharedStringsTable {
+    private static final POIDataSamples _ssTests = POIDataSamples.getSpreadSheetInstance();
+
+    @Test
+    void testParse() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("SampleSS.xlsx"))) {
+            List<PackagePart> parts = pkg.getPartsByName(Pattern.compile("/xl/sharedStrings.xml"));
+            assertEquals(1, parts.size());
+
+            try (SharedStringsTable stbl = new SharedStringsTable(parts.get(0));
+                 TempFileReadOnlySharedStringsTable rtbl = new TempFileReadOnlySharedStringsTable(parts.get(0))) {
+                assertEquals(stbl.getCount(), rtbl.getCount());
+                assertEquals(stbl.getUniqueCount(), rtbl.getUniqueCount());
+                assertEquals(stbl.getUniqueCount(), rtbl.getItemCount());
+                for (int i = 0; i < stbl.getUniqueCount(); i++) {
+                    assertEquals(stbl.getItemAt(i).getString(), rtbl.getItemAt(i).getString());
+                }
+
+                assertThrows(IllegalStateException.class, () -> rtbl.getItemAt(stbl.getUniqueCount()));
+                assertThrows(IndexOutOfBoundsException.class, () -> rtbl.getItemAt(-1));
+            }
+        }
+    }
+
+    @Test
+    void testPhoneticRuns() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("51519.xlsx"))) {
+            PackagePart part = pkg.getPartsByName(Pattern.compile("/xl/sharedStrings.xml")).get(0);
+
+            try (TempFileReadOnlySharedStringsTable rtbl = new TempFileReadOnlySharedStringsTable(part, true, 2)) {
+                assertEquals(49, rtbl.getUniqueCount());
+                assertEquals("\u30B3\u30E1\u30F3\u30C8", rtbl.getItemAt(0).getString());
+                assertEquals("\u65E5\u672C\u30AA\u30E9\u30AF\u30EB \u30CB\u30DB\u30F3", rtbl.getItemAt(3).getString());
+            }
+            try (TempFileReadOnlySharedStringsTable rtbl = new TempFileReadOnlySharedStringsTable(part, false, 2)) {
+                assertEquals("\u30B3\u30E1\u30F3\u30C8", rtbl.getItemAt(0).getString());
+                assertEquals("\u65E5\u672C\u30AA\u30E9\u30AF\u30EB", rtbl.getItemAt(3).getString());
+            }
+        }
+    }
+
+    @Test
+    void testManyStrings() throws Exception {
+        final int num = 20_000;
+        SharedStringsTable source = new SharedStringsTable();
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            longString.append("\u00E4\u20AC");
+        }
+        for (int i = 0; i < num; i++) {
+            source.addSharedStringItem(new XSSFRichTextString(i == 12345 ? longString.toString() : "string " + i));
+        }
+
+        try (UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+            source.writeTo(bos);
+            try (InputStream is = bos.toInputStream();
+                 TempFileReadOnlySharedStringsTable rtbl = new TempFileReadOnlySharedStringsTable(is, true, 16)) {
+                assertEquals(num, rtbl.getItemCount());
+                // random access, bypassing the small cache - the long string exceeds the write buffer
+                for (int i = num - 1; i >= 0; i -= 7) {
+                    String expected = i == 12345 ? longString.toString() : "string " + i;
+                    assertEquals(expected, rtbl.getItemAt(i).getString());
+                }
+                assertEquals(longString.toString(), rtbl.getItemAt(12345).getString());
+            }
+        }
+    }
+
+    @Test
+    void testXSSFReader() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("SampleSS.xlsx"))) {
+            XSSFReader reader = new XSSFReader(pkg);
+            reader.setUseTempFileSharedStringsTable(true);
+            SharedStrings sst = reader.getSharedStringsTable();
+            assertInstanceOf(TempFileReadOnlySharedStringsTable.class, sst);
+            try (TempFileReadOnlySharedStringsTable rtbl = (TempFileReadOnlySharedStringsTable) sst) {
+                assertEquals("Test spreadsheet", rtbl.getItemAt(0).getString());
+            }
+            assertThrows(IllegalStateException.class, () -> sst.getItemAt(1));
+        }
+    }
+}
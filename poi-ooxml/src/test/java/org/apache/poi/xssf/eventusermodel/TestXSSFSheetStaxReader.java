@@ -0,0 +1,212 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.POIDataSamples;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetStaxReader.SheetCell;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetStaxReader.SheetRow;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+/**
+ * Test {@link XSSFSheetStaxReader}
+ */
+public final class TestXSSFSheetStaxReader {
+    private static final POIDataSamples _ssTests = POIDataSamples.getSpreadSheetInstance();
+
+    @Test
+    void testCellTypes() throws Exception {
+        for (boolean streaming : new boolean[]{false, true}) {
+            try (Workbook wb = streaming ? new SXSSFWorkbook() : new XSSFWorkbook()) {
+                CellStyle style = wb.createCellStyle();
+                style.setDataFormat(wb.createDataFormat().getFormat("0.00"));
+                Sheet sheet = wb.createSheet();
+                Row row = sheet.createRow(0);
+                row.createCell(0).setCellValue(1.5);
+                row.createCell(2).setCellValue("text");
+                row.createCell(3).setCellValue(true);
+                row.createCell(4).setCellErrorValue(FormulaError.DIV0.getCode());
+                row.createCell(5).setCellFormula("A1*2");
+                row.createCell(6).setCellValue(3);
+                row.getCell(6).setCellStyle(style);
+                row.createCell(7).setCellStyle(style);
+                sheet.createRow(3).createCell(1).setCellValue("second");
+
+                try (OPCPackage pkg = OPCPackage.open(writeOut(wb).toInputStream())) {
+                    XSSFReader reader = new XSSFReader(pkg);
+                    SharedStrings strings = reader.getSharedStringsTable();
+                    StylesTable styles = reader.getStylesTable();
+                    try (InputStream stream = reader.getSheetsData().next();
+                         XSSFSheetStaxReader sheetReader = new XSSFSheetStaxReader(stream, strings, styles)) {
+                        SheetRow sr = sheetReader.nextRow();
+                        assertEquals(0, sr.getRowNum());
+                        assertEquals(7, sr.getCellCount());
+
+                        SheetCell cell = sr.getCell(0);
+                        assertEquals(0, cell.getColumnIndex());
+                        assertEquals(CellType.NUMERIC, cell.getCellType());
+                        assertEquals(1.5, cell.getNumericCellValue(), 0);
+
+                        cell = sr.getCell(1);
+                        assertEquals(2, cell.getColumnIndex());
+                        assertEquals(CellType.STRING, cell.getCellType());
+                        assertEquals("text", cell.getStringCellValue());
+
+                        cell = sr.getCell(2);
+                        assertEquals(CellType.BOOLEAN, cell.getCellType());
+                        assertTrue(cell.getBooleanCellValue());
+
+                        cell = sr.getCell(3);
+                        assertEquals(CellType.ERROR, cell.getCellType());
+                        assertEquals("#DIV/0!", cell.getErrorCellString());
+
+                        cell = sr.getCell(4);
+                        assertEquals(CellType.FORMULA, cell.getCellType());
+                        assertEquals("A1*2", cell.getFormula());
+
+                        cell = sr.getCell(5);
+                        assertEquals("3.00", cell.getFormattedValue(new DataFormatter()));
+                        assertEquals("0.00", cell.getCellStyle().getDataFormatString());
+
+                        cell = sr.getCell(6);
+                        assertEquals(7, cell.getColumnIndex());
+                        assertEquals(CellType.BLANK, cell.getCellType());
+                        assertEquals(style.getIndex(), cell.getStyleIndex());
+                        assertThrows(IllegalStateException.class, cell::getCachedFormulaResultType);
+                        assertThrows(IndexOutOfBoundsException.class, () -> sr.getCell(7));
+
+                        // the row object is reused
+                        assertSame(sr, sheetReader.nextRow());
+                        assertEquals(3, sr.getRowNum());
+                        assertEquals(1, sr.getCellCount());
+                        assertEquals(1, sr.getCell(0).getColumnIndex());
+                        assertEquals("second", sr.getCell(0).getStringCellValue());
+
+                        assertNull(sheetReader.nextRow());
+                        assertNull(sheetReader.nextRow());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSameAsSheetXMLHandler() throws Exception {
+        for (String file : new String[]{"SampleSS.xlsx", "sample.xlsx", "InlineStrings.xlsx", "51519.xlsx"}) {
+            try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream(file))) {
+                XSSFReader reader = new XSSFReader(pkg);
+                reader.setUseReadOnlySharedStringsTable(true);
+                SharedStrings strings = reader.getSharedStringsTable();
+                StylesTable styles = reader.getStylesTable();
+                XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+                while (it.hasNext()) {
+                    List<String> expected = new ArrayList<>();
+                    try (InputStream stream = it.next()) {
+                        XMLReader parser = XMLHelper.newXMLReader();
+                        parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, new SheetContentsHandler() {
+                            @Override
+                            public void startRow(int rowNum) {
+                            }
+
+                            @Override
+                            public void endRow(int rowNum) {
+                            }
+
+                            @Override
+                            public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                                expected.add(formattedValue);
+                            }
+                        }, false));
+                        parser.parse(new InputSource(stream));
+                    }
+
+                    List<String> actual = new ArrayList<>();
+                    DataFormatter formatter = new DataFormatter();
+                    try (InputStream stream = it.getSheetPart().getInputStream();
+                         XSSFSheetStaxReader sheetReader = new XSSFSheetStaxReader(stream, strings, styles)) {
+                        SheetRow row;
+                        while ((row = sheetReader.nextRow()) != null) {
+                            for (int i = 0; i < row.getCellCount(); i++) {
+                                actual.add(row.getCell(i).getFormattedValue(formatter));
+                            }
+                        }
+                    }
+                    assertEquals(expected, actual, file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEarlyStop() throws Exception {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            for (int r = 0; r < 1000; r++) {
+                sheet.createRow(r).createCell(0).setCellValue(r);
+            }
+            try (OPCPackage pkg = OPCPackage.open(writeOut(wb).toInputStream())) {
+                XSSFReader reader = new XSSFReader(pkg);
+                try (InputStream stream = reader.getSheetsData().next();
+                     XSSFSheetStaxReader sheetReader = new XSSFSheetStaxReader(stream, null, null)) {
+                    for (int r = 0; r < 10; r++) {
+                        SheetRow row = sheetReader.nextRow();
+                        assertEquals(r, row.getRowNum());
+                        assertEquals(r, row.getCell(0).getNumericCellValue(), 0);
+                    }
+                    assertNotNull(sheetReader.nextRow());
+                }
+            }
+            wb.dispose();
+        }
+    }
+
+    private static UnsynchronizedByteArrayOutputStream writeOut(Workbook wb) throws IOException {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        wb.write(bos);
+        return bos;
+    }
+}
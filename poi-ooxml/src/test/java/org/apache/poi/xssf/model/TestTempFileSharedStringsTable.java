@@ -0,0 +1,143 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.xssf.SXSSFITestDataProvider;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link TempFileSharedStringsTable}
+ */
+public final class TestTempFileSharedStringsTable {
+    @Test
+    void testAddAndRead() throws IOException {
+        try (TempFileSharedStringsTable sst = new TempFileSharedStringsTable()) {
+            assertEquals(0, sst.addSharedStringItem(new XSSFRichTextString("Hello, World!")));
+            assertEquals(1, sst.addSharedStringItem(new XSSFRichTextString(" padded ")));
+            assertEquals(0, sst.addSharedStringItem(new XSSFRichTextString("Hello, World!")));
+
+            XSSFRichTextString rt = new XSSFRichTextString();
+            XSSFFont font = new XSSFFont();
+            font.setBold(true);
+            rt.append("bold", font);
+            rt.append(" plain");
+            assertEquals(2, sst.addSharedStringItem(rt));
+            // same text, but different formatting
+            assertEquals(3, sst.addSharedStringItem(new XSSFRichTextString("bold plain")));
+
+            assertEquals(5, sst.getCount());
+            assertEquals(4, sst.getUniqueCount());
+
+            assertEquals("Hello, World!", sst.getItemAt(0).getString());
+            assertEquals(" padded ", sst.getItemAt(1).getString());
+            RichTextString item = sst.getItemAt(2);
+            assertEquals("bold plain", item.getString());
+            assertEquals(2, item.numFormattingRuns());
+            assertEquals("bold plain", sst.getItemAt(3).getString());
+            assertEquals(0, sst.getItemAt(3).numFormattingRuns());
+            assertThrows(IndexOutOfBoundsException.class, () -> sst.getItemAt(4));
+
+            List<RichTextString> items = sst.getSharedStringItems();
+            assertEquals(4, items.size());
+
+            // the streamed output can be read by the regular table
+            SharedStringsTable copy = new SharedStringsTable();
+            try (UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+                sst.writeTo(bos);
+                copy.readFrom(bos.toInputStream());
+            }
+            assertEquals(5, copy.getCount());
+            assertEquals(4, copy.getUniqueCount());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(sst.getItemAt(i).getString(), copy.getItemAt(i).getString());
+            }
+        }
+    }
+
+    @Test
+    void testManyUniqueStrings() throws IOException {
+        try (TempFileSharedStringsTable sst = new TempFileSharedStringsTable()) {
+            final int num = 50_000;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < num; i++) {
+                    assertEquals(i, sst.addSharedStringItem(new XSSFRichTextString("string \u00E4 " + i)));
+                }
+            }
+            assertEquals(num, sst.getUniqueCount());
+            assertEquals(2 * num, sst.getCount());
+            assertEquals("string \u00E4 12345", sst.getItemAt(12345).getString());
+        }
+    }
+
+    @Test
+    void testReadFrom() throws IOException {
+        SharedStringsTable source = new SharedStringsTable();
+        source.addSharedStringItem(new XSSFRichTextString("a"));
+        source.addSharedStringItem(new XSSFRichTextString("b"));
+        source.addSharedStringItem(new XSSFRichTextString("a"));
+
+        try (TempFileSharedStringsTable sst = new TempFileSharedStringsTable();
+             UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+            source.writeTo(bos);
+            sst.readFrom(bos.toInputStream());
+            assertEquals(3, sst.getCount());
+            assertEquals(2, sst.getUniqueCount());
+            assertEquals(1, sst.addSharedStringItem(new XSSFRichTextString("b")));
+        }
+    }
+
+    @Test
+    void testSXSSFWorkbook() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10, false, true)) {
+            assertInstanceOf(TempFileSharedStringsTable.class, wb.getXSSFWorkbook().getSharedStringSource());
+            SXSSFSheet sheet = wb.createSheet("strings");
+            for (int r = 0; r < 1000; r++) {
+                SXSSFRow row = sheet.createRow(r);
+                row.createCell(0).setCellValue("unique " + r);
+                row.createCell(1).setCellValue("repeated " + (r % 3));
+            }
+
+            try (XSSFWorkbook xwb = SXSSFITestDataProvider.instance.writeOutAndReadBack(wb)) {
+                assertEquals(1003, xwb.getSharedStringSource().getUniqueCount());
+                assertEquals(2000, xwb.getSharedStringSource().getCount());
+                XSSFSheet xs = xwb.getSheet("strings");
+                for (int r = 0; r < 1000; r++) {
+                    assertEquals("unique " + r, xs.getRow(r).getCell(0).getStringCellValue());
+                    assertEquals("repeated " + (r % 3), xs.getRow(r).getCell(1).getStringCellValue());
+                }
+            }
+            wb.dispose();
+        }
+    }
+}
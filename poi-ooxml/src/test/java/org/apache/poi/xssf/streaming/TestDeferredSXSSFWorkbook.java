@@ -19,6 +19,7 @@
 
 package org.apache.poi.xssf.streaming;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -27,6 +28,12 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 
 import org.apache.poi.ss.tests.usermodel.BaseTestXWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
@@ -265,6 +272,29 @@ public final class TestDeferredSXSSFWorkbook extends BaseTestXWorkbook {
         }
     }
 
+    @Test
+    void parallelRowGeneration() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            byte[] sequential;
+            try (DeferredSXSSFWorkbook wb = new DeferredSXSSFWorkbook();
+                 UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+                populateData(wb);
+                wb.write(bos);
+                sequential = bos.toByteArray();
+            }
+            try (DeferredSXSSFWorkbook wb = new DeferredSXSSFWorkbook();
+                 UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+                populateData(wb);
+                wb.setWriteExecutor(executor);
+                wb.write(bos);
+                assertArrayEquals(sequential, bos.toByteArray());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     void sheetdataWriter() throws IOException {
         try (DeferredSXSSFWorkbook wb = new DeferredSXSSFWorkbook()) {
@@ -356,6 +386,8 @@ public final class TestDeferredSXSSFWorkbook extends BaseTestXWorkbook {
     }
 
     private static void populateData(DeferredSXSSFWorkbook wb) {
+        // the creation date is written with seconds, so the files of two workbooks could differ
+        wb.getXSSFWorkbook().getProperties().getCoreProperties().setCreated(Optional.of(new Date(0)));
         for (int i = 0; i < 5; i++) {
             DeferredSXSSFSheet sheet = wb.createSheet("sheet" + i);
             int index = i;
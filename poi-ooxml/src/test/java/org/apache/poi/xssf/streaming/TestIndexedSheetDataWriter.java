@@ -0,0 +1,145 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.xssf.SXSSFITestDataProvider;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public final class TestIndexedSheetDataWriter {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testReadFlushedRows(boolean useSharedStrings) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(null, 10, false, useSharedStrings)) {
+            wb.setFlushedRowAccess(true);
+            CellStyle style = wb.createCellStyle();
+            style.setWrapText(true);
+            SXSSFSheet sheet = wb.createSheet();
+            fill(sheet, style, 1000);
+
+            for (int rownum : new int[]{0, 1, 31, 32, 33, 500, 989}) {
+                SXSSFRow row = sheet.getFlushedRow(rownum);
+                assertNotNull(row, "row " + rownum);
+                assertEquals(rownum, row.getRowNum());
+                assertEquals(rownum, row.getCell(0).getNumericCellValue());
+                assertEquals("text <" + rownum + "> & more", row.getCell(1).getStringCellValue());
+                assertEquals(rownum % 2 == 0, row.getCell(2).getBooleanCellValue());
+                assertEquals("A" + (rownum + 1) + "*2", row.getCell(3).getCellFormula());
+                assertEquals(CellType.NUMERIC, row.getCell(3).getCachedFormulaResultType());
+                assertEquals(rownum * 2, row.getCell(3).getNumericCellValue());
+                assertEquals(FormulaError.DIV0.getCode(), row.getCell(4).getErrorCellValue());
+                assertEquals(style.getIndex(), row.getCell(5).getCellStyle().getIndex());
+                assertEquals(CellType.BLANK, row.getCell(5).getCellType());
+                assertEquals(rownum % 7 == 0, row.getZeroHeight());
+                assertSame(row, sheet.getFlushedRow(rownum));
+            }
+            // rows of the window and rows, which weren't created
+            assertNull(sheet.getFlushedRow(990));
+            assertNotNull(sheet.getRow(990));
+            assertNull(sheet.getFlushedRow(2000));
+            assertNull(sheet.getFlushedRow(-1));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testChangeFlushedRows(boolean useSharedStrings) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(null, 10, false, useSharedStrings)) {
+            wb.setFlushedRowAccess(true);
+            SXSSFSheet sheet = wb.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("header");
+            fill(sheet, null, 1, 200);
+
+            // fix the header and set a total on an earlier row
+            sheet.getFlushedRow(0).getCell(0).setCellValue("fixed header");
+            sheet.getFlushedRow(0).createCell(7).setCellValue("new cell");
+            SXSSFRow total = sheet.getFlushedRow(100);
+            total.getCell(0).setCellValue(-1);
+            total.getCell(1).setCellValue("total");
+            total.createCell(3).setCellFormula("SUM(A2:A100)");
+
+            for (int i = 0; i < 2; i++) {
+                try (XSSFWorkbook xwb = SXSSFITestDataProvider.instance.writeOutAndReadBack(wb)) {
+                    XSSFSheet xs = xwb.getSheetAt(0);
+                    assertEquals(200, xs.getPhysicalNumberOfRows());
+                    assertEquals("fixed header", xs.getRow(0).getCell(0).getStringCellValue());
+                    assertEquals("new cell", xs.getRow(0).getCell(7).getStringCellValue());
+                    XSSFRow row = xs.getRow(100);
+                    assertEquals(-1, row.getCell(0).getNumericCellValue());
+                    assertEquals("total", row.getCell(1).getStringCellValue());
+                    assertEquals("SUM(A2:A100)", row.getCell(3).getCellFormula());
+                    // the rows before and after are unchanged
+                    assertEquals(99, xs.getRow(99).getCell(0).getNumericCellValue());
+                    assertEquals("text <101> & more", xs.getRow(101).getCell(1).getStringCellValue());
+                    assertTrue(xs.getRow(105).getZeroHeight());
+                    assertEquals(199, xs.getRow(199).getCell(0).getNumericCellValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWithoutFlushedRowAccess() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            assertFalse(wb.isFlushedRowAccess());
+            SXSSFSheet sheet = wb.createSheet();
+            fill(sheet, null, 100);
+            assertThrows(IllegalStateException.class, () -> sheet.getFlushedRow(0));
+        }
+    }
+
+    private static void fill(SXSSFSheet sheet, CellStyle style, int rows) {
+        fill(sheet, style, 0, rows);
+    }
+
+    private static void fill(SXSSFSheet sheet, CellStyle style, int firstRow, int rows) {
+        for (int rownum = firstRow; rownum < rows; rownum++) {
+            SXSSFRow row = sheet.createRow(rownum);
+            row.createCell(0).setCellValue(rownum);
+            row.createCell(1).setCellValue("text <" + rownum + "> & more");
+            row.createCell(2).setCellValue(rownum % 2 == 0);
+            SXSSFCell formula = row.createCell(3);
+            formula.setCellValue(rownum * 2);
+            formula.setCellFormula("A" + (rownum + 1) + "*2");
+            row.createCell(4).setCellErrorValue(FormulaError.DIV0.getCode());
+            SXSSFCell blank = row.createCell(5);
+            if (style != null) {
+                blank.setCellStyle(style);
+            }
+            row.setZeroHeight(rownum % 7 == 0);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.SXSSFITestDataProvider;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public final class TestSXSSFAppendOnlyRows {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testSameSheetDataAsDefaultRows(boolean useSharedStrings) throws IOException {
+        byte[] expected = writeSheetData(false, useSharedStrings);
+        byte[] actual = writeSheetData(true, useSharedStrings);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void testReadBack() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            wb.setAppendOnlyRows(true);
+            fill(wb, wb.createSheet(), 1000);
+            try (XSSFWorkbook xwb = SXSSFITestDataProvider.instance.writeOutAndReadBack(wb)) {
+                XSSFSheet sheet = xwb.getSheetAt(0);
+                assertEquals(1000, sheet.getPhysicalNumberOfRows());
+                for (int rownum : new int[]{0, 1, 99, 500, 999}) {
+                    XSSFRow row = sheet.getRow(rownum);
+                    assertEquals(rownum, row.getCell(0).getNumericCellValue());
+                    assertEquals("text " + rownum, row.getCell(1).getStringCellValue());
+                    assertEquals(rownum % 2 == 0, row.getCell(2).getBooleanCellValue());
+                    assertEquals(FormulaError.NA.getCode(), row.getCell(3).getErrorCellValue());
+                    assertEquals(CellType.BLANK, row.getCell(4).getCellType());
+                    assertEquals("A" + (rownum + 1) + "*2", row.getCell(5).getCellFormula());
+                    assertEquals(rownum * 2, row.getCell(5).getNumericCellValue());
+                    assertEquals("rich " + rownum, row.getCell(6).getStringCellValue());
+                    assertEquals(2, row.getCell(7).getCellStyle().getIndex());
+                    assertNull(row.getCell(8));
+                    assertEquals(rownum % 3 == 0, row.getZeroHeight());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRowsAreReused() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            wb.setAppendOnlyRows(true);
+            SXSSFSheet sheet = wb.createSheet();
+            SXSSFRow first = sheet.createRow(0);
+            SXSSFCell firstCell = first.createCell(0);
+            boolean reused = false;
+            for (int rownum = 1; rownum < 100; rownum++) {
+                SXSSFRow row = sheet.createRow(rownum);
+                assertEquals(rownum, row.getRowNum());
+                assertEquals(-1, row.getFirstCellNum());
+                SXSSFCell cell = row.createCell(0);
+                if (row == first) {
+                    assertSame(firstCell, cell);
+                    reused = true;
+                }
+                cell.setCellValue(rownum);
+            }
+            assertTrue(reused);
+            assertEquals(90, sheet.getSheetDataWriter().getNumberOfFlushedRows());
+            assertEquals(100, sheet.getPhysicalNumberOfRows());
+            assertEquals(0, sheet.getFirstRowNum());
+            assertEquals(99, sheet.getLastRowNum());
+            assertNull(sheet.getRow(89));
+            assertEquals(90, sheet.getRow(90).getCell(0).getNumericCellValue());
+        }
+    }
+
+    @Test
+    void testAscendingRows() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            wb.setAppendOnlyRows(true);
+            assertTrue(wb.isAppendOnlyRows());
+            SXSSFSheet sheet = wb.createSheet();
+            sheet.createRow(5);
+            SXSSFRow row = sheet.createRow(7);
+            assertThrows(IllegalArgumentException.class, () -> sheet.createRow(7));
+            assertThrows(IllegalArgumentException.class, () -> sheet.createRow(6));
+            assertThrows(IllegalStateException.class, () -> row.setRowNum(8));
+
+            sheet.createRow(9);
+            sheet.removeRow(row);
+            assertNull(sheet.getRow(7));
+            assertEquals(2, sheet.getPhysicalNumberOfRows());
+            Iterator<Row> rows = sheet.rowIterator();
+            assertEquals(5, rows.next().getRowNum());
+            assertEquals(9, rows.next().getRowNum());
+            assertFalse(rows.hasNext());
+
+            sheet.groupRow(6, 9);
+            assertEquals(0, sheet.getRow(5).getOutlineLevel());
+            assertEquals(1, sheet.getRow(9).getOutlineLevel());
+        }
+    }
+
+    @Test
+    void testCellValues() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            wb.setAppendOnlyRows(true);
+            SXSSFRow row = wb.createSheet().createRow(0);
+            SXSSFCell cell = row.createCell(3);
+            assertEquals(CellType.BLANK, cell.getCellType());
+            assertEquals("", cell.getStringCellValue());
+            assertEquals(0, cell.getNumericCellValue());
+
+            cell.setCellValue(1.5);
+            assertEquals(CellType.NUMERIC, cell.getCellType());
+            assertEquals(1.5, cell.getNumericCellValue());
+            assertThrows(IllegalStateException.class, cell::getStringCellValue);
+
+            cell.setCellValue("abc");
+            assertEquals(CellType.STRING, cell.getCellType());
+            assertEquals("abc", cell.getStringCellValue());
+            assertEquals("abc", cell.getRichStringCellValue().getString());
+            assertThrows(IllegalStateException.class, cell::getNumericCellValue);
+
+            cell.setCellValue(true);
+            assertTrue(cell.getBooleanCellValue());
+            cell.setCellErrorValue(FormulaError.REF.getCode());
+            assertEquals(CellType.ERROR, cell.getCellType());
+            assertEquals(FormulaError.REF.getCode(), cell.getErrorCellValue());
+
+            // the formula keeps the cached value
+            cell.setCellValue(4);
+            cell.setCellFormula("2*2");
+            assertEquals(CellType.FORMULA, cell.getCellType());
+            assertEquals(CellType.NUMERIC, cell.getCachedFormulaResultType());
+            assertEquals(4, cell.getNumericCellValue());
+            cell.removeFormula();
+            assertEquals(CellType.NUMERIC, cell.getCellType());
+
+            cell.setCellValue(new XSSFRichTextString("rich"));
+            assertEquals("rich", cell.getStringCellValue());
+            cell.setBlank();
+            assertEquals(CellType.BLANK, cell.getCellType());
+
+            CellStyle style = wb.createCellStyle();
+            assertEquals(0, cell.getCellStyle().getIndex());
+            cell.setCellStyle(style);
+            assertEquals(style.getIndex(), cell.getCellStyle().getIndex());
+
+            assertEquals(CellType.FORMULA, row.createCell(1, CellType.FORMULA).getCellType());
+            assertEquals(CellType.STRING, row.createCell(5, CellType.STRING).getCellType());
+            assertEquals(1, row.getFirstCellNum());
+            assertEquals(6, row.getLastCellNum());
+            assertEquals(3, row.getPhysicalNumberOfCells());
+            assertSame(cell, row.getCell(3));
+            assertNull(row.getCell(2));
+            assertNull(row.getCell(100));
+            assertNotNull(row.getCell(2, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK));
+
+            row.removeCell(row.getCell(5));
+            row.removeCell(row.getCell(1));
+            assertEquals(2, row.getFirstCellNum());
+            assertEquals(4, row.getLastCellNum());
+            Iterator<Cell> cells = row.cellIterator();
+            assertEquals(2, cells.next().getColumnIndex());
+            assertSame(cell, cells.next());
+            assertFalse(cells.hasNext());
+        }
+    }
+
+    @Test
+    void testRemovedCells() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            wb.setAppendOnlyRows(true);
+            SXSSFRow row = wb.createSheet().createRow(0);
+            SXSSFCell a1 = row.createCell(0);
+            a1.setCellValue(1);
+            SXSSFCell b1 = row.createCell(1);
+            b1.setCellValue(11);
+            SXSSFCell c1 = row.createCell(2);
+            c1.setCellValue(21);
+
+            // the removed cell doesn't alias the moved cells
+            row.removeCell(a1);
+            assertThrows(IllegalStateException.class, () -> a1.setCellValue(99));
+            assertThrows(IllegalStateException.class, a1::getNumericCellValue);
+            assertEquals(-1, a1.getColumnIndex());
+            assertEquals(11, b1.getNumericCellValue());
+            assertEquals(21, c1.getNumericCellValue());
+            assertSame(b1, row.getCell(1));
+            assertEquals(2, row.getPhysicalNumberOfCells());
+
+            // the replaced cell doesn't alias the new cell of the column
+            SXSSFCell newB1 = row.createCell(1);
+            assertNotSame(b1, newB1);
+            assertSame(newB1, row.getCell(1));
+            assertThrows(IllegalStateException.class, () -> b1.setCellValue(99));
+            assertThrows(IllegalStateException.class, b1::getCellType);
+            assertEquals(CellType.BLANK, newB1.getCellType());
+            newB1.setCellValue(12);
+            assertEquals(12, newB1.getNumericCellValue());
+            assertEquals(1, newB1.getColumnIndex());
+            assertEquals(21, c1.getNumericCellValue());
+
+            // a new cell isn't affected by the removed views
+            SXSSFCell d1 = row.createCell(3);
+            d1.setCellValue(31);
+            assertNotSame(a1, d1);
+            assertEquals(31, d1.getNumericCellValue());
+            assertEquals(3, row.getPhysicalNumberOfCells());
+        }
+    }
+
+    @Test
+    void testSparseColumns() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            wb.setAppendOnlyRows(true);
+            SXSSFRow row = wb.createSheet().createRow(0);
+            SXSSFCellColumns columns = new SXSSFCellColumns(row);
+            SXSSFCell last = columns.create(16383, CellType.NUMERIC);
+            last.setCellValue(3);
+            SXSSFCell first = columns.create(2, CellType.STRING);
+            first.setCellValue("first");
+            columns.create(100, CellType.BOOLEAN).setCellValue(true);
+            // the arrays only hold the existing cells
+            assertEquals(16, columns.capacity());
+            assertEquals(3, columns.size());
+            assertEquals(2, columns.getFirstColumn());
+            assertEquals(16383, columns.getLastColumn());
+            assertSame(last, columns.get(16383));
+            assertEquals(16383, last.getColumnIndex());
+            assertEquals(3, last.getNumericCellValue());
+            assertEquals("first", columns.get(2).getStringCellValue());
+            assertTrue(columns.get(100).getBooleanCellValue());
+            assertNull(columns.get(50));
+            assertNull(columns.get(16000));
+
+            columns.remove(2);
+            assertEquals(100, columns.getFirstColumn());
+            assertTrue(columns.get(100).getBooleanCellValue());
+            assertEquals(3, last.getNumericCellValue());
+            Iterator<SXSSFCell> cells = columns.iterator();
+            assertEquals(100, cells.next().getColumnIndex());
+            assertSame(last, cells.next());
+            assertFalse(cells.hasNext());
+
+            // the views are reused by the following cells
+            columns.clear();
+            assertEquals(-1, columns.getFirstColumn());
+            SXSSFCell reused = columns.create(5, CellType.BLANK);
+            assertEquals(5, reused.getColumnIndex());
+            assertEquals(CellType.BLANK, reused.getCellType());
+            for (int column = 6; column < 40; column++) {
+                columns.create(column, CellType.NUMERIC).setCellValue(column);
+            }
+            assertEquals(64, columns.capacity());
+            assertEquals(35, columns.size());
+            assertEquals(39, columns.get(39).getNumericCellValue());
+        }
+    }
+
+    private static byte[] writeSheetData(boolean appendOnlyRows, boolean useSharedStrings) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(null, 10, false, useSharedStrings);
+             UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+            wb.setAppendOnlyRows(appendOnlyRows);
+            SXSSFSheet sheet = wb.createSheet();
+            // the default style of the column is used for cells without style
+            sheet.setDefaultColumnStyle(9, wb.createCellStyle());
+            fill(wb, sheet, 500);
+            wb.write(bos);
+
+            try (XSSFWorkbook xwb = new XSSFWorkbook(bos.toInputStream());
+                 InputStream is = xwb.getSheetAt(0).getPackagePart().getInputStream()) {
+                return IOUtils.toByteArray(is);
+            }
+        }
+    }
+
+    private static void fill(SXSSFWorkbook wb, SXSSFSheet sheet, int rows) {
+        CellStyle style = wb.createCellStyle();
+        style.setWrapText(true);
+        CellStyle style2 = wb.createCellStyle();
+        style2.setShrinkToFit(true);
+        for (int rownum = 0; rownum < rows; rownum++) {
+            SXSSFRow row = sheet.createRow(rownum);
+            row.createCell(0).setCellValue(rownum);
+            row.createCell(1).setCellValue("text " + rownum);
+            row.createCell(2).setCellValue(rownum % 2 == 0);
+            row.createCell(3).setCellErrorValue(FormulaError.NA.getCode());
+            row.createCell(4).setCellStyle(style);
+            SXSSFCell formula = row.createCell(5);
+            formula.setCellValue(rownum * 2);
+            formula.setCellFormula("A" + (rownum + 1) + "*2");
+            row.createCell(6).setCellValue(new XSSFRichTextString("rich " + rownum));
+            row.createCell(7, CellType.NUMERIC).setCellStyle(style2);
+            row.createCell(9).setCellValue(-rownum);
+            row.setZeroHeight(rownum % 3 == 0);
+        }
+    }
+}
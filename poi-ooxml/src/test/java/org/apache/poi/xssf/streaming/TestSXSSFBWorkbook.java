@@ -0,0 +1,166 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.binary.XSSFBSharedStringsTable;
+import org.apache.poi.xssf.binary.XSSFBSheetRowReader;
+import org.apache.poi.xssf.binary.XSSFBStylesTable;
+import org.apache.poi.xssf.eventusermodel.XSSFBReader;
+import org.apache.poi.xssf.extractor.XSSFBEventBasedExcelExtractor;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test {@link SXSSFBWorkbook}
+ */
+public final class TestSXSSFBWorkbook {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testWriteAndRead(boolean useSharedStrings) throws Exception {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (SXSSFBWorkbook wb = new SXSSFBWorkbook(10, false, useSharedStrings)) {
+            CellStyle style = wb.createCellStyle();
+            style.setDataFormat(wb.createDataFormat().getFormat("0.000"));
+            Sheet first = wb.createSheet("Numbers");
+            for (int r = 0; r < 100; r++) {
+                Row row = first.createRow(r);
+                row.createCell(0).setCellValue(r);
+                row.createCell(1).setCellValue(r + 0.5);
+                row.createCell(2).setCellValue(r / 3.0);
+                row.getCell(2).setCellStyle(style);
+                row.createCell(4).setCellValue("row " + r);
+            }
+            first.setColumnWidth(4, 20 * 256);
+            first.addMergedRegion(new CellRangeAddress(0, 1, 5, 6));
+
+            Sheet second = wb.createSheet("Other \u00e4\u00f6\u00fc");
+            Row row = second.createRow(2);
+            row.createCell(1).setCellValue(true);
+            row.createCell(2).setCellErrorValue(FormulaError.DIV0.getCode());
+            row.createCell(3).setCellValue("\u3042\u3044\u3046");
+            row.createCell(4).setCellValue(-1234567.891);
+            row.createCell(5).setCellValue(1e300);
+            row.createCell(6).setCellStyle(style);
+            wb.setSheetHidden(1, true);
+            wb.write(bos);
+            assertTrue(wb.dispose());
+        }
+
+        try (OPCPackage pkg = OPCPackage.open(bos.toInputStream())) {
+            XSSFBReader reader = new XSSFBReader(pkg);
+            XSSFBStylesTable styles = reader.getXSSFBStylesTable();
+            XSSFBSharedStringsTable strings = new XSSFBSharedStringsTable(pkg);
+            assertEquals(useSharedStrings ? 101 : 0, strings.getUniqueCount());
+
+            XSSFBReader.SheetIterator it = (XSSFBReader.SheetIterator) reader.getSheetsData();
+            List<String> sheetNames = new ArrayList<>();
+            List<List<String>> sheets = new ArrayList<>();
+            DataFormatter formatter = new DataFormatter();
+            while (it.hasNext()) {
+                List<String> cells = new ArrayList<>();
+                try (InputStream is = it.next()) {
+                    new XSSFBSheetRowReader(is, styles, strings, cell -> {
+                        String ref = new CellReference(cell.getRowNum(), cell.getColNum()).formatAsString();
+                        switch (cell.getCellType()) {
+                            case NUMERIC:
+                                cells.add(ref + "=" + cell.getNumericValue() + "|" + cell.getFormattedValue(formatter));
+                                break;
+                            case STRING:
+                                cells.add(ref + "=" + cell.getStringValue());
+                                break;
+                            case BOOLEAN:
+                                cells.add(ref + "=" + cell.getBooleanValue());
+                                break;
+                            case ERROR:
+                                cells.add(ref + "=" + cell.getErrorString());
+                                break;
+                            default:
+                                cells.add(ref + " " + cell.getNumberFormatString());
+                                break;
+                        }
+                    }).parse();
+                }
+                sheetNames.add(it.getSheetName());
+                sheets.add(cells);
+            }
+
+            assertEquals(2, sheets.size());
+            assertEquals("Numbers", sheetNames.get(0));
+            assertEquals("Other \u00e4\u00f6\u00fc", sheetNames.get(1));
+
+            List<String> numbers = sheets.get(0);
+            assertEquals(400, numbers.size());
+            assertEquals("A1=0.0|0", numbers.get(0));
+            assertEquals("B1=0.5|0.5", numbers.get(1));
+            assertEquals("C2=" + (1 / 3.0) + "|0.333", numbers.get(6));
+            assertEquals("E100=row 99", numbers.get(399));
+
+            List<String> other = sheets.get(1);
+            assertEquals(6, other.size());
+            assertEquals("B3=true", other.get(0));
+            assertEquals("C3=#DIV/0!", other.get(1));
+            assertEquals("D3=\u3042\u3044\u3046", other.get(2));
+            assertEquals("E3=-1234567.891|-1234567.891", other.get(3));
+            assertEquals("F3=" + 1e300 + "|1E+300", other.get(4));
+            assertEquals("G3 0.000", other.get(5));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testExtractor(boolean compressTmpFiles) throws Exception {
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (SXSSFBWorkbook wb = new SXSSFBWorkbook(5, compressTmpFiles, true)) {
+            Sheet sheet = wb.createSheet("Data");
+            for (int r = 0; r < 20; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("text " + r);
+                row.createCell(1).setCellValue(r * 2);
+                row.createCell(2).setCellFormula("B" + (r + 1) + "*2");
+            }
+            wb.write(bos);
+            wb.dispose();
+        }
+
+        try (OPCPackage pkg = OPCPackage.open(bos.toInputStream());
+             XSSFBEventBasedExcelExtractor extractor = new XSSFBEventBasedExcelExtractor(pkg)) {
+            String text = extractor.getText();
+            assertTrue(text.startsWith("Data\ntext 0\t0\t0\ntext 1\t2\t0\n"), text);
+            assertTrue(text.contains("text 19\t38\t0\n"), text);
+            assertFalse(text.contains("*"), text);
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.poi.xssf.streaming;
 
 import static org.apache.poi.POITestCase.assertEndsWith;
 import static org.apache.poi.POITestCase.assertStartsWith;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -29,6 +30,7 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -36,11 +38,20 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.Arrays;
-
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.poi.POIDataSamples;
 import org.apache.poi.common.usermodel.HyperlinkType;
+import org.apache.poi.openxml4j.opc.CompressionOptions;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.tests.usermodel.BaseTestXWorkbook;
@@ -62,6 +73,7 @@ import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFColor;
 import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFHyperlink;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -487,6 +499,125 @@ public final class TestSXSSFWorkbook extends BaseTestXWorkbook {
         }
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void parallelWrite(boolean zip64Always) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            byte[] sequential = writeParallelTestWorkbook(null, zip64Always);
+            byte[] parallel = writeParallelTestWorkbook(executor, zip64Always);
+            if (zip64Always) {
+                // the entries are added in the same order and without timestamps, so the files are identical
+                assertArrayEquals(sequential, parallel);
+                assertArrayEquals(parallel, writeParallelTestWorkbook(executor, true));
+            }
+
+            try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(parallel))) {
+                assertEquals(5, wb.getNumberOfSheets());
+                for (int s = 0; s < 5; s++) {
+                    XSSFSheet sheet = wb.getSheetAt(s);
+                    assertEquals("sheet" + s, sheet.getSheetName());
+                    assertEquals(499, sheet.getLastRowNum());
+                    assertEquals("row 499 of " + s, sheet.getRow(499).getCell(0).getStringCellValue());
+                    assertEquals(499.0 * s, sheet.getRow(499).getCell(1).getNumericCellValue(), 0);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] writeParallelTestWorkbook(ExecutorService executor, boolean zip64Always) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(50);
+             UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get()) {
+            wb.setWriteExecutor(executor);
+            // the creation date is written with seconds, so the files of both runs could differ
+            wb.getXSSFWorkbook().getProperties().getCoreProperties().setCreated(Optional.of(new Date(0)));
+            if (!zip64Always) {
+                wb.setZip64Mode(Zip64Mode.AsNeeded);
+            }
+            for (int s = 0; s < 5; s++) {
+                Sheet sheet = wb.createSheet("sheet" + s);
+                for (int r = 0; r < 500; r++) {
+                    Row row = sheet.createRow(r);
+                    row.createCell(0).setCellValue("row " + r + " of " + s);
+                    row.createCell(1).setCellValue(r * s);
+                }
+            }
+            wb.write(bos);
+            assertTrue(wb.dispose());
+            return bos.toByteArray();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void parallelBlockDeflate(boolean zip64Always) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(100)) {
+            wb.getXSSFWorkbook().getPackage().setParallelDeflateExecutor(executor);
+            if (!zip64Always) {
+                wb.setZip64Mode(Zip64Mode.AsNeeded);
+            }
+            Sheet sheet = wb.createSheet("big");
+            for (int r = 0; r < 20000; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("row " + r);
+                row.createCell(1).setCellValue(r);
+            }
+            wb.createSheet("empty");
+            wb.write(bos);
+            assertTrue(wb.dispose());
+        } finally {
+            executor.shutdown();
+        }
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(bos.toInputStream())) {
+            XSSFSheet sheet = wb.getSheet("big");
+            assertEquals(19999, sheet.getLastRowNum());
+            assertEquals("row 19999", sheet.getRow(19999).getCell(0).getStringCellValue());
+            assertEquals(12345, sheet.getRow(12345).getCell(1).getNumericCellValue(), 0);
+            assertEquals(-1, wb.getSheet("empty").getLastRowNum());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void compressionOptions(boolean zip64Always) throws Exception {
+        CompressionOptions options = new CompressionOptions();
+        options.setLevel(XSSFRelation.WORKSHEET.getContentType(), CompressionOptions.STORED);
+        options.setLevel("image/*", CompressionOptions.STORED);
+        byte[] picture = _testDataProvider.getTestDataFileContent("45829.png");
+
+        UnsynchronizedByteArrayOutputStream bos = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(10)) {
+            wb.getXSSFWorkbook().getPackage().setCompressionOptions(options);
+            if (!zip64Always) {
+                wb.setZip64Mode(Zip64Mode.AsNeeded);
+            }
+            Sheet sheet = wb.createSheet();
+            for (int r = 0; r < 100; r++) {
+                sheet.createRow(r).createCell(0).setCellValue("row " + r);
+            }
+            wb.addPicture(picture, Workbook.PICTURE_TYPE_PNG);
+            wb.write(bos);
+            assertTrue(wb.dispose());
+        }
+
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(bos.toByteArray()))) {
+            // the Zip64 stream can't store entries and deflates them without compression instead
+            int method = zip64Always ? ZipArchiveEntry.DEFLATED : ZipArchiveEntry.STORED;
+            assertEquals(method, zip.getEntry("xl/media/image1.png").getMethod());
+            assertEquals(method, zip.getEntry("xl/worksheets/sheet1.xml").getMethod());
+            assertEquals(ZipArchiveEntry.DEFLATED, zip.getEntry("xl/workbook.xml").getMethod());
+        }
+        try (XSSFWorkbook wb = new XSSFWorkbook(bos.toInputStream())) {
+            assertEquals("row 99", wb.getSheetAt(0).getRow(99).getCell(0).getStringCellValue());
+            assertArrayEquals(picture, wb.getAllPictures().get(0).getData());
+        }
+    }
+
     /**
      * To avoid accident changes to the template, you should be able
      *  to create a SXSSFWorkbook from a read-only XSSF one, then
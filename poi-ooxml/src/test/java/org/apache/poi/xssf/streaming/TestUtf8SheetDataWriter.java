@@ -0,0 +1,174 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.SXSSFITestDataProvider;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public final class TestUtf8SheetDataWriter {
+
+    @ParameterizedTest
+    @ValueSource(doubles = {
+        0, 1, -1, 0.1, 0.2, 0.3, 1.5, -2.25, 123456789, 1e15, 9007199254740991d, 12345.678901,
+        0.1 + 0.2, 1/3d, Math.PI, -Math.E, 1e-7, 1.23e-5, 4.35, 100.01, 1e16, 1e300, 1e-300,
+        Double.MIN_VALUE, Double.MAX_VALUE, -0d, Double.NaN, Double.POSITIVE_INFINITY
+    })
+    void testWriteDoubleRoundTrips(double value) throws IOException {
+        String text = writeAndRead(w -> w.writeDouble(value));
+        if (Double.isNaN(value)) {
+            assertEquals("NaN", text);
+        } else {
+            assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(Double.parseDouble(text)), text);
+            if (Math.abs(value) >= 1e-3 && Math.abs(value) < 1e7) {
+                // the result is never longer than the JDK representation
+                assertTrue(text.length() <= Double.toString(value).length(), text);
+            }
+        }
+    }
+
+    @Test
+    void testWriteDoubleShortest() throws IOException {
+        assertEquals("1", writeAndRead(w -> w.writeDouble(1)));
+        assertEquals("-1.5", writeAndRead(w -> w.writeDouble(-1.5)));
+        assertEquals("0.3", writeAndRead(w -> w.writeDouble(0.3)));
+        assertEquals("0.30000000000000004", writeAndRead(w -> w.writeDouble(0.1 + 0.2)));
+        assertEquals("0.001", writeAndRead(w -> w.writeDouble(1e-3)));
+        assertEquals("1.0E-5", writeAndRead(w -> w.writeDouble(1e-5)));
+        assertEquals("1000000000000000", writeAndRead(w -> w.writeDouble(1e15)));
+    }
+
+    @Test
+    void testWriteUnicodeSurrogates() throws IOException {
+        String text = "\uD835\uDF4A\uD835\uDF4B abc \u00E4\u20AC<&>\"\u00A0\n\u0001";
+        assertEquals("\uD835\uDF4A\uD835\uDF4B abc \u00E4\u20AC&lt;&amp;&gt;&quot;&#xa0;&#xa;?",
+            writeAndRead(w -> w.outputEscapedString(text)));
+    }
+
+    @Test
+    void testWriteUnpairedSurrogates() throws IOException {
+        // a high surrogate without low surrogate, a low surrogate without high surrogate and both at the end
+        String text = "a\uD835b\uDF4Ac\uDF4A\uD835";
+        assertEquals("a?b?c??", writeAndRead(w -> w.outputEscapedString(text)));
+    }
+
+    @Test
+    void testCellReferences() throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook()) {
+            wb.setUseUtf8SheetDataWriter(true);
+            SXSSFSheet sheet = wb.createSheet();
+            SXSSFRow row = sheet.createRow(41);
+            int[] columns = {0, 25, 26, 701, 702, 16383};
+            for (int col : columns) {
+                row.createCell(col).setCellValue(col);
+            }
+            assertInstanceOf(Utf8SheetDataWriter.class, sheet.getSheetDataWriter());
+            sheet.flushRows();
+            sheet.getSheetDataWriter().close();
+
+            String xml;
+            try (InputStream is = sheet.getSheetDataWriter().getWorksheetXMLInputStream()) {
+                xml = new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8);
+            }
+            StringBuilder expected = new StringBuilder("<row r=\"42\">\n");
+            for (int col : columns) {
+                expected.append("<c r=\"").append(new CellReference(41, col).formatAsString())
+                    .append("\" t=\"n\"><v>").append(col).append("</v></c>");
+            }
+            expected.append("</row>\n");
+            assertEquals(expected.toString(), xml);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testWriteWorkbook(boolean compress) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(null, 10, compress, true)) {
+            wb.setUseUtf8SheetDataWriter(true);
+            CellStyle style = wb.createCellStyle();
+            style.setWrapText(true);
+            SXSSFSheet sheet = wb.createSheet("data");
+            for (int r = 0; r < 100; r++) {
+                SXSSFRow row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r * 1.25);
+                row.createCell(1).setCellValue("text " + (r % 7));
+                row.createCell(2).setCellValue(r % 2 == 0);
+                Cell cell = row.createCell(3);
+                cell.setCellFormula("A" + (r + 1) + "*2");
+                cell.setCellStyle(style);
+                row.createCell(5).setCellErrorValue(FormulaError.DIV0.getCode());
+                row.createCell(6);
+            }
+            sheet.getRow(99).setHeightInPoints(20f);
+
+            try (XSSFWorkbook xwb = SXSSFITestDataProvider.instance.writeOutAndReadBack(wb)) {
+                XSSFSheet xs = xwb.getSheet("data");
+                assertEquals(99, xs.getLastRowNum());
+                for (int r = 0; r < 100; r++) {
+                    XSSFRow row = xs.getRow(r);
+                    assertEquals(r * 1.25, row.getCell(0).getNumericCellValue(), 0);
+                    assertEquals("text " + (r % 7), row.getCell(1).getStringCellValue());
+                    assertEquals(r % 2 == 0, row.getCell(2).getBooleanCellValue());
+                    assertEquals("A" + (r + 1) + "*2", row.getCell(3).getCellFormula());
+                    assertTrue(row.getCell(3).getCellStyle().getWrapText());
+                    assertEquals(FormulaError.DIV0.getCode(), row.getCell(5).getErrorCellValue());
+                }
+                assertEquals(20f, xs.getRow(99).getHeightInPoints(), 0);
+                assertEquals(7, xwb.getSharedStringSource().getUniqueCount());
+            }
+            assertTrue(wb.dispose());
+        }
+    }
+
+    private interface WriterAction {
+        void accept(Utf8SheetDataWriter writer) throws IOException;
+    }
+
+    private static String writeAndRead(WriterAction action) throws IOException {
+        Utf8SheetDataWriter writer = new Utf8SheetDataWriter();
+        try {
+            action.accept(writer);
+            writer.close();
+            File file = writer.getTempFile();
+            try (FileInputStream is = new FileInputStream(file)) {
+                return new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8);
+            }
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -26,12 +26,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.ss.usermodel.BaseTestFormulaEvaluator;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
@@ -391,6 +393,63 @@ public final class TestXSSFFormulaEvaluation extends BaseTestFormulaEvaluator {
         }
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "evaluate_formula_with_structured_table_references.xlsx",
+        "StructuredReferences.xlsx",
+        "simple-monthly-budget.xlsx",
+        "55906-MultiSheetRefs.xlsx"
+    })
+    void parallelEvaluationMatchesSequential(String sampleWorkbook) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook(sampleWorkbook);
+             XSSFWorkbook actual = XSSFTestDataSamples.openSampleWorkbook(sampleWorkbook)) {
+            XSSFFormulaEvaluator.evaluateAllFormulaCells(expected);
+            XSSFFormulaEvaluator.evaluateAllFormulaCells(actual, pool);
+
+            for (Sheet sheet : expected) {
+                for (Row row : sheet) {
+                    for (Cell cell : row) {
+                        if (cell.getCellType() != CellType.FORMULA) {
+                            continue;
+                        }
+                        Cell other = actual.getSheet(sheet.getSheetName()).getRow(row.getRowNum()).getCell(cell.getColumnIndex());
+                        String ref = new CellReference(cell).formatAsString();
+                        assertEquals(cell.getCachedFormulaResultType(), other.getCachedFormulaResultType(), ref);
+                        assertEquals(cell.toString(), other.toString(), ref);
+                        assertEquals(((XSSFCell) cell).getRawValue(), ((XSSFCell) other).getRawValue(), ref);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void recalculateDirtyOnlyDependents() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet1 = wb.createSheet("Sheet1");
+            XSSFSheet sheet2 = wb.createSheet("Sheet2");
+            XSSFRow row = sheet1.createRow(0);
+            row.createCell(0).setCellValue(2);
+            row.createCell(1).setCellValue(3);
+            row.createCell(2).setCellFormula("A1*10");
+            row.createCell(3).setCellFormula("B1*10");
+            sheet2.createRow(0).createCell(0).setCellFormula("SUM(Sheet1!C:C)+1");
+
+            XSSFFormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(3, fe.recalculateDirty());
+            assertEquals(21, sheet2.getRow(0).getCell(0).getNumericCellValue(), 0);
+
+            row.getCell(0).setCellValue(4);
+            fe.notifyUpdateCell(row.getCell(0));
+            assertEquals(2, fe.recalculateDirty());
+            assertEquals(41, sheet2.getRow(0).getCell(0).getNumericCellValue(), 0);
+            assertEquals(30, row.getCell(3).getNumericCellValue(), 0);
+        }
+    }
+
     @Test
     void test59736() throws IOException {
         try (XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook("59736.xlsx")) {
@@ -0,0 +1,135 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Name;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellFormulaType;
+
+/**
+ * Tests the formulas of {@link XSSFCell}s with the {@link org.apache.poi.ss.formula.FormulaParseCache}
+ * of the workbook
+ */
+final class TestXSSFFormulaParseCache {
+
+    @Test
+    void testRepeatedFormulas() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet();
+            for (int r = 0; r < 5; r++) {
+                XSSFRow row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r + 1);
+                row.createCell(1).setCellFormula("A" + (r + 1) + "*2+SUM($A$1:A" + (r + 1) + ")");
+            }
+            assertThrows(FormulaParseException.class, () -> sheet.getRow(0).createCell(2).setCellFormula("A1*"));
+
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            for (int r = 0; r < 5; r++) {
+                double expected = (r + 1) * 2 + (r + 1) * (r + 2) / 2.0;
+                assertEquals(expected, fe.evaluate(sheet.getRow(r).getCell(1)).getNumberValue(), 0);
+            }
+        }
+    }
+
+    @Test
+    void testMixedAreaEndpoints() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet();
+            for (int r = 0; r < 11; r++) {
+                sheet.createRow(r).createCell(1).setCellValue(1);
+            }
+            // the same normalised formula, the area of A1 is parsed as B1:$B$5
+            sheet.getRow(0).createCell(0).setCellFormula("SUM($B$5:B1)");
+            XSSFCell a11 = sheet.getRow(10).createCell(0);
+            a11.setCellFormula("SUM($B$5:B11)");
+
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(7, fe.evaluate(a11).getNumberValue(), 0);
+            assertEquals(5, fe.evaluate(sheet.getRow(0).getCell(0)).getNumberValue(), 0);
+        }
+    }
+
+    @Test
+    void testSharedFormulas() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet("Sheet1");
+            XSSFSheet data = wb.createSheet("Data");
+            for (int r = 0; r < 3; r++) {
+                sheet.createRow(r).createCell(1).setCellValue(r + 1);
+                data.createRow(r).createCell(0).setCellValue((r + 1) * 100);
+            }
+            // C1:C3 share the formula of C1
+            for (int r = 0; r < 3; r++) {
+                XSSFCell cell = sheet.getRow(r).createCell(2);
+                cell.setCellFormula(r == 0 ? "Data!A1+B1" : "0");
+                CTCellFormula f = cell.getCTCell().getF();
+                f.setT(STCellFormulaType.SHARED);
+                f.setSi(0);
+                if (r == 0) {
+                    f.setRef("C1:C3");
+                    sheet.onReadCell(cell);
+                } else {
+                    f.setStringValue("");
+                }
+            }
+
+            XSSFCell c3 = sheet.getRow(2).getCell(2);
+            assertEquals("Data!A3+B3", c3.getCellFormula());
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(303, fe.evaluate(c3).getNumberValue(), 0);
+            assertEquals(202, fe.evaluate(sheet.getRow(1).getCell(2)).getNumberValue(), 0);
+        }
+    }
+
+    @Test
+    void testChangedNames() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet();
+            XSSFRow row = sheet.createRow(0);
+            row.createCell(0).setCellValue(5);
+            row.createCell(1).setCellValue(7);
+            Name global = wb.createName();
+            global.setNameName("Rate");
+            global.setRefersToFormula("Sheet0!$A$1");
+            row.createCell(2).setCellFormula("Rate*2");
+
+            // the same formula refers to another name
+            global.setNameName("OldRate");
+            Name rate = wb.createName();
+            rate.setNameName("Rate");
+            rate.setRefersToFormula("Sheet0!$B$1");
+            row.createCell(3).setCellFormula("Rate*2");
+
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(14, fe.evaluate(row.getCell(3)).getNumberValue(), 0);
+
+            // the index of the name changes
+            wb.removeName(global);
+            fe.clearAllCachedResultValues();
+            assertEquals(14, fe.evaluate(row.getCell(3)).getNumberValue(), 0);
+        }
+    }
+}
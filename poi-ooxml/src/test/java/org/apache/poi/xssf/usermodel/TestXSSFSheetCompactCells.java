@@ -0,0 +1,261 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellFormulaType;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+
+/**
+ * Tests {@link XSSFSheet}s read with {@link XSSFReadOptions#setCompactCells(boolean) compact cells}
+ */
+final class TestXSSFSheetCompactCells {
+
+    @Test
+    void testRoundTrip() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        try (XSSFWorkbook expected = new XSSFWorkbook(original.toInputStream());
+             XSSFWorkbook compact = openCompact(original.toInputStream())) {
+            assertEquals(0, compact.getSheetAt(0).getCTWorksheet().getSheetData().sizeOfRowArray());
+            assertSameCells(expected, compact);
+        }
+
+        // the unused rows are written from the columns
+        UnsynchronizedByteArrayOutputStream written = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook compact = openCompact(original.toInputStream())) {
+            compact.write(written);
+        }
+        try (XSSFWorkbook expected = new XSSFWorkbook(original.toInputStream());
+             XSSFWorkbook actual = new XSSFWorkbook(written.toInputStream())) {
+            assertSameCells(expected, actual);
+            assertEquals("A1:F8", actual.getSheetAt(0).getCTWorksheet().getDimension().getRef());
+        }
+    }
+
+    @Test
+    void testRowsAreConvertedOnAccess() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        UnsynchronizedByteArrayOutputStream written = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = openCompact(original.toInputStream())) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals(0, sheet.getFirstRowNum());
+            assertEquals(7, sheet.getLastRowNum());
+            assertEquals(6, sheet.getPhysicalNumberOfRows());
+            assertNull(sheet.getRow(3));
+
+            sheet.getRow(2).getCell(0).setCellValue(42);
+            sheet.removeRow(sheet.getRow(4));
+            sheet.createRow(6).createCell(1).setCellValue("new");
+            // replaces the compact row
+            sheet.createRow(7).createCell(0).setCellValue(true);
+
+            List<Integer> rownums = new ArrayList<>();
+            for (Row row : sheet) {
+                rownums.add(row.getRowNum());
+            }
+            assertEquals("[0, 1, 2, 5, 6, 7]", rownums.toString());
+            assertEquals(6, sheet.getPhysicalNumberOfRows());
+            wb.write(written);
+        }
+        try (XSSFWorkbook wb = new XSSFWorkbook(written.toInputStream())) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals(42, sheet.getRow(2).getCell(0).getNumericCellValue(), 0);
+            assertNull(sheet.getRow(4));
+            assertEquals("new", sheet.getRow(6).getCell(1).getStringCellValue());
+            assertEquals(1, sheet.getRow(7).getPhysicalNumberOfCells());
+            assertTrue(sheet.getRow(7).getCell(0).getBooleanCellValue());
+            assertEquals("A1*2", sheet.getRow(1).getCell(1).getCellFormula());
+            assertEquals("Text", sheet.getRow(0).getCell(1).getStringCellValue());
+        }
+    }
+
+    @Test
+    void testSharedFormulas() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet();
+            // C1:C3 share the formula of C1
+            for (int r = 0; r < 3; r++) {
+                XSSFRow row = sheet.createRow(r);
+                row.createCell(1).setCellValue(r + 1);
+                XSSFCell cell = row.createCell(2);
+                cell.setCellFormula(r == 0 ? "B1*10" : "0");
+                CTCellFormula f = cell.getCTCell().getF();
+                f.setT(STCellFormulaType.SHARED);
+                f.setSi(0);
+                if (r == 0) {
+                    f.setRef("C1:C3");
+                } else {
+                    f.setStringValue("");
+                }
+            }
+            wb.write(original);
+        }
+        try (XSSFWorkbook wb = openCompact(original.toInputStream())) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            // the master row wasn't converted yet
+            assertEquals("B3*10", sheet.getRow(2).getCell(2).getCellFormula());
+            assertEquals("B1*10", sheet.getRow(0).getCell(2).getCellFormula());
+
+            sheet.shiftRows(1, 2, 2);
+            assertEquals("B5*10", sheet.getRow(4).getCell(2).getCellFormula());
+            assertEquals(0, sheet.getCTWorksheet().getSheetData().sizeOfRowArray());
+        }
+    }
+
+    @Test
+    void testShiftRows() throws IOException, InvalidFormatException {
+        try (XSSFWorkbook expected = XSSFTestDataSamples.openSampleWorkbook("TestShiftRowSharedFormula.xlsx");
+             XSSFWorkbook actual = openCompact(HSSFTestDataSamples.openSampleFileStream("TestShiftRowSharedFormula.xlsx"))) {
+            expected.getSheetAt(0).shiftRows(2, 5, 3);
+            actual.getSheetAt(0).shiftRows(2, 5, 3);
+            assertSameCells(expected, actual);
+
+            XSSFWorkbook written = XSSFTestDataSamples.writeOutAndReadBack(actual);
+            assertSameCells(expected, written);
+            written.close();
+        }
+    }
+
+    private static XSSFWorkbook openCompact(InputStream is) throws IOException, InvalidFormatException {
+        XSSFReadOptions options = new XSSFReadOptions();
+        options.setCompactCells(true);
+        return new XSSFWorkbook(OPCPackage.open(is), options);
+    }
+
+    private static UnsynchronizedByteArrayOutputStream createWorkbook() throws IOException {
+        UnsynchronizedByteArrayOutputStream out = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet("Data");
+            XSSFCellStyle style = wb.createCellStyle();
+            style.setWrapText(true);
+
+            XSSFRow row = sheet.createRow(0);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellValue("Text");
+            row.createCell(2).setCellValue(-0.1);
+            row.createCell(3).setCellValue(true);
+            row.createCell(4).setCellErrorValue(FormulaError.NA);
+            row.createCell(5).setCellStyle(style);
+
+            row = sheet.createRow(1);
+            row.setHeightInPoints(30);
+            row.createCell(0).setCellValue(1e20);
+            row.createCell(1).setCellFormula("A1*2");
+            row.createCell(2).setCellFormula("IF(A1>0,\"yes\",\"no\")");
+            row.createCell(3).setCellFormula("A1>0");
+            XSSFRichTextString rich = new XSSFRichTextString("rich text");
+            rich.applyFont(0, 4, wb.createFont());
+            row.createCell(4).setCellValue(rich);
+
+            row = sheet.createRow(2);
+            row.createCell(0).setCellValue(Math.PI);
+            XSSFCell inline = row.createCell(1);
+            CTCell ct = inline.getCTCell();
+            ct.setT(STCellType.INLINE_STR);
+            ct.addNewIs().setT(" inline & <escaped> ");
+            sheet.setArrayFormula("A1:B1*2", CellRangeAddress.valueOf("C3:D3"));
+
+            sheet.createRow(4).setZeroHeight(true);
+            sheet.createRow(5).createCell(0).setCellValue(6);
+            sheet.groupRow(4, 5);
+            sheet.createRow(7).createCell(5).setCellValue("last");
+
+            wb.setForceFormulaRecalculation(false);
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            wb.write(out);
+        }
+        return out;
+    }
+
+    private static void assertSameCells(XSSFWorkbook expected, XSSFWorkbook actual) {
+        assertEquals(expected.getNumberOfSheets(), actual.getNumberOfSheets());
+        for (int s = 0; s < expected.getNumberOfSheets(); s++) {
+            XSSFSheet expectedSheet = expected.getSheetAt(s);
+            XSSFSheet actualSheet = actual.getSheetAt(s);
+            assertEquals(expectedSheet.getFirstRowNum(), actualSheet.getFirstRowNum());
+            assertEquals(expectedSheet.getLastRowNum(), actualSheet.getLastRowNum());
+            assertEquals(expectedSheet.getPhysicalNumberOfRows(), actualSheet.getPhysicalNumberOfRows());
+            for (Row expectedRow : expectedSheet) {
+                XSSFRow actualRow = actualSheet.getRow(expectedRow.getRowNum());
+                assertNotNull(actualRow);
+                assertEquals(expectedRow.getHeight(), actualRow.getHeight());
+                assertEquals(expectedRow.getZeroHeight(), actualRow.getZeroHeight());
+                assertEquals(expectedRow.getOutlineLevel(), actualRow.getOutlineLevel());
+                assertEquals(expectedRow.getPhysicalNumberOfCells(), actualRow.getPhysicalNumberOfCells());
+                for (Cell expectedCell : expectedRow) {
+                    XSSFCell actualCell = actualRow.getCell(expectedCell.getColumnIndex());
+                    String ref = expectedCell.getAddress().formatAsString();
+                    assertNotNull(actualCell, ref);
+                    assertEquals(expectedCell.getCellType(), actualCell.getCellType(), ref);
+                    assertEquals(expectedCell.getCellStyle().getIndex(), actualCell.getCellStyle().getIndex(), ref);
+                    CellType type = expectedCell.getCellType();
+                    if (type == CellType.FORMULA) {
+                        assertEquals(expectedCell.getCellFormula(), actualCell.getCellFormula(), ref);
+                        assertEquals(expectedCell.isPartOfArrayFormulaGroup(), actualCell.isPartOfArrayFormulaGroup(), ref);
+                        type = expectedCell.getCachedFormulaResultType();
+                    }
+                    switch (type) {
+                        case NUMERIC:
+                            assertEquals(expectedCell.getNumericCellValue(), actualCell.getNumericCellValue(), 0, ref);
+                            break;
+                        case STRING:
+                            assertEquals(expectedCell.getRichStringCellValue().getString(),
+                                actualCell.getRichStringCellValue().getString(), ref);
+                            assertEquals(expectedCell.getRichStringCellValue().numFormattingRuns(),
+                                actualCell.getRichStringCellValue().numFormattingRuns(), ref);
+                            break;
+                        case BOOLEAN:
+                            assertEquals(expectedCell.getBooleanCellValue(), actualCell.getBooleanCellValue(), ref);
+                            break;
+                        case ERROR:
+                            assertEquals(expectedCell.getErrorCellValue(), actualCell.getErrorCellValue(), ref);
+                            break;
+                        default:
+                            assertFalse(expectedCell.getCellType() != CellType.FORMULA
+                                && actualCell.getCellType() != CellType.BLANK, ref);
+                            break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellFormulaType;
+
+/**
+ * Tests the {@link XSSFSheetPatch}, which is streamed through the worksheet part of a lazily loaded sheet
+ */
+final class TestXSSFSheetPatch {
+
+    @Test
+    void testStreamedEditsMatchParsedSheet() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        Consumer<XSSFWorkbook> edits = wb -> {
+            XSSFCellStyle style = wb.createCellStyle();
+            style.setWrapText(true);
+            XSSFSheetPatch patch = wb.getSheetPatch(0);
+            // replaced cells
+            patch.setCellValue(0, 0, 42);
+            patch.setCellValue(0, 1, "replaced");
+            patch.setCellFormula(1, 1, "A1*3");
+            patch.setCellValue(1, 2, Double.POSITIVE_INFINITY);
+            patch.setCellValue(1, 3, false);
+            patch.setCellStyle(1, 4, style);
+            patch.removeCell(2, 0);
+            // new cells of existing rows, before, between and after the cells
+            patch.setCellValue(5, 0, "first");
+            patch.setCellValue(5, 2, 2.5);
+            patch.setCellValue(5, 10, "last");
+            // new rows
+            patch.setCellFormula(3, 0, "SUM(A1:A3)");
+            patch.setRowHeightInPoints(6, 25);
+            patch.setBlank(20, 3);
+            patch.setCellStyle(20, 3, style);
+            // removed and replaced rows
+            patch.removeRow(7);
+            patch.removeRow(8);
+            patch.setCellValue(8, 1, "new row");
+            patch.setRowHeightInPoints(1, -1);
+            patch.removeRow(30);
+        };
+
+        UnsynchronizedByteArrayOutputStream expected = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook(original.toInputStream())) {
+            edits.accept(wb);
+            wb.write(expected);
+        }
+        UnsynchronizedByteArrayOutputStream actual = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            edits.accept(wb);
+            wb.write(actual);
+        }
+
+        try (XSSFWorkbook expectedWb = new XSSFWorkbook(expected.toInputStream());
+             XSSFWorkbook actualWb = new XSSFWorkbook(actual.toInputStream())) {
+            assertSameCells(expectedWb.getSheetAt(0), actualWb.getSheetAt(0));
+
+            XSSFSheet sheet = actualWb.getSheetAt(0);
+            assertEquals("A1:K21", sheet.getCTWorksheet().getDimension().getRef());
+            assertEquals("A1*3", sheet.getRow(1).getCell(1).getCellFormula());
+            assertEquals(FormulaError.DIV0.getCode(), sheet.getRow(1).getCell(2).getErrorCellValue());
+            assertEquals(25, sheet.getRow(6).getHeightInPoints(), 0);
+            assertFalse(sheet.getRow(1).getCTRow().isSetCustomHeight());
+            assertNull(sheet.getRow(7));
+            assertEquals("new row", sheet.getRow(8).getCell(1).getStringCellValue());
+            assertNull(sheet.getRow(8).getCell(0));
+            assertTrue(sheet.getRow(20).getCell(3).getCellStyle().getWrapText());
+            assertEquals(CellType.BLANK, sheet.getRow(20).getCell(3).getCellType());
+        }
+    }
+
+    @Test
+    void testUntouchedSheetsAndRowsAreCopied() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        UnsynchronizedByteArrayOutputStream written = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            wb.getSheetPatch(0).setCellValue(5, 1, 7);
+            wb.write(written);
+        }
+        String expected = readSheet(original);
+        String actual = readSheet(written);
+        assertEquals(expected.substring(0, expected.indexOf("<row r=\"6\"")),
+            actual.substring(0, actual.indexOf("<row r=\"6\"")));
+        assertEquals(expected.substring(expected.indexOf("<row r=\"8\"")),
+            actual.substring(actual.indexOf("<row r=\"8\"")));
+        try (XSSFWorkbook wb = new XSSFWorkbook(written.toInputStream())) {
+            assertEquals(7, wb.getSheetAt(0).getRow(5).getCell(1).getNumericCellValue(), 0);
+            assertEquals(6, wb.getSheetAt(0).getRow(5).getCell(0).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    void testSharedFormulas() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet();
+            // C1:C3 share the formula of C1
+            for (int r = 0; r < 3; r++) {
+                XSSFRow row = sheet.createRow(r);
+                row.createCell(1).setCellValue(r + 1);
+                XSSFCell cell = row.createCell(2);
+                cell.setCellFormula(r == 0 ? "B1*10" : "0");
+                CTCellFormula f = cell.getCTCell().getF();
+                f.setT(STCellFormulaType.SHARED);
+                f.setSi(0);
+                if (r == 0) {
+                    f.setRef("C1:C3");
+                } else {
+                    f.setStringValue("");
+                }
+            }
+            wb.write(original);
+        }
+
+        UnsynchronizedByteArrayOutputStream written = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            wb.getSheetPatch(0).setCellValue(0, 2, 5);
+            wb.write(written);
+        }
+        try (XSSFWorkbook wb = new XSSFWorkbook(written.toInputStream())) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals(5, sheet.getRow(0).getCell(2).getNumericCellValue(), 0);
+            assertEquals("B2*10", sheet.getRow(1).getCell(2).getCellFormula());
+            assertEquals("B3*10", sheet.getRow(2).getCell(2).getCellFormula());
+            assertFalse(sheet.getRow(2).getCell(2).getCTCell().getF().isSetT());
+        }
+    }
+
+    @Test
+    void testArrayFormulas() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        for (int column : new int[]{2, 3}) {
+            try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+                wb.getSheetPatch(0).setCellValue(2, column, 1);
+                IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> wb.write(UnsynchronizedByteArrayOutputStream.builder().get()));
+                assertTrue(e.getMessage().contains("multi-cell array formula"), e.getMessage());
+            }
+        }
+
+        // the style of an array cell can be changed
+        UnsynchronizedByteArrayOutputStream written = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            wb.getSheetPatch(0).setCellStyle(2, 3, wb.getCellStyleAt(1));
+            wb.write(written);
+        }
+        try (XSSFWorkbook wb = new XSSFWorkbook(written.toInputStream())) {
+            XSSFCell cell = wb.getSheetAt(0).getRow(2).getCell(3);
+            assertTrue(cell.isPartOfArrayFormulaGroup());
+            assertEquals(1, cell.getCellStyle().getIndex());
+        }
+    }
+
+    @Test
+    void testEditsAreAppliedOnAccess() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            XSSFSheetPatch patch = wb.getSheetPatch(0);
+            patch.setCellValue(0, 0, "patched");
+            patch.removeRow(5);
+
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals("patched", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertNull(sheet.getRow(5));
+            assertTrue(patch.isEmpty());
+
+            // the following edits change the sheet directly
+            patch.setCellValue(0, 1, 3);
+            assertEquals(3, sheet.getRow(0).getCell(1).getNumericCellValue(), 0);
+            assertTrue(patch.isEmpty());
+
+            XSSFWorkbook back = XSSFTestDataSamples.writeOutAndReadBack(wb);
+            assertEquals("patched", back.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+            assertNull(back.getSheetAt(0).getRow(5));
+            back.close();
+        }
+    }
+
+    @Test
+    void testRepeatedWrites() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            wb.getSheetPatch(0).setCellValue(0, 0, "first");
+            UnsynchronizedByteArrayOutputStream first = UnsynchronizedByteArrayOutputStream.builder().get();
+            wb.write(first);
+            wb.getSheetPatch(0).setCellValue(1, 0, "second");
+            UnsynchronizedByteArrayOutputStream second = UnsynchronizedByteArrayOutputStream.builder().get();
+            wb.write(second);
+
+            assertFalse(readSheet(first).contains("<c r=\"A2\" t=\"s\">"));
+            try (XSSFWorkbook back = new XSSFWorkbook(second.toInputStream())) {
+                XSSFSheet sheet = back.getSheetAt(0);
+                assertEquals("first", sheet.getRow(0).getCell(0).getStringCellValue());
+                assertEquals("second", sheet.getRow(1).getCell(0).getStringCellValue());
+                assertEquals("Text", sheet.getRow(0).getCell(1).getStringCellValue());
+            }
+        }
+    }
+
+    @Test
+    void testInvalidIndexes() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            wb.createSheet();
+            assertThrows(IllegalArgumentException.class, () -> wb.getSheetPatch(1));
+            XSSFSheetPatch patch = wb.getSheetPatch(0);
+            assertThrows(IllegalArgumentException.class, () -> patch.setCellValue(-1, 0, 1));
+            assertThrows(IllegalArgumentException.class, () -> patch.setCellValue(0, 16384, 1));
+            assertThrows(IllegalArgumentException.class, () -> patch.removeRow(1048576));
+        }
+    }
+
+    private static void assertSameCells(XSSFSheet expected, XSSFSheet actual) {
+        assertEquals(expected.getPhysicalNumberOfRows(), actual.getPhysicalNumberOfRows());
+        for (Row expectedRow : expected) {
+            Row actualRow = actual.getRow(expectedRow.getRowNum());
+            String msg = "row " + expectedRow.getRowNum();
+            assertEquals(expectedRow.getHeight(), actualRow.getHeight(), msg);
+            assertEquals(expectedRow.getZeroHeight(), actualRow.getZeroHeight(), msg);
+            assertEquals(expectedRow.getPhysicalNumberOfCells(), actualRow.getPhysicalNumberOfCells(), msg);
+            for (Cell expectedCell : expectedRow) {
+                Cell actualCell = actualRow.getCell(expectedCell.getColumnIndex());
+                msg = expectedCell.getAddress().formatAsString();
+                assertEquals(expectedCell.getCellType(), actualCell.getCellType(), msg);
+                assertEquals(expectedCell.toString(), actualCell.toString(), msg);
+                assertEquals(expectedCell.getCellStyle().getIndex(), actualCell.getCellStyle().getIndex(), msg);
+            }
+        }
+    }
+
+    private static XSSFWorkbook openLazy(InputStream is) throws IOException, InvalidFormatException {
+        XSSFReadOptions options = new XSSFReadOptions();
+        options.setLazySheets(true);
+        return new XSSFWorkbook(OPCPackage.open(is), options);
+    }
+
+    private static String readSheet(UnsynchronizedByteArrayOutputStream workbook) throws IOException {
+        try (XSSFWorkbook wb = openLazy(workbook.toInputStream());
+             InputStream is = wb.getSheetAt(0).getPackagePart().getInputStream()) {
+            return new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8);
+        } catch (InvalidFormatException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static UnsynchronizedByteArrayOutputStream createWorkbook() throws IOException {
+        UnsynchronizedByteArrayOutputStream out = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet("Data");
+            XSSFCellStyle style = wb.createCellStyle();
+            style.setWrapText(true);
+
+            XSSFRow row = sheet.createRow(0);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellValue("Text");
+            row.createCell(2).setCellValue(-0.1);
+            row.createCell(3).setCellValue(true);
+            row.createCell(4).setCellErrorValue(FormulaError.NA);
+            row.createCell(5).setCellStyle(style);
+
+            row = sheet.createRow(1);
+            row.setHeightInPoints(30);
+            row.createCell(0).setCellValue(1e20);
+            row.createCell(1).setCellFormula("A1*2");
+            row.createCell(2).setCellFormula("IF(A1>0,\"yes\",\"no\")");
+            row.createCell(3).setCellFormula("A1>0");
+            row.createCell(4).setCellValue(new XSSFRichTextString("rich text"));
+
+            row = sheet.createRow(2);
+            row.createCell(0).setCellValue(Math.PI);
+            row.createCell(1).setCellValue("third");
+            sheet.setArrayFormula("A1:B1*2", CellRangeAddress.valueOf("C3:D3"));
+
+            sheet.createRow(4).setZeroHeight(true);
+            row = sheet.createRow(5);
+            row.createCell(0).setCellValue(6);
+            row.createCell(1).setCellValue(6.5);
+            row.createCell(3).setCellValue("between");
+            sheet.createRow(7).createCell(0).setCellValue("removed");
+            sheet.createRow(8).createCell(0).setCellValue("replaced");
+            wb.createSheet("Other").createRow(0).createCell(0).setCellValue("other");
+            wb.write(out);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,141 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link XSSFWorkbook}s read with {@link XSSFReadOptions#setLazySheets(boolean) lazy sheets}
+ */
+final class TestXSSFWorkbookLazySheets {
+
+    @Test
+    void testUntouchedSheetsAreCopied() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        UnsynchronizedByteArrayOutputStream written = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            assertEquals(3, wb.getNumberOfSheets());
+            assertEquals("Second", wb.getSheetName(1));
+            assertEquals(2, wb.getSheetIndex("Third"));
+            wb.setSheetHidden(2, true);
+
+            wb.getSheetAt(1).getRow(0).getCell(0).setCellValue(42);
+            wb.write(written);
+        }
+
+        try (OPCPackage expected = OPCPackage.open(original.toInputStream());
+             OPCPackage actual = OPCPackage.open(written.toInputStream())) {
+            assertArrayEquals(readPart(expected, "/xl/worksheets/sheet1.xml"), readPart(actual, "/xl/worksheets/sheet1.xml"));
+            assertArrayEquals(readPart(expected, "/xl/worksheets/sheet3.xml"), readPart(actual, "/xl/worksheets/sheet3.xml"));
+            assertFalse(Arrays.equals(
+                readPart(expected, "/xl/worksheets/sheet2.xml"), readPart(actual, "/xl/worksheets/sheet2.xml")));
+        }
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(written.toInputStream())) {
+            assertTrue(wb.isSheetHidden(2));
+            assertEquals(42, wb.getSheetAt(1).getRow(0).getCell(0).getNumericCellValue(), 0);
+            assertEquals("Second!A1*2", wb.getSheetAt(0).getRow(0).getCell(0).getCellFormula());
+            assertEquals("third", wb.getSheet("Third").getRow(0).getCell(0).getStringCellValue());
+        }
+    }
+
+    @Test
+    void testSheetsAreReadOnAccess() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            // the formula evaluation reads the referenced sheet
+            XSSFCell formula = wb.getSheet("first").getRow(0).getCell(0);
+            assertEquals(2, wb.getCreationHelper().createFormulaEvaluator().evaluate(formula).getNumberValue(), 0);
+
+            List<String> names = StreamSupport.stream(wb.spliterator(), false)
+                .map(Sheet::getSheetName).collect(Collectors.toList());
+            assertEquals("[First, Second, Third]", names.toString());
+            for (Sheet sheet : wb) {
+                assertNotNull(sheet.getRow(0));
+            }
+
+            wb.setSheetOrder("Third", 0);
+            wb.setSheetName(2, "Renamed");
+            assertEquals("Renamed!A1*2", wb.getSheetAt(1).getRow(0).getCell(0).getCellFormula());
+
+            XSSFWorkbook back = XSSFTestDataSamples.writeOutAndReadBack(wb);
+            assertEquals("Third", back.getSheetName(0));
+            assertEquals("Renamed!A1*2", back.getSheet("First").getRow(0).getCell(0).getCellFormula());
+            back.close();
+        }
+    }
+
+    @Test
+    void testCloneAndRemoveSheets() throws IOException, InvalidFormatException {
+        UnsynchronizedByteArrayOutputStream original = createWorkbook();
+        try (XSSFWorkbook wb = openLazy(original.toInputStream())) {
+            XSSFSheet clone = wb.cloneSheet(2, "Clone");
+            assertEquals("third", clone.getRow(0).getCell(0).getStringCellValue());
+            wb.removeSheetAt(0);
+
+            XSSFWorkbook back = XSSFTestDataSamples.writeOutAndReadBack(wb);
+            assertEquals(3, back.getNumberOfSheets());
+            assertEquals(1, back.getSheet("Second").getRow(0).getCell(0).getNumericCellValue(), 0);
+            assertEquals("third", back.getSheet("Clone").getRow(0).getCell(0).getStringCellValue());
+            back.close();
+        }
+    }
+
+    private static XSSFWorkbook openLazy(InputStream is) throws IOException, InvalidFormatException {
+        XSSFReadOptions options = new XSSFReadOptions();
+        options.setLazySheets(true);
+        return new XSSFWorkbook(OPCPackage.open(is), options);
+    }
+
+    private static byte[] readPart(OPCPackage pkg, String name) throws IOException, InvalidFormatException {
+        try (InputStream is = pkg.getPart(PackagingURIHelper.createPartName(name)).getInputStream()) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    private static UnsynchronizedByteArrayOutputStream createWorkbook() throws IOException {
+        UnsynchronizedByteArrayOutputStream out = UnsynchronizedByteArrayOutputStream.builder().get();
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            wb.createSheet("First").createRow(0).createCell(0).setCellFormula("Second!A1*2");
+            wb.createSheet("Second").createRow(0).createCell(0).setCellValue(1);
+            wb.createSheet("Third").createRow(0).createCell(0).setCellValue("third");
+            wb.write(out);
+        }
+        return out;
+    }
+}
@@ -34,6 +34,7 @@ import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.Beta;
 
 /**
  * Evaluates formula cells.<p>
@@ -192,6 +193,19 @@ public class HSSFFormulaEvaluator extends BaseFormulaEvaluator {
         evaluateAllFormulaCells(_book, this);
     }
 
+    /**
+     * Recalculates only the formula cells, which depend on the cells changed since the last call.
+     * The changes must be reported by the notify~ methods, the first call recalculates all formula cells.
+     *
+     * @return the number of recalculated formula cells
+     * @see BaseFormulaEvaluator#recalculateDirty(Workbook)
+     * @since POI 5.2.6
+     */
+    @Beta
+    public int recalculateDirty() {
+        return recalculateDirty(_book);
+    }
+
     /**
      * Returns a CellValue wrapper around the supplied ValueEval instance.
      * @param cell The cell with the formula
@@ -18,6 +18,7 @@
 package org.apache.poi.ss.formula;
 
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
@@ -27,12 +28,14 @@ import org.apache.poi.ss.usermodel.RichTextString;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.Beta;
 
 /**
  * Common functionality across file formats for evaluating formula cells.
  */
 public abstract class BaseFormulaEvaluator implements FormulaEvaluator, WorkbookEvaluatorProvider {
     protected final WorkbookEvaluator _bookEvaluator;
+    private IncrementalRecalculator _incrementalRecalculator;
 
     protected BaseFormulaEvaluator(WorkbookEvaluator bookEvaluator) {
         this._bookEvaluator = bookEvaluator;
@@ -281,6 +284,70 @@ public abstract class BaseFormulaEvaluator implements FormulaEvaluator, Workbook
         }
     }
 
+    /**
+     * Like {@link #evaluateAllFormulaCells(Workbook)}, but evaluates the formulas on several threads.
+     * <p>
+     * The formula cells are ordered by their references, so that the cells, which don't depend on each other,
+     * are evaluated concurrently. Formulas with references, which are only known at evaluation time
+     * ({@code INDIRECT}, {@code OFFSET}), references to other workbooks, circular references and the formulas
+     * depending on them are evaluated afterwards on the calling thread. The results are the same as with the
+     * sequential evaluation.
+     * <p>
+     * The workbook must not be modified during the evaluation. User defined functions must be thread-safe
+     * and only depend on their arguments.
+     *
+     * @param wb the workbook
+     * @param pool the pool, which evaluates the formulas, e.g. {@link ForkJoinPool#commonPool()}
+     * @since POI 5.2.6
+     */
+    @Beta
+    public static void evaluateAllFormulaCells(Workbook wb, ForkJoinPool pool) {
+        FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
+        if (evaluator instanceof BaseFormulaEvaluator) {
+            new ParallelRecalculator((BaseFormulaEvaluator) evaluator, pool).evaluateAllFormulaCells(wb);
+        } else {
+            evaluateAllFormulaCells(wb, evaluator);
+        }
+    }
+
+    /**
+     * Recalculates the formula cells, which depend on the cells changed since the last call,
+     * and saves the results like {@link #evaluateFormulaCell(Cell)}.
+     * <p>
+     * The first call recalculates all formula cells and builds an index of the cells referenced by the formulas.
+     * Afterwards the changed cells must be reported by {@link #notifyUpdateCell(Cell)}, {@link #notifySetFormula(Cell)}
+     * and {@link #notifyDeleteCell(Cell)}. Only the formula cells depending directly or indirectly on them are
+     * recalculated, along with the formulas with references only known at evaluation time ({@code INDIRECT},
+     * {@code OFFSET}, other workbooks). Changed formulas rebuild the index. {@link #clearAllCachedResultValues()}
+     * discards the index, so the next call recalculates all formula cells again.
+     *
+     * @param wb the workbook of this evaluator
+     * @return the number of recalculated formula cells
+     * @since POI 5.2.6
+     */
+    @Beta
+    protected int recalculateDirty(Workbook wb) {
+        if (_incrementalRecalculator == null) {
+            _incrementalRecalculator = new IncrementalRecalculator(this);
+            _bookEvaluator.setIncrementalRecalculator(_incrementalRecalculator);
+        }
+        return _incrementalRecalculator.recalculateDirty(wb);
+    }
+
+    /**
+     * Whether to compile the formulas of the cells instead of interpreting their tokens on each evaluation.
+     * Cells with the same formula shape (e.g. filled down or shared formulas) share one compiled formula.
+     * Changed formulas must be reported by {@link #notifySetFormula(Cell)}.
+     *
+     * @param compile whether to compile the formulas, the default is {@code false}
+     * @see WorkbookEvaluator#setCompileFormulas(boolean)
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setCompileFormulas(boolean compile) {
+        _bookEvaluator.setCompileFormulas(compile);
+    }
+
     @Override
     public void setIgnoreMissingWorkbooks(boolean ignore){
         _bookEvaluator.setIgnoreMissingWorkbooks(ignore);
@@ -0,0 +1,452 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import org.apache.poi.ss.formula.eval.AreaEval;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.EvaluationException;
+import org.apache.poi.ss.formula.eval.FunctionEval;
+import org.apache.poi.ss.formula.eval.MissingArgEval;
+import org.apache.poi.ss.formula.eval.NotImplementedException;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.RefListEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.function.FunctionMetadataRegistry;
+import org.apache.poi.ss.formula.functions.ArrayMode;
+import org.apache.poi.ss.formula.functions.Choose;
+import org.apache.poi.ss.formula.functions.IfFunc;
+import org.apache.poi.ss.formula.ptg.Area3DPtg;
+import org.apache.poi.ss.formula.ptg.Area3DPxg;
+import org.apache.poi.ss.formula.ptg.AreaErrPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.AttrPtg;
+import org.apache.poi.ss.formula.ptg.BoolPtg;
+import org.apache.poi.ss.formula.ptg.ControlPtg;
+import org.apache.poi.ss.formula.ptg.DeletedArea3DPtg;
+import org.apache.poi.ss.formula.ptg.DeletedRef3DPtg;
+import org.apache.poi.ss.formula.ptg.ErrPtg;
+import org.apache.poi.ss.formula.ptg.FuncVarPtg;
+import org.apache.poi.ss.formula.ptg.IntPtg;
+import org.apache.poi.ss.formula.ptg.MemAreaPtg;
+import org.apache.poi.ss.formula.ptg.MemErrPtg;
+import org.apache.poi.ss.formula.ptg.MemFuncPtg;
+import org.apache.poi.ss.formula.ptg.MissingArgPtg;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.NameXPxg;
+import org.apache.poi.ss.formula.ptg.NumberPtg;
+import org.apache.poi.ss.formula.ptg.OperationPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Ref3DPtg;
+import org.apache.poi.ss.formula.ptg.Ref3DPxg;
+import org.apache.poi.ss.formula.ptg.RefErrorPtg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+import org.apache.poi.ss.formula.ptg.StringPtg;
+import org.apache.poi.ss.formula.ptg.UnionPtg;
+
+/**
+ * A cell formula compiled to a program of evaluation steps, one step for each token.<br>
+ *
+ * The decisions of the interpreter in {@link WorkbookEvaluator#evaluateFormula(OperationEvaluationContext, Ptg[])},
+ * which only depend on the tokens, are taken once: constants are created, the targets of the {@code IF},
+ * {@code CHOOSE} and skip jumps are resolved to step indexes and the array mode of the operations is looked up.
+ * Relative references are kept as offsets to the formula cell and resolved for the evaluated cell, so all cells
+ * of a {@link FormulaShape} share one compiled formula.
+ */
+final class CompiledFormula {
+
+    /** a step of the program */
+    private interface Step {
+        /**
+         * @return the index of the next step
+         */
+        int execute(Execution x, int index);
+    }
+
+    /** the state of an evaluation */
+    private static final class Execution {
+        private final WorkbookEvaluator _evaluator;
+        private final OperationEvaluationContext _ec;
+        private final ValueEval[] _stack;
+        private int _size;
+        private Boolean _isPartOfArrayFormulaGroup;
+
+        private Execution(WorkbookEvaluator evaluator, OperationEvaluationContext ec, int maxStackSize) {
+            _evaluator = evaluator;
+            _ec = ec;
+            _stack = new ValueEval[maxStackSize];
+        }
+
+        private void push(ValueEval value) {
+            _stack[_size++] = value;
+        }
+
+        private ValueEval pop() {
+            return _stack[--_size];
+        }
+
+        private int row(boolean isRelative, int row) {
+            return isRelative ? _ec.getRowIndex() + row : row;
+        }
+
+        private int column(boolean isRelative, int column) {
+            return isRelative ? _ec.getColumnIndex() + column : column;
+        }
+
+        private boolean isPartOfArrayFormulaGroup() {
+            if (_isPartOfArrayFormulaGroup == null) {
+                EvaluationSheet evalSheet = _ec.getWorkbook().getSheet(_ec.getSheetIndex());
+                EvaluationCell evalCell = evalSheet.getCell(_ec.getRowIndex(), _ec.getColumnIndex());
+                _isPartOfArrayFormulaGroup = evalCell.isPartOfArrayFormulaGroup();
+            }
+            return _isPartOfArrayFormulaGroup;
+        }
+    }
+
+    private static final Step SKIP_TOKEN = (x, index) -> index + 1;
+
+    private static final Step UNION = (x, index) -> {
+        ValueEval v2 = x.pop();
+        ValueEval v1 = x.pop();
+        x.push(new RefListEval(v1, v2));
+        return index + 1;
+    };
+
+    private final Step[] _steps;
+    private final int _maxStackSize;
+    /** the tokens of a formula, which can't be compiled */
+    private final Ptg[] _interpretedTokens;
+
+    private CompiledFormula(Step[] steps, Ptg[] interpretedTokens) {
+        _steps = steps;
+        // each token pushes at most one value, an IF without a false parameter pushes two
+        _maxStackSize = steps == null ? 0 : steps.length * 2 + 1;
+        _interpretedTokens = interpretedTokens;
+    }
+
+    /**
+     * @param ptgs the tokens of the formula in the cell at rowIndex and columnIndex
+     * @return the compiled formula or {@code null}, if the tokens can't be compiled
+     */
+    static CompiledFormula compile(Ptg[] ptgs, int rowIndex, int columnIndex) {
+        Step[] steps = new Step[ptgs.length];
+        try {
+            for (int i = 0; i < ptgs.length; i++) {
+                steps[i] = compileToken(ptgs, i, rowIndex, columnIndex);
+                if (steps[i] == null) {
+                    return null;
+                }
+            }
+        } catch (RuntimeException e) {
+            // the jumps of broken formulas fail in the interpreter, when they are used
+            return null;
+        }
+        return new CompiledFormula(steps, null);
+    }
+
+    /**
+     * @return a formula, which keeps the tokens of a cell for the interpreter
+     */
+    static CompiledFormula interpreted(Ptg[] ptgs) {
+        return new CompiledFormula(null, ptgs);
+    }
+
+    /**
+     * @return the tokens of a formula, which is interpreted, or {@code null}, if it is compiled
+     */
+    Ptg[] getInterpretedTokens() {
+        return _interpretedTokens;
+    }
+
+    /**
+     * @return the value of the formula for the cell of the context, before it is dereferenced
+     */
+    ValueEval evaluate(WorkbookEvaluator evaluator, OperationEvaluationContext ec) {
+        Execution x = new Execution(evaluator, ec, _maxStackSize);
+        for (int i = 0; i < _steps.length; ) {
+            i = _steps[i].execute(x, i);
+        }
+        ValueEval value = x.pop();
+        if (x._size != 0) {
+            throw new IllegalStateException("evaluation stack not empty");
+        }
+        return value;
+    }
+
+    private static Step compileToken(Ptg[] ptgs, int i, int rowIndex, int columnIndex) {
+        Ptg ptg = ptgs[i];
+        if (ptg instanceof AttrPtg) {
+            AttrPtg attrPtg = (AttrPtg) ptg;
+            if (attrPtg.isSum()) {
+                // Excel prefers to encode 'SUM()' as a tAttr token
+                if (attrPtg.isOptimizedChoose() || attrPtg.isOptimizedIf() || attrPtg.isSkip()) {
+                    return null;
+                }
+                return compileOperation(FuncVarPtg.SUM, ptgs, i);
+            }
+            if (attrPtg.isOptimizedChoose()) {
+                return compileChoose(ptgs, i);
+            }
+            if (attrPtg.isOptimizedIf()) {
+                return compileIf(ptgs, i);
+            }
+            if (attrPtg.isSkip()) {
+                int next = i + WorkbookEvaluator.countTokensToBeSkipped(ptgs, i, attrPtg.getData() + 1) + 1;
+                return (x, index) -> {
+                    if (x.isPartOfArrayFormulaGroup()) {
+                        return index + 1;
+                    }
+                    if (x._size > 0 && x._stack[x._size - 1] == MissingArgEval.instance) {
+                        x._stack[x._size - 1] = BlankEval.instance;
+                    }
+                    return next;
+                };
+            }
+        }
+        if (ptg instanceof ControlPtg
+                || ptg instanceof MemFuncPtg || ptg instanceof MemAreaPtg || ptg instanceof MemErrPtg) {
+            return SKIP_TOKEN;
+        }
+        if (ptg instanceof UnionPtg) {
+            return UNION;
+        }
+        if (ptg instanceof OperationPtg) {
+            return compileOperation((OperationPtg) ptg, ptgs, i);
+        }
+        return compileOperand(ptg, rowIndex, columnIndex);
+    }
+
+    private static Step compileOperation(OperationPtg optg, Ptg[] ptgs, int i) {
+        int numops = optg.getNumberOfOperands();
+        boolean isArrayModeFunction = isArrayModeFunction(ptgs, i);
+        return (x, index) -> {
+            ValueEval[] ops = new ValueEval[numops];
+            // storing the ops in reverse order since they are popping
+            boolean areaArg = false;
+            for (int j = numops - 1; j >= 0; j--) {
+                ValueEval p = x.pop();
+                ops[j] = p;
+                if (p instanceof AreaEval) {
+                    areaArg = true;
+                }
+            }
+            OperationEvaluationContext ec = x._ec;
+            ec.setArrayMode(areaArg && isArrayModeFunction);
+            ValueEval opResult = OperationEvaluatorFactory.evaluate(optg, ops, ec);
+            ec.setArrayMode(false);
+            if (opResult == null) {
+                throw new IllegalStateException("Evaluation result must not be null");
+            }
+            x.push(opResult);
+            return index + 1;
+        };
+    }
+
+    /**
+     * Operations with area operands are evaluated in array mode, if the next function is an {@link ArrayMode}
+     */
+    private static boolean isArrayModeFunction(Ptg[] ptgs, int i) {
+        for (int ii = i; ii < ptgs.length; ii++) {
+            if (ptgs[ii] instanceof FuncVarPtg) {
+                FuncVarPtg f = (FuncVarPtg) ptgs[ii];
+                try {
+                    return FunctionEval.getBasicFunction(f.getFunctionIndex()) instanceof ArrayMode;
+                } catch (NotImplementedException ne) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Step compileIf(Ptg[] ptgs, int i) {
+        AttrPtg attrPtg = (AttrPtg) ptgs[i];
+        int falseIndex = i + WorkbookEvaluator.countTokensToBeSkipped(ptgs, i, attrPtg.getData());
+        // an IF without a false parameter (as opposed to MissingArgPtg as the false param)
+        // needs the IF function right after the skip of the true parameter
+        Ptg nextPtg = ptgs[falseIndex + 1];
+        boolean isMissingFalseParam = ptgs[falseIndex] instanceof AttrPtg && nextPtg instanceof FuncVarPtg &&
+            ((FuncVarPtg) nextPtg).getFunctionIndex() == FunctionMetadataRegistry.FUNCTION_INDEX_IF;
+        int errorIndex = falseIndex + WorkbookEvaluator.countTokensToBeSkipped(ptgs, falseIndex,
+            ((AttrPtg) ptgs[falseIndex]).getData() + 1);
+        return (x, index) -> {
+            if (x.isPartOfArrayFormulaGroup()) {
+                return index + 1;
+            }
+            ValueEval arg0 = x.pop();
+            boolean evaluatedPredicate;
+            try {
+                evaluatedPredicate = IfFunc.evaluateFirstArg(arg0, x._ec.getRowIndex(), x._ec.getColumnIndex());
+            } catch (EvaluationException e) {
+                x.push(e.getErrorEval());
+                return errorIndex + 1;
+            }
+            if (evaluatedPredicate) {
+                // nothing to skip - true param follows
+                return index + 1;
+            }
+            if (isMissingFalseParam) {
+                x.push(arg0);
+                x.push(BoolEval.FALSE);
+            }
+            return falseIndex + 1;
+        };
+    }
+
+    private static Step compileChoose(Ptg[] ptgs, int i) {
+        AttrPtg attrPtg = (AttrPtg) ptgs[i];
+        int[] jumpTable = attrPtg.getJumpTable();
+        int nChoices = jumpTable.length;
+        // Encoded dist for tAttrChoose includes size of jump table, but
+        // countTokensToBeSkipped() does not (it counts whole tokens).
+        int jumpTableSize = nChoices * 2 + 2;
+        int[] choiceIndexes = new int[nChoices];
+        for (int j = 0; j < nChoices; j++) {
+            choiceIndexes[j] = i + WorkbookEvaluator.countTokensToBeSkipped(ptgs, i, jumpTable[j] - jumpTableSize) + 1;
+        }
+        // +4 for tFuncFar(CHOOSE)
+        int errorIndex = i + WorkbookEvaluator.countTokensToBeSkipped(ptgs, i,
+            attrPtg.getChooseFuncOffset() + 4 - jumpTableSize) + 1;
+        return (x, index) -> {
+            ValueEval arg0 = x.pop();
+            try {
+                int switchIndex = Choose.evaluateFirstArg(arg0, x._ec.getRowIndex(), x._ec.getColumnIndex());
+                if (switchIndex >= 1 && switchIndex <= nChoices) {
+                    return choiceIndexes[switchIndex - 1];
+                }
+                x.push(ErrorEval.VALUE_INVALID);
+            } catch (EvaluationException e) {
+                x.push(e.getErrorEval());
+            }
+            return errorIndex;
+        };
+    }
+
+    private static Step compileOperand(Ptg ptg, int rowIndex, int columnIndex) {
+        if (ptg instanceof NamePtg || ptg instanceof NameXPtg || ptg instanceof NameXPxg) {
+            // names don't depend on the formula cell
+            return (x, index) -> {
+                x.push(x._evaluator.getEvalForPtg(ptg, x._ec));
+                return index + 1;
+            };
+        }
+        if (ptg instanceof IntPtg) {
+            return constant(new NumberEval(((IntPtg) ptg).getValue()));
+        }
+        if (ptg instanceof NumberPtg) {
+            return constant(new NumberEval(((NumberPtg) ptg).getValue()));
+        }
+        if (ptg instanceof StringPtg) {
+            return constant(new StringEval(((StringPtg) ptg).getValue()));
+        }
+        if (ptg instanceof BoolPtg) {
+            return constant(BoolEval.valueOf(((BoolPtg) ptg).getValue()));
+        }
+        if (ptg instanceof ErrPtg) {
+            return constant(ErrorEval.valueOf(((ErrPtg) ptg).getErrorCode()));
+        }
+        if (ptg instanceof MissingArgPtg) {
+            return constant(MissingArgEval.instance);
+        }
+        if (ptg instanceof AreaErrPtg || ptg instanceof RefErrorPtg
+                || ptg instanceof DeletedArea3DPtg || ptg instanceof DeletedRef3DPtg) {
+            return constant(ErrorEval.REF_INVALID);
+        }
+        if (ptg instanceof Ref3DPtg) {
+            Ref3DPtg rptg = (Ref3DPtg) ptg;
+            int externSheetIndex = rptg.getExternSheetIndex();
+            return compileRef(rptg.isRowRelative(), rptg.getRow() - (rptg.isRowRelative() ? rowIndex : 0),
+                rptg.isColRelative(), rptg.getColumn() - (rptg.isColRelative() ? columnIndex : 0),
+                ec -> ec.createExternSheetRefEvaluator(externSheetIndex));
+        }
+        if (ptg instanceof Ref3DPxg) {
+            Ref3DPxg rptg = (Ref3DPxg) ptg;
+            String sheetName = rptg.getSheetName();
+            String lastSheetName = rptg.getLastSheetName();
+            int externalWorkbookNumber = rptg.getExternalWorkbookNumber();
+            return compileRef(rptg.isRowRelative(), rptg.getRow() - (rptg.isRowRelative() ? rowIndex : 0),
+                rptg.isColRelative(), rptg.getColumn() - (rptg.isColRelative() ? columnIndex : 0),
+                ec -> ec.createExternSheetRefEvaluator(sheetName, lastSheetName, externalWorkbookNumber));
+        }
+        if (ptg instanceof RefPtg) {
+            RefPtg rptg = (RefPtg) ptg;
+            return compileRef(rptg.isRowRelative(), rptg.getRow() - (rptg.isRowRelative() ? rowIndex : 0),
+                rptg.isColRelative(), rptg.getColumn() - (rptg.isColRelative() ? columnIndex : 0),
+                OperationEvaluationContext::getRefEvaluatorForCurrentSheet);
+        }
+        if (ptg instanceof Area3DPtg) {
+            Area3DPtg aptg = (Area3DPtg) ptg;
+            int externSheetIndex = aptg.getExternSheetIndex();
+            return compileArea(aptg, rowIndex, columnIndex, ec -> ec.createExternSheetRefEvaluator(externSheetIndex));
+        }
+        if (ptg instanceof Area3DPxg) {
+            Area3DPxg aptg = (Area3DPxg) ptg;
+            String sheetName = aptg.getSheetName();
+            String lastSheetName = aptg.getLastSheetName();
+            int externalWorkbookNumber = aptg.getExternalWorkbookNumber();
+            return compileArea(aptg, rowIndex, columnIndex,
+                ec -> ec.createExternSheetRefEvaluator(sheetName, lastSheetName, externalWorkbookNumber));
+        }
+        if (ptg instanceof AreaPtg) {
+            return compileArea((AreaPtg) ptg, rowIndex, columnIndex,
+                OperationEvaluationContext::getRefEvaluatorForCurrentSheet);
+        }
+        return null;
+    }
+
+    private static Step constant(ValueEval value) {
+        return (x, index) -> {
+            x.push(value);
+            return index + 1;
+        };
+    }
+
+    /** creates the sheet range of a reference */
+    private interface SheetRangeFactory {
+        SheetRangeEvaluator create(OperationEvaluationContext ec);
+    }
+
+    private static Step compileRef(boolean isRowRelative, int row, boolean isColRelative, int column,
+            SheetRangeFactory sheets) {
+        return (x, index) -> {
+            x.push(new LazyRefEval(x.row(isRowRelative, row), x.column(isColRelative, column), sheets.create(x._ec)));
+            return index + 1;
+        };
+    }
+
+    private static Step compileArea(AreaPtgBase aptg, int rowIndex, int columnIndex,
+            SheetRangeFactory sheets) {
+        boolean isFirstRowRelative = aptg.isFirstRowRelative();
+        boolean isFirstColRelative = aptg.isFirstColRelative();
+        boolean isLastRowRelative = aptg.isLastRowRelative();
+        boolean isLastColRelative = aptg.isLastColRelative();
+        int firstRow = aptg.getFirstRow() - (isFirstRowRelative ? rowIndex : 0);
+        int firstColumn = aptg.getFirstColumn() - (isFirstColRelative ? columnIndex : 0);
+        int lastRow = aptg.getLastRow() - (isLastRowRelative ? rowIndex : 0);
+        int lastColumn = aptg.getLastColumn() - (isLastColRelative ? columnIndex : 0);
+        return (x, index) -> {
+            x.push(new LazyAreaEval(x.row(isFirstRowRelative, firstRow), x.column(isFirstColRelative, firstColumn),
+                x.row(isLastRowRelative, lastRow), x.column(isLastColRelative, lastColumn), sheets.create(x._ec)));
+            return index + 1;
+        };
+    }
+}
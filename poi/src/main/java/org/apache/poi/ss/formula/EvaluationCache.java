@@ -17,14 +17,21 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.poi.ss.formula.FormulaUsedBlankCellSet.BookSheetKey;
-import org.apache.poi.ss.formula.PlainCellCache.Loc;
+import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
 import org.apache.poi.ss.formula.eval.NumberEval;
 import org.apache.poi.ss.formula.eval.StringEval;
 import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.AreaValues;
+import org.apache.poi.ss.formula.functions.CriteriaIndex;
+import org.apache.poi.ss.formula.functions.LookupIndex;
+import org.apache.poi.ss.formula.functions.LookupUtils;
 import org.apache.poi.ss.usermodel.CellType;
 
 /**
@@ -36,6 +43,7 @@ final class EvaluationCache {
 
     private final PlainCellCache _plainCellCache;
     private final FormulaCellCache _formulaCellCache;
+    private final Map<AreaIndexKey, AreaIndexEntry> _areaIndexes = new HashMap<>();
     /** only used for testing. <code>null</code> otherwise */
     final IEvaluationListener _evaluationListener;
 
@@ -50,7 +58,7 @@ final class EvaluationCache {
 
         int rowIndex = cell.getRowIndex();
         int columnIndex = cell.getColumnIndex();
-        Loc loc = new Loc(bookIndex, sheetIndex, rowIndex, columnIndex);
+        long loc = PlainCellCache.toKey(bookIndex, sheetIndex, rowIndex, columnIndex);
         PlainValueCellCacheEntry pcce = _plainCellCache.get(loc);
 
         if (cell.getCellType() == CellType.FORMULA) {
@@ -68,6 +76,8 @@ final class EvaluationCache {
             } else {
                 fcce.recurseClearCachedFormulaResults(_evaluationListener);
                 fcce.clearFormulaEntry();
+                // the formula may have changed
+                fcce.setCompiledFormula(null);
             }
             if (pcce == null) {
                 // was formula cell before - no change of type
@@ -116,12 +126,80 @@ final class EvaluationCache {
             final int rowIndex, final int columnIndex) {
         final BookSheetKey bsk = new BookSheetKey(bookIndex, sheetIndex);
         _formulaCellCache.applyOperation(entry -> entry.notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener));
+        for (AreaIndexEntry entry : _areaIndexes.values()) {
+            entry._cce.notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener);
+        }
+    }
+
+    /**
+     * Provides the shared lookup index of a row or column. The index is created, when the vector is searched the
+     * second time, so single lookups don't pay for reading the whole vector.
+     *
+     * @param vector a single row or column
+     * @return the index or {@code null}, if the vector isn't indexed (yet)
+     */
+    public LookupIndex getLookupIndex(int bookIndex, int sheetIndex, AreaEval vector, EvaluationTracker tracker) {
+        return (LookupIndex) getAreaIndex(AreaIndexType.LOOKUP, bookIndex, sheetIndex, vector, tracker);
+    }
+
+    /**
+     * Provides the shared criteria index of an area. The index is created, when the area is searched the
+     * second time, so single ~IF functions don't pay for reading the whole area.
+     *
+     * @return the index or {@code null}, if the area isn't indexed (yet)
+     */
+    public CriteriaIndex getCriteriaIndex(int bookIndex, int sheetIndex, AreaEval area, EvaluationTracker tracker) {
+        return (CriteriaIndex) getAreaIndex(AreaIndexType.CRITERIA, bookIndex, sheetIndex, area, tracker);
+    }
+
+    /**
+     * Provides the shared values of an area. The values are kept, when the area is read the second time,
+     * so areas read by a single aggregate function don't take up memory.
+     *
+     * @return the values or {@code null}, if the area isn't cached (yet)
+     */
+    public AreaValues getAreaValues(int bookIndex, int sheetIndex, AreaEval area, EvaluationTracker tracker) {
+        return (AreaValues) getAreaIndex(AreaIndexType.VALUES, bookIndex, sheetIndex, area, tracker);
+    }
+
+    /**
+     * The index is cached like a formula cell, whose input cells are the cells of the area. So changes of these
+     * cells clear the index and the formulas, which have used the index.
+     */
+    private Object getAreaIndex(AreaIndexType type, int bookIndex, int sheetIndex, AreaEval area, EvaluationTracker tracker) {
+        if (_evaluationListener != null) {
+            // the listeners expect only cell entries
+            return null;
+        }
+        AreaIndexKey key = new AreaIndexKey(type,
+                PlainCellCache.toKey(bookIndex, sheetIndex, area.getFirstRow(), area.getFirstColumn()),
+                PlainCellCache.toKey(bookIndex, sheetIndex, area.getLastRow(), area.getLastColumn()));
+        AreaIndexEntry entry = _areaIndexes.computeIfAbsent(key, k -> new AreaIndexEntry());
+        if (entry._cce.getValue() == null) {
+            if (entry._index != null) {
+                // cleared by a changed cell
+                entry._index = null;
+                entry._requests = 0;
+            }
+            if (++entry._requests < 2 || !tracker.startEvaluate(entry._cce)) {
+                // the first request or the index is being created
+                return null;
+            }
+            try {
+                entry._index = type.create(area);
+                tracker.updateCacheResult(BoolEval.TRUE);
+            } finally {
+                tracker.endEvaluate(entry._cce);
+            }
+        }
+        tracker.acceptFormulaDependency(entry._cce);
+        return entry._index;
     }
 
     public PlainValueCellCacheEntry getPlainValueEntry(int bookIndex, int sheetIndex,
             int rowIndex, int columnIndex, ValueEval value) {
 
-        Loc loc = new Loc(bookIndex, sheetIndex, rowIndex, columnIndex);
+        long loc = PlainCellCache.toKey(bookIndex, sheetIndex, rowIndex, columnIndex);
         PlainValueCellCacheEntry result = _plainCellCache.get(loc);
         if (result == null) {
             result = new PlainValueCellCacheEntry(value);
@@ -186,6 +264,7 @@ final class EvaluationCache {
         }
         _plainCellCache.clear();
         _formulaCellCache.clear();
+        _areaIndexes.clear();
     }
     public void notifyDeleteCell(int bookIndex, int sheetIndex, EvaluationCell cell) {
 
@@ -198,7 +277,7 @@ final class EvaluationCache {
                 fcce.recurseClearCachedFormulaResults(_evaluationListener);
             }
         } else {
-            Loc loc = new Loc(bookIndex, sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
+            long loc = PlainCellCache.toKey(bookIndex, sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
             PlainValueCellCacheEntry pcce = _plainCellCache.get(loc);
 
             if (pcce == null) {
@@ -208,4 +287,61 @@ final class EvaluationCache {
             }
         }
     }
+
+    private enum AreaIndexType {
+        LOOKUP {
+            @Override
+            Object create(AreaEval area) {
+                return new LookupIndex(LookupUtils.createVector(area));
+            }
+        },
+        CRITERIA {
+            @Override
+            Object create(AreaEval area) {
+                return new CriteriaIndex(area);
+            }
+        },
+        VALUES {
+            @Override
+            Object create(AreaEval area) {
+                return area instanceof LazyAreaEval ? ((LazyAreaEval) area).createAreaValues() : new AreaValues(area);
+            }
+        };
+
+        abstract Object create(AreaEval area);
+    }
+
+    private static final class AreaIndexKey {
+        private final AreaIndexType _type;
+        private final long _firstCell;
+        private final long _lastCell;
+
+        private AreaIndexKey(AreaIndexType type, long firstCell, long lastCell) {
+            _type = type;
+            _firstCell = firstCell;
+            _lastCell = lastCell;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AreaIndexKey)) {
+                return false;
+            }
+            AreaIndexKey other = (AreaIndexKey) o;
+            return _type == other._type && _firstCell == other._firstCell && _lastCell == other._lastCell;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(_firstCell) * 31 + Long.hashCode(_lastCell)) * 31 + _type.ordinal();
+        }
+    }
+
+    private static final class AreaIndexEntry {
+        /** tracks the cells of the index and the formulas using it */
+        private final FormulaCellCacheEntry _cce = new FormulaCellCacheEntry();
+        /** a {@link LookupIndex}, a {@link CriteriaIndex} or {@link AreaValues} */
+        private Object _index;
+        private int _requests;
+    }
 }
@@ -18,6 +18,7 @@
 package org.apache.poi.ss.formula;
 
 import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.eval.ValueEval;
 import org.apache.poi.ss.formula.ptg.NamePtg;
 import org.apache.poi.ss.formula.ptg.NameXPtg;
 import org.apache.poi.ss.formula.ptg.Ptg;
@@ -96,6 +97,20 @@ public interface EvaluationWorkbook {
     UDFFinder getUDFFinder();
     SpreadsheetVersion getSpreadsheetVersion();
 
+    /**
+     * Provides the result of a formula cell, which is already known and doesn't need to be evaluated.
+     * The result is cached without any dependencies, so the workbook must tell the evaluator, when the
+     * cell is updated.
+     *
+     * @param cell a formula cell of this workbook
+     * @return the result or {@code null}, if the formula must be evaluated
+     *
+     * @since POI 5.2.6
+     */
+    default ValueEval getFormulaResult(EvaluationCell cell) {
+        return null;
+    }
+
     /**
      * Propagated from {@link WorkbookEvaluator#clearAllCachedResultValues()} to clear locally cached data.
      * Implementations must call the same method on all referenced {@link EvaluationSheet} instances, as well as clearing local caches.
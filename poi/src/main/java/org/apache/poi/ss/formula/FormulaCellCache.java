@@ -17,52 +17,137 @@
 
 package org.apache.poi.ss.formula;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * The cache entries of the formula cells, by the identity keys of the cells.<br>
+ *
+ * The keys and entries are stored in two arrays with open addressing and linear probing,
+ * so there is no node object per entry like in a {@link java.util.HashMap}.
+ */
 final class FormulaCellCache {
 
     static interface IEntryOperation {
         void processEntry(FormulaCellCacheEntry entry);
     }
 
-    private final Map<Object, FormulaCellCacheEntry> _formulaEntriesByCell;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** {@code null} marks the free slots */
+    private Object[] _keys;
+    private FormulaCellCacheEntry[] _entries;
+    private int _size;
+    private int _mask;
 
     public FormulaCellCache() {
         // assumes the object returned by EvaluationCell.getIdentityKey() has a well behaved hashCode+equals
-        _formulaEntriesByCell = new HashMap<>();
+        allocate(INITIAL_CAPACITY);
     }
 
     public CellCacheEntry[] getCacheEntries() {
 
-        FormulaCellCacheEntry[] result = new FormulaCellCacheEntry[_formulaEntriesByCell.size()];
-        _formulaEntriesByCell.values().toArray(result);
+        FormulaCellCacheEntry[] result = new FormulaCellCacheEntry[_size];
+        int count = 0;
+        for (FormulaCellCacheEntry entry : _entries) {
+            if (entry != null) {
+                result[count++] = entry;
+            }
+        }
         return result;
     }
 
     public void clear() {
-        _formulaEntriesByCell.clear();
+        if (_size > 0) {
+            Arrays.fill(_keys, null);
+            Arrays.fill(_entries, null);
+            _size = 0;
+        }
     }
 
     /**
      * @return <code>null</code> if not found
      */
     public FormulaCellCacheEntry get(EvaluationCell cell) {
-        return _formulaEntriesByCell.get(cell.getIdentityKey());
+        return _entries[findSlot(cell.getIdentityKey())];
     }
 
     public void put(EvaluationCell cell, FormulaCellCacheEntry entry) {
-        _formulaEntriesByCell.put(cell.getIdentityKey(), entry);
+        Object key = cell.getIdentityKey();
+        int slot = findSlot(key);
+        if (_keys[slot] == null) {
+            _keys[slot] = key;
+            _entries[slot] = entry;
+            if (++_size * 2 > _keys.length) {
+                rehash(_keys.length * 2);
+            }
+        } else {
+            _entries[slot] = entry;
+        }
     }
 
     public FormulaCellCacheEntry remove(EvaluationCell cell) {
-        return _formulaEntriesByCell.remove(cell.getIdentityKey());
+        int slot = findSlot(cell.getIdentityKey());
+        FormulaCellCacheEntry result = _entries[slot];
+        if (_keys[slot] == null) {
+            return null;
+        }
+        _size--;
+        // shifts the following entries of the probe sequence back, so no entry is behind a free slot
+        int free = slot;
+        for (int next = (free + 1) & _mask; _keys[next] != null; next = (next + 1) & _mask) {
+            int home = hash(_keys[next]);
+            if (((next - home) & _mask) >= ((next - free) & _mask)) {
+                _keys[free] = _keys[next];
+                _entries[free] = _entries[next];
+                free = next;
+            }
+        }
+        _keys[free] = null;
+        _entries[free] = null;
+        return result;
     }
 
     public void applyOperation(IEntryOperation operation) {
-        for (FormulaCellCacheEntry formulaCellCacheEntry : _formulaEntriesByCell.values()) {
-            operation.processEntry(formulaCellCacheEntry);
+        for (FormulaCellCacheEntry formulaCellCacheEntry : _entries) {
+            if (formulaCellCacheEntry != null) {
+                operation.processEntry(formulaCellCacheEntry);
+            }
+        }
+    }
+
+    /**
+     * @return the slot of the key or the free slot, where it belongs
+     */
+    private int findSlot(Object key) {
+        int slot = hash(key);
+        Object k;
+        while ((k = _keys[slot]) != null && k != key && !k.equals(key)) {
+            slot = (slot + 1) & _mask;
+        }
+        return slot;
+    }
+
+    private int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & _mask;
+    }
+
+    private void allocate(int capacity) {
+        _keys = new Object[capacity];
+        _entries = new FormulaCellCacheEntry[capacity];
+        _mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = _keys;
+        FormulaCellCacheEntry[] oldEntries = _entries;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = findSlot(oldKeys[i]);
+                _keys[slot] = oldKeys[i];
+                _entries[slot] = oldEntries[i];
+            }
         }
     }
 }
@@ -40,10 +40,21 @@ final class FormulaCellCacheEntry extends CellCacheEntry {
 
     private FormulaUsedBlankCellSet _usedBlankCellGroup;
 
+    /** the compiled formula of the cell, if formulas are compiled */
+    private CompiledFormula _compiledFormula;
+
     public FormulaCellCacheEntry() {
         // leave fields un-set
     }
     
+    public CompiledFormula getCompiledFormula() {
+        return _compiledFormula;
+    }
+
+    public void setCompiledFormula(CompiledFormula compiledFormula) {
+        _compiledFormula = compiledFormula;
+    }
+
     public boolean isInputSensitive() {
         if (_sensitiveInputCells != null) {
             if (_sensitiveInputCells.length > 0 ) {
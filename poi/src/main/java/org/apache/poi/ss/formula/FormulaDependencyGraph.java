@@ -0,0 +1,507 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.Arrays;
+
+import org.apache.poi.ss.formula.EvaluationWorkbook.ExternalSheet;
+import org.apache.poi.ss.formula.EvaluationWorkbook.ExternalSheetRange;
+import org.apache.poi.ss.formula.function.FunctionMetadataRegistry;
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.AreaErrPtg;
+import org.apache.poi.ss.formula.ptg.AreaI;
+import org.apache.poi.ss.formula.ptg.AreaPtg;
+import org.apache.poi.ss.formula.ptg.ArrayPtg;
+import org.apache.poi.ss.formula.ptg.AttrPtg;
+import org.apache.poi.ss.formula.ptg.Deleted3DPxg;
+import org.apache.poi.ss.formula.ptg.DeletedArea3DPtg;
+import org.apache.poi.ss.formula.ptg.DeletedRef3DPtg;
+import org.apache.poi.ss.formula.ptg.MemAreaPtg;
+import org.apache.poi.ss.formula.ptg.MemErrPtg;
+import org.apache.poi.ss.formula.ptg.MemFuncPtg;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.NameXPxg;
+import org.apache.poi.ss.formula.ptg.OperationPtg;
+import org.apache.poi.ss.formula.ptg.ParenthesisPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg3D;
+import org.apache.poi.ss.formula.ptg.RefErrorPtg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.formula.ptg.ScalarConstantPtg;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.Internal;
+
+/**
+ * The dependencies between the formula cells of a workbook, as far as they are known from the
+ * formula tokens without evaluating them.<br>
+ *
+ * Each formula cell gets a level: the cells without formula precedents are on level 0, the other cells
+ * are one level above their highest precedent. So the cells of one level don't depend on each other and
+ * can be evaluated in any order, once the lower levels are evaluated.<br>
+ *
+ * Cells, which can't be ordered this way, get the level {@link #SERIAL}. These are the cells with references
+ * only known at evaluation time ({@code INDIRECT}, {@code OFFSET}) or to other workbooks, the cells of circular
+ * references, and all cells depending on them.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+final class FormulaDependencyGraph {
+    /** the level of the cells, which must be evaluated after all other cells in the order of the cells */
+    public static final int SERIAL = Integer.MAX_VALUE;
+
+    private static final int UNVISITED = -1;
+    private static final int IN_PROGRESS = -2;
+
+    /** deeper nested names are not followed (and probably circular) */
+    private static final int MAX_NAME_DEPTH = 64;
+
+    private static final int FUNCTION_INDEX_OFFSET = FunctionMetadataRegistry.lookupIndexByName("OFFSET");
+
+    private static final int[] NO_PRECEDENTS = {};
+
+    private final EvaluationWorkbook _workbook;
+    /** the sheet, row and column of each cell, in ascending order */
+    private final long[] _keys;
+    private final EvaluationCell[] _cells;
+    private final Ptg[][] _tokens;
+    /** the areas referenced by each cell, as sheet, first row, first column, last row and last column */
+    private final int[][] _precedents;
+    private final int[] _levels;
+    private final boolean[] _dynamicNodes;
+    private final IntList _pendingRefs = new IntList();
+    private boolean _dynamic;
+    private boolean _hasExternalReferences;
+    private int _levelCount;
+    private int[] _levelStarts;
+    private int[] _levelOrder;
+
+    /**
+     * @param workbook the workbook of the cells, which resolves the names and sheets of the formulas
+     * @param sheetIndexes the sheet indexes of the cells
+     * @param cells the formula cells, sorted by sheet, row and column
+     * @throws IllegalArgumentException if the cells are not sorted
+     */
+    public FormulaDependencyGraph(EvaluationWorkbook workbook, int[] sheetIndexes, EvaluationCell[] cells) {
+        _workbook = workbook;
+        int count = cells.length;
+        _keys = new long[count];
+        _cells = cells.clone();
+        _tokens = new Ptg[count][];
+        _precedents = new int[count][];
+        _levels = new int[count];
+        _dynamicNodes = new boolean[count];
+
+        for (int i = 0; i < count; i++) {
+            _keys[i] = toKey(sheetIndexes[i], cells[i].getRowIndex(), cells[i].getColumnIndex());
+            if (i > 0 && _keys[i] <= _keys[i - 1]) {
+                throw new IllegalArgumentException("The cells must be sorted by sheet, row and column");
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            _tokens[i] = workbook.getFormulaTokens(cells[i]);
+            _pendingRefs.clear();
+            _dynamic = false;
+            collectPrecedents(sheetIndexes[i], _tokens[i], 0);
+            _precedents[i] = _pendingRefs.isEmpty() ? NO_PRECEDENTS : _pendingRefs.toArray();
+            _dynamicNodes[i] = _dynamic;
+            _levels[i] = _dynamic ? SERIAL : UNVISITED;
+        }
+        computeLevels();
+    }
+
+    /**
+     * @return the number of formula cells
+     */
+    public int size() {
+        return _keys.length;
+    }
+
+    public EvaluationCell getCell(int node) {
+        return _cells[node];
+    }
+
+    public int getSheetIndex(int node) {
+        return sheetOf(_keys[node]);
+    }
+
+    public int getRowIndex(int node) {
+        return rowOf(_keys[node]);
+    }
+
+    public int getColumnIndex(int node) {
+        return columnOf(_keys[node]);
+    }
+
+    /**
+     * @return the cached formula tokens of the cell
+     */
+    public Ptg[] getFormulaTokens(int node) {
+        return _tokens[node];
+    }
+
+    /**
+     * @return the index of the formula cell or -1, if there is no formula cell at this position
+     */
+    public int getNode(int sheetIndex, int rowIndex, int columnIndex) {
+        int node = Arrays.binarySearch(_keys, toKey(sheetIndex, rowIndex, columnIndex));
+        return node < 0 ? -1 : node;
+    }
+
+    /**
+     * @return the areas referenced by the cell, as groups of sheet, first row, first column, last row and last column
+     */
+    public int[] getPrecedents(int node) {
+        return _precedents[node];
+    }
+
+    /**
+     * @return true, if the cell has references, which are only known at evaluation time
+     */
+    public boolean isDynamic(int node) {
+        return _dynamicNodes[node];
+    }
+
+    /**
+     * @return the level of the cell or {@link #SERIAL}
+     */
+    public int getLevel(int node) {
+        return _levels[node];
+    }
+
+    /**
+     * @return the number of levels, without the serial cells
+     */
+    public int getLevelCount() {
+        return _levelCount;
+    }
+
+    /**
+     * @return the cells ordered by level and position, the serial cells come last
+     */
+    public int[] getLevelOrder() {
+        return _levelOrder;
+    }
+
+    /**
+     * @return the position of the first cell of the level in {@link #getLevelOrder()}.
+     *  The serial cells start at the position of level {@link #getLevelCount()}.
+     */
+    public int getLevelStart(int level) {
+        return _levelStarts[level];
+    }
+
+    /**
+     * @return true, if any formula refers to another workbook
+     */
+    public boolean hasExternalReferences() {
+        return _hasExternalReferences;
+    }
+
+    private void collectPrecedents(int sheetIndex, Ptg[] ptgs, int nameDepth) {
+        for (Ptg ptg : ptgs) {
+            if (ptg instanceof RefPtg) {
+                RefPtg ref = (RefPtg) ptg;
+                addArea(sheetIndex, sheetIndex, ref.getRow(), ref.getColumn(), ref.getRow(), ref.getColumn());
+            } else if (ptg instanceof AreaPtg) {
+                addArea(sheetIndex, sheetIndex, (AreaI) ptg);
+            } else if (ptg instanceof ExternSheetReferenceToken || ptg instanceof Pxg3D) {
+                add3DReference(ptg);
+            } else if (ptg instanceof NamePtg || ptg instanceof NameXPtg || ptg instanceof NameXPxg) {
+                addName(sheetIndex, ptg, nameDepth);
+            } else if (ptg instanceof AbstractFunctionPtg) {
+                int functionIndex = ((AbstractFunctionPtg) ptg).getFunctionIndex();
+                if (functionIndex == FunctionMetadataRegistry.FUNCTION_INDEX_INDIRECT || functionIndex == FUNCTION_INDEX_OFFSET) {
+                    _dynamic = true;
+                }
+            } else if (!isValueOrOperator(ptg)) {
+                // e.g. relative references of shared formulas, which are not supported by the evaluator
+                _dynamic = true;
+            }
+        }
+    }
+
+    private static boolean isValueOrOperator(Ptg ptg) {
+        return ptg instanceof OperationPtg || ptg instanceof ScalarConstantPtg || ptg instanceof ArrayPtg
+            || ptg instanceof AttrPtg || ptg instanceof ParenthesisPtg
+            || ptg instanceof MemAreaPtg || ptg instanceof MemErrPtg || ptg instanceof MemFuncPtg
+            || ptg instanceof AreaErrPtg || ptg instanceof RefErrorPtg
+            || ptg instanceof DeletedArea3DPtg || ptg instanceof DeletedRef3DPtg || ptg instanceof Deleted3DPxg;
+    }
+
+    /**
+     * Resolves the sheets like {@link OperationEvaluationContext#createExternSheetRefEvaluator(ExternalSheet)}
+     */
+    private void add3DReference(Ptg ptg) {
+        ExternalSheet externalSheet;
+        try {
+            if (ptg instanceof Pxg3D) {
+                Pxg3D pxg = (Pxg3D) ptg;
+                externalSheet = _workbook.getExternalSheet(pxg.getSheetName(), pxg.getLastSheetName(), pxg.getExternalWorkbookNumber());
+            } else {
+                externalSheet = _workbook.getExternalSheet(((ExternSheetReferenceToken) ptg).getExternSheetIndex());
+            }
+        } catch (RuntimeException e) {
+            // the evaluation will report the problem
+            _dynamic = true;
+            return;
+        }
+        if (externalSheet == null) {
+            _dynamic = true;
+            return;
+        }
+        if (externalSheet.getWorkbookName() != null) {
+            _hasExternalReferences = true;
+            _dynamic = true;
+            return;
+        }
+        int firstSheet = _workbook.getSheetIndex(externalSheet.getSheetName());
+        int lastSheet = (externalSheet instanceof ExternalSheetRange)
+            ? _workbook.getSheetIndex(((ExternalSheetRange) externalSheet).getLastSheetName())
+            : firstSheet;
+        if (firstSheet < 0 || lastSheet < firstSheet) {
+            _dynamic = true;
+            return;
+        }
+        if (ptg instanceof RefPtgBase) {
+            RefPtgBase ref = (RefPtgBase) ptg;
+            addArea(firstSheet, lastSheet, ref.getRow(), ref.getColumn(), ref.getRow(), ref.getColumn());
+        } else {
+            addArea(firstSheet, lastSheet, (AreaI) ptg);
+        }
+    }
+
+    /**
+     * Follows the names like {@link OperationEvaluationContext#getNameXEval(NameXPtg)}
+     * and {@link WorkbookEvaluator}
+     */
+    private void addName(int sheetIndex, Ptg ptg, int nameDepth) {
+        if (nameDepth >= MAX_NAME_DEPTH) {
+            _dynamic = true;
+            return;
+        }
+        EvaluationName name;
+        try {
+            if (ptg instanceof NamePtg) {
+                name = _workbook.getName((NamePtg) ptg);
+                if (name == null) {
+                    _dynamic = true;
+                    return;
+                }
+            } else if (ptg instanceof NameXPtg) {
+                NameXPtg nameX = (NameXPtg) ptg;
+                ExternalSheet externalSheet = _workbook.getExternalSheet(nameX.getSheetRefIndex());
+                if (externalSheet != null && externalSheet.getWorkbookName() != null) {
+                    _hasExternalReferences = true;
+                    _dynamic = true;
+                    return;
+                }
+                String text = _workbook.resolveNameXText(nameX);
+                int sheetNameAt = text.indexOf('!');
+                name = (sheetNameAt > -1)
+                    ? _workbook.getName(text.substring(sheetNameAt + 1), _workbook.getSheetIndex(text.substring(0, sheetNameAt)))
+                    : _workbook.getName(text, -1);
+            } else {
+                NameXPxg nameX = (NameXPxg) ptg;
+                ExternalSheet externalSheet = _workbook.getExternalSheet(nameX.getSheetName(), null, nameX.getExternalWorkbookNumber());
+                if (externalSheet != null && externalSheet.getWorkbookName() != null) {
+                    _hasExternalReferences = true;
+                    _dynamic = true;
+                    return;
+                }
+                int nameSheet = nameX.getSheetName() == null ? -1 : _workbook.getSheetIndex(nameX.getSheetName());
+                name = _workbook.getName(nameX.getNameName(), nameSheet);
+            }
+        } catch (RuntimeException e) {
+            _dynamic = true;
+            return;
+        }
+
+        // names without definition are (add-in) functions
+        if (name == null || name.isFunctionName()) {
+            return;
+        }
+        if (!name.hasFormula()) {
+            _dynamic = true;
+            return;
+        }
+        // the definition is evaluated in the context of the formula cell
+        collectPrecedents(sheetIndex, name.getNameDefinition(), nameDepth + 1);
+    }
+
+    private void addArea(int firstSheet, int lastSheet, AreaI area) {
+        addArea(firstSheet, lastSheet, area.getFirstRow(), area.getFirstColumn(), area.getLastRow(), area.getLastColumn());
+    }
+
+    private void addArea(int firstSheet, int lastSheet, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+        for (int sheet = firstSheet; sheet <= lastSheet; sheet++) {
+            _pendingRefs.add(sheet);
+            _pendingRefs.add(Math.min(firstRow, lastRow));
+            _pendingRefs.add(Math.min(firstColumn, lastColumn));
+            _pendingRefs.add(Math.max(firstRow, lastRow));
+            _pendingRefs.add(Math.max(firstColumn, lastColumn));
+        }
+    }
+
+    /**
+     * Computes the levels by a depth-first search, which uses an explicit stack, as the chains of formulas
+     * can be much longer than the call stack allows
+     */
+    private void computeLevels() {
+        int count = _keys.length;
+        int[] stackNode = new int[16];
+        int[] stackRef = new int[16];
+        int[] stackScan = new int[16];
+        int[] stackLevel = new int[16];
+
+        for (int start = 0; start < count; start++) {
+            if (_levels[start] != UNVISITED) {
+                continue;
+            }
+            int top = 0;
+            stackNode[0] = start;
+            stackRef[0] = 0;
+            stackScan[0] = -1;
+            stackLevel[0] = 0;
+            _levels[start] = IN_PROGRESS;
+
+            while (top >= 0) {
+                int node = stackNode[top];
+                int precedent = stackLevel[top] == SERIAL ? -1 : nextPrecedent(node, stackRef, stackScan, top);
+                if (precedent >= 0) {
+                    int level = _levels[precedent];
+                    if (level == UNVISITED) {
+                        if (++top == stackNode.length) {
+                            int newLength = stackNode.length * 2;
+                            stackNode = Arrays.copyOf(stackNode, newLength);
+                            stackRef = Arrays.copyOf(stackRef, newLength);
+                            stackScan = Arrays.copyOf(stackScan, newLength);
+                            stackLevel = Arrays.copyOf(stackLevel, newLength);
+                        }
+                        stackNode[top] = precedent;
+                        stackRef[top] = 0;
+                        stackScan[top] = -1;
+                        stackLevel[top] = 0;
+                        _levels[precedent] = IN_PROGRESS;
+                    } else {
+                        // a precedent in progress closes a circle
+                        stackLevel[top] = (level == IN_PROGRESS || level == SERIAL)
+                            ? SERIAL : Math.max(stackLevel[top], level + 1);
+                    }
+                    continue;
+                }
+
+                int level = stackLevel[top];
+                _levels[node] = level;
+                if (--top >= 0) {
+                    stackLevel[top] = (level == SERIAL) ? SERIAL : Math.max(stackLevel[top], level + 1);
+                }
+            }
+        }
+
+        // order the cells by level, the serial cells are sorted after the highest level
+        for (int level : _levels) {
+            if (level != SERIAL) {
+                _levelCount = Math.max(_levelCount, level + 1);
+            }
+        }
+        _levelStarts = new int[_levelCount + 2];
+        for (int level : _levels) {
+            _levelStarts[Math.min(level, _levelCount) + 1]++;
+        }
+        for (int i = 1; i < _levelStarts.length; i++) {
+            _levelStarts[i] += _levelStarts[i - 1];
+        }
+        _levelOrder = new int[count];
+        int[] next = Arrays.copyOf(_levelStarts, _levelCount + 1);
+        for (int node = 0; node < count; node++) {
+            _levelOrder[next[Math.min(_levels[node], _levelCount)]++] = node;
+        }
+    }
+
+    /**
+     * Continues the search of the next formula cell in the referenced areas of a cell
+     *
+     * @return the next precedent or -1, if all areas are searched
+     */
+    private int nextPrecedent(int node, int[] stackRef, int[] stackScan, int top) {
+        int[] refs = _precedents[node];
+        int ref = stackRef[top];
+        int pos = stackScan[top];
+        int count = _keys.length;
+        for (; ref < refs.length; ref += 5, pos = -1) {
+            int sheet = refs[ref];
+            int firstRow = refs[ref + 1];
+            int firstColumn = refs[ref + 2];
+            int lastRow = refs[ref + 3];
+            int lastColumn = refs[ref + 4];
+            if (pos < 0) {
+                pos = lowerBound(pos, toKey(sheet, firstRow, firstColumn));
+            }
+            while (pos < count) {
+                long key = _keys[pos];
+                int row = rowOf(key);
+                if (sheetOf(key) != sheet || row > lastRow) {
+                    break;
+                }
+                int column = columnOf(key);
+                if (column < firstColumn) {
+                    pos = lowerBound(pos, toKey(sheet, row, firstColumn));
+                } else if (column > lastColumn) {
+                    if (row == lastRow) {
+                        break;
+                    }
+                    pos = lowerBound(pos, toKey(sheet, row + 1, firstColumn));
+                } else {
+                    stackRef[top] = ref;
+                    stackScan[top] = pos + 1;
+                    return pos;
+                }
+            }
+        }
+        stackRef[top] = ref;
+        stackScan[top] = -1;
+        return -1;
+    }
+
+    /**
+     * @return the first position at or after {@code from} with a key not less than {@code key}
+     */
+    private int lowerBound(int from, long key) {
+        int pos = Arrays.binarySearch(_keys, Math.max(from, 0), _keys.length, key);
+        return pos < 0 ? -pos - 1 : pos;
+    }
+
+    private static long toKey(int sheetIndex, int rowIndex, int columnIndex) {
+        return ((sheetIndex & 0xFFFFFFL) << 40) | ((rowIndex & 0xFFFFFFL) << 16) | (columnIndex & 0xFFFFL);
+    }
+
+    private static int sheetOf(long key) {
+        return (int) (key >>> 40);
+    }
+
+    private static int rowOf(long key) {
+        return (int) ((key >>> 16) & 0xFFFFFF);
+    }
+
+    private static int columnOf(long key) {
+        return (int) (key & 0xFFFF);
+    }
+}
@@ -0,0 +1,185 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.Internal;
+
+/**
+ * The reverse of a {@link FormulaDependencyGraph}: finds the formula cells, which refer to a cell.<br>
+ *
+ * Single cell references are looked up by their position. The areas are registered in blocks of rows,
+ * so only the areas of the block of a cell are checked. Areas spanning many blocks, like whole columns,
+ * are checked for each cell of their sheet. Equal areas of different formulas are registered only once.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+final class FormulaDependentIndex {
+    private static final int BLOCK_BITS = 8;
+    /** areas spanning more blocks are checked for each cell of the sheet */
+    private static final int MAX_AREA_BLOCKS = 16;
+
+    private final Map<Long, int[]> _cellDependents = new HashMap<>();
+    private final Map<Long, DependentArea[]> _blockAreas = new HashMap<>();
+    private final Map<Integer, DependentArea[]> _wideAreas = new HashMap<>();
+
+    public FormulaDependentIndex(FormulaDependencyGraph graph) {
+        Map<Long, IntList> cells = new HashMap<>();
+        Map<DependentArea, DependentArea> areas = new HashMap<>();
+        for (int node = 0; node < graph.size(); node++) {
+            int[] refs = graph.getPrecedents(node);
+            for (int ref = 0; ref < refs.length; ref += 5) {
+                int sheet = refs[ref];
+                int firstRow = refs[ref + 1];
+                int firstColumn = refs[ref + 2];
+                int lastRow = refs[ref + 3];
+                int lastColumn = refs[ref + 4];
+                IntList dependents;
+                if (firstRow == lastRow && firstColumn == lastColumn) {
+                    dependents = cells.computeIfAbsent(toKey(sheet, firstRow, firstColumn), k -> new IntList());
+                } else {
+                    DependentArea area = new DependentArea(sheet, firstRow, firstColumn, lastRow, lastColumn);
+                    dependents = areas.computeIfAbsent(area, k -> k)._pendingNodes;
+                }
+                // the references of a node are added one after the other
+                if (dependents.isEmpty() || dependents.get(dependents.size() - 1) != node) {
+                    dependents.add(node);
+                }
+            }
+        }
+
+        for (Map.Entry<Long, IntList> e : cells.entrySet()) {
+            _cellDependents.put(e.getKey(), e.getValue().toArray());
+        }
+        Map<Long, List<DependentArea>> blockAreas = new HashMap<>();
+        Map<Integer, List<DependentArea>> wideAreas = new HashMap<>();
+        for (DependentArea area : areas.keySet()) {
+            area._nodes = area._pendingNodes.toArray();
+            area._pendingNodes = null;
+            int firstBlock = area._firstRow >>> BLOCK_BITS;
+            int lastBlock = area._lastRow >>> BLOCK_BITS;
+            if (lastBlock - firstBlock >= MAX_AREA_BLOCKS) {
+                wideAreas.computeIfAbsent(area._sheet, k -> new ArrayList<>()).add(area);
+            } else {
+                for (int block = firstBlock; block <= lastBlock; block++) {
+                    blockAreas.computeIfAbsent(toBlockKey(area._sheet, block), k -> new ArrayList<>()).add(area);
+                }
+            }
+        }
+        for (Map.Entry<Long, List<DependentArea>> e : blockAreas.entrySet()) {
+            _blockAreas.put(e.getKey(), e.getValue().toArray(new DependentArea[0]));
+        }
+        for (Map.Entry<Integer, List<DependentArea>> e : wideAreas.entrySet()) {
+            _wideAreas.put(e.getKey(), e.getValue().toArray(new DependentArea[0]));
+        }
+    }
+
+    /**
+     * Marks the formula cells, which refer directly to a cell, and adds the newly marked cells to the queue
+     *
+     * @param marked the marked formula cells
+     * @param queue receives the newly marked formula cells
+     */
+    public void markDependents(int sheetIndex, int rowIndex, int columnIndex, boolean[] marked, IntList queue) {
+        mark(_cellDependents.get(toKey(sheetIndex, rowIndex, columnIndex)), marked, queue);
+        markAreas(_blockAreas.get(toBlockKey(sheetIndex, rowIndex >>> BLOCK_BITS)), rowIndex, columnIndex, marked, queue);
+        markAreas(_wideAreas.get(sheetIndex), rowIndex, columnIndex, marked, queue);
+    }
+
+    private static void markAreas(DependentArea[] areas, int rowIndex, int columnIndex, boolean[] marked, IntList queue) {
+        if (areas == null) {
+            return;
+        }
+        for (DependentArea area : areas) {
+            if (area.contains(rowIndex, columnIndex)) {
+                mark(area._nodes, marked, queue);
+            }
+        }
+    }
+
+    private static void mark(int[] nodes, boolean[] marked, IntList queue) {
+        if (nodes == null) {
+            return;
+        }
+        for (int node : nodes) {
+            if (!marked[node]) {
+                marked[node] = true;
+                queue.add(node);
+            }
+        }
+    }
+
+    private static long toKey(int sheetIndex, int rowIndex, int columnIndex) {
+        return ((sheetIndex & 0xFFFFFFL) << 40) | ((rowIndex & 0xFFFFFFL) << 16) | (columnIndex & 0xFFFFL);
+    }
+
+    private static long toBlockKey(int sheetIndex, int block) {
+        return ((long) sheetIndex << 32) | (block & 0xFFFFFFFFL);
+    }
+
+    private static final class DependentArea {
+        private final int _sheet;
+        private final int _firstRow;
+        private final int _firstColumn;
+        private final int _lastRow;
+        private final int _lastColumn;
+        private IntList _pendingNodes = new IntList();
+        private int[] _nodes;
+
+        private DependentArea(int sheet, int firstRow, int firstColumn, int lastRow, int lastColumn) {
+            _sheet = sheet;
+            _firstRow = firstRow;
+            _firstColumn = firstColumn;
+            _lastRow = lastRow;
+            _lastColumn = lastColumn;
+        }
+
+        private boolean contains(int rowIndex, int columnIndex) {
+            return rowIndex >= _firstRow && rowIndex <= _lastRow
+                && columnIndex >= _firstColumn && columnIndex <= _lastColumn;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DependentArea)) {
+                return false;
+            }
+            DependentArea other = (DependentArea) o;
+            return _sheet == other._sheet && _firstRow == other._firstRow && _firstColumn == other._firstColumn
+                && _lastRow == other._lastRow && _lastColumn == other._lastColumn;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = _sheet;
+            result = 31 * result + _firstRow;
+            result = 31 * result + _firstColumn;
+            result = 31 * result + _lastRow;
+            return 31 * result + _lastColumn;
+        }
+    }
+}
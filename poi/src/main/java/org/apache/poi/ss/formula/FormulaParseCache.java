@@ -0,0 +1,386 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.function.FunctionMetadataRegistry;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.OperandPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.CellReference.NameType;
+import org.apache.poi.util.Internal;
+
+/**
+ * Caches the parsed tokens of the cell formulas of a workbook.<br>
+ *
+ * Generated sheets usually repeat the same formula in many cells, with references shifted to each cell,
+ * e.g. {@code A1*2} in B1, {@code A2*2} in B2 and so on. The formulas are therefore cached in a normalised form,
+ * where the relative references of the formula text are replaced by their offsets to the formula cell
+ * (like the R1C1 notation). A cached formula is re-based for the cell, which parses the same normalised formula,
+ * i.e. the relative references of its tokens are shifted by the distance between the cells.<br>
+ *
+ * Formulas, which can't be normalised reliably (like structured references, external references,
+ * whole rows or columns and dotted ranges), are always parsed. The cached tokens depend on the names and
+ * the sheets of the workbook, so the owner of the cache needs to {@link #clear()} it, when these change.<br>
+ *
+ * The cache may be used by multiple threads. It is bounded, i.e. cleared, when it contains too many formulas.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+public final class FormulaParseCache {
+
+    /** the maximum number of cached formulas */
+    private static final int MAX_FORMULAS = 10000;
+
+    /** a prefix for normalised references, which can't be part of the formula text outside of strings */
+    private static final char REFERENCE_MARKER = '\u0001';
+
+    private static final Pattern CELL_REF_PATTERN = Pattern.compile("\\$?[A-Za-z]+\\$?[0-9]+");
+    private static final Pattern ROW_OR_COLUMN_PATTERN = Pattern.compile("\\$?[A-Za-z]*\\$?[0-9]*");
+
+    private static final class Entry {
+        private final Ptg[] _ptgs;
+        private final int _rowIndex;
+        private final int _columnIndex;
+
+        Entry(Ptg[] ptgs, int rowIndex, int columnIndex) {
+            _ptgs = ptgs;
+            _rowIndex = rowIndex;
+            _columnIndex = columnIndex;
+        }
+    }
+
+    private final Map<String, Entry> _formulas = new ConcurrentHashMap<>();
+
+    /**
+     * Parses the formula of a cell, see {@link FormulaParser#parse(String, FormulaParsingWorkbook, FormulaType, int, int)}
+     *
+     * @param rowIndex the 0-based row index of the cell
+     * @param columnIndex the 0-based column index of the cell
+     * @return the tokens of the formula, which may be modified by the caller
+     */
+    public Ptg[] parse(String formula, FormulaParsingWorkbook workbook, FormulaType formulaType, int sheetIndex,
+            int rowIndex, int columnIndex) {
+        return parse(formula, workbook, formulaType, sheetIndex, rowIndex, columnIndex, rowIndex, columnIndex);
+    }
+
+    /**
+     * Parses the formula of a shared formula group for one of the cells of the group
+     *
+     * @param formula the formula text of the first cell of the group
+     * @param firstRow the 0-based row index of the first cell of the group
+     * @param firstColumn the 0-based column index of the first cell of the group
+     * @param rowIndex the 0-based row index of the cell
+     * @param columnIndex the 0-based column index of the cell
+     * @return the tokens of the formula of the cell, which may be modified by the caller
+     */
+    public Ptg[] parseShared(String formula, FormulaParsingWorkbook workbook, int sheetIndex,
+            int firstRow, int firstColumn, int rowIndex, int columnIndex) {
+        return parse(formula, workbook, FormulaType.CELL, sheetIndex, firstRow, firstColumn, rowIndex, columnIndex);
+    }
+
+    /**
+     * Removes all cached formulas
+     */
+    public void clear() {
+        _formulas.clear();
+    }
+
+    private Ptg[] parse(String formula, FormulaParsingWorkbook workbook, FormulaType formulaType, int sheetIndex,
+            int formulaRow, int formulaColumn, int rowIndex, int columnIndex) {
+        SpreadsheetVersion version = workbook.getSpreadsheetVersion();
+        String normalised = normalise(formula, formulaRow, formulaColumn, version);
+        if (normalised == null) {
+            // the position of the cell is needed for structured references
+            Ptg[] ptgs = FormulaParser.parse(formula, workbook, formulaType, sheetIndex, rowIndex);
+            if (rowIndex == formulaRow && columnIndex == formulaColumn) {
+                return ptgs;
+            }
+            return rebase(ptgs, rowIndex - formulaRow, columnIndex - formulaColumn, version);
+        }
+        String key = formulaType.ordinal() + ":" + sheetIndex + ":" + normalised;
+        Entry entry = _formulas.get(key);
+        if (entry == null) {
+            Ptg[] ptgs = FormulaParser.parse(formula, workbook, formulaType, sheetIndex, formulaRow);
+            if (_formulas.size() >= MAX_FORMULAS) {
+                _formulas.clear();
+            }
+            entry = new Entry(ptgs, formulaRow, formulaColumn);
+            _formulas.put(key, entry);
+        }
+        return rebase(entry._ptgs, rowIndex - entry._rowIndex, columnIndex - entry._columnIndex, version);
+    }
+
+    /**
+     * Copies the tokens and shifts their relative references like {@link SharedFormula}, but keeps the
+     * type of the references
+     */
+    static Ptg[] rebase(Ptg[] ptgs, int rowOffset, int columnOffset, SpreadsheetVersion version) {
+        int rowMask = version.getLastRowIndex();
+        int columnMask = version.getLastColumnIndex();
+        Ptg[] result = new Ptg[ptgs.length];
+        for (int i = 0; i < ptgs.length; i++) {
+            Ptg ptg = ptgs[i];
+            if (ptg instanceof RefPtgBase) {
+                RefPtgBase ref = (RefPtgBase) ptg.copy();
+                if (ref.isRowRelative()) {
+                    ref.setRow((ref.getRow() + rowOffset) & rowMask);
+                }
+                if (ref.isColRelative()) {
+                    ref.setColumn((ref.getColumn() + columnOffset) & columnMask);
+                }
+                ptg = ref;
+            } else if (ptg instanceof AreaPtgBase) {
+                AreaPtgBase area = (AreaPtgBase) ptg.copy();
+                if (area.isFirstRowRelative()) {
+                    area.setFirstRow((area.getFirstRow() + rowOffset) & rowMask);
+                }
+                if (area.isLastRowRelative()) {
+                    area.setLastRow((area.getLastRow() + rowOffset) & rowMask);
+                }
+                if (area.isFirstColRelative()) {
+                    area.setFirstColumn((area.getFirstColumn() + columnOffset) & columnMask);
+                }
+                if (area.isLastColRelative()) {
+                    area.setLastColumn((area.getLastColumn() + columnOffset) & columnMask);
+                }
+                normaliseArea(area);
+                ptg = area;
+            } else if (ptg instanceof OperandPtg) {
+                // Any subclass of OperandPtg is mutable, so it's safest to not share these instances.
+                ptg = ((OperandPtg) ptg).copy();
+            }
+            // all other Ptgs are immutable and can be shared
+            result[i] = ptg;
+        }
+        return result;
+    }
+
+    /**
+     * Swaps the first and last row or column of an area together with their relative flags like the parser,
+     * e.g. {@code $B$5:B1} is parsed as {@code B1:$B$5}, which becomes {@code B11:$B$5}, when it is shifted
+     * by 10 rows, so the rows need to be swapped again
+     */
+    private static void normaliseArea(AreaPtgBase area) {
+        if (area.getFirstRow() > area.getLastRow()) {
+            int firstRow = area.getFirstRow();
+            boolean firstRowRelative = area.isFirstRowRelative();
+            area.setFirstRow(area.getLastRow());
+            area.setFirstRowRelative(area.isLastRowRelative());
+            area.setLastRow(firstRow);
+            area.setLastRowRelative(firstRowRelative);
+        }
+        if (area.getFirstColumn() > area.getLastColumn()) {
+            int firstColumn = area.getFirstColumn();
+            boolean firstColumnRelative = area.isFirstColRelative();
+            area.setFirstColumn(area.getLastColumn());
+            area.setFirstColRelative(area.isLastColRelative());
+            area.setLastColumn(firstColumn);
+            area.setLastColRelative(firstColumnRelative);
+        }
+    }
+
+    /**
+     * Replaces the cell references of the formula with their offsets to the formula cell, if they are relative,
+     * or their absolute indexes. The rest of the formula is kept, so formulas with the same normalised form
+     * have the same tokens apart from the relative references.
+     *
+     * @return the normalised formula or {@code null}, if the formula contains parts, which can't be normalised
+     */
+    static String normalise(String formula, int rowIndex, int columnIndex, SpreadsheetVersion version) {
+        int length = formula.length();
+        StringBuilder sb = new StringBuilder(length + 16);
+        boolean afterColon = false;
+        int i = 0;
+        while (i < length) {
+            char ch = formula.charAt(i);
+            if (ch == '"' || ch == '\'') {
+                int end = formula.indexOf(ch, i + 1);
+                // doubled quotes are escaped quotes
+                while (end >= 0 && end + 1 < length && formula.charAt(end + 1) == ch) {
+                    end = formula.indexOf(ch, end + 2);
+                }
+                if (end < 0) {
+                    return null;
+                }
+                sb.append(formula, i, end + 1);
+                i = end + 1;
+                afterColon = false;
+            } else if (ch == '[' || ch == REFERENCE_MARKER) {
+                // structured or external references
+                return null;
+            } else if (ch == '#') {
+                int end = i + 1;
+                while (end < length && isErrorChar(formula.charAt(end))) {
+                    end++;
+                }
+                if (end < length && (formula.charAt(end) == '!' || formula.charAt(end) == '?')) {
+                    end++;
+                }
+                sb.append(formula, i, end);
+                i = end;
+                afterColon = false;
+            } else if (Character.isDigit(ch) || ch == '.') {
+                int end = skipNumber(formula, i);
+                // whole rows and dotted ranges
+                if (afterColon || end < length && isNameChar(formula.charAt(end)) || nextChar(formula, end) == ':'
+                        || countDots(formula, i, end) > 1) {
+                    return null;
+                }
+                sb.append(formula, i, end);
+                i = end;
+            } else if (isNameChar(ch)) {
+                int end = i + 1;
+                while (end < length && isNameChar(formula.charAt(end))) {
+                    end++;
+                }
+                String word = formula.substring(i, end);
+                if (isSheetName(formula, end)) {
+                    if (i > 0 && formula.charAt(i - 1) == ' ') {
+                        // unquoted sheet names with spaces
+                        return null;
+                    }
+                    sb.append(word);
+                } else if (CELL_REF_PATTERN.matcher(word).matches()
+                        && CellReference.classifyCellReference(word, version) == NameType.CELL) {
+                    if (nextChar(formula, end) == '(') {
+                        if (FunctionMetadataRegistry.getFunctionByName(word.toUpperCase(Locale.ROOT)) == null) {
+                            return null;
+                        }
+                        // functions like LOG10()
+                        sb.append(word);
+                        i = end;
+                        afterColon = false;
+                        continue;
+                    }
+                    CellReference ref = new CellReference(word);
+                    sb.append(REFERENCE_MARKER).append('R');
+                    appendIndex(sb, ref.getRow(), ref.isRowAbsolute(), rowIndex);
+                    sb.append('C');
+                    appendIndex(sb, ref.getCol(), ref.isColAbsolute(), columnIndex);
+                } else {
+                    int dot = word.indexOf('.');
+                    String part = dot < 0 ? word : word.substring(0, dot);
+                    if (ROW_OR_COLUMN_PATTERN.matcher(part).matches()
+                            && (dot >= 0 || afterColon || nextChar(formula, end) == ':')) {
+                        // whole rows or columns and dotted ranges
+                        return null;
+                    }
+                    // names, functions and booleans
+                    sb.append(word);
+                }
+                i = end;
+                afterColon = false;
+            } else {
+                sb.append(ch);
+                i++;
+                if (ch != ' ') {
+                    afterColon = ch == ':';
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendIndex(StringBuilder sb, int index, boolean absolute, int base) {
+        if (absolute) {
+            sb.append(index);
+        } else {
+            sb.append('[').append(index - base).append(']');
+        }
+    }
+
+    /**
+     * @return {@code true}, if the word at the end index is followed by {@code !} or {@code :word!}
+     */
+    private static boolean isSheetName(String formula, int end) {
+        int length = formula.length();
+        if (end < length && formula.charAt(end) == '!') {
+            return true;
+        }
+        if (end < length && formula.charAt(end) == ':') {
+            int i = end + 1;
+            while (i < length && isNameChar(formula.charAt(i))) {
+                i++;
+            }
+            return i > end + 1 && i < length && formula.charAt(i) == '!';
+        }
+        return false;
+    }
+
+    private static int skipNumber(String formula, int start) {
+        int length = formula.length();
+        int i = start;
+        while (i < length && (Character.isDigit(formula.charAt(i)) || formula.charAt(i) == '.')) {
+            i++;
+        }
+        if (i < length && (formula.charAt(i) == 'E' || formula.charAt(i) == 'e')) {
+            int j = i + 1;
+            if (j < length && (formula.charAt(j) == '+' || formula.charAt(j) == '-')) {
+                j++;
+            }
+            if (j < length && Character.isDigit(formula.charAt(j))) {
+                i = j;
+                while (i < length && Character.isDigit(formula.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static int countDots(String formula, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (formula.charAt(i) == '.') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the next character after white space or {@code 0}
+     */
+    private static char nextChar(String formula, int start) {
+        for (int i = start; i < formula.length(); i++) {
+            char ch = formula.charAt(i);
+            if (ch != ' ') {
+                return ch;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isNameChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch > 128
+            || ch == '$' || ch == '_' || ch == '.' || ch == '?' || ch == '\\';
+    }
+
+    private static boolean isErrorChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '/' || ch == '_';
+    }
+}
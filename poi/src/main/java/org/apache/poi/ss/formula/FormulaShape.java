@@ -0,0 +1,275 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.poi.ss.formula.ptg.AbstractFunctionPtg;
+import org.apache.poi.ss.formula.ptg.Area3DPtg;
+import org.apache.poi.ss.formula.ptg.Area3DPxg;
+import org.apache.poi.ss.formula.ptg.AreaErrPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.AttrPtg;
+import org.apache.poi.ss.formula.ptg.BoolPtg;
+import org.apache.poi.ss.formula.ptg.DeletedArea3DPtg;
+import org.apache.poi.ss.formula.ptg.DeletedRef3DPtg;
+import org.apache.poi.ss.formula.ptg.ErrPtg;
+import org.apache.poi.ss.formula.ptg.IntPtg;
+import org.apache.poi.ss.formula.ptg.IntersectionPtg;
+import org.apache.poi.ss.formula.ptg.MemAreaPtg;
+import org.apache.poi.ss.formula.ptg.MemErrPtg;
+import org.apache.poi.ss.formula.ptg.MemFuncPtg;
+import org.apache.poi.ss.formula.ptg.MissingArgPtg;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.NameXPxg;
+import org.apache.poi.ss.formula.ptg.NumberPtg;
+import org.apache.poi.ss.formula.ptg.ParenthesisPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.RangePtg;
+import org.apache.poi.ss.formula.ptg.Ref3DPtg;
+import org.apache.poi.ss.formula.ptg.Ref3DPxg;
+import org.apache.poi.ss.formula.ptg.RefErrorPtg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.formula.ptg.StringPtg;
+import org.apache.poi.ss.formula.ptg.UnionPtg;
+import org.apache.poi.ss.formula.ptg.ValueOperatorPtg;
+
+/**
+ * The shape of a formula, i.e. its tokens with the relative references expressed as offsets to the formula cell.
+ * Formulas copied or filled across a range and the cells of a shared formula have the same shape, so they can
+ * share a {@link CompiledFormula}.<br>
+ *
+ * Only the tokens, which {@link CompiledFormula} can compile, are supported.
+ */
+final class FormulaShape {
+    private final Ptg[] _ptgs;
+    private final int _rowIndex;
+    private final int _columnIndex;
+    private final int _hashCode;
+
+    private FormulaShape(Ptg[] ptgs, int rowIndex, int columnIndex, int hashCode) {
+        _ptgs = ptgs;
+        _rowIndex = rowIndex;
+        _columnIndex = columnIndex;
+        _hashCode = hashCode;
+    }
+
+    /**
+     * @param ptgs the tokens of the formula in the cell at rowIndex and columnIndex
+     * @return the shape or {@code null}, if the formula contains unsupported tokens
+     */
+    static FormulaShape of(Ptg[] ptgs, int rowIndex, int columnIndex) {
+        int hashCode = ptgs.length;
+        for (Ptg ptg : ptgs) {
+            if (!isSupported(ptg)) {
+                return null;
+            }
+            hashCode = hashCode * 31 + ptg.getClass().hashCode();
+            if (ptg instanceof RefPtgBase) {
+                RefPtgBase ref = (RefPtgBase) ptg;
+                hashCode = hashCode * 31 + offset(ref.getRow(), ref.isRowRelative(), rowIndex);
+                hashCode = hashCode * 31 + offset(ref.getColumn(), ref.isColRelative(), columnIndex);
+            } else if (ptg instanceof AreaPtgBase) {
+                AreaPtgBase area = (AreaPtgBase) ptg;
+                hashCode = hashCode * 31 + offset(area.getFirstRow(), area.isFirstRowRelative(), rowIndex);
+                hashCode = hashCode * 31 + offset(area.getFirstColumn(), area.isFirstColRelative(), columnIndex);
+            } else if (ptg instanceof AbstractFunctionPtg) {
+                hashCode = hashCode * 31 + ((AbstractFunctionPtg) ptg).getFunctionIndex();
+            } else if (ptg instanceof IntPtg) {
+                hashCode = hashCode * 31 + ((IntPtg) ptg).getValue();
+            } else if (ptg instanceof NumberPtg) {
+                hashCode = hashCode * 31 + Double.hashCode(((NumberPtg) ptg).getValue());
+            }
+        }
+        return new FormulaShape(ptgs, rowIndex, columnIndex, hashCode);
+    }
+
+    Ptg[] getTokens() {
+        return _ptgs;
+    }
+
+    int getRowIndex() {
+        return _rowIndex;
+    }
+
+    int getColumnIndex() {
+        return _columnIndex;
+    }
+
+    private static boolean isSupported(Ptg ptg) {
+        Class<?> cls = ptg.getClass();
+        return cls == RefPtg.class || cls == AreaPtg.class
+            || cls == Ref3DPtg.class || cls == Area3DPtg.class || cls == Ref3DPxg.class || cls == Area3DPxg.class
+            || cls == IntPtg.class || cls == NumberPtg.class || cls == StringPtg.class || cls == BoolPtg.class
+            || cls == ErrPtg.class || cls == MissingArgPtg.class
+            || cls == AreaErrPtg.class || cls == RefErrorPtg.class
+            || cls == DeletedArea3DPtg.class || cls == DeletedRef3DPtg.class
+            || cls == NamePtg.class || cls == NameXPtg.class || cls == NameXPxg.class
+            || ptg instanceof AbstractFunctionPtg || ptg instanceof ValueOperatorPtg
+            || cls == AttrPtg.class || cls == ParenthesisPtg.class
+            || cls == UnionPtg.class || cls == RangePtg.class || cls == IntersectionPtg.class
+            || cls == MemFuncPtg.class || cls == MemAreaPtg.class || cls == MemErrPtg.class;
+    }
+
+    private static int offset(int index, boolean isRelative, int baseIndex) {
+        return isRelative ? index - baseIndex : index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FormulaShape)) {
+            return false;
+        }
+        FormulaShape other = (FormulaShape) o;
+        if (_hashCode != other._hashCode || _ptgs.length != other._ptgs.length) {
+            return false;
+        }
+        for (int i = 0; i < _ptgs.length; i++) {
+            if (!isSameToken(_ptgs[i], other._ptgs[i], other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSameToken(Ptg a, Ptg b, FormulaShape other) {
+        if (a.getClass() != b.getClass() || a.getSize() != b.getSize()) {
+            return false;
+        }
+        if (a instanceof RefPtgBase) {
+            RefPtgBase refA = (RefPtgBase) a;
+            RefPtgBase refB = (RefPtgBase) b;
+            if (refA.isRowRelative() != refB.isRowRelative() || refA.isColRelative() != refB.isColRelative()
+                    || offset(refA.getRow(), refA.isRowRelative(), _rowIndex)
+                        != offset(refB.getRow(), refB.isRowRelative(), other._rowIndex)
+                    || offset(refA.getColumn(), refA.isColRelative(), _columnIndex)
+                        != offset(refB.getColumn(), refB.isColRelative(), other._columnIndex)) {
+                return false;
+            }
+            if (a instanceof Ref3DPtg) {
+                return ((Ref3DPtg) a).getExternSheetIndex() == ((Ref3DPtg) b).getExternSheetIndex();
+            }
+            if (a instanceof Ref3DPxg) {
+                Ref3DPxg pxgA = (Ref3DPxg) a;
+                Ref3DPxg pxgB = (Ref3DPxg) b;
+                return pxgA.getExternalWorkbookNumber() == pxgB.getExternalWorkbookNumber()
+                    && Objects.equals(pxgA.getSheetName(), pxgB.getSheetName())
+                    && Objects.equals(pxgA.getLastSheetName(), pxgB.getLastSheetName());
+            }
+            return true;
+        }
+        if (a instanceof AreaPtgBase) {
+            AreaPtgBase areaA = (AreaPtgBase) a;
+            AreaPtgBase areaB = (AreaPtgBase) b;
+            if (areaA.isFirstRowRelative() != areaB.isFirstRowRelative()
+                    || areaA.isLastRowRelative() != areaB.isLastRowRelative()
+                    || areaA.isFirstColRelative() != areaB.isFirstColRelative()
+                    || areaA.isLastColRelative() != areaB.isLastColRelative()
+                    || offset(areaA.getFirstRow(), areaA.isFirstRowRelative(), _rowIndex)
+                        != offset(areaB.getFirstRow(), areaB.isFirstRowRelative(), other._rowIndex)
+                    || offset(areaA.getLastRow(), areaA.isLastRowRelative(), _rowIndex)
+                        != offset(areaB.getLastRow(), areaB.isLastRowRelative(), other._rowIndex)
+                    || offset(areaA.getFirstColumn(), areaA.isFirstColRelative(), _columnIndex)
+                        != offset(areaB.getFirstColumn(), areaB.isFirstColRelative(), other._columnIndex)
+                    || offset(areaA.getLastColumn(), areaA.isLastColRelative(), _columnIndex)
+                        != offset(areaB.getLastColumn(), areaB.isLastColRelative(), other._columnIndex)) {
+                return false;
+            }
+            if (a instanceof Area3DPtg) {
+                return ((Area3DPtg) a).getExternSheetIndex() == ((Area3DPtg) b).getExternSheetIndex();
+            }
+            if (a instanceof Area3DPxg) {
+                Area3DPxg pxgA = (Area3DPxg) a;
+                Area3DPxg pxgB = (Area3DPxg) b;
+                return pxgA.getExternalWorkbookNumber() == pxgB.getExternalWorkbookNumber()
+                    && Objects.equals(pxgA.getSheetName(), pxgB.getSheetName())
+                    && Objects.equals(pxgA.getLastSheetName(), pxgB.getLastSheetName());
+            }
+            return true;
+        }
+        if (a instanceof AbstractFunctionPtg) {
+            AbstractFunctionPtg funcA = (AbstractFunctionPtg) a;
+            AbstractFunctionPtg funcB = (AbstractFunctionPtg) b;
+            return funcA.getFunctionIndex() == funcB.getFunctionIndex()
+                && funcA.getNumberOfOperands() == funcB.getNumberOfOperands();
+        }
+        if (a instanceof IntPtg) {
+            return ((IntPtg) a).getValue() == ((IntPtg) b).getValue();
+        }
+        if (a instanceof NumberPtg) {
+            return Double.doubleToLongBits(((NumberPtg) a).getValue())
+                == Double.doubleToLongBits(((NumberPtg) b).getValue());
+        }
+        if (a instanceof StringPtg) {
+            return ((StringPtg) a).getValue().equals(((StringPtg) b).getValue());
+        }
+        if (a instanceof BoolPtg) {
+            return ((BoolPtg) a).getValue() == ((BoolPtg) b).getValue();
+        }
+        if (a instanceof ErrPtg) {
+            return ((ErrPtg) a).getErrorCode() == ((ErrPtg) b).getErrorCode();
+        }
+        if (a instanceof AttrPtg) {
+            AttrPtg attrA = (AttrPtg) a;
+            AttrPtg attrB = (AttrPtg) b;
+            if (attrA.isSemiVolatile() != attrB.isSemiVolatile() || attrA.isOptimizedIf() != attrB.isOptimizedIf()
+                    || attrA.isOptimizedChoose() != attrB.isOptimizedChoose() || attrA.isSum() != attrB.isSum()
+                    || attrA.isSkip() != attrB.isSkip() || attrA.isSpace() != attrB.isSpace()
+                    || attrA.getData() != attrB.getData()) {
+                return false;
+            }
+            return !attrA.isOptimizedChoose() || (attrA.getChooseFuncOffset() == attrB.getChooseFuncOffset()
+                && Arrays.equals(attrA.getJumpTable(), attrB.getJumpTable()));
+        }
+        if (a instanceof NamePtg) {
+            return ((NamePtg) a).getIndex() == ((NamePtg) b).getIndex();
+        }
+        if (a instanceof NameXPtg) {
+            NameXPtg nameA = (NameXPtg) a;
+            NameXPtg nameB = (NameXPtg) b;
+            return nameA.getSheetRefIndex() == nameB.getSheetRefIndex() && nameA.getNameIndex() == nameB.getNameIndex();
+        }
+        if (a instanceof NameXPxg) {
+            NameXPxg nameA = (NameXPxg) a;
+            NameXPxg nameB = (NameXPxg) b;
+            return nameA.getExternalWorkbookNumber() == nameB.getExternalWorkbookNumber()
+                && Objects.equals(nameA.getSheetName(), nameB.getSheetName())
+                && Objects.equals(nameA.getNameName(), nameB.getNameName());
+        }
+        if (a instanceof MemFuncPtg) {
+            return ((MemFuncPtg) a).getLenRefSubexpression() == ((MemFuncPtg) b).getLenRefSubexpression();
+        }
+        if (a instanceof MemAreaPtg) {
+            return ((MemAreaPtg) a).getLenRefSubexpression() == ((MemAreaPtg) b).getLenRefSubexpression();
+        }
+        if (a instanceof MemErrPtg) {
+            return ((MemErrPtg) a).getLenRefSubexpression() == ((MemErrPtg) b).getLenRefSubexpression();
+        }
+        // operators, parentheses, missing arguments and deleted references have no further state
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return _hashCode;
+    }
+}
@@ -0,0 +1,174 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.Internal;
+
+/**
+ * Recalculates only the formula cells, which depend on the cells changed since the last recalculation.<br>
+ *
+ * The changed cells are reported by the notify~ methods of the {@link WorkbookEvaluator}. The formula cells
+ * depending on them are found by a {@link FormulaDependentIndex}, which is kept between the recalculations.
+ * Formulas with references only known at evaluation time ({@code INDIRECT}, {@code OFFSET}, other workbooks)
+ * are always recalculated. Changed or deleted formula cells make the index stale, so it's rebuilt by the
+ * next recalculation.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+final class IncrementalRecalculator {
+    private final BaseFormulaEvaluator _evaluator;
+    /** the changed cells as sheet, row and column */
+    private final IntList _changedCells = new IntList();
+    private FormulaDependencyGraph _graph;
+    private FormulaDependentIndex _index;
+    private Cell[] _cells;
+    private boolean _stale;
+
+    public IncrementalRecalculator(BaseFormulaEvaluator evaluator) {
+        _evaluator = evaluator;
+    }
+
+    /**
+     * Records a changed value or formula cell
+     */
+    public void notifyUpdateCell(int sheetIndex, EvaluationCell cell) {
+        addChangedCell(sheetIndex, cell);
+        if (_graph != null && !_stale) {
+            // a formula cell is also notified, when its formula is changed
+            _stale = cell.getCellType() == CellType.FORMULA
+                || _graph.getNode(sheetIndex, cell.getRowIndex(), cell.getColumnIndex()) >= 0;
+        }
+    }
+
+    /**
+     * Records a deleted cell
+     */
+    public void notifyDeleteCell(int sheetIndex, EvaluationCell cell) {
+        addChangedCell(sheetIndex, cell);
+        if (_graph != null && !_stale) {
+            _stale = _graph.getNode(sheetIndex, cell.getRowIndex(), cell.getColumnIndex()) >= 0;
+        }
+    }
+
+    /**
+     * Forgets the dependencies, so all formula cells are recalculated next time
+     */
+    public void clear() {
+        _graph = null;
+        _index = null;
+        _cells = null;
+        _changedCells.clear();
+    }
+
+    /**
+     * @return the number of recalculated formula cells
+     */
+    public int recalculateDirty(Workbook wb) {
+        boolean all = _graph == null;
+        if (all || _stale) {
+            buildGraph(wb);
+        }
+        int count = _graph.size();
+        boolean[] dirty = new boolean[count];
+        if (all) {
+            Arrays.fill(dirty, true);
+        } else {
+            markDirtyCells(dirty);
+        }
+        _changedCells.clear();
+
+        // the lower levels first, so the evaluation of a cell doesn't recurse through its whole cone
+        int dirtyCount = 0;
+        for (int node : _graph.getLevelOrder()) {
+            if (dirty[node]) {
+                _evaluator.evaluateFormulaCell(_cells[node]);
+                dirtyCount++;
+            }
+        }
+        return dirtyCount;
+    }
+
+    private void addChangedCell(int sheetIndex, EvaluationCell cell) {
+        if (_graph != null) {
+            _changedCells.add(sheetIndex);
+            _changedCells.add(cell.getRowIndex());
+            _changedCells.add(cell.getColumnIndex());
+        }
+    }
+
+    private void markDirtyCells(boolean[] dirty) {
+        IntList queue = new IntList();
+        for (int node = 0; node < dirty.length; node++) {
+            if (_graph.isDynamic(node)) {
+                dirty[node] = true;
+                queue.add(node);
+            }
+        }
+        for (int i = 0; i < _changedCells.size(); i += 3) {
+            int sheet = _changedCells.get(i);
+            int row = _changedCells.get(i + 1);
+            int column = _changedCells.get(i + 2);
+            int node = _graph.getNode(sheet, row, column);
+            if (node >= 0 && !dirty[node]) {
+                // a changed formula
+                dirty[node] = true;
+                queue.add(node);
+            }
+            _index.markDependents(sheet, row, column, dirty, queue);
+        }
+        for (int i = 0; i < queue.size(); i++) {
+            int node = queue.get(i);
+            _index.markDependents(_graph.getSheetIndex(node), _graph.getRowIndex(node), _graph.getColumnIndex(node), dirty, queue);
+        }
+    }
+
+    private void buildGraph(Workbook wb) {
+        EvaluationWorkbook book = _evaluator._getWorkbookEvaluator().getWorkbook();
+        List<Cell> cells = new ArrayList<>();
+        List<EvaluationCell> evalCells = new ArrayList<>();
+        IntList sheetIndexes = new IntList();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            EvaluationSheet evalSheet = book.getSheet(i);
+            Sheet sheet = wb.getSheetAt(i);
+            for (Row r : sheet) {
+                for (Cell c : r) {
+                    if (c.getCellType() == CellType.FORMULA) {
+                        cells.add(c);
+                        evalCells.add(evalSheet.getCell(c.getRowIndex(), c.getColumnIndex()));
+                        sheetIndexes.add(i);
+                    }
+                }
+            }
+        }
+        _graph = new FormulaDependencyGraph(book, sheetIndexes.toArray(), evalCells.toArray(new EvaluationCell[0]));
+        _index = new FormulaDependentIndex(_graph);
+        _cells = cells.toArray(new Cell[0]);
+        _stale = false;
+    }
+}
@@ -20,6 +20,9 @@ package org.apache.poi.ss.formula;
 import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.AreaEvalBase;
 import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.AreaValues;
+import org.apache.poi.ss.formula.functions.CriteriaIndex;
+import org.apache.poi.ss.formula.functions.LookupIndex;
 import org.apache.poi.ss.formula.ptg.AreaI;
 import org.apache.poi.ss.formula.ptg.AreaI.OffsetArea;
 import org.apache.poi.ss.util.CellReference;
@@ -27,7 +30,7 @@ import org.apache.poi.ss.util.CellReference;
 /**
  * Provides Lazy Evaluation to 3D Ranges
  */
-final class LazyAreaEval extends AreaEvalBase {
+final class LazyAreaEval extends AreaEvalBase implements LookupIndex.Provider, CriteriaIndex.Provider {
     private final SheetRangeEvaluator _evaluator;
 
     LazyAreaEval(AreaI ptg, SheetRangeEvaluator evaluator) {
@@ -82,6 +85,49 @@ final class LazyAreaEval extends AreaEvalBase {
         return new LazyAreaEval(getFirstRow(), absColIx, getLastRow(), absColIx, _evaluator);
     }
 
+    @Override
+    public LookupIndex getColumnLookupIndex(int relativeColumnIndex) {
+        return getLookupIndex(getColumn(relativeColumnIndex));
+    }
+
+    @Override
+    public LookupIndex getRowLookupIndex(int relativeRowIndex) {
+        return getLookupIndex(getRow(relativeRowIndex));
+    }
+
+    private LookupIndex getLookupIndex(LazyAreaEval vector) {
+        // 3D areas are searched on the first sheet only, which isn't worth indexing
+        if (getFirstSheetIndex() != getLastSheetIndex()) {
+            return null;
+        }
+        return _evaluator.getSheetEvaluator(getFirstSheetIndex()).getLookupIndex(vector);
+    }
+
+    @Override
+    public CriteriaIndex getCriteriaIndex() {
+        if (getFirstSheetIndex() != getLastSheetIndex() || !CriteriaIndex.isIndexable(this)) {
+            return null;
+        }
+        return _evaluator.getSheetEvaluator(getFirstSheetIndex()).getCriteriaIndex(this);
+    }
+
+    @Override
+    public AreaValues getAreaValues() {
+        if (getFirstSheetIndex() != getLastSheetIndex()) {
+            return new AreaValues(this);
+        }
+        AreaValues values = _evaluator.getSheetEvaluator(getFirstSheetIndex()).getAreaValues(this);
+        return values == null ? createAreaValues() : values;
+    }
+
+    /**
+     * @return the values of the rows up to the last used row of the sheet
+     */
+    AreaValues createAreaValues() {
+        int lastRowNum = _evaluator.getSheetEvaluator(getFirstSheetIndex()).getLastRowNum();
+        return new AreaValues(this, lastRowNum - getFirstRow() + 1);
+    }
+
     public String toString() {
         CellReference crA = new CellReference(getFirstRow(), getFirstColumn());
         CellReference crB = new CellReference(getLastRow(), getLastColumn());
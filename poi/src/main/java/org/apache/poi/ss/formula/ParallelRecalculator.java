@@ -0,0 +1,189 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.Internal;
+
+/**
+ * Recalculates all formula cells of a workbook on several threads.<br>
+ *
+ * The formula cells are ordered by the levels of a {@link FormulaDependencyGraph}. The cells of one level
+ * are evaluated concurrently, each thread with its own {@link WorkbookEvaluator} over a
+ * {@link RecalculationWorkbook}, which provides the results of the lower levels as plain values.
+ * The remaining serial cells are evaluated afterwards on the calling thread in the order of the cells,
+ * which gives the same results as {@link BaseFormulaEvaluator#evaluateAllFormulaCells(Workbook)}.
+ * Finally the results are stored in the cells by the calling thread.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+final class ParallelRecalculator {
+    /** smaller levels are evaluated on the calling thread */
+    private static final int MIN_PARALLEL_LEVEL_SIZE = 64;
+    /** the minimum number of cells evaluated by one task */
+    private static final int MIN_TASK_SIZE = 16;
+
+    private final BaseFormulaEvaluator _evaluator;
+    private final ForkJoinPool _pool;
+    private final ConcurrentLinkedQueue<WorkbookEvaluator> _idleEvaluators = new ConcurrentLinkedQueue<>();
+    private RecalculationWorkbook _book;
+    private int[] _order;
+    private int _taskSize;
+
+    public ParallelRecalculator(BaseFormulaEvaluator evaluator, ForkJoinPool pool) {
+        _evaluator = evaluator;
+        _pool = pool;
+    }
+
+    public void evaluateAllFormulaCells(Workbook wb) {
+        WorkbookEvaluator bookEvaluator = _evaluator._getWorkbookEvaluator();
+        EvaluationWorkbook masterBook = bookEvaluator.getWorkbook();
+
+        List<Cell> cells = new ArrayList<>();
+        List<EvaluationCell> evalCells = new ArrayList<>();
+        List<Integer> sheetIndexes = new ArrayList<>();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            EvaluationSheet evalSheet = masterBook.getSheet(i);
+            Sheet sheet = wb.getSheetAt(i);
+            for (Row r : sheet) {
+                for (Cell c : r) {
+                    if (c.getCellType() == CellType.FORMULA) {
+                        cells.add(c);
+                        evalCells.add(evalSheet.getCell(c.getRowIndex(), c.getColumnIndex()));
+                        sheetIndexes.add(i);
+                    }
+                }
+            }
+        }
+
+        _book = new RecalculationWorkbook(masterBook, wb.getNumberOfSheets(), bookEvaluator.getUDFFinder());
+        FormulaDependencyGraph graph = new FormulaDependencyGraph(_book,
+            sheetIndexes.stream().mapToInt(Integer::intValue).toArray(), evalCells.toArray(new EvaluationCell[0]));
+        _book.setGraph(graph);
+        _order = graph.getLevelOrder();
+
+        for (int level = 0; level < graph.getLevelCount(); level++) {
+            int start = graph.getLevelStart(level);
+            int end = graph.getLevelStart(level + 1);
+            if (end - start < MIN_PARALLEL_LEVEL_SIZE || _pool.getParallelism() < 2) {
+                evaluate(start, end);
+            } else {
+                _taskSize = Math.max(MIN_TASK_SIZE, (end - start) / (_pool.getParallelism() * 4));
+                _pool.invoke(new LevelTask(start, end));
+            }
+        }
+        _idleEvaluators.clear();
+
+        // the evaluator of the caller is needed for the references to other workbooks
+        boolean useCallerEvaluator = graph.hasExternalReferences()
+            || bookEvaluator.getEnvironment() != CollaboratingWorkbooksEnvironment.EMPTY;
+        WorkbookEvaluator serialEvaluator = null;
+        if (!useCallerEvaluator) {
+            serialEvaluator = createEvaluator();
+            serialEvaluator.setIgnoreMissingWorkbooks(bookEvaluator.isIgnoreMissingWorkbooks());
+        }
+        for (int i = graph.getLevelStart(graph.getLevelCount()); i < _order.length; i++) {
+            int node = _order[i];
+            if (useCallerEvaluator) {
+                _evaluator.evaluateFormulaCell(cells.get(node));
+            } else {
+                _book.setResult(node, serialEvaluator.evaluate(_book.getFormulaCell(node)));
+            }
+        }
+
+        for (int node = 0; node < cells.size(); node++) {
+            ValueEval result = _book.getResult(node);
+            if (result != null) {
+                // cell remains a formula cell, but the cached value is changed
+                _evaluator.setCellValue(cells.get(node), toCellValue(result));
+            }
+        }
+    }
+
+    private void evaluate(int start, int end) {
+        WorkbookEvaluator evaluator = _idleEvaluators.poll();
+        if (evaluator == null) {
+            evaluator = createEvaluator();
+        }
+        for (int i = start; i < end; i++) {
+            int node = _order[i];
+            _book.setResult(node, evaluator.evaluate(_book.getFormulaCell(node)));
+        }
+        _idleEvaluators.add(evaluator);
+    }
+
+    private WorkbookEvaluator createEvaluator() {
+        // the workbook provides the functions of the caller's evaluator, passing them here would add them again
+        return new WorkbookEvaluator(_book, _evaluator._getWorkbookEvaluator().getStabilityClassifier(), null);
+    }
+
+    private static CellValue toCellValue(ValueEval eval) {
+        if (eval instanceof NumberEval) {
+            return new CellValue(((NumberEval) eval).getNumberValue());
+        }
+        if (eval instanceof BoolEval) {
+            return CellValue.valueOf(((BoolEval) eval).getBooleanValue());
+        }
+        if (eval instanceof StringEval) {
+            return new CellValue(((StringEval) eval).getStringValue());
+        }
+        if (eval instanceof ErrorEval) {
+            return CellValue.getError(((ErrorEval) eval).getErrorCode());
+        }
+        throw new IllegalStateException("Unexpected eval class (" + eval.getClass().getName() + ")");
+    }
+
+    private final class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int _start;
+        private final int _end;
+
+        private LevelTask(int start, int end) {
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (_end - _start <= _taskSize) {
+                evaluate(_start, _end);
+            } else {
+                int middle = (_start + _end) >>> 1;
+                invokeAll(new LevelTask(_start, middle), new LevelTask(middle, _end));
+            }
+        }
+    }
+}
@@ -17,83 +17,128 @@
 
 package org.apache.poi.ss.formula;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import java.util.Arrays;
+
+/**
+ * The cache entries of the plain value cells, by their position.<br>
+ *
+ * The book, sheet, row and column of a cell are packed into one {@code long}, which is looked up in an
+ * open addressing table with linear probing. So neither a lookup nor an entry allocates a key object.
+ */
 final class PlainCellCache {
+    private static final int INITIAL_CAPACITY = 64;
 
-    public static final class Loc {
-
-        private final long _bookSheetColumn;
+    private static final int COLUMN_BITS = 14;
+    private static final int ROW_BITS = 20;
+    private static final int SHEET_BITS = 16;
+    private static final int BOOK_BITS = 14;
 
-        private final int _rowIndex;
-
-        public Loc(int bookIndex, int sheetIndex, int rowIndex, int columnIndex) {
-            _bookSheetColumn = toBookSheetColumn(bookIndex, sheetIndex, columnIndex);
-            _rowIndex = rowIndex;
-        }
+    private long[] _keys;
+    /** {@code null} marks the free slots */
+    private PlainValueCellCacheEntry[] _entries;
+    private int _size;
+    private int _mask;
+    private int _shift;
 
-        public static long toBookSheetColumn(int bookIndex, int sheetIndex, int columnIndex) {
-            return ((bookIndex   & 0xFFFFL) << 48)  +
-                   ((sheetIndex  & 0xFFFFL) << 32) +
-                   ((columnIndex & 0xFFFFL) << 0);
-        }
-
-        public Loc(long bookSheetColumn, int rowIndex) {
-            _bookSheetColumn = bookSheetColumn;
-            _rowIndex = rowIndex;
-        }
+    public PlainCellCache() {
+        allocate(INITIAL_CAPACITY);
+    }
 
-        @Override
-        public int hashCode() {
-            return (int)(_bookSheetColumn ^ (_bookSheetColumn >>> 32)) + 17 * _rowIndex;
+    /**
+     * @return the position of a cell as a single key
+     * @throws IllegalArgumentException if a part of the position exceeds the limits of the spreadsheet versions
+     */
+    public static long toKey(int bookIndex, int sheetIndex, int rowIndex, int columnIndex) {
+        if ((bookIndex >>> BOOK_BITS) != 0 || (sheetIndex >>> SHEET_BITS) != 0
+            || (rowIndex >>> ROW_BITS) != 0 || (columnIndex >>> COLUMN_BITS) != 0) {
+            throw new IllegalArgumentException("Invalid cell position: book " + bookIndex + ", sheet " + sheetIndex
+                + ", row " + rowIndex + ", column " + columnIndex);
         }
+        return ((long) bookIndex << (SHEET_BITS + ROW_BITS + COLUMN_BITS))
+            | ((long) sheetIndex << (ROW_BITS + COLUMN_BITS))
+            | ((long) rowIndex << COLUMN_BITS)
+            | columnIndex;
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof Loc)) {
-                return false;
+    public void put(long key, PlainValueCellCacheEntry cce) {
+        int slot = findSlot(key);
+        if (_entries[slot] == null) {
+            _keys[slot] = key;
+            _entries[slot] = cce;
+            if (++_size * 2 > _entries.length) {
+                rehash(_entries.length * 2);
             }
-            Loc other = (Loc) obj;
-            return _bookSheetColumn == other._bookSheetColumn && _rowIndex == other._rowIndex;
+        } else {
+            _entries[slot] = cce;
         }
+    }
 
-        public int getRowIndex() {
-            return _rowIndex;
+    public void clear() {
+        if (_size > 0) {
+            Arrays.fill(_entries, null);
+            _size = 0;
         }
+    }
 
-        public int getColumnIndex() {
-            return (int)(_bookSheetColumn & 0x000FFFF);
-        }
+    /**
+     * @return {@code null} if not found
+     */
+    public PlainValueCellCacheEntry get(long key) {
+        return _entries[findSlot(key)];
+    }
 
-        public int getSheetIndex() {
-            return (int)((_bookSheetColumn >> 32) & 0xFFFF);
+    public void remove(long key) {
+        int slot = findSlot(key);
+        if (_entries[slot] == null) {
+            return;
         }
-
-        public int getBookIndex() {
-            return (int)((_bookSheetColumn >> 48) & 0xFFFF);
+        _size--;
+        // shifts the following entries of the probe sequence back, so no entry is behind a free slot
+        int free = slot;
+        for (int next = (free + 1) & _mask; _entries[next] != null; next = (next + 1) & _mask) {
+            int home = hash(_keys[next]);
+            if (((next - home) & _mask) >= ((next - free) & _mask)) {
+                _keys[free] = _keys[next];
+                _entries[free] = _entries[next];
+                free = next;
+            }
         }
+        _entries[free] = null;
     }
 
-    private Map<Loc, PlainValueCellCacheEntry> _plainValueEntriesByLoc;
-
-    public PlainCellCache() {
-        _plainValueEntriesByLoc = new HashMap<>();
-    }
-
-    public void put(Loc key, PlainValueCellCacheEntry cce) {
-        _plainValueEntriesByLoc.put(key, cce);
+    /**
+     * @return the slot of the key or the free slot, where it belongs
+     */
+    private int findSlot(long key) {
+        int slot = hash(key);
+        while (_entries[slot] != null && _keys[slot] != key) {
+            slot = (slot + 1) & _mask;
+        }
+        return slot;
     }
 
-    public void clear() {
-        _plainValueEntriesByLoc.clear();
+    private int hash(long key) {
+        // Fibonacci hashing spreads the consecutive rows and columns over the table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> _shift);
     }
 
-    public PlainValueCellCacheEntry get(Loc key) {
-        return _plainValueEntriesByLoc.get(key);
+    private void allocate(int capacity) {
+        _keys = new long[capacity];
+        _entries = new PlainValueCellCacheEntry[capacity];
+        _mask = capacity - 1;
+        _shift = Long.numberOfLeadingZeros(_mask);
     }
 
-    public void remove(Loc key) {
-        _plainValueEntriesByLoc.remove(key);
+    private void rehash(int capacity) {
+        long[] oldKeys = _keys;
+        PlainValueCellCacheEntry[] oldEntries = _entries;
+        allocate(capacity);
+        for (int i = 0; i < oldEntries.length; i++) {
+            if (oldEntries[i] != null) {
+                int slot = findSlot(oldKeys[i]);
+                _keys[slot] = oldKeys[i];
+                _entries[slot] = oldEntries[i];
+            }
+        }
     }
 }
@@ -0,0 +1,375 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.Internal;
+
+/**
+ * The workbook seen by the evaluators of a {@link ParallelRecalculator}. Most operations are delegated to the
+ * master workbook, but the formula cells, which are already recalculated, appear as value cells with their result.
+ * So an evaluator reads the results of the other evaluators instead of evaluating the precedents again.<br>
+ *
+ * The formula tokens and the name definitions are cached, so the evaluators don't parse formulas concurrently.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+final class RecalculationWorkbook implements EvaluationWorkbook {
+
+    private final EvaluationWorkbook _masterBook;
+    private final UDFFinder _udfFinder;
+    private final RecalculationSheet[] _sheets;
+    private final Map<Object, EvaluationName> _names = new ConcurrentHashMap<>();
+    private FormulaDependencyGraph _graph;
+    private ValueEval[] _results;
+
+    /**
+     * @param udfFinder the functions of the master evaluator, which include its user defined functions
+     */
+    public RecalculationWorkbook(EvaluationWorkbook master, int numberOfSheets, UDFFinder udfFinder) {
+        _masterBook = master;
+        _udfFinder = udfFinder;
+        _sheets = new RecalculationSheet[numberOfSheets];
+        for (int i = 0; i < numberOfSheets; i++) {
+            EvaluationSheet sheet = master.getSheet(i);
+            // fills the lazy cell caches of the sheets before the evaluators share them
+            sheet.getCell(0, 0);
+            _sheets[i] = new RecalculationSheet(this, sheet, i);
+        }
+    }
+
+    /**
+     * @param graph the formula cells, which are recalculated with this workbook
+     */
+    public void setGraph(FormulaDependencyGraph graph) {
+        _graph = graph;
+        _results = new ValueEval[graph.size()];
+    }
+
+    /**
+     * @return the formula cell, which is evaluated with this workbook
+     */
+    public EvaluationCell getFormulaCell(int node) {
+        return new RecalculationCell(_sheets[_graph.getSheetIndex(node)], _graph.getCell(node), node);
+    }
+
+    /**
+     * @return the result of the formula cell or {@code null}, if it's not evaluated yet
+     */
+    public ValueEval getResult(int node) {
+        return _results[node];
+    }
+
+    /**
+     * @param result the result of the formula cell, never {@code null} or a blank
+     */
+    public void setResult(int node, ValueEval result) {
+        _results[node] = result;
+    }
+
+    @Override
+    public String getSheetName(int sheetIndex) {
+        return _masterBook.getSheetName(sheetIndex);
+    }
+
+    @Override
+    public int getSheetIndex(EvaluationSheet sheet) {
+        if (sheet instanceof RecalculationSheet) {
+            return ((RecalculationSheet) sheet)._index;
+        }
+        return _masterBook.getSheetIndex(sheet);
+    }
+
+    @Override
+    public int getSheetIndex(String sheetName) {
+        return _masterBook.getSheetIndex(sheetName);
+    }
+
+    @Override
+    public EvaluationSheet getSheet(int sheetIndex) {
+        if (sheetIndex < 0 || sheetIndex >= _sheets.length) {
+            // let the master report the invalid index
+            return _masterBook.getSheet(sheetIndex);
+        }
+        return _sheets[sheetIndex];
+    }
+
+    @Override
+    public ExternalSheet getExternalSheet(int externSheetIndex) {
+        return _masterBook.getExternalSheet(externSheetIndex);
+    }
+
+    @Override
+    public ExternalSheet getExternalSheet(String firstSheetName, String lastSheetName, int externalWorkbookNumber) {
+        return _masterBook.getExternalSheet(firstSheetName, lastSheetName, externalWorkbookNumber);
+    }
+
+    @Override
+    public int convertFromExternSheetIndex(int externSheetIndex) {
+        return _masterBook.convertFromExternSheetIndex(externSheetIndex);
+    }
+
+    @Override
+    public ExternalName getExternalName(int externSheetIndex, int externNameIndex) {
+        return _masterBook.getExternalName(externSheetIndex, externNameIndex);
+    }
+
+    @Override
+    public ExternalName getExternalName(String nameName, String sheetName, int externalWorkbookNumber) {
+        return _masterBook.getExternalName(nameName, sheetName, externalWorkbookNumber);
+    }
+
+    @Override
+    public EvaluationName getName(NamePtg namePtg) {
+        EvaluationName name = _names.get(namePtg.getIndex());
+        if (name == null) {
+            name = cacheName(namePtg.getIndex(), _masterBook.getName(namePtg));
+        }
+        return name;
+    }
+
+    @Override
+    public EvaluationName getName(String name, int sheetIndex) {
+        String key = sheetIndex + "!" + name;
+        EvaluationName evalName = _names.get(key);
+        if (evalName == null) {
+            evalName = cacheName(key, _masterBook.getName(name, sheetIndex));
+        }
+        return evalName;
+    }
+
+    private EvaluationName cacheName(Object key, EvaluationName name) {
+        if (name == null) {
+            return null;
+        }
+        EvaluationName cached = new CachedName(name);
+        EvaluationName previous = _names.putIfAbsent(key, cached);
+        return previous == null ? cached : previous;
+    }
+
+    @Override
+    public String resolveNameXText(NameXPtg ptg) {
+        return _masterBook.resolveNameXText(ptg);
+    }
+
+    @Override
+    public Ptg[] getFormulaTokens(EvaluationCell cell) {
+        if (cell instanceof RecalculationCell) {
+            return _graph.getFormulaTokens(((RecalculationCell) cell)._node);
+        }
+        return _masterBook.getFormulaTokens(cell);
+    }
+
+    @Override
+    public UDFFinder getUDFFinder() {
+        return _udfFinder;
+    }
+
+    @Override
+    public SpreadsheetVersion getSpreadsheetVersion() {
+        return _masterBook.getSpreadsheetVersion();
+    }
+
+    @Override
+    public void clearAllCachedResultValues() {
+        _masterBook.clearAllCachedResultValues();
+    }
+
+    private static final class RecalculationSheet implements EvaluationSheet {
+        private final RecalculationWorkbook _book;
+        private final EvaluationSheet _masterSheet;
+        private final int _index;
+
+        private RecalculationSheet(RecalculationWorkbook book, EvaluationSheet masterSheet, int index) {
+            _book = book;
+            _masterSheet = masterSheet;
+            _index = index;
+        }
+
+        @Override
+        public EvaluationCell getCell(int rowIndex, int columnIndex) {
+            // all formula cells are part of the graph, so the other cells are returned unchanged
+            int node = _book._graph.getNode(_index, rowIndex, columnIndex);
+            if (node < 0) {
+                return _masterSheet.getCell(rowIndex, columnIndex);
+            }
+            return new RecalculationCell(this, _book._graph.getCell(node), node);
+        }
+
+        @Override
+        public void clearAllCachedResultValues() {
+            _masterSheet.clearAllCachedResultValues();
+        }
+
+        @Override
+        public int getLastRowNum() {
+            return _masterSheet.getLastRowNum();
+        }
+
+        @Override
+        public boolean isRowHidden(int rowIndex) {
+            return _masterSheet.isRowHidden(rowIndex);
+        }
+    }
+
+    /**
+     * A formula cell, which appears as value cell after it is recalculated
+     */
+    private static final class RecalculationCell implements EvaluationCell {
+        private final RecalculationSheet _sheet;
+        private final EvaluationCell _masterCell;
+        private final int _node;
+        private final ValueEval _result;
+
+        private RecalculationCell(RecalculationSheet sheet, EvaluationCell masterCell, int node) {
+            _sheet = sheet;
+            _masterCell = masterCell;
+            _node = node;
+            _result = sheet._book.getResult(node);
+        }
+
+        @Override
+        public Object getIdentityKey() {
+            return _masterCell.getIdentityKey();
+        }
+
+        @Override
+        public EvaluationSheet getSheet() {
+            return _sheet;
+        }
+
+        @Override
+        public int getRowIndex() {
+            return _masterCell.getRowIndex();
+        }
+
+        @Override
+        public int getColumnIndex() {
+            return _masterCell.getColumnIndex();
+        }
+
+        @Override
+        public CellType getCellType() {
+            if (_result == null) {
+                return CellType.FORMULA;
+            } else if (_result instanceof NumberEval) {
+                return CellType.NUMERIC;
+            } else if (_result instanceof StringEval) {
+                return CellType.STRING;
+            } else if (_result instanceof BoolEval) {
+                return CellType.BOOLEAN;
+            } else if (_result instanceof ErrorEval) {
+                return CellType.ERROR;
+            }
+            throw new IllegalStateException("Unexpected result class (" + _result.getClass().getName() + ")");
+        }
+
+        @Override
+        public double getNumericCellValue() {
+            return _result == null ? _masterCell.getNumericCellValue() : ((NumberEval) _result).getNumberValue();
+        }
+
+        @Override
+        public String getStringCellValue() {
+            return _result == null ? _masterCell.getStringCellValue() : ((StringEval) _result).getStringValue();
+        }
+
+        @Override
+        public boolean getBooleanCellValue() {
+            return _result == null ? _masterCell.getBooleanCellValue() : ((BoolEval) _result).getBooleanValue();
+        }
+
+        @Override
+        public int getErrorCellValue() {
+            return _result == null ? _masterCell.getErrorCellValue() : ((ErrorEval) _result).getErrorCode();
+        }
+
+        @Override
+        public CellRangeAddress getArrayFormulaRange() {
+            return _masterCell.getArrayFormulaRange();
+        }
+
+        @Override
+        public boolean isPartOfArrayFormulaGroup() {
+            return _masterCell.isPartOfArrayFormulaGroup();
+        }
+
+        @Override
+        public CellType getCachedFormulaResultType() {
+            return _masterCell.getCachedFormulaResultType();
+        }
+    }
+
+    /**
+     * Parses the definition of a name only once
+     */
+    static final class CachedName implements EvaluationName {
+        private final EvaluationName _name;
+        private final Ptg[] _definition;
+
+        CachedName(EvaluationName name) {
+            _name = name;
+            _definition = name.hasFormula() ? name.getNameDefinition() : null;
+        }
+
+        @Override
+        public String getNameText() {
+            return _name.getNameText();
+        }
+
+        @Override
+        public boolean isFunctionName() {
+            return _name.isFunctionName();
+        }
+
+        @Override
+        public boolean hasFormula() {
+            return _definition != null;
+        }
+
+        @Override
+        public Ptg[] getNameDefinition() {
+            return _definition == null ? _name.getNameDefinition() : _definition;
+        }
+
+        @Override
+        public boolean isRange() {
+            return _name.isRange();
+        }
+
+        @Override
+        public NamePtg createPtg() {
+            return _name.createPtg();
+        }
+    }
+}
@@ -17,7 +17,11 @@
 
 package org.apache.poi.ss.formula;
 
+import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.AreaValues;
+import org.apache.poi.ss.formula.functions.CriteriaIndex;
+import org.apache.poi.ss.formula.functions.LookupIndex;
 import org.apache.poi.ss.formula.ptg.FuncVarPtg;
 import org.apache.poi.ss.formula.ptg.Ptg;
 import org.apache.poi.ss.usermodel.CellType;
@@ -48,6 +52,30 @@ final class SheetRefEvaluator {
         return _bookEvaluator.evaluateReference(getSheet(), _sheetIndex, rowIndex, columnIndex, _tracker);
     }
 
+    /**
+     * @param vector a single row or column of this sheet
+     * @return the shared lookup index of the vector or {@code null}, if it isn't indexed
+     */
+    public LookupIndex getLookupIndex(AreaEval vector) {
+        return _bookEvaluator.getLookupIndex(_sheetIndex, vector, _tracker);
+    }
+
+    /**
+     * @param area an area of this sheet
+     * @return the shared criteria index of the area or {@code null}, if it isn't indexed
+     */
+    public CriteriaIndex getCriteriaIndex(AreaEval area) {
+        return _bookEvaluator.getCriteriaIndex(_sheetIndex, area, _tracker);
+    }
+
+    /**
+     * @param area an area of this sheet
+     * @return the shared values of the area or {@code null}, if they aren't cached
+     */
+    public AreaValues getAreaValues(AreaEval area) {
+        return _bookEvaluator.getAreaValues(_sheetIndex, area, _tracker);
+    }
+
     private EvaluationSheet getSheet() {
         if (_sheet == null) {
             _sheet = _bookEvaluator.getSheet(_sheetIndex);
@@ -0,0 +1,482 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NotImplementedException;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.NameXPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.Internal;
+
+/**
+ * An immutable copy of the cells of a workbook, which can be evaluated by several threads at once.<br>
+ *
+ * The plain values and the formula tokens of the cells are copied, the formula cells are ordered by a
+ * {@link FormulaDependencyGraph} and their results are evaluated once. An evaluator of a derived workbook
+ * with some changed cells can reuse the results of all formula cells, which don't depend on the changed cells.
+ * The results of the formulas with references only known at evaluation time ({@code INDIRECT}, {@code OFFSET},
+ * other workbooks) and of the cells depending on them are not kept, as they may depend on any cell.<br>
+ *
+ * The name definitions are parsed on first use. The remaining operations, like the lookup of external sheets,
+ * are delegated to the master workbook, which must not be changed while the snapshot is used.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+public final class SnapshotWorkbook implements EvaluationWorkbook {
+
+    private final EvaluationWorkbook _masterBook;
+    private final String[] _sheetNames;
+    private final SnapshotSheet[] _sheets;
+    private final Map<Object, EvaluationName> _names = new ConcurrentHashMap<>();
+    private final SnapshotCell[] _formulaCells;
+    private final Ptg[][] _tokens;
+    private final FormulaDependencyGraph _graph;
+    private final FormulaDependentIndex _index;
+    /** the formula cells, whose results are not kept */
+    private final boolean[] _dirtyNodes;
+    private final ValueEval[] _results;
+
+    /**
+     * Copies the cells and evaluates the formula cells
+     *
+     * @param udfFinder pass {@code null} for default (AnalysisToolPak only)
+     */
+    public SnapshotWorkbook(Workbook wb, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
+        _masterBook = wb.createEvaluationWorkbook();
+        int numberOfSheets = wb.getNumberOfSheets();
+        _sheetNames = new String[numberOfSheets];
+        _sheets = new SnapshotSheet[numberOfSheets];
+        List<SnapshotCell> formulaCells = new ArrayList<>();
+        IntList sheetIndexes = new IntList();
+        List<Ptg[]> tokens = new ArrayList<>();
+        for (int i = 0; i < numberOfSheets; i++) {
+            _sheetNames[i] = _masterBook.getSheetName(i);
+            _sheets[i] = new SnapshotSheet(i, wb.getSheetAt(i), _masterBook.getSheet(i), formulaCells, sheetIndexes, tokens);
+        }
+        _formulaCells = formulaCells.toArray(new SnapshotCell[0]);
+        _tokens = tokens.toArray(new Ptg[0][]);
+
+        _graph = new FormulaDependencyGraph(this, sheetIndexes.toArray(), _formulaCells);
+        _index = new FormulaDependentIndex(_graph);
+        _dirtyNodes = new boolean[_formulaCells.length];
+        IntList queue = new IntList();
+        for (int node = 0; node < _dirtyNodes.length; node++) {
+            if (_graph.isDynamic(node)) {
+                _dirtyNodes[node] = true;
+                queue.add(node);
+            }
+        }
+        markDependents(_dirtyNodes, queue, 0);
+
+        _results = new ValueEval[_formulaCells.length];
+        WorkbookEvaluator evaluator = new WorkbookEvaluator(this, stabilityClassifier, udfFinder);
+        // the lower levels first, so the evaluation of a cell doesn't recurse through its whole cone
+        for (int node : _graph.getLevelOrder()) {
+            if (_dirtyNodes[node]) {
+                continue;
+            }
+            try {
+                _results[node] = evaluator.evaluate(_formulaCells[node]);
+            } catch (NotImplementedException e) {
+                // fails only, if the cell is evaluated by a derived workbook
+                queue.clear();
+                queue.add(node);
+                _dirtyNodes[node] = true;
+                markDependents(_dirtyNodes, queue, 0);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the formula cell or -1, if it's no formula cell of this snapshot
+     */
+    public int getNode(EvaluationCell cell) {
+        if (cell instanceof SnapshotCell && ((SnapshotCell) cell)._sheet._book == this) {
+            return ((SnapshotCell) cell)._node;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the formula cell with the index
+     */
+    public EvaluationCell getFormulaCell(int node) {
+        return _formulaCells[node];
+    }
+
+    /**
+     * @return the result of the formula cell or {@code null}, if it's not kept
+     */
+    public ValueEval getResult(int node) {
+        return _dirtyNodes[node] ? null : _results[node];
+    }
+
+    /**
+     * @return the formula cells without a kept result, which must not be modified
+     */
+    public boolean[] getDirtyNodes() {
+        return _dirtyNodes;
+    }
+
+    /**
+     * Marks the formula cells, which depend on a cell, directly or through other formula cells
+     *
+     * @param dirty the marked formula cells
+     * @param marked receives the newly marked formula cells
+     */
+    public void markDependents(int sheetIndex, int rowIndex, int columnIndex, boolean[] dirty, IntList marked) {
+        int start = marked.size();
+        _index.markDependents(sheetIndex, rowIndex, columnIndex, dirty, marked);
+        markDependents(dirty, marked, start);
+    }
+
+    private void markDependents(boolean[] dirty, IntList queue, int start) {
+        for (int i = start; i < queue.size(); i++) {
+            int node = queue.get(i);
+            _index.markDependents(_graph.getSheetIndex(node), _graph.getRowIndex(node), _graph.getColumnIndex(node),
+                dirty, queue);
+        }
+    }
+
+    @Override
+    public String getSheetName(int sheetIndex) {
+        if (sheetIndex < 0 || sheetIndex >= _sheetNames.length) {
+            // let the master report the invalid index
+            return _masterBook.getSheetName(sheetIndex);
+        }
+        return _sheetNames[sheetIndex];
+    }
+
+    @Override
+    public int getSheetIndex(EvaluationSheet sheet) {
+        if (sheet instanceof SnapshotSheet && ((SnapshotSheet) sheet)._book == this) {
+            return ((SnapshotSheet) sheet)._index;
+        }
+        return -1;
+    }
+
+    @Override
+    public int getSheetIndex(String sheetName) {
+        for (int i = 0; i < _sheetNames.length; i++) {
+            if (_sheetNames[i].equalsIgnoreCase(sheetName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public EvaluationSheet getSheet(int sheetIndex) {
+        if (sheetIndex < 0 || sheetIndex >= _sheets.length) {
+            // let the master report the invalid index
+            return _masterBook.getSheet(sheetIndex);
+        }
+        return _sheets[sheetIndex];
+    }
+
+    @Override
+    public ExternalSheet getExternalSheet(int externSheetIndex) {
+        return _masterBook.getExternalSheet(externSheetIndex);
+    }
+
+    @Override
+    public ExternalSheet getExternalSheet(String firstSheetName, String lastSheetName, int externalWorkbookNumber) {
+        return _masterBook.getExternalSheet(firstSheetName, lastSheetName, externalWorkbookNumber);
+    }
+
+    @Override
+    public int convertFromExternSheetIndex(int externSheetIndex) {
+        return _masterBook.convertFromExternSheetIndex(externSheetIndex);
+    }
+
+    @Override
+    public ExternalName getExternalName(int externSheetIndex, int externNameIndex) {
+        return _masterBook.getExternalName(externSheetIndex, externNameIndex);
+    }
+
+    @Override
+    public ExternalName getExternalName(String nameName, String sheetName, int externalWorkbookNumber) {
+        return _masterBook.getExternalName(nameName, sheetName, externalWorkbookNumber);
+    }
+
+    @Override
+    public EvaluationName getName(NamePtg namePtg) {
+        EvaluationName name = _names.get(namePtg.getIndex());
+        if (name == null) {
+            synchronized (_masterBook) {
+                name = cacheName(namePtg.getIndex(), _masterBook.getName(namePtg));
+            }
+        }
+        return name;
+    }
+
+    @Override
+    public EvaluationName getName(String name, int sheetIndex) {
+        String key = sheetIndex + "!" + name;
+        EvaluationName evalName = _names.get(key);
+        if (evalName == null) {
+            synchronized (_masterBook) {
+                evalName = cacheName(key, _masterBook.getName(name, sheetIndex));
+            }
+        }
+        return evalName;
+    }
+
+    private EvaluationName cacheName(Object key, EvaluationName name) {
+        if (name == null) {
+            return null;
+        }
+        EvaluationName cached = new RecalculationWorkbook.CachedName(name);
+        EvaluationName previous = _names.putIfAbsent(key, cached);
+        return previous == null ? cached : previous;
+    }
+
+    @Override
+    public String resolveNameXText(NameXPtg ptg) {
+        return _masterBook.resolveNameXText(ptg);
+    }
+
+    @Override
+    public Ptg[] getFormulaTokens(EvaluationCell cell) {
+        int node = getNode(cell);
+        if (node < 0) {
+            throw new IllegalArgumentException("The cell is no formula cell of this snapshot");
+        }
+        return _tokens[node];
+    }
+
+    @Override
+    public UDFFinder getUDFFinder() {
+        return _masterBook.getUDFFinder();
+    }
+
+    @Override
+    public SpreadsheetVersion getSpreadsheetVersion() {
+        return _masterBook.getSpreadsheetVersion();
+    }
+
+    @Override
+    public void clearAllCachedResultValues() {
+        // nothing is cached, which could change
+    }
+
+    private static ValueEval toValue(EvaluationCell cell, CellType cellType) {
+        switch (cellType) {
+            case NUMERIC:
+                return new NumberEval(cell.getNumericCellValue());
+            case STRING:
+                return new StringEval(cell.getStringCellValue());
+            case BOOLEAN:
+                return BoolEval.valueOf(cell.getBooleanCellValue());
+            case ERROR:
+                return ErrorEval.valueOf(cell.getErrorCellValue());
+            case BLANK:
+                return BlankEval.instance;
+            default:
+                throw new IllegalStateException("Unexpected cell type (" + cellType + ")");
+        }
+    }
+
+    private final class SnapshotSheet implements EvaluationSheet {
+        private final SnapshotWorkbook _book = SnapshotWorkbook.this;
+        private final int _index;
+        private final int _lastRowNum;
+        private final BitSet _hiddenRows = new BitSet();
+        /** the cells of each row, starting with the first column of the row */
+        private final SnapshotCell[][] _rows;
+        private final int[] _firstColumns;
+
+        private SnapshotSheet(int index, Sheet sheet, EvaluationSheet masterSheet,
+                List<SnapshotCell> formulaCells, IntList sheetIndexes, List<Ptg[]> tokens) {
+            _index = index;
+            _lastRowNum = masterSheet.getLastRowNum();
+            int rowCount = sheet.getPhysicalNumberOfRows() == 0 ? 0 : sheet.getLastRowNum() + 1;
+            _rows = new SnapshotCell[rowCount][];
+            _firstColumns = new int[rowCount];
+            for (Row r : sheet) {
+                int rowIndex = r.getRowNum();
+                if (masterSheet.isRowHidden(rowIndex)) {
+                    _hiddenRows.set(rowIndex);
+                }
+                int firstColumn = r.getFirstCellNum();
+                if (firstColumn < 0) {
+                    continue;
+                }
+                SnapshotCell[] cells = new SnapshotCell[r.getLastCellNum() - firstColumn];
+                for (Cell c : r) {
+                    EvaluationCell masterCell = masterSheet.getCell(rowIndex, c.getColumnIndex());
+                    if (masterCell == null) {
+                        continue;
+                    }
+                    int node = -1;
+                    if (masterCell.getCellType() == CellType.FORMULA) {
+                        node = formulaCells.size();
+                    }
+                    SnapshotCell cell = new SnapshotCell(this, masterCell, node);
+                    cells[c.getColumnIndex() - firstColumn] = cell;
+                    if (node >= 0) {
+                        formulaCells.add(cell);
+                        sheetIndexes.add(index);
+                        tokens.add(_masterBook.getFormulaTokens(masterCell));
+                    }
+                }
+                _rows[rowIndex] = cells;
+                _firstColumns[rowIndex] = firstColumn;
+            }
+        }
+
+        @Override
+        public EvaluationCell getCell(int rowIndex, int columnIndex) {
+            if (rowIndex < 0 || rowIndex >= _rows.length) {
+                return null;
+            }
+            SnapshotCell[] cells = _rows[rowIndex];
+            if (cells == null) {
+                return null;
+            }
+            int i = columnIndex - _firstColumns[rowIndex];
+            return i < 0 || i >= cells.length ? null : cells[i];
+        }
+
+        @Override
+        public void clearAllCachedResultValues() {
+            // nothing is cached, which could change
+        }
+
+        @Override
+        public int getLastRowNum() {
+            return _lastRowNum;
+        }
+
+        @Override
+        public boolean isRowHidden(int rowIndex) {
+            return _hiddenRows.get(rowIndex);
+        }
+    }
+
+    private static final class SnapshotCell implements EvaluationCell {
+        private final SnapshotSheet _sheet;
+        private final int _rowIndex;
+        private final int _columnIndex;
+        private final CellType _cellType;
+        /** the value of a plain cell or the cached result of a formula cell */
+        private final ValueEval _value;
+        private final CellType _cachedFormulaResultType;
+        private final CellRangeAddress _arrayFormulaRange;
+        private final int _node;
+
+        private SnapshotCell(SnapshotSheet sheet, EvaluationCell masterCell, int node) {
+            _sheet = sheet;
+            _rowIndex = masterCell.getRowIndex();
+            _columnIndex = masterCell.getColumnIndex();
+            _cellType = masterCell.getCellType();
+            _node = node;
+            if (_cellType == CellType.FORMULA) {
+                _cachedFormulaResultType = masterCell.getCachedFormulaResultType();
+                _value = toValue(masterCell, _cachedFormulaResultType);
+                _arrayFormulaRange = masterCell.isPartOfArrayFormulaGroup() ? masterCell.getArrayFormulaRange() : null;
+            } else {
+                _cachedFormulaResultType = null;
+                _value = toValue(masterCell, _cellType);
+                _arrayFormulaRange = null;
+            }
+        }
+
+        @Override
+        public Object getIdentityKey() {
+            return this;
+        }
+
+        @Override
+        public EvaluationSheet getSheet() {
+            return _sheet;
+        }
+
+        @Override
+        public int getRowIndex() {
+            return _rowIndex;
+        }
+
+        @Override
+        public int getColumnIndex() {
+            return _columnIndex;
+        }
+
+        @Override
+        public CellType getCellType() {
+            return _cellType;
+        }
+
+        @Override
+        public double getNumericCellValue() {
+            return _value instanceof NumberEval ? ((NumberEval) _value).getNumberValue() : 0;
+        }
+
+        @Override
+        public String getStringCellValue() {
+            return _value instanceof StringEval ? ((StringEval) _value).getStringValue() : "";
+        }
+
+        @Override
+        public boolean getBooleanCellValue() {
+            return _value instanceof BoolEval && ((BoolEval) _value).getBooleanValue();
+        }
+
+        @Override
+        public int getErrorCellValue() {
+            return _value instanceof ErrorEval ? ((ErrorEval) _value).getErrorCode() : 0;
+        }
+
+        @Override
+        public CellRangeAddress getArrayFormulaRange() {
+            return _arrayFormulaRange;
+        }
+
+        @Override
+        public boolean isPartOfArrayFormulaGroup() {
+            return _arrayFormulaRange != null;
+        }
+
+        @Override
+        public CellType getCachedFormulaResultType() {
+            return _cachedFormulaResultType;
+        }
+    }
+}
@@ -19,7 +19,9 @@ package org.apache.poi.ss.formula;
 
 import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.AreaValues;
 import org.apache.poi.ss.formula.functions.Subtotal;
+import org.apache.poi.util.Internal;
 
 /**
  * Common interface of {@link AreaEval} and {@link org.apache.poi.ss.formula.eval.AreaEvalBase},
@@ -74,4 +76,13 @@ public interface TwoDEval extends ValueEval {
      */
     boolean isRowHidden(int rowIndex);
 
+    /**
+     * @return the values of all cells as primitive arrays, for functions which read the whole area
+     * @since POI 5.2.6
+     */
+    @Internal
+    default AreaValues getAreaValues() {
+        return new AreaValues(this);
+    }
+
 }
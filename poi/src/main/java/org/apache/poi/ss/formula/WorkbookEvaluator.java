@@ -20,6 +20,7 @@ package org.apache.poi.ss.formula;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Stack;
@@ -40,6 +41,7 @@ import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.util.CellRangeAddressBase;
 import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.Beta;
 import org.apache.poi.util.Internal;
 
 import static org.apache.logging.log4j.util.Unbox.box;
@@ -69,9 +71,14 @@ public final class WorkbookEvaluator {
     private CollaboratingWorkbooksEnvironment _collaboratingWorkbookEnvironment;
     private final IStabilityClassifier _stabilityClassifier;
     private final AggregatingUDFFinder _udfFinder;
+    private IncrementalRecalculator _incrementalRecalculator;
 
     private boolean _ignoreMissingWorkbooks;
 
+    /** the compiled formulas by their shape or {@code null}, if formulas are interpreted */
+    private Map<FormulaShape, CompiledFormula> _compiledFormulas;
+    private static final int MAX_COMPILED_FORMULAS = 10000;
+
     /**
      * whether print detailed messages about the next formula evaluation
      */
@@ -154,6 +161,24 @@ public final class WorkbookEvaluator {
         return _collaboratingWorkbookEnvironment.getWorkbookEvaluator(workbookName);
     }
 
+    /* package */ IStabilityClassifier getStabilityClassifier() {
+        return _stabilityClassifier;
+    }
+
+    /**
+     * @return the functions of the workbook and the user defined functions of this evaluator
+     */
+    /* package */ UDFFinder getUDFFinder() {
+        return _udfFinder;
+    }
+
+    /**
+     * @param recalculator receives the changed cells or {@code null}
+     */
+    /* package */ void setIncrementalRecalculator(IncrementalRecalculator recalculator) {
+        _incrementalRecalculator = recalculator;
+    }
+
     /* package */ IEvaluationListener getEvaluationListener() {
         return _evaluationListener;
     }
@@ -167,6 +192,9 @@ public final class WorkbookEvaluator {
         _cache.clear();
         _sheetIndexesBySheet.clear();
         _workbook.clearAllCachedResultValues();
+        if (_incrementalRecalculator != null) {
+            _incrementalRecalculator.clear();
+        }
     }
 
     /**
@@ -176,6 +204,9 @@ public final class WorkbookEvaluator {
     public void notifyUpdateCell(EvaluationCell cell) {
         int sheetIndex = getSheetIndex(cell.getSheet());
         _cache.notifyUpdateCell(_workbookIx, sheetIndex, cell);
+        if (_incrementalRecalculator != null) {
+            _incrementalRecalculator.notifyUpdateCell(sheetIndex, cell);
+        }
     }
 
     /**
@@ -185,6 +216,9 @@ public final class WorkbookEvaluator {
     public void notifyDeleteCell(EvaluationCell cell) {
         int sheetIndex = getSheetIndex(cell.getSheet());
         _cache.notifyDeleteCell(_workbookIx, sheetIndex, cell);
+        if (_incrementalRecalculator != null) {
+            _incrementalRecalculator.notifyDeleteCell(sheetIndex, cell);
+        }
     }
 
     private int getSheetIndex(EvaluationSheet sheet) {
@@ -256,15 +290,21 @@ public final class WorkbookEvaluator {
             }
 
             try {
+                ValueEval knownResult = _workbook.getFormulaResult(srcCell);
+                if (knownResult != null) {
+                    tracker.updateCacheResult(knownResult);
+                    return knownResult;
+                }
 
-                Ptg[] ptgs = _workbook.getFormulaTokens(srcCell);
+                CompiledFormula compiledFormula = getCompiledFormula(srcCell, cce, rowIndex, columnIndex);
+                Ptg[] ptgs = compiledFormula == null ? _workbook.getFormulaTokens(srcCell) : null;
                 OperationEvaluationContext ec = new OperationEvaluationContext
                         (this, _workbook, sheetIndex, rowIndex, columnIndex, tracker);
                 if (evalListener == null) {
-                    result = evaluateFormula(ec, ptgs);
+                    result = ptgs == null ? evaluateFormula(ec, compiledFormula) : evaluateFormula(ec, ptgs);
                 } else {
                     evalListener.onStartEvaluate(srcCell, cce);
-                    result = evaluateFormula(ec, ptgs);
+                    result = ptgs == null ? evaluateFormula(ec, compiledFormula) : evaluateFormula(ec, ptgs);
                     evalListener.onEndEvaluate(cce, result);
                 }
 
@@ -368,6 +408,47 @@ public final class WorkbookEvaluator {
     }
 
 
+    /**
+     * @return the compiled formula of the cell or {@code null}, if formulas are interpreted
+     */
+    private CompiledFormula getCompiledFormula(EvaluationCell srcCell, FormulaCellCacheEntry cce,
+                                               int rowIndex, int columnIndex) {
+        if (_compiledFormulas == null || dbgEvaluationOutputForNextEval || dbgEvaluationOutputIndent > 0) {
+            return null;
+        }
+        CompiledFormula compiledFormula = cce.getCompiledFormula();
+        if (compiledFormula == null) {
+            Ptg[] ptgs = _workbook.getFormulaTokens(srcCell);
+            FormulaShape shape = FormulaShape.of(ptgs, rowIndex, columnIndex);
+            if (shape != null) {
+                compiledFormula = _compiledFormulas.get(shape);
+                if (compiledFormula == null) {
+                    compiledFormula = CompiledFormula.compile(ptgs, rowIndex, columnIndex);
+                    if (compiledFormula != null) {
+                        if (_compiledFormulas.size() >= MAX_COMPILED_FORMULAS) {
+                            _compiledFormulas.clear();
+                        }
+                        _compiledFormulas.put(shape, compiledFormula);
+                    }
+                }
+            }
+            if (compiledFormula == null) {
+                compiledFormula = CompiledFormula.interpreted(ptgs);
+            }
+            cce.setCompiledFormula(compiledFormula);
+        }
+        return compiledFormula;
+    }
+
+    private ValueEval evaluateFormula(OperationEvaluationContext ec, CompiledFormula compiledFormula) {
+        Ptg[] ptgs = compiledFormula.getInterpretedTokens();
+        if (ptgs != null) {
+            return evaluateFormula(ec, ptgs);
+        }
+        ValueEval value = compiledFormula.evaluate(this, ec);
+        return ec.isSingleValue() ? dereferenceResult(value, ec) : value;
+    }
+
     // visibility raised for testing
     @Internal
     /* package */ ValueEval evaluateFormula(OperationEvaluationContext ec, Ptg[] ptgs) {
@@ -582,7 +663,7 @@ public final class WorkbookEvaluator {
      * @return the number of tokens (starting from {@code startIndex+1}) that need to be skipped
      * to achieve the specified {@code distInBytes} skip distance.
      */
-    private static int countTokensToBeSkipped(Ptg[] ptgs, int startIndex, int distInBytes) {
+    /* package */ static int countTokensToBeSkipped(Ptg[] ptgs, int startIndex, int distInBytes) {
         int remBytes = distInBytes;
         int index = startIndex;
         while (remBytes != 0) {
@@ -668,7 +749,7 @@ public final class WorkbookEvaluator {
      * <p>
      * special Note: OperationPtg subtypes cannot be passed here!
      */
-    private ValueEval getEvalForPtg(Ptg ptg, OperationEvaluationContext ec) {
+    /* package */ ValueEval getEvalForPtg(Ptg ptg, OperationEvaluationContext ec) {
         //  consider converting all these (ptg instanceof XxxPtg) expressions to (ptg.getClass() == XxxPtg.class)
 
         if (ptg instanceof NamePtg) {
@@ -791,6 +872,27 @@ public final class WorkbookEvaluator {
         return evaluateAny(cell, sheetIndex, rowIndex, columnIndex, tracker);
     }
 
+    /**
+     * Used by the lazy area evals to share the lookup index of a row or column between the lookup functions.
+     */
+    /* package */ LookupIndex getLookupIndex(int sheetIndex, AreaEval vector, EvaluationTracker tracker) {
+        return _cache.getLookupIndex(_workbookIx, sheetIndex, vector, tracker);
+    }
+
+    /**
+     * Used by the lazy area evals to share the criteria index of an area between the ~IF functions.
+     */
+    /* package */ CriteriaIndex getCriteriaIndex(int sheetIndex, AreaEval area, EvaluationTracker tracker) {
+        return _cache.getCriteriaIndex(_workbookIx, sheetIndex, area, tracker);
+    }
+
+    /**
+     * Used by the lazy area evals to share the values of an area between the aggregate functions.
+     */
+    /* package */ AreaValues getAreaValues(int sheetIndex, AreaEval area, EvaluationTracker tracker) {
+        return _cache.getAreaValues(_workbookIx, sheetIndex, area, tracker);
+    }
+
     public FreeRefFunction findUserDefinedFunction(String functionName) {
         return _udfFinder.findFunction(functionName);
     }
@@ -946,6 +1048,35 @@ public final class WorkbookEvaluator {
         return _ignoreMissingWorkbooks;
     }
 
+    /**
+     * Whether to compile the formulas of the cells instead of interpreting their tokens on each evaluation.<p>
+     *
+     * A compiled formula is kept with the cached value of its cell, so later evaluations don't need to read
+     * the tokens of the formula again. Relative references are resolved for each cell, so cells with the same
+     * formula shape (e.g. filled down or shared formulas) share one compiled formula. Formulas with unusual
+     * tokens are still interpreted.<p>
+     *
+     * Changed formulas must be reported by {@link #notifyUpdateCell(EvaluationCell)}, otherwise the old
+     * formula is evaluated until the cached values are cleared.
+     *
+     * @param compile whether to compile the formulas
+     * @since POI 5.2.6
+     */
+    @Beta
+    public void setCompileFormulas(boolean compile) {
+        if (compile != isCompileFormulas()) {
+            _compiledFormulas = compile ? new HashMap<>() : null;
+        }
+    }
+
+    /**
+     * @since POI 5.2.6
+     */
+    @Beta
+    public boolean isCompileFormulas() {
+        return _compiledFormulas != null;
+    }
+
     /**
      * Return a collection of functions that POI can evaluate
      *
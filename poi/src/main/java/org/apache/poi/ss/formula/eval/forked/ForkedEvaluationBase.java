@@ -0,0 +1,205 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.eval.forked;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.poi.ss.formula.IStabilityClassifier;
+import org.apache.poi.ss.formula.SnapshotWorkbook;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.Beta;
+
+/**
+ * An immutable evaluation state of a workbook, which is shared by the {@link ForkedEvaluator}s of
+ * many threads.<p>
+ *
+ * The cell values and the parsed formulas are copied once, and all formula cells are evaluated once.
+ * Each evaluator created by {@link #createEvaluator()} keeps only its updated cells and the results
+ * of the formula cells depending on them. The other formula cells provide the results of the base,
+ * so a what-if scenario only evaluates the formulas affected by its inputs. Formulas with references
+ * only known at evaluation time ({@code INDIRECT}, {@code OFFSET}, other workbooks) and the cells
+ * depending on them are always evaluated by the evaluators.<p>
+ *
+ * The base can be used concurrently, but a single {@link ForkedEvaluator} must only be used by one
+ * thread at a time. The master workbook must not be changed while the base is used.<p>
+ *
+ * Many scenarios of the same input cells, like the trials of a Monte Carlo simulation, are evaluated
+ * in parallel by {@link #evaluateScenarios(CellReference[], double[][], CellReference[], ForkJoinPool)}.
+ *
+ * @since POI 5.2.6
+ */
+@Beta
+public final class ForkedEvaluationBase {
+    /** the minimum number of scenarios evaluated by one task */
+    private static final int MIN_TASK_SIZE = 16;
+
+    private final SnapshotWorkbook _snapshot;
+    private final IStabilityClassifier _stabilityClassifier;
+    private final UDFFinder _udfFinder;
+
+    private ForkedEvaluationBase(SnapshotWorkbook snapshot, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
+        _snapshot = snapshot;
+        _stabilityClassifier = stabilityClassifier;
+        _udfFinder = udfFinder;
+    }
+
+    /**
+     * Copies the cells of the workbook and evaluates all formula cells
+     *
+     * @param udfFinder pass {@code null} for default (AnalysisToolPak only)
+     */
+    public static ForkedEvaluationBase create(Workbook wb, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
+        return new ForkedEvaluationBase(new SnapshotWorkbook(wb, stabilityClassifier, udfFinder), stabilityClassifier, udfFinder);
+    }
+
+    /**
+     * @return a new evaluator without updated cells, for use by one thread at a time
+     */
+    public ForkedEvaluator createEvaluator() {
+        return new ForkedEvaluator(new ForkedEvaluationWorkbook(_snapshot), _stabilityClassifier, _udfFinder);
+    }
+
+    /**
+     * Evaluates the output cells for many values of the input cells.<p>
+     *
+     * The scenarios are split between the threads of the pool. Each thread reuses its evaluator for the
+     * following scenarios, so only the formula cells depending on the input cells are evaluated again.
+     * The other formula cells and intermediate results, like the lookup indexes of their ranges, are kept.
+     *
+     * @param inputCells the input cells with their sheet names
+     * @param inputs the values of the input cells for each scenario
+     * @param outputCells the output cells with their sheet names
+     * @param pool the pool, which evaluates the scenarios, e.g. {@link ForkJoinPool#commonPool()}
+     * @return the values of the output cells for each scenario. Booleans are returned as 1 or 0 and
+     *  blank cells as 0, texts and errors as {@link Double#NaN}.
+     * @throws IllegalArgumentException if a cell has no sheet name or the number of inputs of a scenario
+     *  differs from the number of input cells
+     */
+    public double[][] evaluateScenarios(CellReference[] inputCells, double[][] inputs,
+            CellReference[] outputCells, ForkJoinPool pool) {
+        checkSheetNames(inputCells);
+        checkSheetNames(outputCells);
+        for (double[] scenario : inputs) {
+            if (scenario.length != inputCells.length) {
+                throw new IllegalArgumentException("Expected " + inputCells.length
+                    + " inputs for each scenario, but had " + scenario.length);
+            }
+        }
+        double[][] results = new double[inputs.length][outputCells.length];
+        if (inputs.length > 0) {
+            int taskSize = Math.max(MIN_TASK_SIZE, inputs.length / (pool.getParallelism() * 4));
+            pool.invoke(new ScenarioTask(new ScenarioBatch(inputCells, inputs, outputCells, results, taskSize),
+                0, inputs.length));
+        }
+        return results;
+    }
+
+    private static void checkSheetNames(CellReference[] cells) {
+        for (CellReference cell : cells) {
+            if (cell.getSheetName() == null) {
+                throw new IllegalArgumentException("Cell " + cell.formatAsString() + " has no sheet name");
+            }
+        }
+    }
+
+    private static double toDouble(ValueEval eval) {
+        if (eval instanceof NumberEval) {
+            return ((NumberEval) eval).getNumberValue();
+        }
+        if (eval instanceof BoolEval) {
+            return ((BoolEval) eval).getBooleanValue() ? 1 : 0;
+        }
+        if (eval == null || eval == BlankEval.instance) {
+            return 0;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * The scenarios evaluated by one call and the evaluators of the threads
+     */
+    private final class ScenarioBatch {
+        private final CellReference[] _inputCells;
+        private final double[][] _inputs;
+        private final CellReference[] _outputCells;
+        private final double[][] _results;
+        private final int _taskSize;
+        private final ConcurrentLinkedQueue<ForkedEvaluator> _idleEvaluators = new ConcurrentLinkedQueue<>();
+
+        private ScenarioBatch(CellReference[] inputCells, double[][] inputs, CellReference[] outputCells,
+                double[][] results, int taskSize) {
+            _inputCells = inputCells;
+            _inputs = inputs;
+            _outputCells = outputCells;
+            _results = results;
+            _taskSize = taskSize;
+        }
+
+        private void evaluate(int start, int end) {
+            ForkedEvaluator evaluator = _idleEvaluators.poll();
+            if (evaluator == null) {
+                evaluator = createEvaluator();
+            }
+            for (int i = start; i < end; i++) {
+                double[] scenario = _inputs[i];
+                for (int j = 0; j < _inputCells.length; j++) {
+                    CellReference cell = _inputCells[j];
+                    evaluator.updateCell(cell.getSheetName(), cell.getRow(), cell.getCol(), new NumberEval(scenario[j]));
+                }
+                double[] result = _results[i];
+                for (int j = 0; j < _outputCells.length; j++) {
+                    CellReference cell = _outputCells[j];
+                    result[j] = toDouble(evaluator.evaluate(cell.getSheetName(), cell.getRow(), cell.getCol()));
+                }
+            }
+            _idleEvaluators.add(evaluator);
+        }
+    }
+
+    private static final class ScenarioTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ScenarioBatch _batch;
+        private final int _start;
+        private final int _end;
+
+        private ScenarioTask(ScenarioBatch batch, int start, int end) {
+            _batch = batch;
+            _start = start;
+            _end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (_end - _start <= _batch._taskSize) {
+                _batch.evaluate(_start, _end);
+            } else {
+                int middle = (_start + _end) >>> 1;
+                invokeAll(new ScenarioTask(_batch, _start, middle), new ScenarioTask(_batch, middle, _end));
+            }
+        }
+    }
+}
@@ -17,7 +17,11 @@
 
 package org.apache.poi.ss.formula.eval.forked;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.poi.ss.SpreadsheetVersion;
@@ -25,11 +29,14 @@ import org.apache.poi.ss.formula.EvaluationCell;
 import org.apache.poi.ss.formula.EvaluationName;
 import org.apache.poi.ss.formula.EvaluationSheet;
 import org.apache.poi.ss.formula.EvaluationWorkbook;
+import org.apache.poi.ss.formula.SnapshotWorkbook;
+import org.apache.poi.ss.formula.eval.ValueEval;
 import org.apache.poi.ss.formula.ptg.NamePtg;
 import org.apache.poi.ss.formula.ptg.NameXPtg;
 import org.apache.poi.ss.formula.ptg.Ptg;
 import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.IntList;
 import org.apache.poi.util.Internal;
 
 /**
@@ -37,6 +44,10 @@ import org.apache.poi.util.Internal;
  * shared master workbook, except those that potentially involve cell values that may have been
  * updated after a call to {@link #getOrCreateUpdatableCell(String, int, int)}.<br>
  *
+ * A workbook forked from a {@link SnapshotWorkbook} provides the results of the snapshot for the formula cells,
+ * which don't depend on the updated cells. The updated cells are only known to this workbook, so the formula cells
+ * depending on them are marked with a copy of the dirty cells of the snapshot.<br>
+ *
  * For POI internal use only
  */
 @Internal
@@ -44,10 +55,25 @@ final class ForkedEvaluationWorkbook implements EvaluationWorkbook {
 
     private final EvaluationWorkbook _masterBook;
     private final Map<String, ForkedEvaluationSheet> _sharedSheetsByName;
+    private final SnapshotWorkbook _snapshot;
+    /** the formula cells, which must be evaluated, shared with the snapshot until the first update */
+    private boolean[] _dirtyNodes;
+    /** the formula cells, which are evaluated with the result of the snapshot */
+    private final BitSet _usedResults;
 
     public ForkedEvaluationWorkbook(EvaluationWorkbook master) {
         _masterBook = master;
         _sharedSheetsByName = new HashMap<>();
+        _snapshot = null;
+        _usedResults = null;
+    }
+
+    public ForkedEvaluationWorkbook(SnapshotWorkbook snapshot) {
+        _masterBook = snapshot;
+        _sharedSheetsByName = new HashMap<>();
+        _snapshot = snapshot;
+        _dirtyNodes = snapshot.getDirtyNodes();
+        _usedResults = new BitSet();
     }
 
     public ForkedEvaluationCell getOrCreateUpdatableCell(String sheetName, int rowIndex,
@@ -56,6 +82,31 @@ final class ForkedEvaluationWorkbook implements EvaluationWorkbook {
         return sheet.getOrCreateUpdatableCell(rowIndex, columnIndex);
     }
 
+    /**
+     * Marks the formula cells depending on an updated cell, so they don't use the results of the snapshot anymore
+     *
+     * @return the marked cells, which were already evaluated with the results of the snapshot
+     */
+    public List<EvaluationCell> markDependents(String sheetName, int rowIndex, int columnIndex) {
+        if (_snapshot == null) {
+            return Collections.emptyList();
+        }
+        if (_dirtyNodes == _snapshot.getDirtyNodes()) {
+            _dirtyNodes = _dirtyNodes.clone();
+        }
+        IntList marked = new IntList();
+        _snapshot.markDependents(getSheetIndex(sheetName), rowIndex, columnIndex, _dirtyNodes, marked);
+        List<EvaluationCell> result = new ArrayList<>();
+        for (int i = 0; i < marked.size(); i++) {
+            int node = marked.get(i);
+            if (_usedResults.get(node)) {
+                _usedResults.clear(node);
+                result.add(_snapshot.getFormulaCell(node));
+            }
+        }
+        return result;
+    }
+
     public EvaluationCell getEvaluationCell(String sheetName, int rowIndex, int columnIndex) {
         ForkedEvaluationSheet sheet = getSharedSheet(sheetName);
         return sheet.getCell(rowIndex, columnIndex);
@@ -103,6 +154,19 @@ final class ForkedEvaluationWorkbook implements EvaluationWorkbook {
         return _masterBook.getFormulaTokens(cell);
     }
 
+    @Override
+    public ValueEval getFormulaResult(EvaluationCell cell) {
+        if (_snapshot == null) {
+            return null;
+        }
+        int node = _snapshot.getNode(cell);
+        if (node < 0 || _dirtyNodes[node]) {
+            return null;
+        }
+        _usedResults.set(node);
+        return _snapshot.getResult(node);
+    }
+
     @Override
     public EvaluationName getName(NamePtg namePtg) {
         return _masterBook.getName(namePtg);
@@ -22,7 +22,6 @@ import java.util.stream.Stream;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.formula.CollaboratingWorkbooksEnvironment;
 import org.apache.poi.ss.formula.EvaluationCell;
-import org.apache.poi.ss.formula.EvaluationWorkbook;
 import org.apache.poi.ss.formula.IStabilityClassifier;
 import org.apache.poi.ss.formula.WorkbookEvaluator;
 import org.apache.poi.ss.formula.eval.BoolEval;
@@ -39,15 +38,18 @@ import org.apache.poi.ss.usermodel.Workbook;
  * 90% of memory consumption is due to loading of the {@link HSSFWorkbook} or {@link org.apache.poi.xssf.usermodel.XSSFWorkbook}.
  * This class enables a 'master workbook' to be loaded just once and shared between many evaluation
  * clients.  Each evaluation client creates its own {@link ForkedEvaluator} and can set cell values
- * that will be used for local evaluations (and don't disturb evaluations on other evaluators).
+ * that will be used for local evaluations (and don't disturb evaluations on other evaluators).<p>
+ *
+ * The evaluators created by a {@link ForkedEvaluationBase} additionally share the parsed formulas and
+ * the results of the formula cells, which don't depend on the updated cells.
  */
 public final class ForkedEvaluator {
 
     private final WorkbookEvaluator _evaluator;
     private final ForkedEvaluationWorkbook _sewb;
 
-    private ForkedEvaluator(EvaluationWorkbook masterWorkbook, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
-        _sewb = new ForkedEvaluationWorkbook(masterWorkbook);
+    /* package */ ForkedEvaluator(ForkedEvaluationWorkbook sewb, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
+        _sewb = sewb;
         _evaluator = new WorkbookEvaluator(_sewb, stabilityClassifier, udfFinder);
     }
 
@@ -55,7 +57,7 @@ public final class ForkedEvaluator {
      * @param udfFinder pass {@code null} for default (AnalysisToolPak only)
      */
     public static ForkedEvaluator create(Workbook wb, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
-        return new ForkedEvaluator(wb.createEvaluationWorkbook(), stabilityClassifier, udfFinder);
+        return new ForkedEvaluator(new ForkedEvaluationWorkbook(wb.createEvaluationWorkbook()), stabilityClassifier, udfFinder);
     }
 
     /**
@@ -69,6 +71,9 @@ public final class ForkedEvaluator {
         ForkedEvaluationCell cell = _sewb.getOrCreateUpdatableCell(sheetName, rowIndex, columnIndex);
         cell.setValue(value);
         _evaluator.notifyUpdateCell(cell);
+        for (EvaluationCell dependent : _sewb.markDependents(sheetName, rowIndex, columnIndex)) {
+            _evaluator.notifyUpdateCell(dependent);
+        }
     }
     /**
      * Copies the values of all updated cells (modified by calls to {@link
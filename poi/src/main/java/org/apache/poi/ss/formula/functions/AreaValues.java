@@ -0,0 +1,139 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import org.apache.poi.ss.formula.TwoDEval;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.util.Internal;
+
+/**
+ * The values of an area as primitive arrays, for the functions which read all cells of their areas.<br>
+ *
+ * The number value and the type of each cell are kept in row major order ({@code row * width + column}),
+ * so functions like {@code SUM} or {@code SUMPRODUCT} can run plain loops over the numbers instead of
+ * reading the cells one by one. Errors and unusual values are marked as {@link #TYPE_OTHER} and have to be
+ * read with {@link TwoDEval#getValue(int, int)}. The values of a referenced area are kept by the evaluation
+ * cache of the workbook, which drops them, when any of the cells changes.<br>
+ *
+ * Only the rows up to the last used row of the sheet are kept, so whole column references don't take up
+ * arrays of the size of the sheet, the following rows are blank and only counted.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+public final class AreaValues {
+
+    /** a number, the number value is set */
+    static final byte TYPE_NUMBER = 0;
+    /** a boolean, the number value is 1 or 0 */
+    static final byte TYPE_BOOLEAN = 1;
+    static final byte TYPE_STRING = 2;
+    static final byte TYPE_BLANK = 3;
+    /** an error or any other value, which has to be read from the area */
+    static final byte TYPE_OTHER = 4;
+
+    private final int _width;
+    private final long _blankCount;
+    private final double[] _numbers;
+    private final byte[] _types;
+    private final boolean _numbersOnly;
+
+    /**
+     * Reads all cells of the area
+     */
+    public AreaValues(TwoDEval area) {
+        this(area, area.getHeight());
+    }
+
+    /**
+     * Reads the cells of the used rows of the area
+     *
+     * @param usedHeight the number of rows from the top of the area, which can contain values,
+     *  the following rows are blank
+     */
+    public AreaValues(TwoDEval area, int usedHeight) {
+        int height = Math.max(0, Math.min(area.getHeight(), usedHeight));
+        _width = area.getWidth();
+        _blankCount = (long) (area.getHeight() - height) * _width;
+        if (_blankCount > 0) {
+            // registers the blank rows as input of the evaluation
+            area.getValue(height, 0);
+        }
+        _numbers = new double[height * _width];
+        _types = new byte[_numbers.length];
+        boolean numbersOnly = true;
+        for (int r = 0, i = 0; r < height; r++) {
+            for (int c = 0; c < _width; c++, i++) {
+                ValueEval value = area.getValue(r, c);
+                if (value instanceof NumberEval) {
+                    _numbers[i] = ((NumberEval) value).getNumberValue();
+                    continue;
+                }
+                numbersOnly = false;
+                if (value instanceof BoolEval) {
+                    _types[i] = TYPE_BOOLEAN;
+                    _numbers[i] = ((BoolEval) value).getNumberValue();
+                } else if (value instanceof StringEval) {
+                    _types[i] = TYPE_STRING;
+                } else if (value == BlankEval.instance) {
+                    _types[i] = TYPE_BLANK;
+                } else {
+                    _types[i] = TYPE_OTHER;
+                }
+            }
+        }
+        _numbersOnly = numbersOnly;
+    }
+
+    int getWidth() {
+        return _width;
+    }
+
+    /**
+     * @return the number of blank cells after the used rows, which aren't part of the arrays
+     */
+    long getBlankCount() {
+        return _blankCount;
+    }
+
+    /**
+     * @return the number values of the numbers and booleans and zero for all other cells,
+     *  which must not be modified
+     */
+    double[] getNumbers() {
+        return _numbers;
+    }
+
+    /**
+     * @return the {@code TYPE_xxx} of each cell, which must not be modified
+     */
+    byte[] getTypes() {
+        return _types;
+    }
+
+    /**
+     * @return {@code true}, if all cells of the used rows are numbers
+     */
+    boolean isNumbersOnly() {
+        return _numbersOnly;
+    }
+}
@@ -19,6 +19,8 @@
 
 package org.apache.poi.ss.formula.functions;
 
+import java.util.BitSet;
+
 import org.apache.poi.ss.formula.OperationEvaluationContext;
 import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -136,6 +138,15 @@ import org.apache.poi.ss.formula.functions.Countif.ErrorMatcher;
         int height = ranges[0].getHeight();
         int width = ranges[0].getWidth();
 
+        BitSet matchingCells = findMatchingCells(ranges, predicates);
+        if (matchingCells != null) {
+            // the matches in the same order as below
+            for (int i = matchingCells.nextSetBit(0); i >= 0; i = matchingCells.nextSetBit(i + 1)) {
+                aggregateCell(aggregator, sumRange, i / width, i % width);
+            }
+            return aggregator.getResult();
+        }
+
         for (int r = 0; r < height; r++) {
             for (int c = 0; c < width; c++) {
 
@@ -152,21 +163,54 @@ import org.apache.poi.ss.formula.functions.Countif.ErrorMatcher;
                 }
 
                 if(matches) { // aggregate only if all of the corresponding criteria specified are true for that cell.
-                    if(sumRange != null) {
-                        ValueEval value = sumRange.getRelativeValue(r, c);
-                        if (value instanceof ErrorEval) {
-                            throw new EvaluationException((ErrorEval)value);
-                        }
-                        aggregator.addValue(value);
-                    } else {
-                        aggregator.addValue(null);
-                    }
+                    aggregateCell(aggregator, sumRange, r, c);
                 }
             }
         }
         return aggregator.getResult();
     }
 
+    private static void aggregateCell(Aggregator aggregator, AreaEval sumRange, int r, int c) throws EvaluationException {
+        if(sumRange != null) {
+            ValueEval value = sumRange.getRelativeValue(r, c);
+            if (value instanceof ErrorEval) {
+                throw new EvaluationException((ErrorEval)value);
+            }
+            aggregator.addValue(value);
+        } else {
+            aggregator.addValue(null);
+        }
+    }
+
+    /**
+     * Intersects the matching cells of the criteria indexes of the ranges
+     *
+     * @return the positions ({@code row * width + column}) of the cells matching all criteria
+     *  or {@code null}, if any of the ranges isn't indexed
+     */
+    private static BitSet findMatchingCells(AreaEval[] ranges, I_MatchPredicate[] predicates) {
+        for (int i = 0; i < ranges.length; i++) {
+            if (predicates[i] == null || !(ranges[i] instanceof CriteriaIndex.Provider)) {
+                return null;
+            }
+        }
+        // all ranges are asked, so their indexes are created by the same formulas
+        CriteriaIndex[] indexes = new CriteriaIndex[ranges.length];
+        boolean indexed = true;
+        for (int i = 0; i < ranges.length; i++) {
+            indexes[i] = ((CriteriaIndex.Provider) ranges[i]).getCriteriaIndex();
+            indexed &= indexes[i] != null;
+        }
+        if (!indexed) {
+            return null;
+        }
+        BitSet result = (BitSet) indexes[0].getMatches(predicates[0]).clone();
+        for (int i = 1; i < indexes.length && !result.isEmpty(); i++) {
+            result.and(indexes[i].getMatches(predicates[i]));
+        }
+        return result;
+    }
+
     protected static AreaEval convertRangeArg(ValueEval eval) throws EvaluationException {
         if (eval instanceof AreaEval) {
             return (AreaEval) eval;
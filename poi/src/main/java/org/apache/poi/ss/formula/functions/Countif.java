@@ -17,6 +17,8 @@
 
 package org.apache.poi.ss.formula.functions;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.poi.ss.formula.ThreeDEval;
@@ -44,6 +46,12 @@ import org.apache.poi.ss.usermodel.FormulaError;
  */
 public final class Countif extends Fixed2ArgFunction {
 
+    /** the maximum number of parsed string criteria, which are kept */
+    private static final int MAX_PARSED_CRITERIA = 1000;
+
+    /** the predicates are immutable, so they are shared by all evaluations */
+    private static final Map<String, I_MatchPredicate> PARSED_CRITERIA = new ConcurrentHashMap<>();
+
     private static final class CmpOp {
         public static final int NONE = 0;
         public static final int EQ = 1;
@@ -165,6 +173,28 @@ public final class Countif extends Fixed2ArgFunction {
             return getClass().getName() + " [" + _operator.getRepresentation() + getValueText() + "]";
         }
         protected abstract String getValueText();
+
+        /**
+         * @return the criteria value, which determines the matches together with the class and the operator
+         */
+        protected abstract Object getValueKey();
+
+        @Override
+        public final boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || o.getClass() != getClass()) {
+                return false;
+            }
+            MatcherBase other = (MatcherBase) o;
+            return getCode() == other.getCode() && getValueKey().equals(other.getValueKey());
+        }
+
+        @Override
+        public final int hashCode() {
+            return getValueKey().hashCode() * 31 + getCode();
+        }
     }
 
     private static final class NumberMatcher extends MatcherBase {
@@ -180,6 +210,11 @@ public final class Countif extends Fixed2ArgFunction {
             return String.valueOf(_value);
         }
 
+        @Override
+        protected Object getValueKey() {
+            return _value;
+        }
+
         @Override
         public boolean matches(ValueEval x) {
             double testValue;
@@ -236,6 +271,11 @@ public final class Countif extends Fixed2ArgFunction {
             return _value == 1 ? "TRUE" : "FALSE";
         }
 
+        @Override
+        protected Object getValueKey() {
+            return _value;
+        }
+
         private static int boolToInt(boolean value) {
             return value ? 1 : 0;
         }
@@ -293,6 +333,11 @@ public final class Countif extends Fixed2ArgFunction {
             return FormulaError.forInt(_value).getString();
         }
 
+        @Override
+        protected Object getValueKey() {
+            return _value;
+        }
+
         @Override
         public boolean matches(ValueEval x) {
             if(x instanceof ErrorEval) {
@@ -333,6 +378,11 @@ public final class Countif extends Fixed2ArgFunction {
             return _pattern.pattern();
         }
 
+        @Override
+        protected Object getValueKey() {
+            return _value;
+        }
+
         @Override
         public boolean matches(ValueEval x) {
             if (x instanceof BlankEval) {
@@ -444,6 +494,12 @@ public final class Countif extends Fixed2ArgFunction {
      */
     private double countMatchingCellsInArea(ValueEval rangeArg, I_MatchPredicate criteriaPredicate) {
 
+        if (rangeArg instanceof CriteriaIndex.Provider) {
+            CriteriaIndex index = ((CriteriaIndex.Provider) rangeArg).getCriteriaIndex();
+            if (index != null) {
+                return index.getMatches(criteriaPredicate).cardinality();
+            }
+        }
         if (rangeArg instanceof RefEval) {
             return CountUtils.countMatchingCellsInRef((RefEval) rangeArg, criteriaPredicate);
         } else if (rangeArg instanceof ThreeDEval) {
@@ -496,7 +552,19 @@ public final class Countif extends Fixed2ArgFunction {
      * When the second argument is a string, many things are possible
      */
     private static I_MatchPredicate createGeneralMatchPredicate(StringEval stringEval) {
-        String value = stringEval.getStringValue();
+        String criteria = stringEval.getStringValue();
+        I_MatchPredicate predicate = PARSED_CRITERIA.get(criteria);
+        if (predicate == null) {
+            if (PARSED_CRITERIA.size() >= MAX_PARSED_CRITERIA) {
+                PARSED_CRITERIA.clear();
+            }
+            predicate = parseGeneralMatchPredicate(criteria);
+            PARSED_CRITERIA.put(criteria, predicate);
+        }
+        return predicate;
+    }
+
+    private static I_MatchPredicate parseGeneralMatchPredicate(String value) {
         CmpOp operator = CmpOp.getOperator(value);
         value = value.substring(operator.getLength());
 
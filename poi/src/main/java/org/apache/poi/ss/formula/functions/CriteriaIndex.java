@@ -0,0 +1,170 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.TwoDEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.CountUtils.I_MatchPredicate;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.Internal;
+
+/**
+ * Finds the cells of a range, which match the criteria of {@code COUNTIF} and the {@code ~IFS} functions.<br>
+ *
+ * The cells are grouped by their values, so a criteria is tested once for each distinct value of the range
+ * instead of once for each cell. The matching cells of each criteria are kept as a bitmap of the cell positions
+ * ({@code row * width + column}), so formulas with the same criteria don't test the values again and multiple
+ * criteria can be combined by intersecting their bitmaps. Only the bitmaps of the recently used criteria are kept,
+ * as formulas filled down often use a different criteria in each row. The indexes are kept by the evaluation cache of the
+ * workbook, which drops them, when any of the indexed cells changes.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+public final class CriteriaIndex {
+
+    /**
+     * Provides the criteria index of an area
+     */
+    @Internal
+    public interface Provider {
+        /**
+         * @return the (shared) index or {@code null}, if the area isn't indexed
+         */
+        CriteriaIndex getCriteriaIndex();
+    }
+
+    /** the maximum number of kept bitmaps */
+    static final int MAX_CACHED_MATCHES = 32;
+
+    private final int _size;
+    /** the distinct values of the range */
+    private final ValueEval[] _values;
+    /** the positions of each distinct value */
+    private final int[][] _positions;
+    /** the bitmaps of the recently used criteria in access order */
+    private final Map<I_MatchPredicate, BitSet> _matches = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @return whether the positions of the cells of the area fit into an int, i.e. it's not a large part
+     *  of a whole sheet. Other areas are scanned without an index.
+     */
+    public static boolean isIndexable(TwoDEval area) {
+        return (long) area.getHeight() * area.getWidth() <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Reads all cells of the area
+     *
+     * @throws ArithmeticException if the area isn't {@link #isIndexable(TwoDEval) indexable}
+     */
+    public CriteriaIndex(TwoDEval area) {
+        int height = area.getHeight();
+        int width = area.getWidth();
+        _size = Math.multiplyExact(height, width);
+        Map<Object, Integer> groups = new HashMap<>();
+        List<ValueEval> values = new ArrayList<>();
+        List<IntList> positions = new ArrayList<>();
+        for (int r = 0, i = 0; r < height; r++) {
+            for (int c = 0; c < width; c++, i++) {
+                ValueEval value = area.getValue(r, c);
+                Integer group = groups.get(toKey(value));
+                if (group == null) {
+                    group = values.size();
+                    groups.put(toKey(value), group);
+                    values.add(value);
+                    positions.add(new IntList());
+                }
+                positions.get(group).add(i);
+            }
+        }
+        _values = values.toArray(new ValueEval[0]);
+        _positions = new int[_values.length][];
+        for (int i = 0; i < _positions.length; i++) {
+            _positions[i] = positions.get(i).toArray();
+        }
+    }
+
+    /**
+     * @return the number of cells of the area
+     */
+    public int getSize() {
+        return _size;
+    }
+
+    /**
+     * @return the positions of the matching cells, which must not be modified
+     */
+    BitSet getMatches(I_MatchPredicate predicate) {
+        BitSet matches = _matches.get(predicate);
+        if (matches == null) {
+            matches = new BitSet(_size);
+            for (int i = 0; i < _values.length; i++) {
+                if (predicate.matches(_values[i])) {
+                    for (int position : _positions[i]) {
+                        matches.set(position);
+                    }
+                }
+            }
+            _matches.put(predicate, matches);
+            if (_matches.size() > MAX_CACHED_MATCHES) {
+                // drops the least recently used criteria
+                Iterator<BitSet> eldest = _matches.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return the number of kept bitmaps
+     */
+    int getCachedMatchesCount() {
+        return _matches.size();
+    }
+
+    /**
+     * The criteria predicates only depend on the type and the value of a cell,
+     * so cells with the same (not normalised) value always match the same criteria
+     */
+    private static Object toKey(ValueEval value) {
+        if (value instanceof NumberEval) {
+            return ((NumberEval) value).getNumberValue();
+        }
+        if (value instanceof StringEval) {
+            return ((StringEval) value).getStringValue();
+        }
+        if (value instanceof BoolEval) {
+            return ((BoolEval) value).getBooleanValue();
+        }
+        // blank and error values are singletons
+        return value;
+    }
+}
@@ -21,7 +21,8 @@ import org.apache.poi.ss.formula.OperationEvaluationContext;
 import org.apache.poi.ss.formula.eval.*;
 
 import java.math.BigInteger;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation for Excel FACTDOUBLE() function.
@@ -44,7 +45,7 @@ public class FactDouble extends Fixed1ArgFunction implements FreeRefFunction {
     public static final FreeRefFunction instance = new FactDouble();
 
     //Caching of previously calculated factorial for speed
-    static HashMap<Integer, BigInteger> cache = new HashMap<>();
+    static final Map<Integer, BigInteger> cache = new ConcurrentHashMap<>();
 
     @Override
     public ValueEval evaluate(int srcRowIndex, int srcColumnIndex, ValueEval numberVE) {
@@ -67,8 +68,9 @@ public class FactDouble extends Fixed1ArgFunction implements FreeRefFunction {
             return BigInteger.ONE;
         }
 
-        if (cache.containsKey(n))  {
-            return cache.get(n);
+        BigInteger cached = cache.get(n);
+        if (cached != null)  {
+            return cached;
         }
 
         BigInteger result = BigInteger.valueOf(n).multiply(factorial(n - 2));
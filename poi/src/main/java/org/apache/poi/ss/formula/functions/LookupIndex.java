@@ -0,0 +1,123 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.LookupUtils.ValueVector;
+import org.apache.poi.util.Internal;
+
+/**
+ * Finds exact matches in a row or column of cells, which is searched by many lookup formulas.<br>
+ *
+ * The index maps the normalised values of the cells to their first and last position, so each lookup in the
+ * indexed cells takes constant time instead of comparing the lookup value with all cells. The indexes are kept by
+ * the evaluation cache of the workbook, which drops them, when any of the indexed cells changes.<br>
+ *
+ * For POI internal use only
+ */
+@Internal
+public final class LookupIndex {
+
+    /**
+     * Provides the lookup indexes of the rows and columns of an area
+     */
+    @Internal
+    public interface Provider {
+        /**
+         * @param relativeColumnIndex the column of the area
+         * @return the (shared) index or {@code null}, if the column isn't indexed
+         */
+        LookupIndex getColumnLookupIndex(int relativeColumnIndex);
+
+        /**
+         * @param relativeRowIndex the row of the area
+         * @return the (shared) index or {@code null}, if the row isn't indexed
+         */
+        LookupIndex getRowLookupIndex(int relativeRowIndex);
+    }
+
+    /** the first and the last position of each value */
+    private final Map<Object, int[]> _positions = new HashMap<>();
+
+    /**
+     * Reads all cells of the vector
+     */
+    public LookupIndex(ValueVector vector) {
+        int size = vector.getSize();
+        for (int i = 0; i < size; i++) {
+            Object key = toKey(vector.getItem(i));
+            if (key != null) {
+                int[] positions = _positions.get(key);
+                if (positions == null) {
+                    _positions.put(key, new int[]{i, i});
+                } else {
+                    positions[1] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key the key of the lookup value, see {@link #toKey(ValueEval)}
+     * @param reverse true for the last match, false for the first match
+     * @return the index of the first (or last) exact match or -1, if there is none
+     */
+    public int indexOf(Object key, boolean reverse) {
+        int[] positions = _positions.get(key);
+        if (positions == null) {
+            return -1;
+        }
+        return reverse ? positions[1] : positions[0];
+    }
+
+    /**
+     * Normalises a value, so the keys are equal, if the values are equal for the exact lookup functions:
+     * numbers by {@link Double#compare(double, double)}, strings case-insensitive like
+     * {@link String#compareToIgnoreCase(String)} and booleans by value.
+     *
+     * @return the key or {@code null}, if no lookup value matches the value exactly
+     */
+    public static Object toKey(ValueEval eval) {
+        if (eval instanceof NumberEval) {
+            // Double.equals is the same as Double.compare() == 0
+            return ((NumberEval) eval).getNumberValue();
+        }
+        if (eval instanceof StringEval) {
+            return normalize(((StringEval) eval).getStringValue());
+        }
+        if (eval instanceof BoolEval) {
+            return ((BoolEval) eval).getBooleanValue();
+        }
+        return null;
+    }
+
+    private static String normalize(String value) {
+        // compareToIgnoreCase() compares each character in upper case and then in lower case
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
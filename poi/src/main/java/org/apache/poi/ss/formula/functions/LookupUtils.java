@@ -45,6 +45,9 @@ import org.apache.poi.util.Internal;
 @Internal
 public final class LookupUtils {
 
+    /** returned by {@link #indexOfExactValue}, if there is no index to search */
+    static final int NO_INDEX = -2;
+
     public enum MatchMode {
         ExactMatch(0),
         ExactMatchFallbackToSmallerValue(-1),
@@ -129,7 +132,7 @@ public final class LookupUtils {
 
         default Iterator<Integer> reverseIndexIterator() {
             return new Iterator<Integer>() {
-                private int pos = getSize() - 1;
+                private int pos = getSize();
 
                 @Override
                 public boolean hasNext() {
@@ -144,6 +147,13 @@ public final class LookupUtils {
                 }
             };
         }
+
+        /**
+         * @return the shared index of the exact matches or {@code null}, if the vector isn't indexed
+         */
+        default LookupIndex getLookupIndex() {
+            return null;
+        }
     }
 
     private static final class RowVector implements ValueVector {
@@ -176,6 +186,14 @@ public final class LookupUtils {
         public int getSize() {
             return _size;
         }
+
+        @Override
+        public LookupIndex getLookupIndex() {
+            if (_tableArray instanceof LookupIndex.Provider) {
+                return ((LookupIndex.Provider) _tableArray).getRowLookupIndex(_rowIndex);
+            }
+            return null;
+        }
     }
 
     private static final class ColumnVector implements ValueVector {
@@ -207,6 +225,14 @@ public final class LookupUtils {
         public int getSize() {
             return _size;
         }
+
+        @Override
+        public LookupIndex getLookupIndex() {
+            if (_tableArray instanceof LookupIndex.Provider) {
+                return ((LookupIndex.Provider) _tableArray).getColumnLookupIndex(_columnIndex);
+            }
+            return null;
+        }
     }
 
     private static final class SheetVector implements ValueVector {
@@ -620,7 +646,10 @@ public final class LookupUtils {
         if(isRangeLookup) {
             result = performBinarySearch(vector, lookupComparer);
         } else {
-            result = lookupFirstIndexOfValue(lookupComparer, vector, MatchMode.ExactMatch);
+            result = isWildcardPattern(lookupValue) ? NO_INDEX : indexOfExactValue(lookupValue, NumberEval.ZERO, vector, false);
+            if (result == NO_INDEX) {
+                result = lookupFirstIndexOfValue(lookupComparer, vector, MatchMode.ExactMatch);
+            }
         }
         if(result < 0) {
             throw new EvaluationException(ErrorEval.NA);
@@ -658,10 +687,17 @@ public final class LookupUtils {
             result = binarySearchIndexOfValue(lookupComparer, vector, matchMode, false);
         } else if (searchMode == SearchMode.BinarySearchBackward) {
             result = binarySearchIndexOfValue(lookupComparer, vector, matchMode, true);
-        } else if (searchMode == SearchMode.IterateBackward) {
-            result = lookupLastIndexOfValue(lookupComparer, vector, matchMode);
         } else {
-            result = lookupFirstIndexOfValue(lookupComparer, vector, matchMode);
+            boolean reverse = searchMode == SearchMode.IterateBackward;
+            result = NO_INDEX;
+            if (matchMode == MatchMode.ExactMatch && !isWildcardPattern(modifiedLookup)) {
+                result = indexOfExactValue(modifiedLookup, new StringEval(""), vector, reverse);
+            }
+            if (result == NO_INDEX) {
+                result = reverse
+                    ? lookupLastIndexOfValue(lookupComparer, vector, matchMode)
+                    : lookupFirstIndexOfValue(lookupComparer, vector, matchMode);
+            }
         }
         if(result < 0) {
             throw new EvaluationException(ErrorEval.NA);
@@ -936,6 +972,33 @@ public final class LookupUtils {
         return maxIx - 1;
     }
 
+    /**
+     * Finds an exact match with the shared {@link LookupIndex} of the vector
+     *
+     * @param blankValue the value, which a blank lookup value is looked up as
+     * @param reverse true for the last match, false for the first match
+     * @return the index of the match, -1 if there's none or {@link #NO_INDEX}, if the vector isn't indexed
+     */
+    static int indexOfExactValue(ValueEval lookupValue, ValueEval blankValue, ValueVector vector, boolean reverse) {
+        Object key = LookupIndex.toKey(lookupValue == BlankEval.instance ? blankValue : lookupValue);
+        if (key == null) {
+            return NO_INDEX;
+        }
+        LookupIndex index = vector.getLookupIndex();
+        if (index == null) {
+            return NO_INDEX;
+        }
+        return index.indexOf(key, reverse);
+    }
+
+    /**
+     * @return true, if the lookup value is a string with wildcards
+     */
+    static boolean isWildcardPattern(ValueEval lookupValue) {
+        return lookupValue instanceof StringEval
+            && Countif.StringMatcher.getWildCardPattern(((StringEval) lookupValue).getStringValue()) != null;
+    }
+
     static LookupValueComparer createLookupComparer(ValueEval lookupValue, boolean matchExact, boolean isMatchFunction) {
 
         if (lookupValue == BlankEval.instance) {
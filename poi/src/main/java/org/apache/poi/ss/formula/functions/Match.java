@@ -204,6 +204,15 @@ public final class Match extends Var2or3ArgFunction {
 
         int size = lookupRange.getSize();
         if(matchExact) {
+            if (!LookupUtils.isWildcardPattern(lookupValue)) {
+                int index = LookupUtils.indexOfExactValue(lookupValue, NumberEval.ZERO, lookupRange, false);
+                if (index >= 0) {
+                    return index;
+                }
+                if (index != LookupUtils.NO_INDEX) {
+                    throw new EvaluationException(ErrorEval.NA);
+                }
+            }
             for (int i = 0; i < size; i++) {
                 if(lookupComparer.compareTo(lookupRange.getItem(i)).isEqual()) {
                     return i;
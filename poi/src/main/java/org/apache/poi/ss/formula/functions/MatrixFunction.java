@@ -46,22 +46,14 @@ public abstract class MatrixFunction implements Function{
 
     /* converts 1D array to 2D array for calculations */
     private static double[][] fillDoubleArray(double[] vector, int rows, int cols) throws EvaluationException {
-        int i = 0, j = 0;
-
         if (rows < 1 || cols < 1 || vector.length < 1) {
             throw new EvaluationException(ErrorEval.VALUE_INVALID);
         }
 
         double[][] matrix = new double[rows][cols];
 
-        for (double aVector : vector) {
-            if (j < matrix.length) {
-                if (i == matrix[0].length) {
-                    i = 0;
-                    j++;
-                }
-                if (j < matrix.length) matrix[j][i++] = aVector;
-            }
+        for (int j = 0; j < rows && j * cols < vector.length; j++) {
+            System.arraycopy(vector, j * cols, matrix[j], 0, Math.min(cols, vector.length - j * cols));
         }
 
         return matrix;
@@ -75,12 +67,12 @@ public abstract class MatrixFunction implements Function{
             throw new EvaluationException(ErrorEval.VALUE_INVALID);
         }
 
-        double[] vector = new double[matrix.length * matrix[0].length];
+        int cols = matrix[0].length;
+        double[] vector = new double[matrix.length * cols];
 
         for (double[] aMatrix : matrix) {
-            for (int i = 0; i < matrix[0].length; i++) {
-                vector[idx++] = aMatrix[i];
-            }
+            System.arraycopy(aMatrix, 0, vector, idx, cols);
+            idx += cols;
         }
         return vector;
     }
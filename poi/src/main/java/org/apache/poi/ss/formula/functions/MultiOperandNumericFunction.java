@@ -139,6 +139,10 @@ public abstract class MultiOperandNumericFunction implements Function {
      * Collects values from a single argument
      */
     private void collectValues(ValueEval operand, DoubleList temp) throws EvaluationException {
+        if (operand instanceof TwoDEval && isSubtotalCounted() && isHiddenRowCounted() && !isMultiSheet(operand)) {
+            collectValues((TwoDEval) operand, ((TwoDEval) operand).getAreaValues(), temp);
+            return;
+        }
         if (operand instanceof ThreeDEval) {
             ThreeDEval ae = (ThreeDEval) operand;
             for (int sIx = ae.getFirstSheetIndex(); sIx <= ae.getLastSheetIndex(); sIx++) {
@@ -178,6 +182,62 @@ public abstract class MultiOperandNumericFunction implements Function {
         collectValue(operand, false, temp);
     }
 
+    private static boolean isMultiSheet(ValueEval operand) {
+        if (operand instanceof ThreeDEval) {
+            ThreeDEval ae = (ThreeDEval) operand;
+            return ae.getFirstSheetIndex() != ae.getLastSheetIndex();
+        }
+        return false;
+    }
+
+    /**
+     * Collects the values of a single sheet area, when no cells are skipped
+     */
+    private void collectValues(TwoDEval ae, AreaValues values, DoubleList temp) throws EvaluationException {
+        collectUsedValues(ae, values, temp);
+        // the rows after the used rows are blank
+        for (long i = values.getBlankCount(); i > 0; i--) {
+            blankConsumer.accept(BlankEval.instance, temp);
+        }
+    }
+
+    private void collectUsedValues(TwoDEval ae, AreaValues values, DoubleList temp) throws EvaluationException {
+        double[] numbers = values.getNumbers();
+        if (values.isNumbersOnly()) {
+            temp.addAll(numbers);
+            return;
+        }
+        boolean isViaReference = !treatStringsAsZero();
+        byte[] types = values.getTypes();
+        int width = values.getWidth();
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case AreaValues.TYPE_NUMBER:
+                    temp.add(numbers[i]);
+                    break;
+                case AreaValues.TYPE_BOOLEAN:
+                    BoolEval boolEval = BoolEval.valueOf(numbers[i] != 0);
+                    if (isViaReference) {
+                        boolByRefConsumer.accept(boolEval, temp);
+                    } else {
+                        boolByValueConsumer.accept(boolEval, temp);
+                    }
+                    break;
+                case AreaValues.TYPE_STRING:
+                    if (!isViaReference) {
+                        temp.add(0.0);
+                    }
+                    break;
+                case AreaValues.TYPE_BLANK:
+                    blankConsumer.accept(BlankEval.instance, temp);
+                    break;
+                default:
+                    collectValue(ae.getValue(i / width, i % width), isViaReference, temp);
+                    break;
+            }
+        }
+    }
+
     private void collectValue(ValueEval ve, boolean isViaReference, DoubleList temp) throws EvaluationException {
         if (ve == null) {
             throw new IllegalArgumentException("ve must not be null");
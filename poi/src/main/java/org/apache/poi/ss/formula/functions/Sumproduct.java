@@ -156,22 +156,87 @@ public final class Sumproduct implements Function {
             return ErrorEval.VALUE_INVALID;
         }
 
+        AreaValues[] values = new AreaValues[maxN];
+        boolean numbersOnly = true;
+        for (int n=0; n<maxN; n++) {
+            values[n] = args[n].getAreaValues();
+            numbersOnly &= values[n].isNumbersOnly();
+        }
+        if (numbersOnly) {
+            return new NumberEval(sumProduct(values));
+        }
+
         double acc = 0;
 
-        for (int rrIx=0; rrIx<height; rrIx++) {
-            for (int rcIx=0; rcIx<width; rcIx++) {
-                double term = 1D;
-                for(int n=0; n<maxN; n++) {
-                    double val = getProductTerm(args[n].getValue(rrIx, rcIx), false);
-                    term *= val;
-                }
-                acc += term;
+        // the cells after the used rows of all areas are blank and don't add to the sum
+        int usedLength = 0;
+        for (AreaValues areaValues : values) {
+            usedLength = Math.max(usedLength, areaValues.getTypes().length);
+        }
+        for (int i=0; i<usedLength; i++) {
+            double term = 1D;
+            for(int n=0; n<maxN; n++) {
+                double val = getProductTerm(args[n], values[n], i);
+                term *= val;
             }
+            acc += term;
         }
 
         return new NumberEval(acc);
     }
 
+    /**
+     * Multiplies the numbers of areas without any other values
+     */
+    private static double sumProduct(AreaValues[] values) {
+        double[] first = values[0].getNumbers();
+        if (values.length == 1) {
+            return MathX.sum(first);
+        }
+        double[] second = values[1].getNumbers();
+        // the cells after the used rows of an area are blank and make the product zero
+        int usedLength = Math.min(first.length, second.length);
+        for (int n=2; n<values.length; n++) {
+            usedLength = Math.min(usedLength, values[n].getNumbers().length);
+        }
+        double acc = 0;
+        if (values.length == 2) {
+            for (int i=0; i<usedLength; i++) {
+                acc += first[i] * second[i];
+            }
+            return acc;
+        }
+        for (int i=0; i<usedLength; i++) {
+            double term = first[i] * second[i];
+            for (int n=2; n<values.length; n++) {
+                term *= values[n].getNumbers()[i];
+            }
+            acc += term;
+        }
+        return acc;
+    }
+
+    /**
+     * Determines the term of the cell at position {@code i} of an area.
+     */
+    private static double getProductTerm(TwoDEval area, AreaValues values, int i) throws EvaluationException {
+        if (i >= values.getTypes().length) {
+            // a blank cell after the used rows
+            return 0;
+        }
+        switch (values.getTypes()[i]) {
+            case AreaValues.TYPE_NUMBER:
+            case AreaValues.TYPE_BOOLEAN:
+                return values.getNumbers()[i];
+            case AreaValues.TYPE_STRING:
+            case AreaValues.TYPE_BLANK:
+                return 0;
+            default:
+                int width = values.getWidth();
+                return getProductTerm(area.getValue(i / width, i % width), false);
+        }
+    }
+
     private static void throwFirstError(TwoDEval areaEval) throws EvaluationException {
         int height = areaEval.getHeight();
         int width = areaEval.getWidth();
@@ -367,7 +367,10 @@ public abstract class TextFunction implements Function {
 
                     if (valueDouble != null) {
                         String format = formatPatternValueEval2String(formatVe);
-                        evaluated = formatter.formatRawCellContents(valueDouble, -1, format);
+                        // the shared formatter caches the formats, so it must not be used concurrently
+                        synchronized (formatter) {
+                            evaluated = formatter.formatRawCellContents(valueDouble, -1, format);
+                        }
                     }
 
                     valueEval = new StringEval(evaluated);
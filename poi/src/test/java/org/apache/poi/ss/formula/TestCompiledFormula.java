@@ -0,0 +1,156 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+
+import org.apache.poi.hssf.usermodel.HSSFEvaluationWorkbook;
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.ptg.ExpPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link FormulaShape} and {@link CompiledFormula}
+ */
+final class TestCompiledFormula {
+
+    @Test
+    void testShapes() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            wb.createSheet("Sheet1");
+            wb.createSheet("Data");
+            HSSFEvaluationWorkbook book = HSSFEvaluationWorkbook.create(wb);
+
+            FormulaShape shape = shape(book, "A1+$B$1*2", 0, 2);
+            assertEquals(shape, shape(book, "A2+$B$1*2", 1, 2));
+            assertEquals(shape, shape(book, "B5+$B$1*2", 4, 3));
+            assertNotEquals(shape, shape(book, "A2+$B$2*2", 1, 2));
+            assertNotEquals(shape, shape(book, "A1+$B$1*3", 0, 2));
+            assertNotEquals(shape, shape(book, "A1-$B$1*2", 0, 2));
+
+            FormulaShape sum = shape(book, "SUM(Data!A1:A$10)+IF(A1>0,1,\"x\")", 0, 0);
+            assertEquals(sum, shape(book, "SUM(Data!A8:A$10)+IF(A8>0,1,\"x\")", 7, 0));
+            assertNotEquals(sum, shape(book, "SUM(Data!A8:A$11)+IF(A8>0,1,\"x\")", 7, 0));
+            assertNotEquals(sum, shape(book, "SUM(Sheet1!A8:A$10)+IF(A8>0,1,\"x\")", 7, 0));
+
+            assertNull(FormulaShape.of(new Ptg[]{new ExpPtg(0, 0)}, 0, 0));
+        }
+    }
+
+    @Test
+    void testEvaluation() throws IOException {
+        String[] formulas = {
+            "A1*2+$B$1",
+            "SUM(A1:B2)+SUM(Data!A1:A3)",
+            "IF(A1>2,\"big\",\"small\")",
+            "IF(A1>2,A1)",
+            "IF(1/0,1,2)",
+            "IF(A1>2,1/0,MAX(A1:A3))",
+            "CHOOSE(A1,\"one\",\"two\",\"three\")&\"!\"",
+            "CHOOSE(A1+5,1,2)",
+            "Total*2",
+            "COUNT((A1:A2,B1:B2))",
+            "Data!A1+Data!$A$2",
+            "INDEX(A1:B3,2,2)",
+            "SUM(IF(A1:A3>1,A1:A3))",
+            "#REF!",
+        };
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Sheet1");
+            Sheet data = wb.createSheet("Data");
+            for (int r = 0; r < 3; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r + 1);
+                row.createCell(1).setCellValue((r + 1) * 10);
+                data.createRow(r).createCell(0).setCellValue(r * 100);
+            }
+            Name name = wb.createName();
+            name.setNameName("Total");
+            name.setRefersToFormula("SUM(Sheet1!$B$1:$B$3)");
+            for (int c = 0; c < formulas.length; c++) {
+                // the same formula shape in each row
+                for (int r = 0; r < 3; r++) {
+                    String formula = formulas[c].replace("A1", "A" + (r + 1)).replace("B2", "B" + (r + 2));
+                    sheet.getRow(r).createCell(c + 3).setCellFormula(formula);
+                }
+            }
+
+            HSSFFormulaEvaluator interpreter = wb.getCreationHelper().createFormulaEvaluator();
+            HSSFFormulaEvaluator compiler = wb.getCreationHelper().createFormulaEvaluator();
+            compiler.setCompileFormulas(true);
+            for (int i = 0; i < 2; i++) {
+                // the second pass uses the compiled formulas of the cells
+                for (int r = 0; r < 3; r++) {
+                    for (int c = 3; c < formulas.length + 3; c++) {
+                        Cell cell = sheet.getRow(r).getCell(c);
+                        CellValue expected = interpreter.evaluate(cell);
+                        assertNotNull(expected);
+                        assertEquals(expected.toString(), compiler.evaluate(cell).toString(), cell.getCellFormula());
+                    }
+                }
+                interpreter.clearAllCachedResultValues();
+                Cell a1 = sheet.getRow(0).getCell(0);
+                a1.setCellValue(4);
+                compiler.notifyUpdateCell(a1);
+            }
+        }
+    }
+
+    @Test
+    void testChangedFormula() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            Row row = sheet.createRow(0);
+            row.createCell(0).setCellValue(3);
+            Cell cell = row.createCell(1);
+            cell.setCellFormula("A1*2");
+            HSSFFormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            fe.setCompileFormulas(true);
+            assertEquals(6, fe.evaluate(cell).getNumberValue(), 0);
+
+            cell.setCellFormula("A1*3");
+            fe.notifySetFormula(cell);
+            assertEquals(9, fe.evaluate(cell).getNumberValue(), 0);
+
+            Cell a1 = row.getCell(0);
+            a1.setCellValue(5);
+            fe.notifyUpdateCell(a1);
+            assertEquals(15, fe.evaluate(cell).getNumberValue(), 0);
+        }
+    }
+
+    private static FormulaShape shape(HSSFEvaluationWorkbook book, String formula, int rowIndex, int columnIndex) {
+        Ptg[] ptgs = FormulaParser.parse(formula, book, FormulaType.CELL, 0, rowIndex);
+        assertNotNull(CompiledFormula.compile(ptgs, rowIndex, columnIndex), formula);
+        FormulaShape shape = FormulaShape.of(ptgs, rowIndex, columnIndex);
+        assertNotNull(shape, formula);
+        return shape;
+    }
+}
@@ -37,7 +37,6 @@ import org.apache.poi.hssf.usermodel.HSSFRow;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.formula.IEvaluationListener.ICacheEntry;
-import org.apache.poi.ss.formula.PlainCellCache.Loc;
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -96,7 +95,7 @@ class TestEvaluationCache {
         private final List<String> _logList;
         private final HSSFWorkbook _book;
         private final Map<ICacheEntry,EvaluationCell> _formulaCellsByCacheEntry;
-        private final Map<ICacheEntry,Loc> _plainCellLocsByCacheEntry;
+        private final Map<ICacheEntry,CellReference> _plainCellLocsByCacheEntry;
 
         public EvalListener(HSSFWorkbook wb) {
             _book = wb;
@@ -110,7 +109,7 @@ class TestEvaluationCache {
         }
         @Override
         public void onReadPlainValue(int sheetIndex, int rowIndex, int columnIndex, ICacheEntry entry) {
-            Loc loc = new Loc(0, sheetIndex, rowIndex, columnIndex);
+            CellReference loc = new CellReference(rowIndex, columnIndex);
             _plainCellLocsByCacheEntry.put(entry, loc);
             log("value", rowIndex, columnIndex, entry.getValue());
         }
@@ -131,12 +130,12 @@ class TestEvaluationCache {
             int columnIndex;
             EvaluationCell cell = _formulaCellsByCacheEntry.get(entry);
             if (cell == null) {
-                Loc loc = _plainCellLocsByCacheEntry.get(entry);
+                CellReference loc = _plainCellLocsByCacheEntry.get(entry);
                 if (loc == null) {
                     throw new IllegalStateException("can't find cell or location");
                 }
-                rowIndex = loc.getRowIndex();
-                columnIndex = loc.getColumnIndex();
+                rowIndex = loc.getRow();
+                columnIndex = loc.getCol();
             } else {
                 rowIndex = cell.getRowIndex();
                 columnIndex = cell.getColumnIndex();
@@ -161,7 +160,7 @@ class TestEvaluationCache {
                 // perhaps the API could be improved: onChangeFromBlankToValue, onChangeFromBlankToFormula
                 _formulaCellsByCacheEntry.put(entry, cell);
             } else {
-                Loc loc = new Loc(0, sheetIndex, rowIndex, columnIndex);
+                CellReference loc = new CellReference(rowIndex, columnIndex);
                 _plainCellLocsByCacheEntry.put(entry, loc);
             }
         }
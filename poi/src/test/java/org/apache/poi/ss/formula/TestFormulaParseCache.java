@@ -0,0 +1,141 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.apache.poi.hssf.usermodel.HSSFEvaluationWorkbook;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
+import org.apache.poi.ss.usermodel.Name;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link FormulaParseCache}
+ */
+final class TestFormulaParseCache {
+
+    private static final SpreadsheetVersion VERSION = SpreadsheetVersion.EXCEL2007;
+
+    @Test
+    void testNormalise() {
+        String a1 = normalise("A1*2+$B$1", 0, 2);
+        assertEquals(a1, normalise("A2*2+$B$1", 1, 2));
+        assertEquals(a1, normalise("B5*2+$B$1", 4, 3));
+        assertNotEquals(a1, normalise("A2*2+$B$2", 1, 2));
+        assertNotEquals(a1, normalise("A1*2+$B$1", 1, 2));
+        assertEquals(normalise("SUM(A$1:A1)", 0, 1), normalise("SUM(A$1:A7)", 6, 1));
+        assertEquals(normalise("Data!C3&\"A1\"", 2, 0), normalise("Data!C4&\"A1\"", 3, 0));
+        assertEquals(normalise("'My A1'!C3", 2, 0), normalise("'My A1'!C4", 3, 0));
+        // names and functions are kept
+        assertEquals("Total+LOG10(2)+LOG10 (3)", normalise("Total+LOG10(2)+LOG10 (3)", 0, 0));
+        assertNotEquals(normalise("Total1", 0, 0), normalise("Total2", 1, 0));
+        assertNotEquals(normalise("Q1!A1", 0, 0), normalise("Q2!A2", 1, 0));
+        assertNotEquals(normalise("Q1:Q3!A1", 0, 0), normalise("Q2:Q3!A2", 1, 0));
+        assertEquals(normalise("1.5E+3+#N/A", 0, 0), normalise("1.5E+3+#N/A", 1, 1));
+
+        // formulas, which aren't normalised
+        assertNull(normalise("SUM(A:A)", 0, 0));
+        assertNull(normalise("SUM($1:$3)", 0, 0));
+        assertNull(normalise("SUM(1:3)", 0, 0));
+        assertNull(normalise("SUM(A1..B2)", 0, 0));
+        assertNull(normalise("SUM(1..3)", 0, 0));
+        assertNull(normalise("Table1[[#This Row],[Col]]", 0, 0));
+        assertNull(normalise("[1]Sheet1!A1", 0, 0));
+        assertNull(normalise("A1 (B1:C2)", 0, 0));
+        assertNull(normalise("\"unterminated", 0, 0));
+    }
+
+    @Test
+    void testParse() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            wb.createSheet("Sheet1");
+            wb.createSheet("Data");
+            Name name = wb.createName();
+            name.setNameName("Total");
+            name.setRefersToFormula("Data!$A$1:$A$3");
+            HSSFEvaluationWorkbook book = HSSFEvaluationWorkbook.create(wb);
+            FormulaParseCache cache = new FormulaParseCache();
+
+            String[] formulas = {
+                "A%1$d*2+$B$1",
+                "SUM(Data!A%1$d:B%2$d)+SUM(Total)",
+                "IF(A%1$d>0,\"A1\",C$%2$d)",
+                "SUM(A:A)+A%1$d",
+            };
+            for (String formula : formulas) {
+                for (int r = 0; r < 3; r++) {
+                    String text = String.format(formula, r + 1, r + 2);
+                    Ptg[] expected = FormulaParser.parse(text, book, FormulaType.CELL, 0, r);
+                    Ptg[] ptgs = cache.parse(text, book, FormulaType.CELL, 0, r, 3);
+                    assertEquals(FormulaRenderer.toFormulaString(book, expected),
+                        FormulaRenderer.toFormulaString(book, ptgs), text);
+                    // the cached tokens are copied
+                    assertNotSame(ptgs[0], cache.parse(text, book, FormulaType.CELL, 0, r, 3)[0]);
+                }
+            }
+            assertThrows(FormulaParseException.class, () -> cache.parse("A1+", book, FormulaType.CELL, 0, 0, 0));
+        }
+    }
+
+    @Test
+    void testParseShared() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            wb.createSheet("Sheet1");
+            HSSFEvaluationWorkbook book = HSSFEvaluationWorkbook.create(wb);
+            FormulaParseCache cache = new FormulaParseCache();
+            // the shared formula of C2:D5 for D4
+            Ptg[] ptgs = cache.parseShared("A2+$B$1", book, 0, 1, 2, 3, 3);
+            assertEquals("B4+$B$1", FormulaRenderer.toFormulaString(book, ptgs));
+            assertNotNull(ptgs);
+
+            Ptg[] rebased = FormulaParseCache.rebase(new Ptg[]{new RefPtg("A1")}, -1, -1, VERSION);
+            assertEquals("XFD1048576", FormulaRenderer.toFormulaString(book, rebased));
+        }
+    }
+
+    @Test
+    void testParseMixedArea() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            wb.createSheet("Sheet1");
+            HSSFEvaluationWorkbook book = HSSFEvaluationWorkbook.create(wb);
+            FormulaParseCache cache = new FormulaParseCache();
+            // both formulas have the same normalised form, but the endpoints of the first area are swapped
+            cache.parse("SUM($B$5:B1)", book, FormulaType.CELL, 0, 0, 0);
+            Ptg[] ptgs = cache.parse("SUM($B$5:B11)", book, FormulaType.CELL, 0, 10, 0);
+            assertEquals("SUM($B$5:B11)", FormulaRenderer.toFormulaString(book, ptgs));
+
+            cache.parse("SUM($D1:A1)", book, FormulaType.CELL, 0, 0, 0);
+            ptgs = cache.parse("SUM($D1:F1)", book, FormulaType.CELL, 0, 0, 5);
+            assertEquals("SUM($D1:F1)", FormulaRenderer.toFormulaString(book, ptgs));
+        }
+    }
+
+    private static String normalise(String formula, int rowIndex, int columnIndex) {
+        return FormulaParseCache.normalise(formula, rowIndex, columnIndex, VERSION);
+    }
+}
@@ -0,0 +1,194 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link FormulaDependentIndex} and {@link IncrementalRecalculator}
+ */
+class TestIncrementalRecalculator {
+
+    @Test
+    void testOnlyDependentsAreRecalculated() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Sheet1");
+            for (int r = 0; r < 3; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r + 1);
+                row.createCell(1).setCellFormula("A" + (r + 1) + "*2");
+            }
+            sheet.getRow(0).createCell(2).setCellFormula("SUM(A1:A2)");
+            sheet.getRow(1).createCell(2).setCellFormula("B3+1");
+            sheet.getRow(2).createCell(2).setCellFormula("C1+B1");
+
+            HSSFFormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(6, fe.recalculateDirty());
+            assertEquals(0, fe.recalculateDirty());
+
+            // B1, C1 and C3
+            Cell a1 = sheet.getRow(0).getCell(0);
+            a1.setCellValue(10);
+            fe.notifyUpdateCell(a1);
+            assertEquals(3, fe.recalculateDirty());
+            assertEquals(20, sheet.getRow(0).getCell(1).getNumericCellValue(), 0);
+            assertEquals(12, sheet.getRow(0).getCell(2).getNumericCellValue(), 0);
+            assertEquals(32, sheet.getRow(2).getCell(2).getNumericCellValue(), 0);
+
+            // B3 and C2
+            Cell a3 = sheet.getRow(2).getCell(0);
+            a3.setCellValue(5);
+            fe.notifyUpdateCell(a3);
+            assertEquals(2, fe.recalculateDirty());
+            assertEquals(11, sheet.getRow(1).getCell(2).getNumericCellValue(), 0);
+
+            // a changed formula rebuilds the index, C1 and C3 are recalculated
+            Cell c1 = sheet.getRow(0).getCell(2);
+            c1.setCellFormula("SUM(A1:A3)");
+            fe.notifySetFormula(c1);
+            assertEquals(2, fe.recalculateDirty());
+            assertEquals(17, c1.getNumericCellValue(), 0);
+            assertEquals(37, sheet.getRow(2).getCell(2).getNumericCellValue(), 0);
+
+            // the new reference is part of the index
+            Cell a2 = sheet.getRow(1).getCell(0);
+            a2.setCellValue(0);
+            fe.notifyUpdateCell(a2);
+            assertEquals(3, fe.recalculateDirty());
+            assertEquals(15, c1.getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    void testDynamicReferencesAreAlwaysRecalculated() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Sheet1");
+            Row row = sheet.createRow(0);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellValue(2);
+            row.createCell(2).setCellFormula("INDIRECT(\"B1\")*2");
+            row.createCell(3).setCellFormula("C1+1");
+            row.createCell(4).setCellFormula("A1+1");
+
+            HSSFFormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(3, fe.recalculateDirty());
+
+            row.getCell(1).setCellValue(5);
+            fe.notifyUpdateCell(row.getCell(1));
+            assertEquals(2, fe.recalculateDirty());
+            assertEquals(11, row.getCell(3).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    void testSameResultsAsFullRecalculation() throws IOException {
+        try (HSSFWorkbook actual = createWorkbook(); HSSFWorkbook expected = createWorkbook()) {
+            HSSFFormulaEvaluator fe = actual.getCreationHelper().createFormulaEvaluator();
+            fe.recalculateDirty();
+
+            Cell deleted = actual.getSheet("Data").getRow(299).getCell(0);
+            for (Workbook wb : new Workbook[]{actual, expected}) {
+                Sheet data = wb.getSheet("Data");
+                data.getRow(3).getCell(0).setCellValue(-7);
+                data.getRow(150).getCell(0).setCellValue(1000);
+                data.getRow(42).getCell(1).setCellValue("item 3");
+                data.getRow(7).getCell(2).setCellFormula("A8*3");
+                data.getRow(299).removeCell(data.getRow(299).getCell(0));
+                wb.getSheet("Calc").getRow(5).getCell(0).setCellValue(0.5);
+            }
+            Sheet data = actual.getSheet("Data");
+            fe.notifyUpdateCell(data.getRow(3).getCell(0));
+            fe.notifyUpdateCell(data.getRow(150).getCell(0));
+            fe.notifyUpdateCell(data.getRow(42).getCell(1));
+            fe.notifySetFormula(data.getRow(7).getCell(2));
+            fe.notifyDeleteCell(deleted);
+            fe.notifyUpdateCell(actual.getSheet("Calc").getRow(5).getCell(0));
+            fe.recalculateDirty();
+
+            BaseFormulaEvaluator.evaluateAllFormulaCells(expected);
+            assertSameCachedValues(expected, actual);
+        }
+    }
+
+    private static HSSFWorkbook createWorkbook() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        Sheet data = wb.createSheet("Data");
+        Sheet calc = wb.createSheet("Calc");
+        Name name = wb.createName();
+        name.setNameName("Values");
+        name.setRefersToFormula("Data!$A$1:$A$300");
+
+        for (int r = 0; r < 300; r++) {
+            Row row = data.createRow(r);
+            row.createCell(0).setCellValue(r * 1.5);
+            row.createCell(1).setCellValue("item " + (r % 37));
+            row.createCell(2).setCellFormula("A" + (r + 1) + "*2");
+            row.createCell(3).setCellFormula("SUM($C$1:C" + (r + 1) + ")");
+            row.createCell(4).setCellFormula("B" + (r + 1) + "&\"-\"&D" + (r + 1));
+        }
+        for (int r = 0; r < 100; r++) {
+            Row row = calc.createRow(r);
+            row.createCell(0).setCellValue(r);
+            row.createCell(1).setCellFormula("A" + (r + 1) + "+SUM(Values)");
+            row.createCell(2).setCellFormula("COUNTIF(Data!B:B,\"item " + (r % 37) + "\")");
+            row.createCell(3).setCellFormula("INDIRECT(\"Data!D" + (r + 1) + "\")+B" + (r + 1));
+            row.createCell(4).setCellFormula("VLOOKUP(A" + (r + 1) + "*1.5,Data!A1:D300,4,FALSE)");
+        }
+        return wb;
+    }
+
+    private static void assertSameCachedValues(Workbook expected, Workbook actual) {
+        for (int i = 0; i < expected.getNumberOfSheets(); i++) {
+            for (Row row : expected.getSheetAt(i)) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() != CellType.FORMULA) {
+                        continue;
+                    }
+                    Cell other = actual.getSheetAt(i).getRow(cell.getRowIndex()).getCell(cell.getColumnIndex());
+                    String ref = cell.getAddress().formatAsString();
+                    assertEquals(cell.getCachedFormulaResultType(), other.getCachedFormulaResultType(), ref);
+                    switch (cell.getCachedFormulaResultType()) {
+                        case NUMERIC:
+                            assertEquals(cell.getNumericCellValue(), other.getNumericCellValue(), 0, ref);
+                            break;
+                        case STRING:
+                            assertEquals(cell.getStringCellValue(), other.getStringCellValue(), ref);
+                            break;
+                        case ERROR:
+                            assertEquals(cell.getErrorCellValue(), other.getErrorCellValue(), ref);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unexpected result type for " + ref);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.poi.hssf.usermodel.HSSFEvaluationWorkbook;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.eval.EvaluationException;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.OperandResolver;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.FreeRefFunction;
+import org.apache.poi.ss.formula.udf.DefaultUDFFinder;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link FormulaDependencyGraph} and {@link ParallelRecalculator}
+ */
+class TestParallelRecalculator {
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void testLevels() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet1 = wb.createSheet("Sheet1");
+            Sheet sheet2 = wb.createSheet("Sheet2");
+            Row row = sheet1.createRow(0);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellFormula("A1+1");
+            row.createCell(2).setCellFormula("B1*2");
+            row.createCell(3).setCellFormula("SUM(A1:C1)");
+            row.createCell(4).setCellFormula("INDIRECT(\"A1\")");
+            row.createCell(5).setCellFormula("E1+1");
+            row.createCell(6).setCellFormula("G1+1");
+            row.createCell(7).setCellFormula("Sheet2!A1*2");
+            sheet2.createRow(0).createCell(0).setCellFormula("Sheet1!C1+1");
+
+            FormulaDependencyGraph graph = createGraph(wb);
+            assertEquals(8, graph.size());
+            // Sheet1!B1 to H1, Sheet2!A1
+            int[] expected = {0, 1, 2, FormulaDependencyGraph.SERIAL, FormulaDependencyGraph.SERIAL,
+                FormulaDependencyGraph.SERIAL, 3, 2};
+            for (int node = 0; node < expected.length; node++) {
+                assertEquals(expected[node], graph.getLevel(node), "level of node " + node);
+            }
+            assertEquals(4, graph.getLevelCount());
+            assertEquals(2, graph.getLevelStart(2));
+            assertEquals(5, graph.getLevelStart(4));
+            assertEquals(7, graph.getLevelOrder()[3]);
+        }
+    }
+
+    @Test
+    void testNamesAndCircles() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Sheet1");
+            Name name = wb.createName();
+            name.setNameName("Total");
+            name.setRefersToFormula("Sheet1!$A$1:$A$2");
+
+            sheet.createRow(0).createCell(0).setCellFormula("B1*2");
+            sheet.createRow(1).createCell(0).setCellValue(3);
+            sheet.getRow(0).createCell(1).setCellFormula("A2+1");
+            sheet.getRow(1).createCell(1).setCellFormula("SUM(Total)");
+            sheet.createRow(2).createCell(0).setCellFormula("A4");
+            sheet.createRow(3).createCell(0).setCellFormula("A3");
+
+            FormulaDependencyGraph graph = createGraph(wb);
+            // A1, B1, B2, A3, A4
+            assertEquals(1, graph.getLevel(0));
+            assertEquals(0, graph.getLevel(1));
+            assertEquals(2, graph.getLevel(2));
+            assertEquals(FormulaDependencyGraph.SERIAL, graph.getLevel(3));
+            assertEquals(FormulaDependencyGraph.SERIAL, graph.getLevel(4));
+        }
+    }
+
+    @Test
+    void testSameResultsAsSequentialEvaluation() throws IOException {
+        try (Workbook expected = createWorkbook(); Workbook actual = createWorkbook()) {
+            BaseFormulaEvaluator.evaluateAllFormulaCells(expected);
+            BaseFormulaEvaluator.evaluateAllFormulaCells(actual, pool);
+            assertSameCachedValues(expected, actual);
+        }
+    }
+
+    @Test
+    void testLongChain() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue(1);
+            for (int r = 1; r < 20000; r++) {
+                sheet.createRow(r).createCell(0).setCellFormula("A" + r + "+1");
+            }
+            BaseFormulaEvaluator.evaluateAllFormulaCells(wb, pool);
+            assertEquals(20000, sheet.getRow(19999).getCell(0).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    void testUserDefinedFunctions() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            FreeRefFunction twice = (args, ec) -> {
+                try {
+                    ValueEval arg = OperandResolver.getSingleValue(args[0], ec.getRowIndex(), ec.getColumnIndex());
+                    return new NumberEval(2 * OperandResolver.coerceValueToDouble(arg));
+                } catch (EvaluationException e) {
+                    return e.getErrorEval();
+                }
+            };
+            wb.addToolPack(new DefaultUDFFinder(new String[]{"twice"}, new FreeRefFunction[]{twice}));
+            Sheet sheet = wb.createSheet();
+            for (int r = 0; r < 200; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r);
+                row.createCell(1).setCellFormula("TWICE(A" + (r + 1) + ")");
+            }
+            BaseFormulaEvaluator.evaluateAllFormulaCells(wb, pool);
+            for (int r = 0; r < 200; r++) {
+                assertEquals(2 * r, sheet.getRow(r).getCell(1).getNumericCellValue(), 0);
+            }
+        }
+    }
+
+    private static FormulaDependencyGraph createGraph(HSSFWorkbook wb) {
+        EvaluationWorkbook ewb = HSSFEvaluationWorkbook.create(wb);
+        List<EvaluationCell> cells = new ArrayList<>();
+        List<Integer> sheetIndexes = new ArrayList<>();
+        for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+            for (Row r : wb.getSheetAt(i)) {
+                for (Cell c : r) {
+                    if (c.getCellType() == CellType.FORMULA) {
+                        cells.add(ewb.getSheet(i).getCell(c.getRowIndex(), c.getColumnIndex()));
+                        sheetIndexes.add(i);
+                    }
+                }
+            }
+        }
+        return new FormulaDependencyGraph(ewb, sheetIndexes.stream().mapToInt(Integer::intValue).toArray(),
+            cells.toArray(new EvaluationCell[0]));
+    }
+
+    /**
+     * Creates wide levels, so they are evaluated in parallel, with all kinds of results and references
+     */
+    private static Workbook createWorkbook() {
+        HSSFWorkbook wb = new HSSFWorkbook();
+        Sheet data = wb.createSheet("Data");
+        Sheet calc = wb.createSheet("Calc");
+        Name name = wb.createName();
+        name.setNameName("Values");
+        name.setRefersToFormula("Data!$A$1:$A$500");
+
+        for (int r = 0; r < 500; r++) {
+            Row row = data.createRow(r);
+            row.createCell(0).setCellValue(r * 1.5);
+            row.createCell(1).setCellValue("item " + (r % 37));
+            row.createCell(2).setCellFormula("A" + (r + 1) + "*2");
+            row.createCell(3).setCellFormula("C" + (r + 1) + "+IF(MOD(A" + (r + 1) + ",2)=0,1,-1)");
+            row.createCell(4).setCellFormula("B" + (r + 1) + "&\"-\"&TEXT(D" + (r + 1) + ",\"0.00\")");
+            row.createCell(5).setCellFormula("D" + (r + 1) + ">100");
+            row.createCell(6).setCellFormula("1/(A" + (r + 1) + "-3)");
+            row.createCell(7).setCellFormula("SUM($C$1:C" + (r + 1) + ")");
+        }
+        for (int r = 0; r < 300; r++) {
+            Row row = calc.createRow(r);
+            row.createCell(0).setCellFormula("VLOOKUP(" + (r * 1.5) + ",Data!A1:D500,4,FALSE)");
+            row.createCell(1).setCellFormula("A" + (r + 1) + "+SUM(Values)");
+            row.createCell(2).setCellFormula("INDIRECT(\"Data!D" + (r + 1) + "\")+B" + (r + 1));
+            row.createCell(3).setCellFormula("C" + (r + 1) + "+D" + (r + 2));
+            row.createCell(4).setCellFormula("COUNTIF(Data!B1:B500,\"item " + (r % 37) + "\")*FACTDOUBLE(" + (r % 20) + ")");
+        }
+        // a circular reference
+        calc.createRow(300).createCell(3).setCellFormula("D1");
+        return wb;
+    }
+
+    private static void assertSameCachedValues(Workbook expected, Workbook actual) {
+        for (int i = 0; i < expected.getNumberOfSheets(); i++) {
+            for (Row row : expected.getSheetAt(i)) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() != CellType.FORMULA) {
+                        continue;
+                    }
+                    Cell other = actual.getSheetAt(i).getRow(cell.getRowIndex()).getCell(cell.getColumnIndex());
+                    String ref = cell.getAddress().formatAsString();
+                    assertEquals(cell.getCachedFormulaResultType(), other.getCachedFormulaResultType(), ref);
+                    switch (cell.getCachedFormulaResultType()) {
+                        case NUMERIC:
+                            assertEquals(cell.getNumericCellValue(), other.getNumericCellValue(), 0, ref);
+                            break;
+                        case STRING:
+                            assertEquals(cell.getStringCellValue(), other.getStringCellValue(), ref);
+                            break;
+                        case BOOLEAN:
+                            assertEquals(cell.getBooleanCellValue(), other.getBooleanCellValue(), ref);
+                            break;
+                        case ERROR:
+                            assertEquals(cell.getErrorCellValue(), other.getErrorCellValue(), ref);
+                            break;
+                        default:
+                            throw new IllegalStateException("Unexpected result type for " + ref);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -19,46 +19,59 @@
 
 package org.apache.poi.ss.formula;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 
-import org.apache.poi.ss.formula.PlainCellCache.Loc;
 import org.apache.poi.ss.formula.eval.NumberEval;
 import org.junit.jupiter.api.Test;
 
+/**
+ * Tests {@link PlainCellCache}
+ */
 class TestPlainCellCache {
 
     @Test
-    void testLoc(){
-        PlainCellCache cache = new PlainCellCache();
-        for (int bookIndex = 0; bookIndex < 0x1000; bookIndex += 0x100) {
-            for (int sheetIndex = 0; sheetIndex < 0x1000; sheetIndex += 0x100) {
-                for (int rowIndex = 0; rowIndex < 0x100000; rowIndex += 0x1000) {
-                    for (int columnIndex = 0; columnIndex < 0x4000; columnIndex += 0x100) {
-                        Loc loc = new Loc(bookIndex, sheetIndex, rowIndex, columnIndex);
-                        assertEquals(bookIndex, loc.getBookIndex());
-                        assertEquals(sheetIndex, loc.getSheetIndex());
-                        assertEquals(rowIndex, loc.getRowIndex());
-                        assertEquals(columnIndex, loc.getColumnIndex());
-
-                        Loc sameLoc = new Loc(bookIndex, sheetIndex, rowIndex, columnIndex);
-                        assertEquals(loc.hashCode(), sameLoc.hashCode());
-                        assertEquals(loc, sameLoc);
-
-                        assertNull(cache.get(loc));
-                        PlainValueCellCacheEntry entry = new PlainValueCellCacheEntry(new NumberEval(0));
-                        cache.put(loc, entry);
-                        assertSame(entry, cache.get(loc));
-                        cache.remove(loc);
-                        assertNull(cache.get(loc));
+    void testKeys() {
+        long key = PlainCellCache.toKey(1, 2, 1048575, 16383);
+        assertNotEquals(key, PlainCellCache.toKey(2, 1, 1048575, 16383));
+        assertNotEquals(key, PlainCellCache.toKey(1, 2, 16383, 16383));
+        assertThrows(IllegalArgumentException.class, () -> PlainCellCache.toKey(0, 0, 1048576, 0));
+        assertThrows(IllegalArgumentException.class, () -> PlainCellCache.toKey(0, 0, 0, 16384));
+        assertThrows(IllegalArgumentException.class, () -> PlainCellCache.toKey(0, -1, 0, 0));
+    }
 
-                        cache.put(loc, entry);
-                    }
-                    cache.clear();
-                }
+    @Test
+    void testSameAsHashMap() {
+        PlainCellCache cache = new PlainCellCache();
+        Map<Long, PlainValueCellCacheEntry> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            // a small area, so keys are often replaced and removed
+            long key = PlainCellCache.toKey(random.nextInt(2), random.nextInt(3), random.nextInt(300), random.nextInt(20));
+            if (random.nextInt(3) == 0) {
+                cache.remove(key);
+                expected.remove(key);
+            } else {
+                PlainValueCellCacheEntry entry = new PlainValueCellCacheEntry(new NumberEval(i));
+                cache.put(key, entry);
+                expected.put(key, entry);
             }
+            long probe = PlainCellCache.toKey(random.nextInt(2), random.nextInt(3), random.nextInt(300), random.nextInt(20));
+            assertSame(expected.get(probe), cache.get(probe));
+        }
+        for (Map.Entry<Long, PlainValueCellCacheEntry> e : expected.entrySet()) {
+            assertSame(e.getValue(), cache.get(e.getKey()));
+        }
 
+        cache.clear();
+        for (long key : expected.keySet()) {
+            assertNull(cache.get(key));
         }
     }
 }
@@ -22,13 +22,22 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.formula.IStabilityClassifier;
 import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
 import org.junit.jupiter.api.Test;
 
 public class BaseTestForkedEvaluator {
@@ -114,4 +123,154 @@ public class BaseTestForkedEvaluator {
             assertEquals("Underlying cell 'A2' is missing in master sheet.", ex.getMessage());
         }
     }
+
+    /**
+     * The evaluators of a {@link ForkedEvaluationBase} reuse the results of the base,
+     * until their inputs change
+     */
+    @Test
+    void testSharedBase() throws IOException {
+        try (Workbook wb = createWorkbook()) {
+            Sheet calc = wb.getSheet("Calculations");
+            calc.getRow(0).createCell(2).setCellFormula("A1*2");
+            calc.getRow(0).createCell(3).setCellFormula("B1+1");
+            Row row = calc.createRow(1);
+            row.createCell(0).setCellValue(7);
+            row.createCell(1).setCellFormula("SUBTOTAL(9,A1:A2)+SUBTOTAL(9,C1:C1)");
+            row.createCell(2).setCellFormula("SUM(INDIRECT(\"Inputs!A1:B1\"))");
+            row.createCell(3).setCellFormula("\"x\"&Inputs!B1");
+
+            ForkedEvaluationBase base = ForkedEvaluationBase.create(wb, null, null);
+            ForkedEvaluator fe1 = base.createEvaluator();
+            ForkedEvaluator fe2 = base.createEvaluator();
+            assertNumber(7.0, fe1, 0, 0);
+            assertNumber(14.0, fe1, 0, 2);
+            assertNumber(6.0, fe1, 0, 3);
+            assertNumber(28.0, fe1, 1, 1);
+            assertNumber(5.0, fe1, 1, 2);
+            assertEquals("x3", ((StringEval) fe1.evaluate("Calculations", 1, 3)).getStringValue());
+
+            fe1.updateCell("Inputs", 0, 0, new NumberEval(4.0));
+            fe1.updateCell("Inputs", 0, 1, new NumberEval(1.1));
+            fe2.updateCell("Calculations", 0, 1, new NumberEval(1.0));
+            assertNumber(18.9, fe1, 0, 0);
+            assertNumber(37.8, fe1, 0, 2);
+            assertNumber(6.0, fe1, 0, 3);
+            assertNumber(18.9 + 7.0 + 37.8, fe1, 1, 1);
+            assertNumber(5.1, fe1, 1, 2);
+            assertEquals("x1.1", ((StringEval) fe1.evaluate("Calculations", 1, 3)).getStringValue());
+            assertNumber(-1.0, fe2, 0, 0);
+            assertNumber(-2.0, fe2, 0, 2);
+            assertNumber(2.0, fe2, 0, 3);
+            assertNumber(4.0, fe2, 1, 1);
+
+            // a formula cell replaced by a value
+            fe2.updateCell("Calculations", 0, 0, new NumberEval(10.0));
+            assertNumber(20.0, fe2, 0, 2);
+            assertNumber(37.0, fe2, 1, 1);
+
+            // the base is unchanged
+            ForkedEvaluator fe3 = base.createEvaluator();
+            assertNumber(7.0, fe3, 0, 0);
+            assertNumber(28.0, fe3, 1, 1);
+            fe3.updateCell("Calculations", 0, 0, new NumberEval(1.0));
+            assertNumber(1.0, fe3, 0, 0);
+            assertNumber(2.0, fe3, 0, 2);
+            assertNumber(10.0, fe3, 1, 1);
+        }
+    }
+
+    @Test
+    void testSharedBaseConcurrently() throws Exception {
+        try (Workbook wb = newWorkbook()) {
+            Sheet inputs = wb.createSheet("Inputs");
+            Sheet calc = wb.createSheet("Calculations");
+            for (int r = 0; r < 100; r++) {
+                inputs.createRow(r).createCell(0).setCellValue(r);
+                Row row = calc.createRow(r);
+                row.createCell(0).setCellFormula("Inputs!A" + (r + 1) + "*2");
+                row.createCell(1).setCellFormula(r == 0 ? "A1" : "B" + r + "+A" + (r + 1));
+            }
+            ForkedEvaluationBase base = ForkedEvaluationBase.create(wb, null, null);
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    int input = t * 10;
+                    futures.add(executor.submit(() -> {
+                        ForkedEvaluator fe = base.createEvaluator();
+                        assertNumber(99 * 100, fe, 99, 1);
+                        for (int i = 1; i <= 5; i++) {
+                            fe.updateCell("Inputs", input, 0, new NumberEval(input + i * 100.0));
+                            assertNumber(2 * (input + i * 100.0), fe, input, 0);
+                            assertNumber(99 * 100 + 2 * i * 100, fe, 99, 1);
+                            assertNumber(input == 0 ? 0 : (input - 1) * input, fe, input - 1, 1);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            // the master workbook is only read
+            FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(99 * 100, evaluator.evaluate(calc.getRow(99).getCell(1)).getNumberValue(), 0.0);
+        }
+    }
+
+    @Test
+    void testScenarios() throws IOException {
+        try (Workbook wb = createWorkbook()) {
+            Row row = wb.getSheet("Calculations").createRow(1);
+            row.createCell(0).setCellFormula("A1>10");
+            row.createCell(1).setCellFormula("IF(A1>0,\"positive\",1/0)");
+            row.createCell(2).setCellFormula("B1*2");
+            ForkedEvaluationBase base = ForkedEvaluationBase.create(wb, null, null);
+
+            CellReference[] inputCells = {new CellReference("Inputs!A1"), new CellReference("Inputs!B1")};
+            CellReference[] outputCells = {
+                new CellReference("Calculations!A1"), new CellReference("Calculations!A2"),
+                new CellReference("Calculations!B2"), new CellReference("Calculations!C2")
+            };
+            double[][] inputs = new double[100][];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new double[]{i % 7, i};
+            }
+            ForkJoinPool pool = new ForkJoinPool(3);
+            try {
+                double[][] results = base.evaluateScenarios(inputCells, inputs, outputCells, pool);
+                assertEquals(inputs.length, results.length);
+                for (int i = 0; i < inputs.length; i++) {
+                    double a1 = 5 * (i % 7) - i;
+                    assertEquals(a1, results[i][0], 1e-9);
+                    assertEquals(a1 > 10 ? 1 : 0, results[i][1], 0.0);
+                    assertEquals(Double.NaN, results[i][2], 0.0);
+                    assertEquals(10.0, results[i][3], 0.0);
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            assertEquals(0, base.evaluateScenarios(inputCells, new double[0][], outputCells,
+                ForkJoinPool.commonPool()).length);
+            assertThrows(IllegalArgumentException.class, () -> base.evaluateScenarios(inputCells,
+                new double[][]{{1}}, outputCells, ForkJoinPool.commonPool()));
+            assertThrows(IllegalArgumentException.class, () -> base.evaluateScenarios(
+                new CellReference[]{new CellReference("A1")}, new double[][]{{1}}, outputCells, ForkJoinPool.commonPool()));
+        }
+    }
+
+    private static void assertNumber(double expected, ForkedEvaluator fe, int rowIndex, int columnIndex) {
+        if (rowIndex < 0) {
+            return;
+        }
+        NumberEval eval = (NumberEval) fe.evaluate("Calculations", rowIndex, columnIndex);
+        assertNotNull(eval);
+        assertEquals(expected, eval.getNumberValue(), 1e-9);
+    }
 }
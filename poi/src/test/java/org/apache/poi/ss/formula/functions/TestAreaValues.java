@@ -0,0 +1,217 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.TwoDEval;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the aggregate functions with the {@link AreaValues} of their areas
+ */
+final class TestAreaValues {
+
+    @Test
+    void testTypes() {
+        ValueEval[] values = {
+            new NumberEval(1.5), BoolEval.TRUE, new StringEval("2"),
+            BlankEval.instance, ErrorEval.NA, new NumberEval(-3)
+        };
+        AreaValues areaValues = new AreaValues(EvalFactory.createAreaEval("A1:C2", values));
+        assertEquals(3, areaValues.getWidth());
+        assertFalse(areaValues.isNumbersOnly());
+        assertArrayEquals(new double[]{1.5, 1, 0, 0, 0, -3}, areaValues.getNumbers(), 0);
+        assertArrayEquals(new byte[]{
+            AreaValues.TYPE_NUMBER, AreaValues.TYPE_BOOLEAN, AreaValues.TYPE_STRING,
+            AreaValues.TYPE_BLANK, AreaValues.TYPE_OTHER, AreaValues.TYPE_NUMBER
+        }, areaValues.getTypes());
+
+        TwoDEval numbers = EvalFactory.createAreaEval("A1:B1", new ValueEval[]{new NumberEval(1), new NumberEval(2)});
+        assertTrue(numbers.getAreaValues().isNumbersOnly());
+    }
+
+    @Test
+    void testAggregates() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = createTable(wb);
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            Cell cell = sheet.getRow(0).createCell(5);
+            for (int i = 0; i < 3; i++) {
+                // the later passes use the cached values
+                assertNumber(fe, cell, "SUM(A1:B4)", 1 + 2 + 3 + 4 + 10 + 20 + 30);
+                assertNumber(fe, cell, "SUM(C1:C4)", 5);
+                assertNumber(fe, cell, "COUNT(A1:C4)", 8);
+                assertNumber(fe, cell, "COUNTA(A1:C4)", 11);
+                assertNumber(fe, cell, "AVERAGE(C1:C4)", 5);
+                assertNumber(fe, cell, "AVERAGEA(C1:C4)", 6 / 3.0);
+                assertNumber(fe, cell, "MAX(A1:C4)", 30);
+                assertNumber(fe, cell, "SUMPRODUCT(A1:A4,B1:B4)", 10 + 40 + 90);
+                assertNumber(fe, cell, "SUMPRODUCT(A1:A4,C1:C4)", 5 + 2);
+                assertNumber(fe, cell, "SUMPRODUCT(A1:A3,B1:B3,A1:A3)", 10 + 80 + 270);
+                assertNumber(fe, cell, "MDETERM(A1:B2)", 1 * 20 - 10 * 2);
+                assertError(fe, cell, "SUM(A1:D4)", FormulaError.DIV0);
+                assertError(fe, cell, "SUMPRODUCT(A1:A4,D1:D4)", FormulaError.DIV0);
+                fe.clearAllCachedResultValues();
+            }
+        }
+    }
+
+    @Test
+    void testChangedCells() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = createTable(wb);
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            Cell f1 = sheet.getRow(0).createCell(5);
+            Cell f2 = sheet.getRow(1).createCell(5);
+            f1.setCellFormula("SUM(A1:A5)");
+            f2.setCellFormula("SUMPRODUCT(A1:A5,A1:A5)");
+            assertEquals(10, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(30, fe.evaluate(f2).getNumberValue(), 0);
+
+            // a plain value
+            Cell a2 = sheet.getRow(1).getCell(0);
+            a2.setCellValue(5);
+            fe.notifyUpdateCell(a2);
+            assertEquals(13, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(51, fe.evaluate(f2).getNumberValue(), 0);
+
+            // a blank cell
+            Cell a5 = sheet.createRow(4).createCell(0);
+            a5.setCellValue(2);
+            fe.notifyUpdateCell(a5);
+            assertEquals(15, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(55, fe.evaluate(f2).getNumberValue(), 0);
+
+            // an input of a formula cell
+            Cell a1 = sheet.getRow(0).getCell(0);
+            a1.setCellFormula("G1");
+            fe.notifySetFormula(a1);
+            assertEquals(14, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(54, fe.evaluate(f2).getNumberValue(), 0);
+            Cell g1 = sheet.getRow(0).createCell(6);
+            g1.setCellValue(3);
+            fe.notifyUpdateCell(g1);
+            assertEquals(17, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(63, fe.evaluate(f2).getNumberValue(), 0);
+        }
+    }
+
+    @Test
+    void testUnusedRows() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = createTable(wb);
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            Cell cell = sheet.getRow(0).createCell(5);
+            for (int i = 0; i < 2; i++) {
+                // the rows after row 4 are only counted
+                assertNumber(fe, cell, "SUM(A1:A60000)", 1 + 2 + 3 + 4);
+                assertNumber(fe, cell, "COUNT(A1:C60000)", 8);
+                assertNumber(fe, cell, "AVERAGEA(C1:C60000)", 6 / 3.0);
+                assertNumber(fe, cell, "SUMPRODUCT(A1:A60000,B1:B60000)", 10 + 40 + 90);
+                assertNumber(fe, cell, "SUMPRODUCT(A1:A60000,A1:A60000,A1:A60000)", 1 + 8 + 27 + 64);
+                assertNumber(fe, cell, "SUMPRODUCT(A1:A60000)", 10);
+                assertNumber(fe, cell, "SUMPRODUCT(A3:A60000,A1:A59998)", 3 + 8);
+                assertNumber(fe, cell, "SUM(A10:A60000)", 0);
+                assertError(fe, cell, "SUMPRODUCT(A1:A60000,D1:D60000)", FormulaError.DIV0);
+            }
+
+            // a value after the last used row
+            Cell f1 = sheet.getRow(1).createCell(5);
+            f1.setCellFormula("SUM(A1:A60000)");
+            assertEquals(10, fe.evaluate(f1).getNumberValue(), 0);
+            Cell a100 = sheet.createRow(99).createCell(0);
+            a100.setCellValue(7);
+            fe.notifyUpdateCell(a100);
+            assertEquals(17, fe.evaluate(f1).getNumberValue(), 0);
+        }
+    }
+
+    @Test
+    void testUsedRows() {
+        ValueEval[] values = new ValueEval[6];
+        values[0] = new NumberEval(1);
+        values[1] = new NumberEval(2);
+        for (int i = 2; i < values.length; i++) {
+            values[i] = BlankEval.instance;
+        }
+        AreaValues areaValues = new AreaValues(EvalFactory.createAreaEval("A1:B3", values), 1);
+        // only the used row is kept
+        assertArrayEquals(new double[]{1, 2}, areaValues.getNumbers(), 0);
+        assertTrue(areaValues.isNumbersOnly());
+        assertEquals(4, areaValues.getBlankCount());
+
+        areaValues = new AreaValues(EvalFactory.createAreaEval("A1:B3", values), 5);
+        assertEquals(6, areaValues.getNumbers().length);
+        assertEquals(0, areaValues.getBlankCount());
+    }
+
+    /**
+     * A1:A4 with 1 to 4, B1:B4 with ten times that except a string in B4,
+     * C1:C4 with 5, TRUE, "x", (blank) and D1:D4 with #DIV/0! in D3
+     */
+    private static Sheet createTable(HSSFWorkbook wb) {
+        Sheet sheet = wb.createSheet();
+        for (int r = 0; r < 4; r++) {
+            Row row = sheet.createRow(r);
+            row.createCell(0).setCellValue(r + 1);
+            if (r < 3) {
+                row.createCell(1).setCellValue((r + 1) * 10);
+            } else {
+                row.createCell(1).setCellValue("text");
+            }
+            row.createCell(3).setCellValue(r);
+        }
+        sheet.getRow(0).createCell(2).setCellValue(5);
+        sheet.getRow(1).createCell(2).setCellValue(true);
+        sheet.getRow(2).createCell(2).setCellValue("x");
+        sheet.getRow(2).getCell(3).setCellErrorValue(FormulaError.DIV0.getCode());
+        return sheet;
+    }
+
+    private static void assertNumber(FormulaEvaluator fe, Cell cell, String formula, double expected) {
+        cell.setCellFormula(formula);
+        fe.notifySetFormula(cell);
+        assertEquals(expected, fe.evaluate(cell).getNumberValue(), 1e-9, formula);
+    }
+
+    private static void assertError(FormulaEvaluator fe, Cell cell, String formula, FormulaError expected) {
+        cell.setCellFormula(formula);
+        fe.notifySetFormula(cell);
+        CellValue value = fe.evaluate(cell);
+        assertEquals(expected.getCode(), value.getErrorValue(), formula);
+    }
+}
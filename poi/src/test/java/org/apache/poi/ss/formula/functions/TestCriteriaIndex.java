@@ -0,0 +1,263 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.TwoDEval;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.CountUtils.I_MatchPredicate;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the ~IF functions with a shared {@link CriteriaIndex}
+ */
+final class TestCriteriaIndex {
+
+    @Test
+    void testParsedCriteria() {
+        I_MatchPredicate gt5 = Countif.createCriteriaPredicate(new StringEval(">5"), 0, 0);
+        assertSame(gt5, Countif.createCriteriaPredicate(new StringEval(">5"), 0, 0));
+        assertEquals(gt5, Countif.createCriteriaPredicate(new StringEval(">5.0"), 0, 0));
+        assertNotEquals(gt5, Countif.createCriteriaPredicate(new StringEval(">=5"), 0, 0));
+        assertEquals(Countif.createCriteriaPredicate(new NumberEval(5), 0, 0),
+            Countif.createCriteriaPredicate(new StringEval("5"), 0, 0));
+        assertNotEquals(Countif.createCriteriaPredicate(new StringEval("a*"), 0, 0),
+            Countif.createCriteriaPredicate(new StringEval("A*"), 0, 0));
+    }
+
+    @Test
+    void testMatches() {
+        ValueEval[] values = {
+            new StringEval("a"), new NumberEval(5), BlankEval.instance, new StringEval("A"),
+            new StringEval("5"), BoolEval.TRUE, ErrorEval.NA, new NumberEval(7), new StringEval("ab")
+        };
+        TwoDEval area = EvalFactory.createAreaEval("A1:C3", values);
+        CriteriaIndex index = new CriteriaIndex(area);
+        assertEquals(9, index.getSize());
+        assertMatches(index, "a", 0, 3);
+        assertMatches(index, "a*", 0, 3, 8);
+        assertMatches(index, "5", 1, 4);
+        assertMatches(index, ">5", 7);
+        // text criteria never match numbers, booleans or errors
+        assertMatches(index, "<>a", 2, 4, 8);
+        assertMatches(index, "TRUE", 5);
+        assertMatches(index, "#N/A", 6);
+    }
+
+    @Test
+    void testLargeAreas() {
+        assertTrue(CriteriaIndex.isIndexable(createBlankArea(1048576, 2047)));
+        // the positions of a whole sheet don't fit into an int
+        TwoDEval sheet = createBlankArea(1048576, 16384);
+        assertFalse(CriteriaIndex.isIndexable(sheet));
+        assertThrows(ArithmeticException.class, () -> new CriteriaIndex(sheet));
+    }
+
+    @Test
+    void testIfsFunctions() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            String[] regions = {"north", "south", "East", "north", "west", "NORTH", "south", "east"};
+            for (int r = 0; r < regions.length; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(regions[r]);
+                row.createCell(1).setCellValue(r % 3);
+                row.createCell(2).setCellValue((r + 1) * 10);
+            }
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            Cell cell = sheet.getRow(0).createCell(5);
+            for (int i = 0; i < 3; i++) {
+                // the later passes use the indexes
+                assertNumber(fe, cell, "SUMIFS(C1:C8,A1:A8,\"north\")", 10 + 40 + 60);
+                assertNumber(fe, cell, "SUMIFS(C1:C8,A1:A8,\"north\",B1:B8,\">0\")", 60);
+                assertNumber(fe, cell, "COUNTIFS(A1:A8,\"*th\",B1:B8,1)", 1);
+                assertNumber(fe, cell, "COUNTIFS(A1:A8,\"east\",B1:B8,\"<>9\")", 2);
+                assertNumber(fe, cell, "AVERAGEIFS(C1:C8,A1:A8,\"south\")", 45);
+                assertNumber(fe, cell, "MAXIFS(C1:C8,A1:A8,\"north\",B1:B8,\"<2\")", 40);
+                assertNumber(fe, cell, "MINIFS(C1:C8,B1:B8,2)", 30);
+                assertNumber(fe, cell, "COUNTIF(A1:A8,\"north\")", 3);
+                assertNumber(fe, cell, "COUNTIF(B1:B8,\">=1\")", 5);
+                assertNumber(fe, cell, "SUMIFS(C1:C8,A1:A8,\"nowhere\",B1:B8,1)", 0);
+                fe.clearAllCachedResultValues();
+            }
+        }
+    }
+
+    @Test
+    void testChangedCells() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            for (int r = 0; r < 5; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue(r % 2 == 0 ? "x" : "y");
+                row.createCell(1).setCellValue(r + 1);
+            }
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            Cell f1 = sheet.getRow(0).createCell(3);
+            Cell f2 = sheet.getRow(1).createCell(3);
+            f1.setCellFormula("SUMIFS(B1:B6,A1:A6,\"x\")");
+            f2.setCellFormula("COUNTIF(A1:A6,\"x\")");
+            assertEquals(9, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(3, fe.evaluate(f2).getNumberValue(), 0);
+
+            // a plain value
+            Cell a2 = sheet.getRow(1).getCell(0);
+            a2.setCellValue("X");
+            fe.notifyUpdateCell(a2);
+            assertEquals(11, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(4, fe.evaluate(f2).getNumberValue(), 0);
+
+            // a blank cell
+            Row row6 = sheet.createRow(5);
+            Cell a6 = row6.createCell(0);
+            a6.setCellValue("x");
+            fe.notifyUpdateCell(a6);
+            Cell b6 = row6.createCell(1);
+            b6.setCellValue(100);
+            fe.notifyUpdateCell(b6);
+            assertEquals(111, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(5, fe.evaluate(f2).getNumberValue(), 0);
+
+            // an input of a formula cell
+            Cell a1 = sheet.getRow(0).getCell(0);
+            a1.setCellFormula("E1");
+            fe.notifySetFormula(a1);
+            assertEquals(110, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(4, fe.evaluate(f2).getNumberValue(), 0);
+            Cell e1 = sheet.getRow(0).createCell(4);
+            e1.setCellValue("x");
+            fe.notifyUpdateCell(e1);
+            assertEquals(111, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(5, fe.evaluate(f2).getNumberValue(), 0);
+        }
+    }
+
+    @Test
+    void testCriteriaPerRow() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet();
+            int rows = 500;
+            for (int r = 0; r < rows; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("key " + r);
+                row.createCell(2).setCellValue(r);
+            }
+            // each row has its own criteria
+            for (int r = 0; r < rows; r++) {
+                sheet.getRow(r).createCell(3).setCellFormula("SUMIFS(C1:C" + rows + ",A1:A" + rows + ",A" + (r + 1) + ")");
+            }
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            for (int r = 0; r < rows; r++) {
+                assertEquals(r, fe.evaluate(sheet.getRow(r).getCell(3)).getNumberValue(), 0);
+            }
+        }
+
+        ValueEval[] values = new ValueEval[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new StringEval("key " + i);
+        }
+        CriteriaIndex index = new CriteriaIndex(EvalFactory.createAreaEval("A1:A1000", values));
+        I_MatchPredicate first = Countif.createCriteriaPredicate(values[0], 0, 0);
+        BitSet firstMatches = index.getMatches(first);
+        for (int i = 1; i < values.length; i++) {
+            assertEquals(1, index.getMatches(Countif.createCriteriaPredicate(values[i], i, 0)).cardinality());
+            // the bitmap of a frequently used criteria is kept
+            assertSame(firstMatches, index.getMatches(first));
+        }
+        assertEquals(CriteriaIndex.MAX_CACHED_MATCHES, index.getCachedMatchesCount());
+    }
+
+    private static TwoDEval createBlankArea(int height, int width) {
+        return new TwoDEval() {
+            @Override
+            public ValueEval getValue(int rowIndex, int columnIndex) {
+                return BlankEval.instance;
+            }
+
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public boolean isColumn() {
+                return width == 1;
+            }
+
+            @Override
+            public TwoDEval getRow(int rowIndex) {
+                return createBlankArea(1, width);
+            }
+
+            @Override
+            public TwoDEval getColumn(int columnIndex) {
+                return createBlankArea(height, 1);
+            }
+
+            @Override
+            public boolean isSubTotal(int rowIndex, int columnIndex) {
+                return false;
+            }
+
+            @Override
+            public boolean isRowHidden(int rowIndex) {
+                return false;
+            }
+        };
+    }
+
+    private static void assertMatches(CriteriaIndex index, String criteria, int... expected) {
+        BitSet expectedMatches = new BitSet();
+        for (int position : expected) {
+            expectedMatches.set(position);
+        }
+        I_MatchPredicate predicate = Countif.createCriteriaPredicate(new StringEval(criteria), 0, 0);
+        assertEquals(expectedMatches, index.getMatches(predicate), criteria);
+        assertSame(index.getMatches(predicate), index.getMatches(predicate), criteria);
+    }
+
+    private static void assertNumber(FormulaEvaluator fe, Cell cell, String formula, double expected) {
+        cell.setCellFormula(formula);
+        fe.notifySetFormula(cell);
+        assertEquals(expected, fe.evaluate(cell).getNumberValue(), 0, formula);
+    }
+}
@@ -0,0 +1,173 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.eval.BlankEval;
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the exact matches of the lookup functions with a shared {@link LookupIndex}
+ */
+final class TestLookupIndex {
+
+    @Test
+    void testKeys() {
+        assertEquals(LookupIndex.toKey(new NumberEval(1)), LookupIndex.toKey(new NumberEval(1.0)));
+        assertNotEquals(LookupIndex.toKey(new NumberEval(0.0)), LookupIndex.toKey(new NumberEval(-0.0)));
+        assertEquals(LookupIndex.toKey(new StringEval("Straße")), LookupIndex.toKey(new StringEval("STRAße")));
+        assertEquals(LookupIndex.toKey(new StringEval("abc")), LookupIndex.toKey(new StringEval("ABC")));
+        assertNotEquals(LookupIndex.toKey(new StringEval("1")), LookupIndex.toKey(new NumberEval(1)));
+        assertNotEquals(LookupIndex.toKey(new StringEval("TRUE")), LookupIndex.toKey(BoolEval.TRUE));
+        assertNull(LookupIndex.toKey(BlankEval.instance));
+        assertNull(LookupIndex.toKey(ErrorEval.NA));
+    }
+
+    @Test
+    void testFirstAndLastMatch() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = createTable(wb);
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            Cell cell = sheet.getRow(0).createCell(5);
+            for (int i = 0; i < 2; i++) {
+                // the second pass uses the index
+                assertNumber(fe, cell, "VLOOKUP(\"apple\",A1:B8,2,FALSE)", 1);
+                assertNumber(fe, cell, "MATCH(\"APPLE\",A1:A8,0)", 1);
+                assertNumber(fe, cell, "XLOOKUP(\"Apple\",A1:A8,B1:B8,\"none\",0,-1)", 6);
+                assertNumber(fe, cell, "XMATCH(\"apple\",A1:A8,0,-1)", 6);
+                assertNumber(fe, cell, "HLOOKUP(3,A10:H11,2,FALSE)", 30);
+                assertNumber(fe, cell, "VLOOKUP(2,A1:B8,2,FALSE)", 7);
+                assertNumber(fe, cell, "MATCH(TRUE,A1:A8,0)", 5);
+                assertError(fe, cell, "VLOOKUP(\"2\",A1:B8,2,FALSE)", FormulaError.NA);
+                assertError(fe, cell, "MATCH(\"pear\",A1:A8,0)", FormulaError.NA);
+                // wildcards are matched without the index
+                assertNumber(fe, cell, "VLOOKUP(\"b*\",A1:B8,2,FALSE)", 2);
+                assertNumber(fe, cell, "MATCH(\"b*\",A1:A8,0)", 2);
+                assertNumber(fe, cell, "XMATCH(\"b?nana\",A1:A8,2)", 2);
+                // blank lookup values are zero or an empty string
+                assertError(fe, cell, "MATCH(G1,A1:A8,0)", FormulaError.NA);
+                assertNumber(fe, cell, "XMATCH(G1,A1:A8)", 3);
+                // the last cell of a backward search
+                assertNumber(fe, cell, "XMATCH(\"cherry\",A1:A8,0,-1)", 8);
+                fe.clearAllCachedResultValues();
+            }
+        }
+    }
+
+    @Test
+    void testChangedCells() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            Sheet sheet = createTable(wb);
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            Cell f1 = sheet.getRow(0).createCell(5);
+            Cell f2 = sheet.getRow(1).createCell(5);
+            f1.setCellFormula("MATCH(\"kiwi\",A1:A8,0)");
+            f2.setCellFormula("VLOOKUP(\"kiwi\",A1:B8,2,FALSE)");
+            assertEquals(FormulaError.NA.getCode(), fe.evaluate(f1).getErrorValue());
+            assertEquals(FormulaError.NA.getCode(), fe.evaluate(f2).getErrorValue());
+
+            // a plain value
+            Cell a5 = sheet.getRow(4).getCell(0);
+            a5.setCellValue("Kiwi");
+            fe.notifyUpdateCell(a5);
+            assertEquals(5, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(5, fe.evaluate(f2).getNumberValue(), 0);
+
+            // a blank cell
+            Cell a3 = sheet.getRow(2).createCell(0);
+            a3.setCellValue("kiwi");
+            fe.notifyUpdateCell(a3);
+            assertEquals(3, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(3, fe.evaluate(f2).getNumberValue(), 0);
+
+            // an input of a formula cell
+            Cell a7 = sheet.getRow(6).getCell(0);
+            a7.setCellFormula("G2");
+            fe.notifySetFormula(a7);
+            f1.setCellFormula("MATCH(\"melon\",A1:A8,0)");
+            fe.notifySetFormula(f1);
+            f2.setCellFormula("VLOOKUP(\"melon\",A1:B8,2,FALSE)");
+            fe.notifySetFormula(f2);
+            assertEquals(FormulaError.NA.getCode(), fe.evaluate(f1).getErrorValue());
+            assertEquals(FormulaError.NA.getCode(), fe.evaluate(f2).getErrorValue());
+            Cell g2 = sheet.getRow(1).createCell(6);
+            g2.setCellValue("melon");
+            fe.notifyUpdateCell(g2);
+            assertEquals(7, fe.evaluate(f1).getNumberValue(), 0);
+            assertEquals(7, fe.evaluate(f2).getNumberValue(), 0);
+        }
+    }
+
+    /**
+     * A1:B8 with the values apple, banana, "", (blank), TRUE, APPLE, 2, cherry in column A and their row
+     * numbers in column B and A10:H11 with 1 to 8 and ten times that
+     */
+    private static Sheet createTable(HSSFWorkbook wb) {
+        Sheet sheet = wb.createSheet();
+        Object[] values = {"apple", "banana", "", null, true, "APPLE", 2, "cherry"};
+        for (int r = 0; r < values.length; r++) {
+            Row row = sheet.createRow(r);
+            Object value = values[r];
+            if (value instanceof String) {
+                row.createCell(0).setCellValue((String) value);
+            } else if (value instanceof Boolean) {
+                row.createCell(0).setCellValue((Boolean) value);
+            } else if (value instanceof Integer) {
+                row.createCell(0).setCellValue((Integer) value);
+            }
+            row.createCell(1).setCellValue(r + 1);
+        }
+        Row keys = sheet.createRow(9);
+        Row results = sheet.createRow(10);
+        for (int c = 0; c < 8; c++) {
+            keys.createCell(c).setCellValue(c + 1);
+            results.createCell(c).setCellValue((c + 1) * 10);
+        }
+        return sheet;
+    }
+
+    private static void assertNumber(FormulaEvaluator fe, Cell cell, String formula, double expected) {
+        cell.setCellFormula(formula);
+        fe.notifySetFormula(cell);
+        CellValue value = fe.evaluate(cell);
+        assertEquals(expected, value.getNumberValue(), 0, formula);
+    }
+
+    private static void assertError(FormulaEvaluator fe, Cell cell, String formula, FormulaError expected) {
+        cell.setCellFormula(formula);
+        fe.notifySetFormula(cell);
+        CellValue value = fe.evaluate(cell);
+        assertEquals(expected.getCode(), value.getErrorValue(), formula);
+    }
+}